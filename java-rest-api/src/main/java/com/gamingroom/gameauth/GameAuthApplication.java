@@ -1,7 +1,6 @@
 package com.gamingroom.gameauth;
 
 import io.dropwizard.Application;
-import io.dropwizard.Configuration;
 import io.dropwizard.auth.AuthDynamicFeature;
 import io.dropwizard.auth.AuthValueFactoryProvider;
 import io.dropwizard.auth.basic.BasicCredentialAuthFilter;
@@ -9,6 +8,8 @@ import io.dropwizard.client.JerseyClientBuilder;
 import io.dropwizard.setup.Bootstrap;
 import io.dropwizard.setup.Environment;
 
+import java.nio.file.Paths;
+
 import javax.ws.rs.client.Client;
 
 import org.glassfish.jersey.server.filter.RolesAllowedDynamicFeature;
@@ -24,22 +25,33 @@ import com.gamingroom.gameauth.controller.RESTClientController;
 
 // Import Halo game components
 import com.gamingroom.gameauth.halo.controller.HaloGameResource;
+import com.gamingroom.gameauth.halo.json.HaloJsonModule;
+import com.gamingroom.gameauth.halo.service.BulkMatchImport;
 import com.gamingroom.gameauth.halo.service.HaloGameService;
+import com.gamingroom.gameauth.halo.service.LeaderboardFeed;
+import com.gamingroom.gameauth.halo.service.LeaderboardSnapshots;
+import com.gamingroom.gameauth.halo.service.LiveMatches;
+import com.gamingroom.gameauth.halo.service.MatchIngestQueue;
+import com.gamingroom.gameauth.halo.service.MatchLog;
+import com.gamingroom.gameauth.halo.service.MedalEngine;
+import com.gamingroom.gameauth.halo.service.PercentileRefresher;
+import com.gamingroom.gameauth.halo.service.WindowedLeaderboardRefresher;
 
 import com.gamingroom.gameauth.healthcheck.AppHealthCheck;
 import com.gamingroom.gameauth.healthcheck.HealthCheckController;
+import com.gamingroom.gameauth.healthcheck.MatchLogHealthCheck;
 
 
 
-public class GameAuthApplication extends Application<Configuration> {
+public class GameAuthApplication extends Application<GameAuthConfiguration> {
 	private static final Logger LOGGER = LoggerFactory.getLogger(GameAuthApplication.class);
 
 	@Override
-	public void initialize(Bootstrap<Configuration> b) {
+	public void initialize(Bootstrap<GameAuthConfiguration> b) {
 	}
 
 	@Override
-	public void run(Configuration c, Environment e) throws Exception 
+	public void run(GameAuthConfiguration c, Environment e) throws Exception 
 	{
 		
 		LOGGER.info("Registering REST resources");
@@ -58,15 +70,57 @@ public class GameAuthApplication extends Application<Configuration> {
 		e.jersey().register(new RESTClientController(client)); //RESTClientController is a class that uses the client to get the data from the server
 		e.jersey().register(new GameUserRESTController(e.getValidator())); //GameUserRESTController is a class that uses the validator to validate the data from the server
 
+		// Write PlayerStats, MatchResult and CustomMap without reflection
+		// (before anything below grabs the ObjectMapper)
+		e.getObjectMapper().registerModule(new HaloJsonModule());
+
 		// Register Halo game endpoints
 		// TODO: In production, pass a real DataSource from database configuration
 		// For now, using null which means in-memory storage only
-		HaloGameService haloService = new HaloGameService(null);
-		e.jersey().register(new HaloGameResource(haloService));
+		HaloGameService haloService = new HaloGameService(null, c.getPlayerCacheSize());
+		haloService.registerMetrics(e.metrics());
+
+		// Leaderboard responses are pre-built in the background and served as bytes
+		LeaderboardSnapshots leaderboardSnapshots = new LeaderboardSnapshots(
+				haloService, e.getObjectMapper(), c.getLeaderboardRefreshSeconds());
+		e.lifecycle().manage(leaderboardSnapshots);
+
+		// Live leaderboard updates pushed over Server-Sent Events
+		LeaderboardFeed leaderboardFeed = new LeaderboardFeed(
+				haloService, e.getObjectMapper(), c.getLeaderboardStreamTickMillis());
+		e.lifecycle().manage(leaderboardFeed);
+
+		// "Top X%" counts re-read from the shared table (other servers' matches)
+		e.lifecycle().manage(new PercentileRefresher(haloService));
+
+		// Daily / weekly / season leaderboards rebuilt from the per-day totals
+		e.lifecycle().manage(new WindowedLeaderboardRefresher(haloService));
+
+		// Accepted matches go to disk first so a crash can't lose them
+		// (managed before the queue so it starts first and stops last)
+		MatchLog matchLog = new MatchLog(Paths.get(c.getMatchLogDirectory()),
+				c.getMatchLogSegmentMegabytes() * 1024 * 1024, e.getObjectMapper());
+		matchLog.registerMetrics(e.metrics());
+		e.lifecycle().manage(matchLog);
+
+		// Finished matches are saved in the background so request threads stay free
+		MatchIngestQueue matchIngestQueue = new MatchIngestQueue(
+				haloService, matchLog, c.getMatchIngestQueueCapacity(), c.getMatchIngestWorkers());
+		matchIngestQueue.registerMetrics(e.metrics());
+		e.lifecycle().manage(matchIngestQueue);
+
+		// Kill feeds streamed during matches (live scoreboards, medals as they happen)
+		LiveMatches liveMatches = new LiveMatches(e.getObjectMapper(), new MedalEngine(MedalEngine.DEFAULT_RULES));
+		liveMatches.registerMetrics(e.metrics());
+
+		e.jersey().register(new HaloGameResource(
+				haloService, leaderboardSnapshots, leaderboardFeed, matchIngestQueue,
+				new BulkMatchImport(haloService, e.getObjectMapper()), liveMatches));
 		LOGGER.info("Registered Halo game endpoints at /halo/*");
 
 		// Application health check
 		e.healthChecks().register("APIHealthCheck", new AppHealthCheck(client));
+		e.healthChecks().register("MatchLogHealthCheck", new MatchLogHealthCheck(matchLog));
 
 		// Run multiple health checks
 		e.jersey().register(new HealthCheckController(e.healthChecks()));
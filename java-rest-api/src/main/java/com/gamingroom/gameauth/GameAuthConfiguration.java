@@ -9,4 +9,103 @@ import javax.validation.constraints.*;
 //It is used to configure the application
 public class GameAuthConfiguration extends Configuration {
 
+    // How often the pre-built leaderboard responses are refreshed (seconds)
+    @Min(1)
+    private long leaderboardRefreshSeconds = 5;
+
+    // How long live leaderboard streams collect changes before sending them (milliseconds)
+    @Min(50)
+    private long leaderboardStreamTickMillis = 1000;
+
+    // How many player profiles (stats + medals) are kept in memory
+    @Min(1)
+    private long playerCacheSize = 100000;
+
+    // How many finished matches can wait to be saved (rounded up to a power of two, at least 2)
+    @Min(2)
+    @Max(1048576)
+    private int matchIngestQueueCapacity = 4096;
+
+    // How many threads save finished matches in the background
+    @Min(1)
+    private int matchIngestWorkers = 2;
+
+    // Where accepted matches are logged before they're saved (replayed on startup)
+    @Size(min = 1)
+    private String matchLogDirectory = "match-log";
+
+    // Size of each match log file (megabytes)
+    @Min(1)
+    @Max(1024)
+    private int matchLogSegmentMegabytes = 64;
+
+    @JsonProperty
+    public long getLeaderboardRefreshSeconds() {
+        return leaderboardRefreshSeconds;
+    }
+
+    @JsonProperty
+    public void setLeaderboardRefreshSeconds(long leaderboardRefreshSeconds) {
+        this.leaderboardRefreshSeconds = leaderboardRefreshSeconds;
+    }
+
+    @JsonProperty
+    public long getLeaderboardStreamTickMillis() {
+        return leaderboardStreamTickMillis;
+    }
+
+    @JsonProperty
+    public void setLeaderboardStreamTickMillis(long leaderboardStreamTickMillis) {
+        this.leaderboardStreamTickMillis = leaderboardStreamTickMillis;
+    }
+
+    @JsonProperty
+    public long getPlayerCacheSize() {
+        return playerCacheSize;
+    }
+
+    @JsonProperty
+    public void setPlayerCacheSize(long playerCacheSize) {
+        this.playerCacheSize = playerCacheSize;
+    }
+
+    @JsonProperty
+    public int getMatchIngestQueueCapacity() {
+        return matchIngestQueueCapacity;
+    }
+
+    @JsonProperty
+    public void setMatchIngestQueueCapacity(int matchIngestQueueCapacity) {
+        this.matchIngestQueueCapacity = matchIngestQueueCapacity;
+    }
+
+    @JsonProperty
+    public int getMatchIngestWorkers() {
+        return matchIngestWorkers;
+    }
+
+    @JsonProperty
+    public void setMatchIngestWorkers(int matchIngestWorkers) {
+        this.matchIngestWorkers = matchIngestWorkers;
+    }
+
+    @JsonProperty
+    public String getMatchLogDirectory() {
+        return matchLogDirectory;
+    }
+
+    @JsonProperty
+    public void setMatchLogDirectory(String matchLogDirectory) {
+        this.matchLogDirectory = matchLogDirectory;
+    }
+
+    @JsonProperty
+    public int getMatchLogSegmentMegabytes() {
+        return matchLogSegmentMegabytes;
+    }
+
+    @JsonProperty
+    public void setMatchLogSegmentMegabytes(int matchLogSegmentMegabytes) {
+        this.matchLogSegmentMegabytes = matchLogSegmentMegabytes;
+    }
 }
@@ -4,15 +4,27 @@
 package com.gamingroom.gameauth.halo.controller;
 
 import com.gamingroom.gameauth.halo.models.*;
+import com.gamingroom.gameauth.halo.service.BulkMatchImport;
 import com.gamingroom.gameauth.halo.service.HaloGameService;
+import com.gamingroom.gameauth.halo.service.LeaderboardFeed;
+import com.gamingroom.gameauth.halo.service.LeaderboardIndex;
+import com.gamingroom.gameauth.halo.service.LeaderboardSnapshots;
+import com.gamingroom.gameauth.halo.service.LiveMatches;
+import com.gamingroom.gameauth.halo.service.MatchIngestQueue;
 import com.gamingroom.gameauth.auth.GameUser;
 import io.dropwizard.auth.Auth;
 import javax.annotation.security.RolesAllowed;
 import javax.ws.rs.*;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.EntityTag;
 import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Request;
 import javax.ws.rs.core.Response;
 import javax.validation.Valid;
+import java.io.InputStream;
 import java.util.*;
+import java.util.concurrent.RejectedExecutionException;
+import org.glassfish.jersey.server.ChunkedOutput;
 
 /**
  * HaloGameResource - REST API endpoints for Halo game features
@@ -24,7 +36,7 @@ import java.util.*;
  * - Player statistics and profiles
  * - Custom map upload/download (Forge)
  * - Matchmaking
- * - Match results reporting
+ * - Match results reporting (and live kill feeds during the match)
  * - Leaderboards
  * 
  * All endpoints require authentication (except leaderboards)
@@ -34,15 +46,53 @@ import java.util.*;
 @Consumes(MediaType.APPLICATION_JSON)
 public class HaloGameResource {
     
+    // Most player IDs one bulk stats request may ask for
+    public static final int MAX_BULK_PLAYERS = 256;
+    
     // The service layer that handles business logic
     private final HaloGameService gameService;
     
+    // Pre-built leaderboard responses (null = always build them live)
+    private final LeaderboardSnapshots leaderboardSnapshots;
+    
+    // Live leaderboard streams (null = streaming not available)
+    private final LeaderboardFeed leaderboardFeed;
+    
+    // Background match saving (null = save on the request thread)
+    private final MatchIngestQueue matchIngestQueue;
+    
+    // Streamed match imports (null = bulk import not available)
+    private final BulkMatchImport bulkMatchImport;
+    
+    // Kill feeds of matches in progress (null = live feeds not available)
+    private final LiveMatches liveMatches;
+    
     /**
      * Constructor - initialized by Dropwizard
      * @param gameService The service for game operations
      */
     public HaloGameResource(HaloGameService gameService) {
+        this(gameService, null, null, null, null, null);
+    }
+    
+    /**
+     * Constructor - initialized by Dropwizard
+     * @param gameService The service for game operations
+     * @param leaderboardSnapshots Pre-built leaderboard responses
+     * @param leaderboardFeed Live leaderboard streams
+     * @param matchIngestQueue Background match saving
+     * @param bulkMatchImport Streamed match imports
+     * @param liveMatches Kill feeds of matches in progress
+     */
+    public HaloGameResource(HaloGameService gameService, LeaderboardSnapshots leaderboardSnapshots,
+                            LeaderboardFeed leaderboardFeed, MatchIngestQueue matchIngestQueue,
+                            BulkMatchImport bulkMatchImport, LiveMatches liveMatches) {
         this.gameService = gameService;
+        this.leaderboardSnapshots = leaderboardSnapshots;
+        this.leaderboardFeed = leaderboardFeed;
+        this.matchIngestQueue = matchIngestQueue;
+        this.bulkMatchImport = bulkMatchImport;
+        this.liveMatches = liveMatches;
     }
     
     /**
@@ -62,6 +112,17 @@ public class HaloGameResource {
      *   "medals": {
      *     "Killing Spree": 5,
      *     "Double Kill": 12
+     *   },
+     *   "topPercent": {
+     *     "kills": 12.5,
+     *     "kd": 3.2
+     *   },
+     *   "recentPerformance": {
+     *     "matches": 20,
+     *     "kdRatio": 1.85,
+     *     "winRate": 0.6,
+     *     "kdTrend": 0.4,
+     *     "results": ["W", "W", "L", ...]
      *   }
      * }
      * 
@@ -93,6 +154,105 @@ public class HaloGameResource {
         return Response.ok(stats).build();
     }
     
+    /**
+     * POST /halo/players/stats
+     * 
+     * Get stats for many players in one request (scoreboards, party screens)
+     * Same rules as /halo/player/{id}/stats for every ID: players can only
+     * see their own stats unless they're admin.
+     * 
+     * Request body:
+     * [123, 456, 789]
+     * 
+     * Example response:
+     * {
+     *   "players": [ { "playerId": 123, ... }, { "playerId": 456, ... } ],
+     *   "notFound": [789],
+     *   "forbidden": []
+     * }
+     * 
+     * @param auth The authenticated user (from HTTP Basic Auth)
+     * @param playerIds The players to get stats for (at most 256)
+     * @return Stats for every allowed player that exists
+     */
+    @POST
+    @Path("/players/stats")
+    @RolesAllowed({"ADMIN", "USER", "PLAYER"})
+    public Response getPlayerStatsBulk(@Auth GameUser auth,
+                                       List<Long> playerIds) {
+        if (playerIds == null || playerIds.isEmpty()) {
+            return Response.status(Response.Status.BAD_REQUEST)
+                          .entity("At least one player ID is required")
+                          .build();
+        }
+        if (playerIds.size() > MAX_BULK_PLAYERS) {
+            return Response.status(Response.Status.BAD_REQUEST)
+                          .entity("At most " + MAX_BULK_PLAYERS + " player IDs per request")
+                          .build();
+        }
+        
+        // Apply the same per-player check as getPlayerStats to every ID
+        boolean isAdmin = auth.getRoles().contains("ADMIN");
+        Set<Long> allowed = new LinkedHashSet<>();
+        Set<Long> forbidden = new LinkedHashSet<>();
+        for (Long playerId : playerIds) {
+            if (playerId == null) {
+                continue;
+            }
+            if (isAdmin || auth.getId().equals(playerId)) {
+                allowed.add(playerId);
+            } else {
+                forbidden.add(playerId);
+            }
+        }
+        
+        Map<Long, PlayerStats> stats = gameService.getPlayerStats(allowed);
+        
+        List<Long> notFound = new ArrayList<>();
+        for (Long playerId : allowed) {
+            if (!stats.containsKey(playerId)) {
+                notFound.add(playerId);
+            }
+        }
+        
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("players", stats.values());
+        response.put("notFound", notFound);
+        response.put("forbidden", forbidden);
+        
+        return Response.ok(response).build();
+    }
+    
+    /**
+     * GET /halo/player/{id}/weapons
+     * 
+     * Get a player's lifetime kills with each weapon, most kills first
+     * 
+     * Example response:
+     * {
+     *   "BattleRifle": { "kills": 412 },
+     *   "Sniper": { "kills": 97 }
+     * }
+     * 
+     * @param auth The authenticated user (from HTTP Basic Auth)
+     * @param playerId The player ID to get weapon stats for
+     * @return Weapon name -> WeaponStats
+     */
+    @GET
+    @Path("/player/{id}/weapons")
+    @RolesAllowed({"ADMIN", "USER", "PLAYER"})
+    public Response getWeaponStats(@Auth GameUser auth,
+                                   @PathParam("id") Long playerId) {
+        // Same rule as stats: players can only view their own unless they're admin
+        if (!auth.getRoles().contains("ADMIN") && !auth.getId().equals(playerId)) {
+            return Response.status(Response.Status.FORBIDDEN)
+                          .entity("You can only view your own stats")
+                          .build();
+        }
+        
+        return Response.ok(gameService.getWeaponStats(playerId)).build();
+    }
+    
     /**
      * GET /halo/player/{id}/matches
      * 
@@ -286,9 +446,20 @@ public class HaloGameResource {
      *   ]
      * }
      * 
+     * The match is queued and saved in the background, so this answers
+     * 202 Accepted right away. If the queue is full (or the server is
+     * shutting down) it answers 503 with Retry-After - resend the match.
+     * Resending a match we already have answers 409 Conflict and changes nothing.
+     * Without the queue the match is saved right here, and 500 means it
+     * couldn't be - resend it.
+     * 
+     * If the kill feed was streamed to /match/{matchId}/events during the
+     * match, "killEvents" can be left out - the streamed feed is used.
+     * 
      * @param result The complete match results
      * @param serverToken Security token to verify this is from game server
-     * @return Success response
+     * @return 202 Accepted, 409 if the match was already reported, 503 if it couldn't be
+     *         queued, or 500 if it was saved here and that failed
      */
     @POST
     @Path("/match/complete")
@@ -303,38 +474,384 @@ public class HaloGameResource {
                           .build();
         }
         
-        // Process the match results
-        gameService.processMatchResult(result);
+        if (result.getMatchId() == null) {
+            return Response.status(Response.Status.BAD_REQUEST)
+                          .entity("matchId is required")
+                          .build();
+        }
+        
+        // Game servers retry on timeouts - don't count the same match twice
+        if (!gameService.claimMatchId(result.getMatchId())) {
+            return Response.status(Response.Status.CONFLICT)
+                          .entity("Match " + result.getMatchId() + " was already reported")
+                          .build();
+        }
+        
+        // Finalize a match we followed live: use the kill feed and medals we
+        // already have (only attachFeed may say the medals are done)
+        result.setLiveMedals(false);
+        if (liveMatches != null) {
+            liveMatches.attachFeed(result);
+        }
+        
+        // No queue - process the match results right here
+        if (matchIngestQueue == null) {
+            boolean saved = false;
+            try {
+                saved = gameService.processMatchResults(Collections.singletonList(result)).isEmpty();
+            } finally {
+                // Not saved, so the retry must not look like a duplicate
+                if (!saved) {
+                    gameService.releaseMatchId(result.getMatchId());
+                }
+            }
+            if (!saved) {
+                return Response.status(Response.Status.INTERNAL_SERVER_ERROR)
+                              .entity("Match results could not be saved, try again")
+                              .build();
+            }
+            if (liveMatches != null) {
+                liveMatches.finish(result.getMatchId());
+            }
+            return Response.ok()
+                          .entity("Match results processed")
+                          .build();
+        }
+        
+        if (!matchIngestQueue.submit(result)) {
+            // Not taken, so the retry must not look like a duplicate
+            gameService.releaseMatchId(result.getMatchId());
+            return Response.status(Response.Status.SERVICE_UNAVAILABLE)
+                          .header("Retry-After", "1")
+                          .entity("Match queue is full, try again shortly")
+                          .build();
+        }
+        
+        // Accepted (and in the match log), so the live feed is no longer needed
+        if (liveMatches != null) {
+            liveMatches.finish(result.getMatchId());
+        }
         
-        return Response.ok()
-                      .entity("Match results processed")
+        return Response.accepted()
+                      .entity("Match results queued")
                       .build();
     }
     
+    /**
+     * POST /halo/match/{matchId}/events
+     * 
+     * Stream a match's kill feed while it is being played. The body is
+     * newline-delimited JSON, one kill per line:
+     * 
+     *   {"timeMillis": 41200, "killerId": 123, "victimId": 456, "weapon": "Sniper"}
+     *   {"timeMillis": 43050, "killerId": 123, "victimId": 789, "weapon": "Sniper"}
+     * 
+     * Send short batches, or hold one chunked request open for the whole
+     * match - each kill is applied as soon as it is read. killerId is
+     * left out for deaths with no killer (falls, suicides).
+     * 
+     * @param matchId The match being played
+     * @param body The NDJSON stream (Content-Type: application/x-ndjson)
+     * @param serverToken Security token to verify this is from game server
+     * @return How many events were accepted and skipped
+     */
+    @POST
+    @Path("/match/{matchId}/events")
+    @Consumes("application/x-ndjson")
+    public Response streamKillEvents(@PathParam("matchId") String matchId,
+                                     InputStream body,
+                                     @HeaderParam("X-Server-Token") String serverToken) {
+        if (!"secret-server-token".equals(serverToken)) {
+            return Response.status(Response.Status.UNAUTHORIZED)
+                          .entity("Invalid server token")
+                          .build();
+        }
+        
+        if (liveMatches == null) {
+            return Response.status(Response.Status.SERVICE_UNAVAILABLE)
+                          .entity("Live kill feeds are not enabled")
+                          .build();
+        }
+        
+        LiveMatches.FeedResult result = liveMatches.readEvents(matchId, body);
+        
+        // Events read before a syntax error are kept, but tell the server
+        Response.Status status = result.getError() == null ? Response.Status.OK : Response.Status.BAD_REQUEST;
+        return Response.status(status).entity(result).build();
+    }
+    
+    /**
+     * GET /halo/match/{matchId}/live
+     * 
+     * Live scoreboard of a match in progress (kills, deaths, current
+     * spree and medals so far), for spectators and stream overlays.
+     * 
+     * @param matchId The match ID
+     * @return The scoreboard, or 404 if no kill feed is being streamed for it
+     */
+    @GET
+    @Path("/match/{matchId}/live")
+    public Response getLiveScoreboard(@PathParam("matchId") String matchId) {
+        LiveScoreboard scoreboard = liveMatches != null ? liveMatches.scoreboard(matchId) : null;
+        if (scoreboard == null) {
+            return Response.status(Response.Status.NOT_FOUND)
+                          .entity("Match " + matchId + " is not being played live")
+                          .build();
+        }
+        return Response.ok(scoreboard).build();
+    }
+    
+    /**
+     * POST /halo/match/bulk
+     * 
+     * Import many finished matches in one request (backfills after an
+     * outage, tournament data). The body is newline-delimited JSON - one
+     * match per line, in the same format as /match/complete:
+     * 
+     *   {"matchId": "uuid-1", "mapName": "Valhalla", "gameMode": "TEAM_SLAYER", ...}
+     *   {"matchId": "uuid-2", "mapName": "Guardian", "gameMode": "SLAYER", ...}
+     * 
+     * The stream is read and saved as it arrives (in batches), so it can
+     * hold hundreds of thousands of matches. The matches are saved when this
+     * returns, and the response counts every record and lists the ones
+     * that weren't saved (duplicates, invalid records, database failures)
+     * by line number.
+     * 
+     * Only a few imports run at once; when they're all busy this answers
+     * 503 with Retry-After before reading anything.
+     * 
+     * @param body The NDJSON stream (Content-Type: application/x-ndjson)
+     * @param serverToken Security token to verify this is from game server
+     * @return The import report, or 503 if too many imports are running
+     */
+    @POST
+    @Path("/match/bulk")
+    @Consumes("application/x-ndjson")
+    public Response importMatches(InputStream body,
+                                  @HeaderParam("X-Server-Token") String serverToken) throws InterruptedException {
+        if (!"secret-server-token".equals(serverToken)) {
+            return Response.status(Response.Status.UNAUTHORIZED)
+                          .entity("Invalid server token")
+                          .build();
+        }
+        
+        if (bulkMatchImport == null) {
+            return Response.status(Response.Status.SERVICE_UNAVAILABLE)
+                          .entity("Bulk import is not enabled")
+                          .build();
+        }
+        
+        try {
+            return Response.ok(bulkMatchImport.importMatches(body)).build();
+        } catch (RejectedExecutionException e) {
+            return Response.status(Response.Status.SERVICE_UNAVAILABLE)
+                          .header("Retry-After", "10")
+                          .entity("Too many bulk imports running, try again shortly")
+                          .build();
+        }
+    }
+    
     /**
      * GET /halo/leaderboard/{stat}
      * 
      * Get leaderboard for a specific stat
      * 
      * Path parameters:
-     * - stat: "kills", "kd", "wins", "rank"
+     * - stat: "kills", "kd", "wins", "rank", "deaths"
      * 
      * Query parameters:
      * - limit: How many players to return (default: 50, max: 100)
      * 
+     * The default-size leaderboard is served from a snapshot that is
+     * refreshed every few seconds. It has an ETag, so clients that send
+     * If-None-Match get a 304 Not Modified when nothing changed.
+     * 
      * @param stat The stat to get leaderboard for
      * @param limit How many players to return
+     * @param request Used to check the If-None-Match header
      * @return List of top players for that stat
      */
     @GET
     @Path("/leaderboard/{stat}")
     public Response getLeaderboard(@PathParam("stat") String stat,
-                                  @QueryParam("limit") @DefaultValue("50") int limit) {
+                                  @QueryParam("limit") @DefaultValue("50") int limit,
+                                  @Context Request request) {
+        // Fast path: send the pre-built JSON for the default page size
+        if (leaderboardSnapshots != null && limit == LeaderboardSnapshots.SNAPSHOT_LIMIT) {
+            String snapshotStat = LeaderboardIndex.SUPPORTED_STATS.contains(stat) ? stat : "rank";
+            LeaderboardSnapshots.Snapshot snapshot = leaderboardSnapshots.get(snapshotStat);
+            
+            if (snapshot != null) {
+                EntityTag etag = new EntityTag(snapshot.getEtag());
+                
+                // Client already has this version - 304 Not Modified
+                Response.ResponseBuilder notModified = request.evaluatePreconditions(etag);
+                if (notModified != null) {
+                    return notModified.build();
+                }
+                
+                return Response.ok(snapshot.getJson(), MediaType.APPLICATION_JSON_TYPE)
+                              .tag(etag)
+                              .build();
+            }
+        }
+        
         List<PlayerStats> leaderboard = gameService.getLeaderboard(stat, limit);
         
         return Response.ok(leaderboard).build();
     }
     
+    /**
+     * GET /halo/leaderboard/{stat}/stream
+     * 
+     * Live leaderboard using Server-Sent Events (text/event-stream)
+     * Use this instead of polling /halo/leaderboard/{stat}
+     * 
+     * Events:
+     * - "snapshot": sent once on connect, the full top 50
+     * - "delta": only the ranks that changed, at most once per tick
+     *   {"stat": "kills", "changes": [{"rank": 3, "playerId": 123, "gamertag": "...", "value": 1340}]}
+     * 
+     * @param stat The stat to watch
+     * @return An open event stream
+     */
+    @GET
+    @Path("/leaderboard/{stat}/stream")
+    @Produces("text/event-stream")
+    public ChunkedOutput<String> streamLeaderboard(@PathParam("stat") String stat) {
+        if (leaderboardFeed == null) {
+            throw new WebApplicationException("Live leaderboards are not enabled",
+                                              Response.Status.SERVICE_UNAVAILABLE);
+        }
+        
+        // Same stat validation as the normal leaderboard
+        if (!LeaderboardIndex.SUPPORTED_STATS.contains(stat)) {
+            stat = "rank";
+        }
+        
+        return leaderboardFeed.subscribe(stat);
+    }
+    
+    /**
+     * GET /halo/leaderboard/{stat}/page
+     * 
+     * Page through the whole leaderboard, not just the top 100
+     * 
+     * Query parameters:
+     * - cursor: The "nextCursor" from the previous page (leave out for the first page)
+     * - limit: Players per page (default: 50, max: 500)
+     * 
+     * Example response:
+     * {
+     *   "stat": "kills",
+     *   "entries": [...],
+     *   "nextCursor": "MjUwMC4wOjkyNjY4NzUx"
+     * }
+     * 
+     * @param stat The stat to rank by
+     * @param cursor Where the previous page ended
+     * @param limit Players per page
+     * @return One page of the leaderboard
+     */
+    @GET
+    @Path("/leaderboard/{stat}/page")
+    public Response getLeaderboardPage(@PathParam("stat") String stat,
+                                      @QueryParam("cursor") String cursor,
+                                      @QueryParam("limit") @DefaultValue("50") int limit) {
+        try {
+            LeaderboardPage page = gameService.getLeaderboardPage(stat, cursor, limit);
+            return Response.ok(page).build();
+            
+        } catch (IllegalArgumentException e) {
+            return Response.status(Response.Status.BAD_REQUEST)
+                          .entity(e.getMessage())
+                          .build();
+        }
+    }
+    
+    /**
+     * GET /halo/leaderboard/{stat}/player/{id}
+     * 
+     * Get a player's rank on a leaderboard and the players around them
+     * (the "where do I rank" box on the post-game screen)
+     * 
+     * Query parameters:
+     * - window: How many players to show above and below (default: 5, max: 25)
+     * 
+     * Example response:
+     * {
+     *   "stat": "kills",
+     *   "playerId": 123,
+     *   "rank": 4182,
+     *   "totalPlayers": 250000,
+     *   "above": [...],
+     *   "player": {...},
+     *   "below": [...]
+     * }
+     * 
+     * @param stat The stat to rank by
+     * @param playerId The player to look up
+     * @param window How many players to show above and below
+     * @return The player's leaderboard position
+     */
+    @GET
+    @Path("/leaderboard/{stat}/player/{id}")
+    public Response getLeaderboardPosition(@PathParam("stat") String stat,
+                                          @PathParam("id") Long playerId,
+                                          @QueryParam("window") @DefaultValue("5") int window) {
+        LeaderboardPosition position = gameService.getLeaderboardPosition(stat, playerId, window);
+        
+        if (position == null) {
+            return Response.status(Response.Status.NOT_FOUND)
+                          .entity("Player not found")
+                          .build();
+        }
+        
+        return Response.ok(position).build();
+    }
+    
+    /**
+     * GET /halo/leaderboard/{stat}/window/{window}
+     * 
+     * Get a leaderboard for a time window instead of lifetime totals
+     * 
+     * Path parameters:
+     * - stat: "kills", "kd", "wins", "deaths"
+     * - window: "daily", "weekly", "season"
+     * 
+     * Query parameters:
+     * - gameMode: Only count one game mode (e.g., "TEAM_SLAYER")
+     * - playlist: Only count one playlist (e.g., "ranked_slayer")
+     * - limit: How many players to return (default: 50, max: 100)
+     * 
+     * @param stat The stat to rank by
+     * @param window The time window
+     * @param gameMode Optional game mode filter
+     * @param playlist Optional playlist filter
+     * @param limit How many players to return
+     * @return List of top players with their totals for the window
+     */
+    @GET
+    @Path("/leaderboard/{stat}/window/{window}")
+    public Response getWindowedLeaderboard(@PathParam("stat") String stat,
+                                          @PathParam("window") String window,
+                                          @QueryParam("gameMode") String gameMode,
+                                          @QueryParam("playlist") String playlist,
+                                          @QueryParam("limit") @DefaultValue("50") int limit) {
+        try {
+            GameMode mode = gameMode != null ? GameMode.valueOf(gameMode.toUpperCase()) : null;
+            List<PlayerStats> leaderboard =
+                gameService.getWindowedLeaderboard(stat, window, mode, playlist, limit);
+            
+            return Response.ok(leaderboard).build();
+            
+        } catch (IllegalArgumentException e) {
+            return Response.status(Response.Status.BAD_REQUEST)
+                          .entity(e.getMessage())
+                          .build();
+        }
+    }
+    
     /**
      * GET /halo/weapons
      * 
@@ -0,0 +1,230 @@
+// Package: com.gamingroom.gameauth.halo.dao
+// This class turns medal and weapon names into small numbers for storage
+
+package com.gamingroom.gameauth.halo.dao;
+
+import java.sql.*;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import javax.sql.DataSource;
+
+/**
+ * CodeDictionary - Name <-> small number table (medal_types, weapon_types)
+ *
+ * There are only a few dozen medal and weapon names, but they were
+ * stored as text on every match row and every player_medals row. Now
+ * each name is stored once in a dictionary table, and other tables keep
+ * its SMALLINT id (2 bytes instead of ~15):
+ *
+ * 1. The whole table is read into memory the first time it's needed
+ * 2. register() adds any new names (e.g. a new weapon) to the table
+ *    once, each getting the next id. Callers do this BEFORE opening their
+ *    own transaction: adding a name needs a second pooled connection, and
+ *    asking for one while holding another can deadlock a full pool
+ * 3. encode() is then only a hash map lookup - it never touches the
+ *    database, so it is safe inside a transaction
+ * 4. decode() is an array read - nothing is joined or looked up in SQL
+ *    when rows are read back, and it never takes a connection (it runs
+ *    while the caller holds one). Readers call ensureLoaded() before
+ *    opening their connection instead
+ * 5. An id we haven't seen (another server added it) is decoded as null
+ *    and noted; the next ensureLoaded() reloads the table once for it.
+ *    Ids still missing after that reload are remembered as missing, so
+ *    they never cause another reload
+ *
+ * Without a database the ids are just handed out in memory.
+ */
+public class CodeDictionary {
+    // The dictionary tables (from halo_schema.sql)
+    public static final String MEDAL_TYPES = "medal_types";
+    public static final String WEAPON_TYPES = "weapon_types";
+
+    private final DataSource dataSource;
+    private final String table;
+
+    // Name -> id, and id -> name (index 0 is never used)
+    private final Map<String, Short> codes = new ConcurrentHashMap<>();
+    private volatile String[] names = new String[1];
+    private volatile boolean loaded;
+
+    // Ids found in rows but not in the table (reload for them next time),
+    // and ids that were still missing after a reload (never reload for them)
+    private final Set<Integer> unknown = ConcurrentHashMap.newKeySet();
+    private final Set<Integer> missing = ConcurrentHashMap.newKeySet();
+
+    /**
+     * @param dataSource The database connection pool (can be null for testing)
+     * @param table MEDAL_TYPES or WEAPON_TYPES
+     */
+    public CodeDictionary(DataSource dataSource, String table) {
+        this.dataSource = dataSource;
+        this.table = table;
+    }
+
+    /**
+     * Make sure every name has an id, adding the new ones to the table
+     * (uses its own connection - call it before opening a transaction)
+     *
+     * @param names Medal or weapon names (nulls are skipped)
+     * @throws SQLException If a new name couldn't be added
+     */
+    public void register(Collection<String> names) throws SQLException {
+        ensureLoaded();
+        for (String name : names) {
+            if (name != null && !codes.containsKey(name)) {
+                add(name);
+            }
+        }
+    }
+
+    /**
+     * Get the id for a name that was registered earlier
+     *
+     * @param name A medal or weapon name
+     * @return Its id
+     * @throws SQLException If the name was never registered (the caller's
+     *                      transaction fails and the match is retried)
+     */
+    public short encode(String name) throws SQLException {
+        Short code = codes.get(name);
+        if (code == null) {
+            throw new SQLException("Unregistered " + table + " name: " + name);
+        }
+        return code;
+    }
+
+    /**
+     * Get the ids for a list of names (same order, repeats kept)
+     *
+     * @param names Medal or weapon names (can be null)
+     * @return Their ids (empty if names is null)
+     * @throws SQLException If a name was never registered
+     */
+    public Short[] encodeAll(Collection<String> names) throws SQLException {
+        if (names == null) {
+            return new Short[0];
+        }
+        Short[] ids = new Short[names.size()];
+        int i = 0;
+        for (String name : names) {
+            ids[i++] = encode(name);
+        }
+        return ids;
+    }
+
+    /**
+     * Get the name for an id (call ensureLoaded() before opening the
+     * connection the ids are read with - this never takes one)
+     *
+     * @param code An id read from the database
+     * @return The name, or null if it isn't known (yet)
+     */
+    public String decode(int code) {
+        String name = nameOf(code);
+        if (name == null && dataSource != null && code > 0 && !missing.contains(code)) {
+            // Maybe another server added it since we loaded the table
+            unknown.add(code);
+        }
+        return name;
+    }
+
+    /**
+     * Read the table if it hasn't been read yet, or again if rows have
+     * turned up ids we don't know. Uses its own connection, so call it
+     * before opening the one you'll decode with
+     */
+    public void ensureLoaded() {
+        if (loaded && unknown.isEmpty()) {
+            return;
+        }
+        synchronized (this) {
+            if (loaded && unknown.isEmpty()) {
+                return;
+            }
+            if (dataSource != null) {
+                Set<Integer> wanted = new HashSet<>(unknown);
+                try {
+                    load();
+                } catch (SQLException e) {
+                    // Try again next time; names can still be added one by one
+                    System.err.println("Error loading " + table + ": " + e.getMessage());
+                    return;
+                }
+                // A row only refers to an id after it was committed here, so
+                // one that's still missing will never show up
+                for (Integer code : wanted) {
+                    if (nameOf(code) == null) {
+                        missing.add(code);
+                    }
+                }
+                unknown.removeAll(wanted);
+            }
+            loaded = true;
+        }
+    }
+
+    /**
+     * Add a new name (only one thread at a time, so it gets one id)
+     */
+    private synchronized short add(String name) throws SQLException {
+        Short code = codes.get(name);
+        if (code != null) {
+            return code;
+        }
+
+        short id;
+        if (dataSource == null) {
+            id = (short) (codes.size() + 1);
+        } else {
+            // DO UPDATE (not DO NOTHING) so RETURNING gives the id even if
+            // another server added the same name first
+            String sql = "INSERT INTO " + table + " (name) VALUES (?) " +
+                         "ON CONFLICT (name) DO UPDATE SET name = EXCLUDED.name RETURNING id";
+            try (Connection conn = dataSource.getConnection();
+                 PreparedStatement stmt = conn.prepareStatement(sql)) {
+                stmt.setString(1, name);
+                try (ResultSet rs = stmt.executeQuery()) {
+                    rs.next();
+                    id = rs.getShort(1);
+                }
+            }
+        }
+
+        remember(id, name);
+        return id;
+    }
+
+    private String nameOf(int code) {
+        String[] current = names;
+        return code > 0 && code < current.length ? current[code] : null;
+    }
+
+    /**
+     * Read the whole table (caller holds the lock)
+     */
+    private void load() throws SQLException {
+        String sql = "SELECT id, name FROM " + table;
+        try (Connection conn = dataSource.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql);
+             ResultSet rs = stmt.executeQuery()) {
+            while (rs.next()) {
+                remember(rs.getShort("id"), rs.getString("name"));
+            }
+        }
+    }
+
+    /**
+     * Add one id <-> name pair (caller holds the lock)
+     */
+    private void remember(short id, String name) {
+        String[] current = names;
+        if (id >= current.length) {
+            current = Arrays.copyOf(current, Math.max(id + 1, current.length * 2));
+        } else {
+            current = current.clone(); // Readers never see a half-written array
+        }
+        current[id] = name;
+        names = current;
+        codes.put(name, id);
+    }
+}
\ No newline at end of file
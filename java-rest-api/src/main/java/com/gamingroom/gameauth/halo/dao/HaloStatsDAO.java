@@ -24,15 +24,68 @@ public class HaloStatsDAO {
     // DataSource manages our database connections
     private final DataSource dataSource;
     
+    // Medal name <-> medal_id (player_medals stores the id)
+    private final CodeDictionary medalCodes;
+    
+    // Columns the leaderboard query reads from player_stats - all of them
+    // are in the leaderboard indexes, so those rows come from an index-only
+    // scan (the gamertag still needs a lookup in users for each row returned)
+    private static final String LEADERBOARD_COLUMNS =
+        "ps.player_id, ps.total_kills, ps.total_deaths, ps.total_assists, " +
+        "ps.matches_played, ps.matches_won, ps.rank_level, ps.rank_xp, ps.highest_skill";
+    
+    // Stats + medals for a profile: one row per medal (NULL medal columns
+    // if the player has none), add a WHERE on ps.player_id
+    private static final String PROFILE_SQL =
+        "SELECT ps.*, u.username as gamertag, pm.medal_id, pm.count as medal_count " +
+        "FROM player_stats ps " +
+        "JOIN users u ON ps.player_id = u.id " +
+        "LEFT JOIN player_medals pm ON pm.player_id = ps.player_id ";
+    
+    // Adds a whole match's XP in one statement and moves each player up to the
+    // level their new total is worth. The "old" CTE locks the rows first so we
+    // can return the level each player had before. Parameters:
+    // 1. player IDs (bigint[])  2. XP earned, same order (int[])
+    // 3. level thresholds from RankSystem (int[]) - the level is how many are <= XP
+    private static final String APPLY_XP_SQL =
+        "WITH earned AS (" +
+        "    SELECT * FROM unnest(?::bigint[], ?::int[]) AS e(player_id, xp)" +
+        "), old AS (" +
+        "    SELECT ps.player_id, ps.rank_level FROM player_stats ps " +
+        "    JOIN earned e ON e.player_id = ps.player_id ORDER BY ps.player_id FOR UPDATE OF ps" +
+        ") " +
+        "UPDATE player_stats ps SET " +
+        "rank_xp = ps.rank_xp + e.xp, " +
+        "rank_level = GREATEST(ps.rank_level, " +
+        "    (SELECT count(*) FROM unnest(?::int[]) t WHERE t <= ps.rank_xp + e.xp)), " +
+        "updated_at = CURRENT_TIMESTAMP " +
+        "FROM earned e JOIN old o ON o.player_id = e.player_id " +
+        "WHERE ps.player_id = e.player_id " +
+        "RETURNING ps.player_id, o.rank_level AS old_level, ps.rank_level, ps.rank_xp";
+    
     // In-memory storage for testing when no database is available
-    private static final Map<Long, PlayerStats> IN_MEMORY_STATS = new HashMap<>();
+    // (columns of primitive arrays instead of one PlayerStats object per player)
+    private static final PlayerStatsStore IN_MEMORY_STATS = new PlayerStatsStore();
+    
+    // In-memory copy of the player_rank_events table
+    private static final List<RankUp> IN_MEMORY_RANK_UPS = Collections.synchronizedList(new ArrayList<>());
     
     /**
      * Constructor - Initialize with a database connection source
      * @param dataSource The database connection pool from Dropwizard (can be null for testing)
      */
     public HaloStatsDAO(DataSource dataSource) {
+        this(dataSource, new CodeDictionary(dataSource, CodeDictionary.MEDAL_TYPES));
+    }
+    
+    /**
+     * Constructor - Initialize with a database connection source
+     * @param dataSource The database connection pool from Dropwizard (can be null for testing)
+     * @param medalCodes Medal dictionary (shared with MatchHistoryDAO)
+     */
+    public HaloStatsDAO(DataSource dataSource, CodeDictionary medalCodes) {
         this.dataSource = dataSource;
+        this.medalCodes = medalCodes;
         
         // If no database, create some test data
         if (dataSource == null) {
@@ -59,7 +112,7 @@ public class HaloStatsDAO {
         testPlayer.setMatchesWon(95);
         testPlayer.setWinRatio(0.63);
         
-        IN_MEMORY_STATS.put(playerId, testPlayer);
+        IN_MEMORY_STATS.put(testPlayer);
         
         // Add admin test data too
         PlayerStats adminPlayer = new PlayerStats();
@@ -76,7 +129,7 @@ public class HaloStatsDAO {
         adminPlayer.setMatchesWon(250);
         adminPlayer.setWinRatio(0.83);
         
-        IN_MEMORY_STATS.put(adminId, adminPlayer);
+        IN_MEMORY_STATS.put(adminPlayer);
     }
     
     /**
@@ -88,7 +141,7 @@ public class HaloStatsDAO {
     public PlayerStats getPlayerStats(Long playerId) {
         // If no database, use in-memory storage
         if (dataSource == null) {
-            return IN_MEMORY_STATS.get(playerId);
+            return playerId != null ? IN_MEMORY_STATS.get(playerId) : null;
         }
         
         // SQL query to get player stats and join with users table for gamertag
@@ -120,76 +173,609 @@ public class HaloStatsDAO {
         return null; // Player not found
     }
     
+    /**
+     * Get several players' stats with one query, using a connection the
+     * caller already has open
+     * 
+     * The ingest transaction calls this after its upserts, so it reads the
+     * rows it is about to commit without a connection and query per player.
+     * 
+     * @param conn An open database connection
+     * @param playerIds The players to read
+     * @return Player ID -> stats (players without a row are left out)
+     * @throws SQLException If the query fails
+     */
+    public Map<Long, PlayerStats> getPlayerStats(Connection conn, Collection<Long> playerIds)
+            throws SQLException {
+        Map<Long, PlayerStats> stats = new HashMap<>();
+        if (playerIds.isEmpty()) {
+            return stats;
+        }
+        
+        String sql = "SELECT ps.*, u.username as gamertag " +
+                    "FROM player_stats ps " +
+                    "JOIN users u ON ps.player_id = u.id " +
+                    "WHERE ps.player_id = ANY(?)";
+        
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setArray(1, conn.createArrayOf("bigint", playerIds.toArray()));
+            ResultSet rs = stmt.executeQuery();
+            while (rs.next()) {
+                PlayerStats row = mapResultSetToPlayerStats(rs);
+                stats.put(row.getPlayerId(), row);
+            }
+        }
+        
+        return stats;
+    }
+    
+    /**
+     * Get a player's stats AND medals with one query
+     * 
+     * The profile endpoint used to call getPlayerStats and then
+     * getPlayerMedals - two connections from the pool and two trips to
+     * the database. Here we LEFT JOIN the medals onto the stats row:
+     * 1. Every row has the same stats columns plus one medal (or NULL medal
+     *    columns if the player has none yet)
+     * 2. We read the stats from the first row
+     * 3. We collect the medal from every row into the medals map
+     * 
+     * @param playerId The player's unique ID from the users table
+     * @return PlayerStats with medals filled in, or null if not found
+     */
+    public PlayerStats getPlayerProfile(Long playerId) {
+        // If no database, use in-memory storage
+        if (dataSource == null) {
+            // The store builds a new PlayerStats, so the caller is free to change it
+            PlayerStats stats = playerId != null ? IN_MEMORY_STATS.get(playerId) : null;
+            if (stats == null) {
+                return null;
+            }
+            stats.setMedals(getPlayerMedals(playerId));
+            return stats;
+        }
+        
+        String sql = PROFILE_SQL + "WHERE ps.player_id = ?";
+        
+        // Before taking a connection: decoding must not need a second one
+        medalCodes.ensureLoaded();
+        
+        try (Connection conn = dataSource.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+            
+            stmt.setLong(1, playerId);
+            return readProfiles(stmt.executeQuery()).get(playerId);
+            
+        } catch (SQLException e) {
+            System.err.println("Error getting player profile: " + e.getMessage());
+        }
+        
+        return null;
+    }
+    
+    /**
+     * Get stats AND medals for many players with one query
+     * Used by scoreboards and party screens instead of one request per player
+     * 
+     * @param playerIds The players to load
+     * @return Player ID -> PlayerStats with medals (players not found are left out)
+     */
+    public Map<Long, PlayerStats> getPlayerProfiles(Collection<Long> playerIds) {
+        Map<Long, PlayerStats> profiles = new HashMap<>();
+        if (playerIds.isEmpty()) {
+            return profiles;
+        }
+        
+        // If no database, one pass over the in-memory storage
+        if (dataSource == null) {
+            for (Long playerId : playerIds) {
+                PlayerStats stats = playerId != null ? IN_MEMORY_STATS.get(playerId) : null;
+                if (stats != null) {
+                    stats.setMedals(getPlayerMedals(playerId));
+                    profiles.put(playerId, stats);
+                }
+            }
+            return profiles;
+        }
+        
+        // = ANY(array) keeps it one prepared statement no matter how many IDs
+        String sql = PROFILE_SQL + "WHERE ps.player_id = ANY(?)";
+        
+        // Before taking a connection: decoding must not need a second one
+        medalCodes.ensureLoaded();
+        
+        try (Connection conn = dataSource.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+            
+            Array ids = conn.createArrayOf("bigint", playerIds.toArray());
+            stmt.setArray(1, ids);
+            return readProfiles(stmt.executeQuery());
+            
+        } catch (SQLException e) {
+            System.err.println("Error getting player profiles: " + e.getMessage());
+        }
+        
+        return profiles;
+    }
+    
+    /**
+     * Turn the rows of a PROFILE_SQL query into profiles
+     * 
+     * Every row has the player's stats plus one medal, so:
+     * 1. The first row for a player creates their PlayerStats
+     * 2. Every row adds its medal (if any) to that player's medals map
+     * 
+     * @param rs The query results
+     * @return Player ID -> PlayerStats with medals
+     */
+    private Map<Long, PlayerStats> readProfiles(ResultSet rs) throws SQLException {
+        Map<Long, PlayerStats> profiles = new HashMap<>();
+        
+        while (rs.next()) {
+            long playerId = rs.getLong("player_id");
+            
+            // Stats columns are the same on every row - only map them once
+            PlayerStats stats = profiles.get(playerId);
+            if (stats == null) {
+                stats = mapResultSetToPlayerStats(rs);
+                stats.setMedals(new HashMap<>());
+                profiles.put(playerId, stats);
+            }
+            
+            // medal_id is NULL when the player has no medals
+            int medalId = rs.getInt("medal_id");
+            String medalType = rs.wasNull() ? null : medalCodes.decode(medalId);
+            if (medalType != null) {
+                stats.getMedals().merge(medalType, rs.getInt("medal_count"), Integer::sum);
+            }
+        }
+        
+        return profiles;
+    }
+    
     /**
      * Update player statistics after a match completes
-     * This method adds the match results to the player's lifetime stats
+     * This method adds the match results to every player's lifetime stats
      * 
-     * @param playerId The player's ID
-     * @param matchStats The player's performance in the match
-     * @param wonMatch Whether the player's team won
+     * @param match The match, with each player's medals already worked out
      */
-    public void updatePlayerStats(Long playerId, MatchResult.PlayerMatchStats matchStats, boolean wonMatch) {
-        // First, check if player already has stats
-        String checkSql = "SELECT player_id FROM player_stats WHERE player_id = ?";
+    public void updatePlayerStats(MatchResult match) {
+        // If no database, add the match to the in-memory stats
+        if (dataSource == null) {
+            for (MatchResult.PlayerMatchStats matchStats : match.getPlayerStats()) {
+                boolean wonMatch = matchStats.getTeam().equals(match.getWinningTeam());
+                IN_MEMORY_STATS.addMatch(matchStats.getPlayerId(), matchStats.getKills(),
+                                         matchStats.getDeaths(), matchStats.getAssists(), wonMatch);
+            }
+            return;
+        }
+        
+        try {
+            registerCodes(Collections.singletonList(match));
+        } catch (SQLException e) {
+            System.err.println("Error updating player stats: " + e.getMessage());
+            return;
+        }
         
         try (Connection conn = dataSource.getConnection()) {
-            // Check if player exists
-            boolean playerExists = false;
-            try (PreparedStatement checkStmt = conn.prepareStatement(checkSql)) {
-                checkStmt.setLong(1, playerId);
-                ResultSet rs = checkStmt.executeQuery();
-                playerExists = rs.next();
-            }
-            
-            String sql;
-            if (playerExists) {
-                // UPDATE existing stats - add new match results to totals
-                sql = "UPDATE player_stats SET " +
-                      "total_kills = total_kills + ?, " +
-                      "total_deaths = total_deaths + ?, " +
-                      "total_assists = total_assists + ?, " +
-                      "matches_played = matches_played + 1, " +
-                      "matches_won = matches_won + ?, " +
-                      "updated_at = CURRENT_TIMESTAMP " +
-                      "WHERE player_id = ?";
-            } else {
-                // INSERT new player stats for first-time players
-                sql = "INSERT INTO player_stats " +
-                      "(player_id, total_kills, total_deaths, total_assists, " +
-                      "matches_played, matches_won) " +
-                      "VALUES (?, ?, ?, ?, 1, ?)";
-            }
-            
-            try (PreparedStatement stmt = conn.prepareStatement(sql)) {
-                if (playerExists) {
-                    // For UPDATE query
-                    stmt.setInt(1, matchStats.getKills());
-                    stmt.setInt(2, matchStats.getDeaths());
-                    stmt.setInt(3, matchStats.getAssists());
-                    stmt.setInt(4, wonMatch ? 1 : 0);
-                    stmt.setLong(5, playerId);
-                } else {
-                    // For INSERT query
-                    stmt.setLong(1, playerId);
-                    stmt.setInt(2, matchStats.getKills());
-                    stmt.setInt(3, matchStats.getDeaths());
-                    stmt.setInt(4, matchStats.getAssists());
-                    stmt.setInt(5, wonMatch ? 1 : 0);
+            conn.setAutoCommit(false);
+            
+            try {
+                updatePlayerStats(conn, Collections.singletonList(match));
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            }
+            
+        } catch (SQLException e) {
+            System.err.println("Error updating player stats: " + e.getMessage());
+        }
+    }
+    
+    /**
+     * Give every medal name in the matches a dictionary id (call this
+     * before opening the transaction - a new name is inserted on its own
+     * pooled connection)
+     * 
+     * @param matches The matches about to be saved
+     * @throws SQLException If a new name couldn't be added
+     */
+    public void registerCodes(Collection<MatchResult> matches) throws SQLException {
+        Set<String> medals = new HashSet<>();
+        for (MatchResult match : matches) {
+            for (MatchResult.PlayerMatchStats player : match.getPlayerStats()) {
+                if (player.getMedalsEarned() != null) {
+                    medals.addAll(player.getMedalsEarned());
                 }
-                
-                stmt.executeUpdate();
             }
+        }
+        medalCodes.register(medals);
+    }
+    
+    /**
+     * Add matches to every player's lifetime stats and medals using a
+     * connection the caller already has open (nothing is committed here)
+     * 
+     * Each table gets one batched upsert for all the matches: new players
+     * are inserted and existing ones are added to, without checking first.
+     * A player who is in several of the matches gets one row with the totals.
+     * 
+     * Rows are written in player_id order (medals by player_id, then
+     * medal_id). Two batches that share players then lock those rows in
+     * the same order, so they wait for each other instead of deadlocking.
+     * 
+     * Medal names must be registered first (registerCodes).
+     * 
+     * @param conn An open database connection
+     * @param matches The matches, with each player's medals already worked out
+     * @throws SQLException If an upsert fails
+     */
+    public void updatePlayerStats(Connection conn, List<MatchResult> matches) throws SQLException {
+        // Insert first-time players, or add these matches to existing totals
+        String sql = "INSERT INTO player_stats " +
+                    "(player_id, total_kills, total_deaths, total_assists, matches_played, matches_won) " +
+                    "VALUES (?, ?, ?, ?, ?, ?) " +
+                    "ON CONFLICT (player_id) DO UPDATE SET " +
+                    "total_kills = player_stats.total_kills + EXCLUDED.total_kills, " +
+                    "total_deaths = player_stats.total_deaths + EXCLUDED.total_deaths, " +
+                    "total_assists = player_stats.total_assists + EXCLUDED.total_assists, " +
+                    "matches_played = player_stats.matches_played + EXCLUDED.matches_played, " +
+                    "matches_won = player_stats.matches_won + EXCLUDED.matches_won, " +
+                    "updated_at = CURRENT_TIMESTAMP";
+        
+        // Sorted by player ID - see the lock order note above
+        Map<Long, int[]> totals = totalsByPlayer(matches);
+        
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            for (Map.Entry<Long, int[]> entry : totals.entrySet()) {
+                int[] total = entry.getValue();
+                stmt.setLong(1, entry.getKey());
+                stmt.setInt(2, total[0]);
+                stmt.setInt(3, total[1]);
+                stmt.setInt(4, total[2]);
+                stmt.setInt(5, total[3]);
+                stmt.setInt(6, total[4]);
+                stmt.addBatch();
+            }
+            stmt.executeBatch();
+        }
+        
+        // Also save any medals earned in these matches
+        saveMedalsEarned(conn, matches);
+    }
+    
+    /**
+     * What some matches add to each player's player_stats row
+     * 
+     * @param matches The matches
+     * @return Player ID (sorted) -> {kills, deaths, assists, matches, wins}
+     */
+    static Map<Long, int[]> totalsByPlayer(List<MatchResult> matches) {
+        Map<Long, int[]> totals = new TreeMap<>();
+        for (MatchResult match : matches) {
+            for (MatchResult.PlayerMatchStats matchStats : match.getPlayerStats()) {
+                int[] total = totals.computeIfAbsent(matchStats.getPlayerId(), id -> new int[5]);
+                total[0] += matchStats.getKills();
+                total[1] += matchStats.getDeaths();
+                total[2] += matchStats.getAssists();
+                total[3]++;
+                if (matchStats.getTeam().equals(match.getWinningTeam())) {
+                    total[4]++;
+                }
+            }
+        }
+        return totals;
+    }
+    
+    /**
+     * Add the XP every player earned in a match and record any rank-ups
+     * 
+     * All players are updated by one statement, and the rank-up events are
+     * written in the same transaction, so a match's XP is applied all or nothing.
+     * 
+     * @param matchId The match the XP came from
+     * @param xpEarned Player ID -> XP earned in the match
+     * @return The players who moved up a level (empty if none)
+     */
+    public List<RankUp> applyExperience(String matchId, Map<Long, Integer> xpEarned) {
+        List<RankUp> rankUps = new ArrayList<>();
+        if (xpEarned.isEmpty()) {
+            return rankUps;
+        }
+        
+        // If no database, update the in-memory stats
+        if (dataSource == null) {
+            for (Map.Entry<Long, Integer> entry : xpEarned.entrySet()) {
+                RankUp rankUp = IN_MEMORY_STATS.addExperience(entry.getKey(), entry.getValue());
+                if (rankUp != null) {
+                    rankUp.setMatchId(matchId);
+                    rankUps.add(rankUp);
+                }
+            }
+            IN_MEMORY_RANK_UPS.addAll(rankUps);
+            return rankUps;
+        }
+        
+        try (Connection conn = dataSource.getConnection()) {
+            conn.setAutoCommit(false);
             
-            // Also save any medals earned in this match
-            saveMedalsEarned(conn, playerId, matchStats.getMedalsEarned());
+            try {
+                rankUps = applyExperience(conn, matchId, xpEarned);
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            }
             
         } catch (SQLException e) {
-            System.err.println("Error updating player stats: " + e.getMessage());
+            System.err.println("Error applying experience: " + e.getMessage());
+            rankUps.clear(); // Rolled back, so nobody actually ranked up
+        }
+        
+        return rankUps;
+    }
+    
+    /**
+     * Add a match's XP and record rank-ups using a connection the caller
+     * already has open (nothing is committed here)
+     * 
+     * @param conn An open database connection
+     * @param matchId The match the XP came from
+     * @param xpEarned Player ID -> XP earned in the match
+     * @return The players who moved up a level (empty if none)
+     * @throws SQLException If the update fails
+     */
+    public List<RankUp> applyExperience(Connection conn, String matchId, Map<Long, Integer> xpEarned)
+            throws SQLException {
+        List<RankUp> rankUps = new ArrayList<>();
+        if (xpEarned.isEmpty()) {
+            return rankUps;
+        }
+        
+        // In player ID order, like the stats upsert, so rows are locked in the same order
+        Map<Long, Integer> sorted = new TreeMap<>(xpEarned);
+        
+        try (PreparedStatement stmt = conn.prepareStatement(APPLY_XP_SQL)) {
+            stmt.setArray(1, conn.createArrayOf("bigint", sorted.keySet().toArray()));
+            stmt.setArray(2, conn.createArrayOf("integer", sorted.values().toArray()));
+            stmt.setArray(3, conn.createArrayOf("integer", PlayerStats.RankSystem.getLevelThresholds()));
+            ResultSet rs = stmt.executeQuery();
+            
+            while (rs.next()) {
+                int oldLevel = rs.getInt("old_level");
+                int newLevel = rs.getInt("rank_level");
+                if (newLevel != oldLevel) {
+                    rankUps.add(new RankUp(rs.getLong("player_id"), matchId,
+                                           oldLevel, newLevel, rs.getInt("rank_xp")));
+                }
+            }
+        }
+        
+        if (rankUps.isEmpty()) {
+            return rankUps;
+        }
+        
+        String eventSql = "INSERT INTO player_rank_events " +
+                         "(player_id, match_id, old_level, new_level, rank_xp) VALUES (?, ?, ?, ?, ?)";
+        
+        try (PreparedStatement stmt = conn.prepareStatement(eventSql)) {
+            for (RankUp rankUp : rankUps) {
+                stmt.setLong(1, rankUp.getPlayerId());
+                stmt.setString(2, matchId);
+                stmt.setInt(3, rankUp.getOldLevel());
+                stmt.setInt(4, rankUp.getNewLevel());
+                stmt.setInt(5, rankUp.getRankXP());
+                stmt.addBatch();
+            }
+            stmt.executeBatch();
+        }
+        
+        return rankUps;
+    }
+    
+    /**
+     * Get every player's stats (used once at startup to build the leaderboard index)
+     * 
+     * @return List of all PlayerStats, in no particular order
+     */
+    public List<PlayerStats> getAllPlayerStats() {
+        // If no database, use in-memory storage
+        if (dataSource == null) {
+            return IN_MEMORY_STATS.getAll();
+        }
+        
+        String sql = "SELECT ps.*, u.username as gamertag " +
+                    "FROM player_stats ps " +
+                    "JOIN users u ON ps.player_id = u.id";
+        
+        List<PlayerStats> allStats = new ArrayList<>();
+        
+        try (Connection conn = dataSource.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+            
+            ResultSet rs = stmt.executeQuery();
+            while (rs.next()) {
+                allStats.add(mapResultSetToPlayerStats(rs));
+            }
+            
+        } catch (SQLException e) {
+            System.err.println("Error loading all player stats: " + e.getMessage());
+        }
+        
+        return allStats;
+    }
+    
+    /**
+     * Works out how some players' new stats change the stat_histograms
+     * counts (StatPercentiles.changes - the service package owns the buckets)
+     */
+    public interface HistogramChanges {
+        /**
+         * @param previous Player ID -> stats before (new players left out)
+         * @param updated Player ID -> stats after
+         * @return Stat -> bucket -> change in players
+         */
+        Map<String, Map<Integer, Long>> between(Map<Long, PlayerStats> previous,
+                                                Map<Long, PlayerStats> updated);
+    }
+    
+    // Marks stat_histograms as built from player_stats
+    private static final String HISTOGRAMS_BUILT = "*";
+    
+    // Rows read per batch while building stat_histograms from player_stats
+    private static final int HISTOGRAM_BUILD_BATCH = 1000;
+    
+    /**
+     * Add an ingest batch's changes to stat_histograms (in the caller's
+     * transaction, so the counts always match player_stats)
+     * 
+     * Rows are upserted in (stat, bucket) order so two batches lock them
+     * in the same order, like the player_stats upsert.
+     * 
+     * @param conn An open database connection
+     * @param changes Stat -> bucket -> change in players
+     * @throws SQLException If the upsert fails
+     */
+    public void addToStatHistograms(Connection conn, Map<String, Map<Integer, Long>> changes)
+            throws SQLException {
+        String sql = "INSERT INTO stat_histograms (stat, bucket, players) VALUES (?, ?, ?) " +
+                    "ON CONFLICT (stat, bucket) DO UPDATE SET " +
+                    "players = stat_histograms.players + EXCLUDED.players";
+        
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            for (Map.Entry<String, Map<Integer, Long>> stat : new TreeMap<>(changes).entrySet()) {
+                for (Map.Entry<Integer, Long> bucket : new TreeMap<>(stat.getValue()).entrySet()) {
+                    if (bucket.getValue() == 0) {
+                        continue;
+                    }
+                    stmt.setString(1, stat.getKey());
+                    stmt.setInt(2, bucket.getKey());
+                    stmt.setLong(3, bucket.getValue());
+                    stmt.addBatch();
+                }
+            }
+            stmt.executeBatch();
+        }
+    }
+    
+    /**
+     * Read the shared "top X%" counts
+     * 
+     * @return Stat -> bucket -> players (plus the "*" marker row, so a built
+     *         table is never empty); empty if the table hasn't been built
+     *         yet (see buildStatHistograms), null if it can't be read
+     */
+    public Map<String, Map<Integer, Long>> getStatHistograms() {
+        if (dataSource == null) {
+            return Collections.emptyMap();
+        }
+        
+        String sql = "SELECT stat, bucket, players FROM stat_histograms WHERE players <> 0";
+        
+        Map<String, Map<Integer, Long>> counts = new TreeMap<>();
+        boolean built = false;
+        
+        try (Connection conn = dataSource.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+            
+            ResultSet rs = stmt.executeQuery();
+            while (rs.next()) {
+                String stat = rs.getString("stat");
+                built |= HISTOGRAMS_BUILT.equals(stat);
+                counts.computeIfAbsent(stat, s -> new TreeMap<>())
+                      .put(rs.getInt("bucket"), rs.getLong("players"));
+            }
+            
+        } catch (SQLException e) {
+            System.err.println("Error loading stat histograms: " + e.getMessage());
+            return null;
+        }
+        
+        return built ? counts : Collections.emptyMap();
+    }
+    
+    /**
+     * Fill stat_histograms from player_stats (once, for a database that
+     * had players before the table existed)
+     * 
+     * The table is locked for the whole build, so ingest batches wait to
+     * add their changes until it's done: anything they've already
+     * committed is in the player_stats rows read here, and anything
+     * they haven't is added on top afterwards. If another server built it
+     * first, nothing is done.
+     * 
+     * @param changes Turns player stats into bucket counts
+     * @return True if the table is built (by this call or an earlier one)
+     */
+    public boolean buildStatHistograms(HistogramChanges changes) {
+        if (dataSource == null) {
+            return false;
+        }
+        
+        try (Connection conn = dataSource.getConnection()) {
+            conn.setAutoCommit(false);
+            try {
+                try (Statement stmt = conn.createStatement()) {
+                    stmt.execute("LOCK TABLE stat_histograms IN EXCLUSIVE MODE");
+                    ResultSet rs = stmt.executeQuery(
+                        "SELECT 1 FROM stat_histograms WHERE stat = '" + HISTOGRAMS_BUILT + "'");
+                    if (rs.next()) {
+                        conn.commit();
+                        return true;
+                    }
+                }
+                
+                // Stream player_stats a batch at a time and add up the counts
+                Map<String, Map<Integer, Long>> counts = new TreeMap<>();
+                Map<Long, PlayerStats> batch = new HashMap<>();
+                try (PreparedStatement stmt = conn.prepareStatement(
+                        "SELECT ps.*, NULL AS gamertag FROM player_stats ps")) {
+                    stmt.setFetchSize(HISTOGRAM_BUILD_BATCH);
+                    ResultSet rs = stmt.executeQuery();
+                    while (rs.next()) {
+                        PlayerStats stats = mapResultSetToPlayerStats(rs);
+                        batch.put(stats.getPlayerId(), stats);
+                        if (batch.size() == HISTOGRAM_BUILD_BATCH) {
+                            addCounts(counts, changes.between(Collections.emptyMap(), batch));
+                            batch.clear();
+                        }
+                    }
+                }
+                addCounts(counts, changes.between(Collections.emptyMap(), batch));
+                
+                try (Statement stmt = conn.createStatement()) {
+                    stmt.executeUpdate("DELETE FROM stat_histograms");
+                }
+                counts.put(HISTOGRAMS_BUILT, Collections.singletonMap(0, 1L));
+                addToStatHistograms(conn, counts);
+                
+                conn.commit();
+                return true;
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            }
+        } catch (SQLException e) {
+            System.err.println("Error building stat histograms: " + e.getMessage());
+            return false;
+        }
+    }
+    
+    private static void addCounts(Map<String, Map<Integer, Long>> counts,
+                                  Map<String, Map<Integer, Long>> more) {
+        for (Map.Entry<String, Map<Integer, Long>> stat : more.entrySet()) {
+            Map<Integer, Long> buckets = counts.computeIfAbsent(stat.getKey(), s -> new TreeMap<>());
+            for (Map.Entry<Integer, Long> bucket : stat.getValue().entrySet()) {
+                buckets.merge(bucket.getKey(), bucket.getValue(), Long::sum);
+            }
         }
     }
     
     /**
      * Get the leaderboard for a specific stat
+     * (HaloGameService reads leaderboards here when there is a database;
+     * without one it uses its LeaderboardIndex)
      * 
      * @param stat The stat to rank by: "kills", "kd", "wins", "rank"
      * @param limit How many players to return (e.g., top 50)
@@ -198,7 +784,7 @@ public class HaloStatsDAO {
     public List<PlayerStats> getLeaderboard(String stat, int limit) {
         // If no database, use in-memory storage
         if (dataSource == null) {
-            List<PlayerStats> allStats = new ArrayList<>(IN_MEMORY_STATS.values());
+            List<PlayerStats> allStats = IN_MEMORY_STATS.getAll();
             
             // Sort by the requested stat
             switch (stat != null ? stat.toLowerCase() : "kills") {
@@ -233,40 +819,15 @@ public class HaloStatsDAO {
         
         // Database query for production
         // Determine what column to sort by based on the stat parameter
-        String orderByColumn;
-        switch (stat != null ? stat.toLowerCase() : "kills") {
-            case "kills":
-                orderByColumn = "total_kills";
-                break;
-            case "kd":
-            case "kdratio":
-                // Calculate K/D ratio in the query
-                // CAST ensures decimal division, NULLIF prevents divide by zero
-                orderByColumn = "(CAST(total_kills AS DECIMAL) / NULLIF(total_deaths, 0))";
-                break;
-            case "wins":
-            case "matcheswon":
-                orderByColumn = "matches_won";
-                break;
-            case "deaths":
-                orderByColumn = "total_deaths";
-                break;
-            case "accuracy":
-                orderByColumn = "rank_level"; // Using rank as proxy for accuracy
-                break;
-            case "rank":
-            case "ranklevel":
-                orderByColumn = "rank_level";
-                break;
-            default:
-                orderByColumn = "total_kills";
-        }
+        String orderByColumn = leaderboardColumn(stat);
         
         // Build the SQL query with dynamic ORDER BY
-        String sql = "SELECT ps.*, u.username as gamertag " +
+        // The ORDER BY matches the (stat DESC, player_id) leaderboard indexes,
+        // so the database reads just the first `limit` index entries
+        String sql = "SELECT " + LEADERBOARD_COLUMNS + ", u.username as gamertag " +
                     "FROM player_stats ps " +
                     "JOIN users u ON ps.player_id = u.id " +
-                    "ORDER BY " + orderByColumn + " DESC " +
+                    "ORDER BY ps." + orderByColumn + " DESC, ps.player_id " +
                     "LIMIT ?";
         
         List<PlayerStats> leaderboard = new ArrayList<>();
@@ -289,36 +850,265 @@ public class HaloStatsDAO {
         return leaderboard;
     }
     
+    /**
+     * Get the page of the leaderboard that comes after a given row
+     * 
+     * Keyset pagination: instead of OFFSET (which reads and throws away
+     * every earlier row) we start the index scan at the last row the
+     * client saw. "stat <= value" is what lets the database jump there,
+     * the rest only skips players tied on the same value.
+     * 
+     * @param stat The stat to rank by: "kills", "kd", "wins", "rank", "deaths"
+     * @param afterValue The stat value of the last row on the previous page (null = first page)
+     * @param afterPlayerId The player ID of the last row on the previous page
+     * @param limit How many players to return
+     * @return List of PlayerStats in leaderboard order
+     */
+    public List<PlayerStats> getLeaderboardPage(String stat, Double afterValue, Long afterPlayerId,
+                                                int limit) {
+        // No database - HaloGameService pages through its leaderboard index instead
+        if (dataSource == null) {
+            return new ArrayList<>();
+        }
+        
+        try (Connection conn = dataSource.getConnection()) {
+            return readLeaderboardPage(conn, leaderboardColumn(stat), afterValue, afterPlayerId, limit);
+        } catch (SQLException e) {
+            System.err.println("Error getting leaderboard page: " + e.getMessage());
+            return new ArrayList<>();
+        }
+    }
+    
+    /**
+     * Get a player's leaderboard rank with the players around them
+     * 
+     * Ranked the same way as getLeaderboard and getLeaderboardPage, and
+     * read from the same (stat DESC, player_id) indexes: the rank counts
+     * the index entries before the player, and the neighbours are two
+     * short keyset scans, one each way from the player's entry.
+     * 
+     * @param stat The stat to rank by: "kills", "kd", "wins", "rank", "deaths"
+     * @param playerId The player to look up
+     * @param window How many players to return above and below
+     * @return The player's position, or null if they have no stats
+     *         (always null without a database - HaloGameService uses its index)
+     */
+    public LeaderboardPosition getLeaderboardPosition(String stat, Long playerId, int window) {
+        if (dataSource == null) {
+            return null;
+        }
+        
+        String column = leaderboardColumn(stat);
+        String playerSql = "SELECT " + LEADERBOARD_COLUMNS + ", ps." + column + " AS stat_value, " +
+                          "u.username as gamertag " +
+                          "FROM player_stats ps " +
+                          "JOIN users u ON ps.player_id = u.id " +
+                          "WHERE ps.player_id = ?";
+        
+        // Players ranked before this one: a higher value, or the same value and a lower ID
+        String ahead = "ps." + column + " >= ? AND (ps." + column + " > ? OR ps.player_id < ?) ";
+        String rankSql = "SELECT (SELECT count(*) FROM player_stats ps WHERE " + ahead + ") AS ahead, " +
+                        "(SELECT count(*) FROM player_stats) AS total";
+        
+        // The closest of them first (the index read backwards), flipped below
+        String aboveSql = "SELECT " + LEADERBOARD_COLUMNS + ", u.username as gamertag " +
+                         "FROM player_stats ps " +
+                         "JOIN users u ON ps.player_id = u.id " +
+                         "WHERE " + ahead +
+                         "ORDER BY ps." + column + ", ps.player_id DESC " +
+                         "LIMIT ?";
+        
+        try (Connection conn = dataSource.getConnection()) {
+            PlayerStats player;
+            double value;
+            try (PreparedStatement stmt = conn.prepareStatement(playerSql)) {
+                stmt.setLong(1, playerId);
+                ResultSet rs = stmt.executeQuery();
+                if (!rs.next()) {
+                    return null;
+                }
+                player = mapResultSetToPlayerStats(rs);
+                value = rs.getDouble("stat_value");
+            }
+            
+            LeaderboardPosition position = new LeaderboardPosition();
+            position.setStat(stat);
+            position.setPlayerId(playerId);
+            position.setPlayer(player);
+            
+            try (PreparedStatement stmt = conn.prepareStatement(rankSql)) {
+                int param = bindStatValue(stmt, 1, column, value);
+                param = bindStatValue(stmt, param, column, value);
+                stmt.setLong(param, playerId);
+                ResultSet rs = stmt.executeQuery();
+                rs.next();
+                position.setRank(rs.getInt("ahead") + 1);
+                position.setTotalPlayers(rs.getInt("total"));
+            }
+            
+            List<PlayerStats> above = new ArrayList<>();
+            if (window > 0) {
+                try (PreparedStatement stmt = conn.prepareStatement(aboveSql)) {
+                    int param = bindStatValue(stmt, 1, column, value);
+                    param = bindStatValue(stmt, param, column, value);
+                    stmt.setLong(param++, playerId);
+                    stmt.setInt(param, window);
+                    ResultSet rs = stmt.executeQuery();
+                    while (rs.next()) {
+                        above.add(mapResultSetToPlayerStats(rs));
+                    }
+                }
+                Collections.reverse(above);
+            }
+            position.setAbove(above);
+            
+            position.setBelow(window > 0
+                ? readLeaderboardPage(conn, column, value, playerId, window)
+                : new ArrayList<>());
+            return position;
+            
+        } catch (SQLException e) {
+            System.err.println("Error getting leaderboard position: " + e.getMessage());
+            return null;
+        }
+    }
+    
+    /**
+     * Keyset query behind getLeaderboardPage (also reads the players
+     * below someone in getLeaderboardPosition)
+     * 
+     * @param column The player_stats column to rank by
+     * @param afterValue Start after this value (null = from the top)
+     * @param afterPlayerId ... and this player ID
+     * @param limit How many players to return
+     * @return List of PlayerStats in leaderboard order
+     */
+    private List<PlayerStats> readLeaderboardPage(Connection conn, String column, Double afterValue,
+                                                  Long afterPlayerId, int limit) throws SQLException {
+        String sql = "SELECT " + LEADERBOARD_COLUMNS + ", u.username as gamertag " +
+                    "FROM player_stats ps " +
+                    "JOIN users u ON ps.player_id = u.id " +
+                    (afterValue != null
+                        ? "WHERE ps." + column + " <= ? " +
+                          "AND (ps." + column + " < ? OR ps.player_id > ?) "
+                        : "") +
+                    "ORDER BY ps." + column + " DESC, ps.player_id " +
+                    "LIMIT ?";
+        
+        List<PlayerStats> page = new ArrayList<>();
+        
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            int param = 1;
+            if (afterValue != null) {
+                param = bindStatValue(stmt, param, column, afterValue);
+                param = bindStatValue(stmt, param, column, afterValue);
+                stmt.setLong(param++, afterPlayerId);
+            }
+            stmt.setInt(param, limit);
+            
+            ResultSet rs = stmt.executeQuery();
+            while (rs.next()) {
+                page.add(mapResultSetToPlayerStats(rs));
+            }
+        }
+        
+        return page;
+    }
+    
+    /**
+     * Bind a leaderboard stat value with the column's own type, so the
+     * database can use the index
+     * 
+     * @return The next parameter index
+     */
+    private static int bindStatValue(PreparedStatement stmt, int param, String column, double value)
+            throws SQLException {
+        if ("kd_ratio".equals(column)) {
+            stmt.setDouble(param, value);
+        } else {
+            stmt.setInt(param, (int) value);
+        }
+        return param + 1;
+    }
+    
+    /**
+     * Helper method to pick the player_stats column for a leaderboard stat
+     * 
+     * @param stat The stat name from the request
+     * @return The column to sort by (defaults to total_kills)
+     */
+    private static String leaderboardColumn(String stat) {
+        switch (stat != null ? stat.toLowerCase() : "kills") {
+            case "kills":
+                return "total_kills";
+            case "kd":
+            case "kdratio":
+                // Stored column kept up to date by the database, so it can be indexed
+                return "kd_ratio";
+            case "wins":
+            case "matcheswon":
+                return "matches_won";
+            case "deaths":
+                return "total_deaths";
+            case "accuracy":
+                return "rank_level"; // Using rank as proxy for accuracy
+            case "rank":
+            case "ranklevel":
+                return "rank_level";
+            default:
+                return "total_kills";
+        }
+    }
+    
     /**
      * Helper method to save medals earned in a match
      * 
      * @param conn The database connection to use
-     * @param playerId The player who earned the medals
-     * @param medalsEarned List of medal names earned in the match
+     * @param matches The matches (with each player's medalsEarned filled in)
      */
-    private void saveMedalsEarned(Connection conn, Long playerId, List<String> medalsEarned) 
+    private void saveMedalsEarned(Connection conn, List<MatchResult> matches) 
             throws SQLException {
-        if (medalsEarned == null || medalsEarned.isEmpty()) {
-            return; // No medals to save
-        }
-        
         // SQL to insert or update medal count
-        // If player already has this medal, increment the count
-        String sql = "INSERT INTO player_medals (player_id, medal_type, count) " +
-                    "VALUES (?, ?, 1) " +
-                    "ON CONFLICT (player_id, medal_type) DO UPDATE " +
-                    "SET count = player_medals.count + 1";
+        // If player already has this medal, add the new count to it
+        String sql = "INSERT INTO player_medals (player_id, medal_id, count) " +
+                    "VALUES (?, ?, ?) " +
+                    "ON CONFLICT (player_id, medal_id) DO UPDATE " +
+                    "SET count = player_medals.count + EXCLUDED.count";
+        
+        // One row per player per medal type, even if it was earned more than once
+        // (player ID -> medal_id -> count, sorted so rows are locked in key order)
+        Map<Long, Map<Short, Integer>> counts = new TreeMap<>();
+        for (MatchResult match : matches) {
+            for (MatchResult.PlayerMatchStats player : match.getPlayerStats()) {
+                if (player.getMedalsEarned() == null) {
+                    continue;
+                }
+                Map<Short, Integer> playerCounts =
+                    counts.computeIfAbsent(player.getPlayerId(), id -> new TreeMap<>());
+                for (String medal : player.getMedalsEarned()) {
+                    playerCounts.merge(medalCodes.encode(medal), 1, Integer::sum);
+                }
+            }
+        }
         
         try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            boolean anyMedals = false;
+            
             // Batch insert all medals for better performance
-            for (String medal : medalsEarned) {
-                stmt.setLong(1, playerId);
-                stmt.setString(2, medal);
-                stmt.addBatch(); // Add to batch instead of executing immediately
+            for (Map.Entry<Long, Map<Short, Integer>> player : counts.entrySet()) {
+                for (Map.Entry<Short, Integer> medal : player.getValue().entrySet()) {
+                    stmt.setLong(1, player.getKey());
+                    stmt.setShort(2, medal.getKey());
+                    stmt.setInt(3, medal.getValue());
+                    stmt.addBatch(); // Add to batch instead of executing immediately
+                    anyMedals = true;
+                }
             }
             
             // Execute all medal inserts at once
-            stmt.executeBatch();
+            if (anyMedals) {
+                stmt.executeBatch();
+            }
         }
     }
     
@@ -371,7 +1161,7 @@ public class HaloStatsDAO {
         // If no database, return empty medals map
         if (dataSource == null) {
             // Add some test medals for demo
-            if (IN_MEMORY_STATS.containsKey(playerId)) {
+            if (playerId != null && IN_MEMORY_STATS.contains(playerId)) {
                 medals.put("Killing Spree", 5);
                 medals.put("Double Kill", 12);
                 medals.put("Triple Kill", 3);
@@ -380,7 +1170,10 @@ public class HaloStatsDAO {
             return medals;
         }
         
-        String sql = "SELECT medal_type, count FROM player_medals WHERE player_id = ?";
+        String sql = "SELECT medal_id, count FROM player_medals WHERE player_id = ?";
+        
+        // Before taking a connection: decoding must not need a second one
+        medalCodes.ensureLoaded();
         
         try (Connection conn = dataSource.getConnection();
              PreparedStatement stmt = conn.prepareStatement(sql)) {
@@ -389,7 +1182,10 @@ public class HaloStatsDAO {
             ResultSet rs = stmt.executeQuery();
             
             while (rs.next()) {
-                medals.put(rs.getString("medal_type"), rs.getInt("count"));
+                String medalType = medalCodes.decode(rs.getInt("medal_id"));
+                if (medalType != null) {
+                    medals.put(medalType, rs.getInt("count"));
+                }
             }
             
         } catch (SQLException e) {
@@ -6,7 +6,10 @@ package com.gamingroom.gameauth.halo.dao;
 import com.gamingroom.gameauth.halo.models.*;
 import java.sql.*;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 import javax.sql.DataSource;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
 
 /**
@@ -20,9 +23,14 @@ import java.time.LocalDateTime;
 public class MatchHistoryDAO {
     private final DataSource dataSource;
     
+    // Medal / weapon name <-> small id (match rows store arrays of ids)
+    private final CodeDictionary medalCodes;
+    private final CodeDictionary weaponCodes;
+    
     // In-memory storage for testing
-    private static final Map<String, MatchResult> IN_MEMORY_MATCHES = new HashMap<>();
-    private static final Map<Long, List<String>> PLAYER_MATCH_INDEX = new HashMap<>();
+    // (concurrent because ingest workers save while request threads read)
+    private static final Map<String, MatchResult> IN_MEMORY_MATCHES = new ConcurrentHashMap<>();
+    private static final Map<Long, List<String>> PLAYER_MATCH_INDEX = new ConcurrentHashMap<>();
     
     // Initialize with sample matches
     static {
@@ -30,7 +38,19 @@ public class MatchHistoryDAO {
     }
     
     public MatchHistoryDAO(DataSource dataSource) {
+        this(dataSource, new CodeDictionary(dataSource, CodeDictionary.MEDAL_TYPES),
+             new CodeDictionary(dataSource, CodeDictionary.WEAPON_TYPES));
+    }
+    
+    /**
+     * @param dataSource The database connection pool (can be null for testing)
+     * @param medalCodes Medal dictionary (shared with HaloStatsDAO)
+     * @param weaponCodes Weapon dictionary
+     */
+    public MatchHistoryDAO(DataSource dataSource, CodeDictionary medalCodes, CodeDictionary weaponCodes) {
         this.dataSource = dataSource;
+        this.medalCodes = medalCodes;
+        this.weaponCodes = weaponCodes;
     }
     
     /**
@@ -39,9 +59,21 @@ public class MatchHistoryDAO {
      * @param match The match result with all player stats
      */
     public void saveMatch(MatchResult match) {
-        // If no database, just log it
+        // If no database, keep it in memory (matchExists and the match
+        // history read from here, so duplicates are caught like in the database)
         if (dataSource == null) {
-            System.out.println("Match saved (in-memory): " + match.getMatchId());
+            if (IN_MEMORY_MATCHES.putIfAbsent(match.getMatchId(), match) == null) {
+                for (MatchResult.PlayerMatchStats player : match.getPlayerStats()) {
+                    addToPlayerIndex(player.getPlayerId(), match.getMatchId());
+                }
+            }
+            return;
+        }
+        
+        try {
+            registerCodes(Collections.singletonList(match));
+        } catch (SQLException e) {
+            System.err.println("Error saving match: " + e.getMessage());
             return;
         }
         
@@ -50,45 +82,7 @@ public class MatchHistoryDAO {
             conn.setAutoCommit(false);
             
             try {
-                // First, insert the match itself
-                String matchSql = "INSERT INTO match_history " +
-                    "(match_id, map_name, game_mode, winning_team, duration_seconds, " +
-                    "started_at, ended_at) VALUES (?, ?, ?, ?, ?, ?, ?)";
-                
-                try (PreparedStatement stmt = conn.prepareStatement(matchSql)) {
-                    stmt.setString(1, match.getMatchId());
-                    stmt.setString(2, match.getMapName());
-                    stmt.setString(3, match.getGameMode().name());
-                    stmt.setInt(4, match.getWinningTeam());
-                    stmt.setLong(5, match.getDurationSeconds());
-                    stmt.setTimestamp(6, Timestamp.valueOf(match.getTimestamp()));
-                    stmt.setTimestamp(7, Timestamp.valueOf(match.getTimestamp()));
-                    stmt.executeUpdate();
-                }
-                
-                // Then insert each player's stats for this match
-                String playerSql = "INSERT INTO player_match_results " +
-                    "(match_id, player_id, team, kills, deaths, assists, score, " +
-                    "medals_earned, weapon_stats) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)";
-                
-                try (PreparedStatement stmt = conn.prepareStatement(playerSql)) {
-                    for (MatchResult.PlayerMatchStats playerStats : match.getPlayerStats()) {
-                        stmt.setString(1, match.getMatchId());
-                        stmt.setLong(2, playerStats.getPlayerId());
-                        stmt.setInt(3, playerStats.getTeam());
-                        stmt.setInt(4, playerStats.getKills());
-                        stmt.setInt(5, playerStats.getDeaths());
-                        stmt.setInt(6, playerStats.getAssists());
-                        stmt.setInt(7, playerStats.getScore());
-                        
-                        // Convert medals and weapons to JSON (simplified)
-                        stmt.setString(8, String.join(",", playerStats.getMedalsEarned()));
-                        stmt.setString(9, "{}"); // TODO: Properly serialize weapon stats
-                        
-                        stmt.addBatch();
-                    }
-                    stmt.executeBatch();
-                }
+                saveMatches(conn, Collections.singletonList(match));
                 
                 // Commit the transaction
                 conn.commit();
@@ -104,6 +98,163 @@ public class MatchHistoryDAO {
         }
     }
     
+    /**
+     * Give every medal and weapon name in the matches a dictionary id
+     * 
+     * Call this before opening the transaction for saveMatches: a new name
+     * is inserted on its own pooled connection, which must not be requested
+     * while this thread already holds one.
+     * 
+     * @param matches The matches about to be saved
+     * @throws SQLException If a new name couldn't be added
+     */
+    public void registerCodes(Collection<MatchResult> matches) throws SQLException {
+        Set<String> medals = new HashSet<>();
+        Set<String> weapons = new HashSet<>();
+        for (MatchResult match : matches) {
+            for (MatchResult.PlayerMatchStats playerStats : match.getPlayerStats()) {
+                if (playerStats.getMedalsEarned() != null) {
+                    medals.addAll(playerStats.getMedalsEarned());
+                }
+                if (playerStats.getWeaponKills() != null) {
+                    weapons.addAll(playerStats.getWeaponKills().keySet());
+                }
+            }
+        }
+        medalCodes.register(medals);
+        weaponCodes.register(weapons);
+    }
+    
+    /**
+     * Save completed matches using a connection the caller already has open
+     * (the caller owns the transaction - nothing is committed here)
+     * Medal and weapon names must be registered first (registerCodes)
+     * 
+     * @param conn An open database connection
+     * @param matches The match results with all player stats (one batch per table for all of them)
+     * @throws SQLException If an insert fails
+     */
+    public void saveMatches(Connection conn, List<MatchResult> matches) throws SQLException {
+        // First, insert the matches themselves
+        String matchSql = "INSERT INTO match_history " +
+            "(match_id, map_name, game_mode, playlist, winning_team, duration_seconds, " +
+            "started_at, ended_at) VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
+        
+        try (PreparedStatement stmt = conn.prepareStatement(matchSql)) {
+            for (MatchResult match : matches) {
+                stmt.setString(1, match.getMatchId());
+                stmt.setString(2, match.getMapName());
+                stmt.setString(3, match.getGameMode().name());
+                stmt.setString(4, match.getPlaylist());
+                stmt.setInt(5, match.getWinningTeam());
+                stmt.setLong(6, match.getDurationSeconds());
+                stmt.setTimestamp(7, Timestamp.valueOf(match.getTimestamp()));
+                stmt.setTimestamp(8, Timestamp.valueOf(match.getTimestamp()));
+                stmt.addBatch();
+            }
+            stmt.executeBatch();
+        }
+        
+        // Then insert each player's stats for every match
+        // Medals and weapons are stored as small ids from the dictionaries:
+        // medal_ids has one entry per medal earned, weapon_ids / weapon_kills
+        // are the same length (kills with weapon_ids[i] = weapon_kills[i])
+        String playerSql = "INSERT INTO player_match_results " +
+            "(match_id, player_id, team, kills, deaths, assists, score, " +
+            "medal_ids, weapon_ids, weapon_kills) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+        
+        try (PreparedStatement stmt = conn.prepareStatement(playerSql)) {
+            for (MatchResult match : matches) {
+                for (MatchResult.PlayerMatchStats playerStats : match.getPlayerStats()) {
+                    stmt.setString(1, match.getMatchId());
+                    stmt.setLong(2, playerStats.getPlayerId());
+                    stmt.setInt(3, playerStats.getTeam());
+                    stmt.setInt(4, playerStats.getKills());
+                    stmt.setInt(5, playerStats.getDeaths());
+                    stmt.setInt(6, playerStats.getAssists());
+                    stmt.setInt(7, playerStats.getScore());
+                    
+                    stmt.setArray(8, conn.createArrayOf("int2", medalCodes.encodeAll(playerStats.getMedalsEarned())));
+                    
+                    Map<String, Integer> weaponKills = playerStats.getWeaponKills();
+                    if (weaponKills == null) {
+                        weaponKills = Collections.emptyMap();
+                    }
+                    Short[] weaponIds = new Short[weaponKills.size()];
+                    Integer[] kills = new Integer[weaponKills.size()];
+                    int i = 0;
+                    for (Map.Entry<String, Integer> weapon : weaponKills.entrySet()) {
+                        weaponIds[i] = weaponCodes.encode(weapon.getKey());
+                        kills[i++] = weapon.getValue();
+                    }
+                    stmt.setArray(9, conn.createArrayOf("int2", weaponIds));
+                    stmt.setArray(10, conn.createArrayOf("int4", kills));
+                    
+                    stmt.addBatch();
+                }
+            }
+            stmt.executeBatch();
+        }
+        
+        // Last, add the matches to each player's totals for the day
+        saveDailyTotals(conn, matches);
+    }
+    
+    /**
+     * Add matches to player_daily_totals (the windowed leaderboards are
+     * rebuilt from these, so it happens in the match's transaction)
+     * 
+     * Rows are upserted sorted by player ID, then day / game mode /
+     * playlist, so two batches with the same players lock them in the
+     * same order and wait for each other instead of deadlocking.
+     */
+    private void saveDailyTotals(Connection conn, List<MatchResult> matches) throws SQLException {
+        Map<Long, Map<String, DailyTotals>> totals = new TreeMap<>();
+        for (MatchResult match : matches) {
+            LocalDate day = match.getTimestamp().toLocalDate();
+            String playlist = match.getPlaylist() != null ? match.getPlaylist() : "";
+            String key = day + "|" + match.getGameMode().name() + "|" + playlist;
+            
+            // Same "won" rule as WindowedLeaderboards.recordMatch
+            for (MatchResult.PlayerMatchStats playerStats : match.getPlayerStats()) {
+                boolean wonMatch = playerStats.getTeam().equals(match.getWinningTeam());
+                DailyTotals row = new DailyTotals(day, match.getGameMode(), playlist,
+                    playerStats.getPlayerId(), playerStats.getKills(), playerStats.getDeaths(),
+                    playerStats.getAssists(), 1, wonMatch ? 1 : 0);
+                totals.computeIfAbsent(playerStats.getPlayerId(), k -> new TreeMap<>())
+                      .merge(key, row, DailyTotals::plus);
+            }
+        }
+        
+        String sql = "INSERT INTO player_daily_totals " +
+            "(day, game_mode, playlist, player_id, kills, deaths, assists, matches_played, matches_won) " +
+            "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?) " +
+            "ON CONFLICT (day, game_mode, playlist, player_id) DO UPDATE SET " +
+            "kills = player_daily_totals.kills + EXCLUDED.kills, " +
+            "deaths = player_daily_totals.deaths + EXCLUDED.deaths, " +
+            "assists = player_daily_totals.assists + EXCLUDED.assists, " +
+            "matches_played = player_daily_totals.matches_played + EXCLUDED.matches_played, " +
+            "matches_won = player_daily_totals.matches_won + EXCLUDED.matches_won";
+        
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            for (Map<String, DailyTotals> player : totals.values()) {
+                for (DailyTotals row : player.values()) {
+                    stmt.setDate(1, java.sql.Date.valueOf(row.getDay()));
+                    stmt.setString(2, row.getGameMode().name());
+                    stmt.setString(3, row.getPlaylist());
+                    stmt.setLong(4, row.getPlayerId());
+                    stmt.setInt(5, row.getKills());
+                    stmt.setInt(6, row.getDeaths());
+                    stmt.setInt(7, row.getAssists());
+                    stmt.setInt(8, row.getMatchesPlayed());
+                    stmt.setInt(9, row.getMatchesWon());
+                    stmt.addBatch();
+                }
+            }
+            stmt.executeBatch();
+        }
+    }
+    
     /**
      * Get player's match history
      * 
@@ -142,6 +293,10 @@ public class MatchHistoryDAO {
                     "ORDER BY m.ended_at DESC " +
                     "LIMIT ?";
         
+        // Before taking a connection: decoding must not need a second one
+        medalCodes.ensureLoaded();
+        weaponCodes.ensureLoaded();
+        
         try (Connection conn = dataSource.getConnection();
              PreparedStatement stmt = conn.prepareStatement(sql)) {
             
@@ -156,9 +311,23 @@ public class MatchHistoryDAO {
                 match.setMatchId(rs.getString("match_id"));
                 match.setMapName(rs.getString("map_name"));
                 match.setGameMode(GameMode.valueOf(rs.getString("game_mode")));
+                match.setPlaylist(rs.getString("playlist"));
                 match.setWinningTeam(rs.getInt("winning_team"));
                 match.setDurationSeconds(rs.getLong("duration_seconds"));
                 match.setTimestamp(rs.getTimestamp("ended_at").toLocalDateTime());
+                
+                // The player's own line, with medal and weapon ids turned back into names
+                MatchResult.PlayerMatchStats playerStats = new MatchResult.PlayerMatchStats();
+                playerStats.setPlayerId(rs.getLong("player_id"));
+                playerStats.setTeam(rs.getInt("team"));
+                playerStats.setKills(rs.getInt("kills"));
+                playerStats.setDeaths(rs.getInt("deaths"));
+                playerStats.setAssists(rs.getInt("assists"));
+                playerStats.setScore(rs.getInt("score"));
+                playerStats.setMedalsEarned(decodeMedals(rs.getArray("medal_ids")));
+                playerStats.setWeaponKills(decodeWeaponKills(rs.getArray("weapon_ids"), rs.getArray("weapon_kills")));
+                match.setPlayerStats(Collections.singletonList(playerStats));
+                
                 matches.add(match);
             }
             
@@ -169,6 +338,212 @@ public class MatchHistoryDAO {
         return matches;
     }
     
+    /**
+     * Get several players' last few match lines at once (the profile
+     * "form" widget - no medals or weapons, so no dictionaries needed)
+     * 
+     * @param playerIds The players to get
+     * @param limit How many matches per player
+     * @return Player ID -> their lines, newest match first (players with no
+     *         matches are left out), or null if the query failed
+     */
+    public Map<Long, List<MatchLine>> getRecentMatchLines(Collection<Long> playerIds, int limit) {
+        Map<Long, List<MatchLine>> lines = new HashMap<>();
+        
+        // If no database, use in-memory storage
+        if (dataSource == null) {
+            for (Long playerId : playerIds) {
+                List<MatchLine> playerLines = new ArrayList<>();
+                for (MatchResult match : getPlayerMatchHistory(playerId, limit)) {
+                    for (MatchResult.PlayerMatchStats playerStats : match.getPlayerStats()) {
+                        if (playerId.equals(playerStats.getPlayerId())) {
+                            playerLines.add(new MatchLine(playerStats, match));
+                        }
+                    }
+                }
+                if (!playerLines.isEmpty()) {
+                    lines.put(playerId, playerLines);
+                }
+            }
+            return lines;
+        }
+        
+        // Each player's newest `limit` matches by when they were played (not
+        // when they were saved, so a backfill of old matches doesn't push
+        // out newer ones)
+        String sql = "SELECT p.player_id, r.* " +
+                    "FROM unnest(?::bigint[]) AS p(player_id) " +
+                    "CROSS JOIN LATERAL (" +
+                    "SELECT pmr.kills, pmr.deaths, pmr.assists, pmr.score, " +
+                    "pmr.team = m.winning_team AS won, m.ended_at " +
+                    "FROM player_match_results pmr " +
+                    "JOIN match_history m ON m.match_id = pmr.match_id " +
+                    "WHERE pmr.player_id = p.player_id " +
+                    "ORDER BY m.ended_at DESC LIMIT ?) r " +
+                    "ORDER BY p.player_id, r.ended_at DESC";
+        
+        try (Connection conn = dataSource.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+            
+            stmt.setArray(1, conn.createArrayOf("bigint", playerIds.toArray()));
+            stmt.setInt(2, limit);
+            
+            ResultSet rs = stmt.executeQuery();
+            while (rs.next()) {
+                Timestamp endedAt = rs.getTimestamp("ended_at");
+                lines.computeIfAbsent(rs.getLong("player_id"), k -> new ArrayList<>())
+                     .add(new MatchLine(rs.getInt("kills"), rs.getInt("deaths"), rs.getInt("assists"),
+                                        rs.getInt("score"), rs.getBoolean("won"),
+                                        endedAt != null ? endedAt.toLocalDateTime() : null));
+            }
+            
+        } catch (SQLException e) {
+            System.err.println("Error getting recent match lines: " + e.getMessage());
+            return null;
+        }
+        
+        return lines;
+    }
+    
+    /**
+     * Read every player's totals per day, game mode and playlist
+     * (rebuilds the daily / weekly / season leaderboards, which only live
+     * in memory, after a restart and with other servers' matches)
+     * 
+     * These are the player_daily_totals rows saved with each match, so
+     * this reads one row per player per day played instead of adding up
+     * 13 weeks of match history.
+     * 
+     * @param since The first day to include
+     * @return One row per player per day, game mode and playlist - empty
+     *         without a database, null if the query failed
+     */
+    public List<DailyTotals> getDailyTotals(LocalDate since) {
+        // No database - the in-memory matches are gone after a restart anyway
+        if (dataSource == null) {
+            return new ArrayList<>();
+        }
+        
+        String sql = "SELECT day, game_mode, playlist, player_id, " +
+                    "kills, deaths, assists, matches_played, matches_won " +
+                    "FROM player_daily_totals WHERE day >= ?";
+        
+        List<DailyTotals> totals = new ArrayList<>();
+        
+        try (Connection conn = dataSource.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+            
+            stmt.setDate(1, java.sql.Date.valueOf(since));
+            ResultSet rs = stmt.executeQuery();
+            while (rs.next()) {
+                // '' = saved without one (see the schema)
+                String gameMode = rs.getString("game_mode");
+                String playlist = rs.getString("playlist");
+                totals.add(new DailyTotals(
+                    rs.getDate("day").toLocalDate(),
+                    gameMode != null && !gameMode.isEmpty() ? GameMode.valueOf(gameMode) : null,
+                    playlist != null && !playlist.isEmpty() ? playlist : null,
+                    rs.getLong("player_id"),
+                    rs.getInt("kills"), rs.getInt("deaths"), rs.getInt("assists"),
+                    rs.getInt("matches_played"), rs.getInt("matches_won")));
+            }
+            
+        } catch (Exception e) {
+            System.err.println("Error reading daily match totals: " + e.getMessage());
+            return null;
+        }
+        
+        return totals;
+    }
+    
+    /**
+     * Delete per-day totals too old for any leaderboard window
+     * 
+     * @param before The first day to keep
+     */
+    public void deleteDailyTotalsBefore(LocalDate before) {
+        if (dataSource == null) {
+            return;
+        }
+        
+        String sql = "DELETE FROM player_daily_totals WHERE day < ?";
+        
+        try (Connection conn = dataSource.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+            
+            stmt.setDate(1, java.sql.Date.valueOf(before));
+            stmt.executeUpdate();
+            
+        } catch (SQLException e) {
+            System.err.println("Error deleting old daily match totals: " + e.getMessage());
+        }
+    }
+    
+    /**
+     * Check if a match has already been saved
+     * 
+     * @param matchId The match ID
+     * @return true if it's in match_history (false if the lookup fails -
+     *         the unique match_id constraint still stops a duplicate)
+     */
+    public boolean matchExists(String matchId) {
+        // If no database, check in-memory storage
+        if (dataSource == null) {
+            return IN_MEMORY_MATCHES.containsKey(matchId);
+        }
+        
+        String sql = "SELECT 1 FROM match_history WHERE match_id = ?";
+        
+        try (Connection conn = dataSource.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+            
+            stmt.setString(1, matchId);
+            try (ResultSet rs = stmt.executeQuery()) {
+                return rs.next();
+            }
+            
+        } catch (SQLException e) {
+            System.err.println("Error checking match " + matchId + ": " + e.getMessage());
+            return false;
+        }
+    }
+    
+    /**
+     * Helper method to turn a medal_ids array back into medal names
+     */
+    private List<String> decodeMedals(Array medalIds) throws SQLException {
+        List<String> medals = new ArrayList<>();
+        if (medalIds == null) {
+            return medals;
+        }
+        for (Object id : (Object[]) medalIds.getArray()) {
+            String medal = medalCodes.decode(((Number) id).intValue());
+            if (medal != null) {
+                medals.add(medal);
+            }
+        }
+        return medals;
+    }
+    
+    /**
+     * Helper method to turn weapon_ids + weapon_kills back into weapon -> kills
+     */
+    private Map<String, Integer> decodeWeaponKills(Array weaponIds, Array weaponKills) throws SQLException {
+        Map<String, Integer> kills = new LinkedHashMap<>();
+        if (weaponIds == null || weaponKills == null) {
+            return kills;
+        }
+        Object[] ids = (Object[]) weaponIds.getArray();
+        Object[] counts = (Object[]) weaponKills.getArray();
+        for (int i = 0; i < ids.length && i < counts.length; i++) {
+            String weapon = weaponCodes.decode(((Number) ids[i]).intValue());
+            if (weapon != null) {
+                kills.put(weapon, ((Number) counts[i]).intValue());
+            }
+        }
+        return kills;
+    }
+    
     private static void initializeSampleMatches() {
         // Match 1 - Team Slayer on Blood Gulch
         MatchResult match1 = new MatchResult();
@@ -340,6 +715,135 @@ public class MatchHistoryDAO {
     }
     
     private static void addToPlayerIndex(Long playerId, String matchId) {
-        PLAYER_MATCH_INDEX.computeIfAbsent(playerId, k -> new ArrayList<>()).add(matchId);
+        PLAYER_MATCH_INDEX.computeIfAbsent(playerId, k -> new CopyOnWriteArrayList<>()).add(matchId);
+    }
+    
+    /**
+     * One player's line from one match
+     */
+    public static class MatchLine {
+        private final int kills;
+        private final int deaths;
+        private final int assists;
+        private final int score;
+        private final boolean won;
+        private final LocalDateTime playedAt;
+        
+        public MatchLine(int kills, int deaths, int assists, int score, boolean won, LocalDateTime playedAt) {
+            this.kills = kills;
+            this.deaths = deaths;
+            this.assists = assists;
+            this.score = score;
+            this.won = won;
+            this.playedAt = playedAt;
+        }
+        
+        MatchLine(MatchResult.PlayerMatchStats playerStats, MatchResult match) {
+            this(valueOf(playerStats.getKills()), valueOf(playerStats.getDeaths()),
+                 valueOf(playerStats.getAssists()), valueOf(playerStats.getScore()),
+                 playerStats.getTeam() != null && playerStats.getTeam().equals(match.getWinningTeam()),
+                 match.getTimestamp());
+        }
+        
+        private static int valueOf(Integer value) {
+            return value != null ? value : 0;
+        }
+        
+        public int getKills() {
+            return kills;
+        }
+        
+        public int getDeaths() {
+            return deaths;
+        }
+        
+        public int getAssists() {
+            return assists;
+        }
+        
+        public int getScore() {
+            return score;
+        }
+        
+        public boolean isWon() {
+            return won;
+        }
+        
+        public LocalDateTime getPlayedAt() {
+            return playedAt;
+        }
+    }
+    
+    /**
+     * One player's totals for one day, game mode and playlist
+     */
+    public static class DailyTotals {
+        private final LocalDate day;
+        private final GameMode gameMode;
+        private final String playlist;
+        private final long playerId;
+        private final int kills;
+        private final int deaths;
+        private final int assists;
+        private final int matchesPlayed;
+        private final int matchesWon;
+        
+        public DailyTotals(LocalDate day, GameMode gameMode, String playlist, long playerId,
+                           int kills, int deaths, int assists, int matchesPlayed, int matchesWon) {
+            this.day = day;
+            this.gameMode = gameMode;
+            this.playlist = playlist;
+            this.playerId = playerId;
+            this.kills = kills;
+            this.deaths = deaths;
+            this.assists = assists;
+            this.matchesPlayed = matchesPlayed;
+            this.matchesWon = matchesWon;
+        }
+        
+        /**
+         * @return This row's totals plus another's (same day, game mode, playlist and player)
+         */
+        DailyTotals plus(DailyTotals other) {
+            return new DailyTotals(day, gameMode, playlist, playerId,
+                                   kills + other.kills, deaths + other.deaths, assists + other.assists,
+                                   matchesPlayed + other.matchesPlayed, matchesWon + other.matchesWon);
+        }
+        
+        public LocalDate getDay() {
+            return day;
+        }
+        
+        public GameMode getGameMode() {
+            return gameMode;
+        }
+        
+        public String getPlaylist() {
+            return playlist;
+        }
+        
+        public long getPlayerId() {
+            return playerId;
+        }
+        
+        public int getKills() {
+            return kills;
+        }
+        
+        public int getDeaths() {
+            return deaths;
+        }
+        
+        public int getAssists() {
+            return assists;
+        }
+        
+        public int getMatchesPlayed() {
+            return matchesPlayed;
+        }
+        
+        public int getMatchesWon() {
+            return matchesWon;
+        }
     }
 }
\ No newline at end of file
@@ -0,0 +1,314 @@
+// Package: com.gamingroom.gameauth.halo.dao
+// This DAO writes everything a finished match changes in one transaction
+
+package com.gamingroom.gameauth.halo.dao;
+
+import com.gamingroom.gameauth.halo.models.*;
+import java.sql.*;
+import java.util.*;
+import javax.sql.DataSource;
+
+/**
+ * MatchIngestDAO - Saves a finished match and all the stats it changes
+ *
+ * Saving a match touches six tables. Doing it one DAO call (and one
+ * connection) per player meant ~17 connections and 30+ statements for a
+ * 16-player match. Here the whole match uses one connection and one
+ * transaction, with one batched statement per table:
+ * 1. match_history + player_match_results + player_daily_totals (MatchHistoryDAO)
+ * 2. player_stats + player_medals upserts (HaloStatsDAO)
+ * 3. player_weapon_stats upsert (WeaponStatsDAO)
+ * 4. rank_xp / rank_level update + player_rank_events (HaloStatsDAO)
+ * 5. One read of the players' new player_stats rows, for the leaderboards.
+ *    Their rows from before the save are worked out from these (new row
+ *    minus what the matches added), so no extra query is needed
+ * 6. The "top X%" counts in stat_histograms move those players from their
+ *    old rows to their new ones (HaloStatsDAO)
+ *
+ * Several matches can be saved together (the ingest workers do this) -
+ * they still share one transaction and one batch per table.
+ *
+ * If any step fails the whole batch is rolled back, so stats are never
+ * half applied.
+ */
+public class MatchIngestDAO {
+    // PostgreSQL's SQLState for a duplicate key (e.g. the same match_id twice)
+    private static final String UNIQUE_VIOLATION = "23505";
+    
+    private final DataSource dataSource;
+    private final MatchHistoryDAO matchDAO;
+    private final HaloStatsDAO statsDAO;
+    private final WeaponStatsDAO weaponStatsDAO;
+    private final HaloStatsDAO.HistogramChanges histogramChanges;
+
+    /**
+     * Constructor - Uses the same DAOs as the rest of the service
+     * (stat_histograms is left alone)
+     * @param dataSource The database connection pool from Dropwizard (can be null for testing)
+     */
+    public MatchIngestDAO(DataSource dataSource, MatchHistoryDAO matchDAO,
+                          HaloStatsDAO statsDAO, WeaponStatsDAO weaponStatsDAO) {
+        this(dataSource, matchDAO, statsDAO, weaponStatsDAO, null);
+    }
+
+    /**
+     * Constructor - Uses the same DAOs as the rest of the service
+     * @param dataSource The database connection pool from Dropwizard (can be null for testing)
+     * @param histogramChanges Works out each save's stat_histograms changes (null to skip step 6)
+     */
+    public MatchIngestDAO(DataSource dataSource, MatchHistoryDAO matchDAO,
+                          HaloStatsDAO statsDAO, WeaponStatsDAO weaponStatsDAO,
+                          HaloStatsDAO.HistogramChanges histogramChanges) {
+        this.dataSource = dataSource;
+        this.matchDAO = matchDAO;
+        this.statsDAO = statsDAO;
+        this.weaponStatsDAO = weaponStatsDAO;
+        this.histogramChanges = histogramChanges;
+    }
+
+    /**
+     * Save a finished match and apply it to every player's stats
+     *
+     * @param match The match, with each player's medals already worked out
+     * @param xpEarned Player ID -> XP earned in the match
+     * @return The players who moved up a level (empty if none, or if saving failed)
+     */
+    public List<RankUp> saveMatchResult(MatchResult match, Map<Long, Integer> xpEarned) {
+        Map<String, Map<Long, Integer>> xpByMatch = new HashMap<>();
+        xpByMatch.put(match.getMatchId(), xpEarned);
+        return saveMatchResults(Collections.singletonList(match), xpByMatch).getRankUps();
+    }
+
+    /**
+     * Save several finished matches in one transaction
+     *
+     * If the batch fails, each match is retried on its own so one bad
+     * match doesn't lose the others.
+     *
+     * @param matches The matches, with each player's medals already worked out
+     * @param xpByMatch Match ID -> player ID -> XP earned in that match
+     * @return Who moved up a level, the players' new stats, and which matches couldn't be saved
+     */
+    public SaveResult saveMatchResults(List<MatchResult> matches, Map<String, Map<Long, Integer>> xpByMatch) {
+        SaveResult result = new SaveResult();
+
+        // If no database, each DAO updates its in-memory storage
+        if (dataSource == null) {
+            Set<Long> playerIds = new LinkedHashSet<>();
+            for (MatchResult match : matches) {
+                // Same as the match_id unique constraint: never count a match twice
+                if (matchDAO.matchExists(match.getMatchId())) {
+                    result.alreadySavedMatchIds.add(match.getMatchId());
+                    continue;
+                }
+                matchDAO.saveMatch(match);
+                statsDAO.updatePlayerStats(match);
+                for (MatchResult.PlayerMatchStats player : match.getPlayerStats()) {
+                    weaponStatsDAO.addWeaponKills(player.getPlayerId(), player.getWeaponKills());
+                    playerIds.add(player.getPlayerId());
+                }
+            }
+            for (Map.Entry<String, Map<Long, Integer>> xp : xpByMatch.entrySet()) {
+                if (!result.alreadySavedMatchIds.contains(xp.getKey())) {
+                    result.rankUps.addAll(statsDAO.applyExperience(xp.getKey(), xp.getValue()));
+                }
+            }
+            for (Long playerId : playerIds) {
+                PlayerStats stats = statsDAO.getPlayerStats(playerId);
+                if (stats != null) {
+                    result.updatedStats.put(playerId, stats);
+                }
+            }
+            return result;
+        }
+
+        try {
+            result.add(save(matches, xpByMatch));
+            return result;
+        } catch (SQLException e) {
+            if (matches.size() == 1) {
+                result.addFailure(matches.get(0), e);
+                return result;
+            }
+        }
+
+        // The batch was rolled back - find the bad match by saving them one at a time
+        for (MatchResult match : matches) {
+            try {
+                result.add(save(Collections.singletonList(match), Collections.singletonMap(
+                    match.getMatchId(), xpByMatch.getOrDefault(match.getMatchId(), new HashMap<>()))));
+            } catch (SQLException e) {
+                result.addFailure(match, e);
+            }
+        }
+        return result;
+    }
+    
+    /**
+     * Helper method to write matches in one transaction
+     */
+    private SaveResult save(List<MatchResult> matches, Map<String, Map<Long, Integer>> xpByMatch)
+            throws SQLException {
+        // New medal/weapon names are added on their own connections, so
+        // do it before taking ours (never hold two from the pool at once)
+        matchDAO.registerCodes(matches);
+        statsDAO.registerCodes(matches);
+
+        try (Connection conn = dataSource.getConnection()) {
+            // One transaction for all the matches
+            conn.setAutoCommit(false);
+
+            try {
+                matchDAO.saveMatches(conn, matches);
+                statsDAO.updatePlayerStats(conn, matches);
+                weaponStatsDAO.addWeaponKills(conn, matches);
+
+                // XP per match, so each rank-up is recorded against the match that caused it
+                SaveResult saved = new SaveResult();
+                for (Map.Entry<String, Map<Long, Integer>> xp : xpByMatch.entrySet()) {
+                    saved.rankUps.addAll(statsDAO.applyExperience(conn, xp.getKey(), xp.getValue()));
+                }
+
+                // Read back every player's new row in one query. Our upserts
+                // hold the row locks, so this is exactly what gets committed
+                Set<Long> playerIds = new TreeSet<>();
+                for (MatchResult match : matches) {
+                    for (MatchResult.PlayerMatchStats player : match.getPlayerStats()) {
+                        playerIds.add(player.getPlayerId());
+                    }
+                }
+                saved.updatedStats.putAll(statsDAO.getPlayerStats(conn, playerIds));
+                saved.previousStats.putAll(statsBefore(matches, saved.rankUps, saved.updatedStats));
+
+                // Last, so the shared histogram rows are locked for as short a time as possible
+                if (histogramChanges != null) {
+                    statsDAO.addToStatHistograms(conn,
+                        histogramChanges.between(saved.previousStats, saved.updatedStats));
+                }
+
+                // Commit the transaction
+                conn.commit();
+                return saved;
+
+            } catch (SQLException e) {
+                // If anything goes wrong, rollback
+                conn.rollback();
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Work out each player's row as it was before this transaction: the
+     * new row (read while our upserts hold its lock, so nobody else changed
+     * it in between) minus what these matches added
+     *
+     * @return Player ID -> old stats (players these were the first matches of are left out)
+     */
+    private static Map<Long, PlayerStats> statsBefore(List<MatchResult> matches, List<RankUp> rankUps,
+                                                      Map<Long, PlayerStats> updatedStats) {
+        // A player who levelled up more than once was at the lowest old level
+        Map<Long, Integer> oldLevels = new HashMap<>();
+        for (RankUp rankUp : rankUps) {
+            oldLevels.merge(rankUp.getPlayerId(), rankUp.getOldLevel(), Math::min);
+        }
+
+        Map<Long, PlayerStats> previous = new HashMap<>();
+        for (Map.Entry<Long, int[]> entry : HaloStatsDAO.totalsByPlayer(matches).entrySet()) {
+            PlayerStats updated = updatedStats.get(entry.getKey());
+            int[] added = entry.getValue();
+            if (updated == null || updated.getMatchesPlayed() <= added[3]) {
+                continue; // No row before these matches
+            }
+            PlayerStats before = updated.copy();
+            before.setTotalKills(updated.getTotalKills() - added[0]);
+            before.setTotalDeaths(updated.getTotalDeaths() - added[1]);
+            before.setTotalAssists(updated.getTotalAssists() - added[2]);
+            before.setMatchesPlayed(updated.getMatchesPlayed() - added[3]);
+            before.setMatchesWon(updated.getMatchesWon() - added[4]);
+            before.setRankLevel(oldLevels.getOrDefault(entry.getKey(), updated.getRankLevel()));
+            previous.put(entry.getKey(), before);
+        }
+        return previous;
+    }
+
+    /**
+     * What saving a batch of matches did
+     */
+    public static class SaveResult {
+        private final List<RankUp> rankUps = new ArrayList<>();
+        private final Set<String> failedMatchIds = new LinkedHashSet<>();
+        private final Set<String> alreadySavedMatchIds = new LinkedHashSet<>();
+        private final Map<Long, PlayerStats> updatedStats = new HashMap<>();
+        private final Map<Long, PlayerStats> previousStats = new HashMap<>();
+
+        /**
+         * @return The players who moved up a level (empty if none)
+         */
+        public List<RankUp> getRankUps() {
+            return rankUps;
+        }
+
+        /**
+         * @return IDs of the matches that were rolled back and should be
+         *         tried again (empty if all were saved)
+         */
+        public Set<String> getFailedMatchIds() {
+            return failedMatchIds;
+        }
+
+        /**
+         * @return IDs of the matches that were rolled back because they had
+         *         been saved before (nothing was counted twice, nothing to retry)
+         */
+        public Set<String> getAlreadySavedMatchIds() {
+            return alreadySavedMatchIds;
+        }
+
+        /**
+         * @return Player ID -> stats after the save (players only in failed matches are left out)
+         */
+        public Map<Long, PlayerStats> getUpdatedStats() {
+            return updatedStats;
+        }
+
+        /**
+         * @return Player ID -> stats just before the save, for the players in
+         *         getUpdatedStats() that already had a row (only with a database)
+         */
+        public Map<Long, PlayerStats> getPreviousStats() {
+            return previousStats;
+        }
+
+        /**
+         * Record and report a match that couldn't be saved
+         * (a unique_violation on match_history means it was saved before)
+         */
+        private void addFailure(MatchResult match, SQLException e) {
+            for (SQLException cause = e; cause != null; cause = cause.getNextException()) {
+                if (UNIQUE_VIOLATION.equals(cause.getSQLState())) {
+                    System.err.println("Skipping match result " + match.getMatchId() + ": it was already saved");
+                    alreadySavedMatchIds.add(match.getMatchId());
+                    return;
+                }
+            }
+            System.err.println("Error saving match result " + match.getMatchId() + ": " + e.getMessage());
+            failedMatchIds.add(match.getMatchId());
+        }
+
+        /**
+         * Add what a later transaction saved (its new rows are newer, so they
+         * win; an earlier transaction's old rows are older, so they stay)
+         */
+        private void add(SaveResult saved) {
+            rankUps.addAll(saved.rankUps);
+            for (Map.Entry<Long, PlayerStats> previous : saved.previousStats.entrySet()) {
+                // Saved earlier too: that transaction's old row (or no row) is older
+                if (!updatedStats.containsKey(previous.getKey())) {
+                    previousStats.put(previous.getKey(), previous.getValue());
+                }
+            }
+            updatedStats.putAll(saved.updatedStats);
+        }
+    }
+}
\ No newline at end of file
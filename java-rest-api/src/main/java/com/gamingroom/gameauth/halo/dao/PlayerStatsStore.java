@@ -0,0 +1,297 @@
+// Package: com.gamingroom.gameauth.halo.dao
+// This class stores in-memory player stats as columns of primitive arrays
+
+package com.gamingroom.gameauth.halo.dao;
+
+import com.gamingroom.gameauth.halo.models.PlayerStats;
+import com.gamingroom.gameauth.halo.models.RankUp;
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * PlayerStatsStore - Struct-of-arrays storage for player stats
+ *
+ * A Map<Long, PlayerStats> costs one map node, one Long key, one
+ * PlayerStats and a boxed Integer per counter for every player. At a
+ * million players that's tens of millions of small objects for the
+ * garbage collector to walk. Here every player is just a row number:
+ *
+ * 1. Each stat is its own int[] column (kills[row], deaths[row], ...)
+ * 2. Player ID -> row is an open-addressing hash table of two arrays
+ *    (long[] keys, int[] rows) with linear probing - no node objects
+ * 3. PlayerStats objects are only built when someone asks for a player
+ *
+ * So the whole store is about a dozen arrays no matter how many players
+ * it holds. One read/write lock guards everything (reads are a few
+ * array lookups, writes happen once per player per match).
+ */
+public class PlayerStatsStore {
+    private static final int INITIAL_CAPACITY = 1024;
+
+    // Rows: one entry per player in every column
+    private long[] playerIds;
+    private String[] gamertags;
+    private int[] totalKills;
+    private int[] totalDeaths;
+    private int[] totalAssists;
+    private int[] matchesPlayed;
+    private int[] matchesWon;
+    private int[] rankLevels;
+    private int[] rankXp;
+    private int[] highestSkills;
+    private int rowCount;
+
+    // Hash table: slot -> player ID and row + 1 (0 means the slot is empty)
+    private long[] slotKeys;
+    private int[] slotRows;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    public PlayerStatsStore() {
+        resizeRows(INITIAL_CAPACITY);
+        slotKeys = new long[INITIAL_CAPACITY * 2];
+        slotRows = new int[INITIAL_CAPACITY * 2];
+    }
+
+    /**
+     * Get a player's stats
+     *
+     * @param playerId The player's ID
+     * @return A new PlayerStats built from the columns, or null if not found
+     */
+    public PlayerStats get(long playerId) {
+        lock.readLock().lock();
+        try {
+            int row = findRow(playerId);
+            return row >= 0 ? toPlayerStats(row) : null;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @param playerId The player's ID
+     * @return Whether we have stats for this player
+     */
+    public boolean contains(long playerId) {
+        lock.readLock().lock();
+        try {
+            return findRow(playerId) >= 0;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Get every player's stats
+     *
+     * @return A new PlayerStats per player, in no particular order
+     */
+    public List<PlayerStats> getAll() {
+        lock.readLock().lock();
+        try {
+            List<PlayerStats> all = new ArrayList<>(rowCount);
+            for (int row = 0; row < rowCount; row++) {
+                all.add(toPlayerStats(row));
+            }
+            return all;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Store a player's stats, replacing what we had for them
+     *
+     * @param stats The stats to store (null counters are stored as the table defaults)
+     */
+    public void put(PlayerStats stats) {
+        lock.writeLock().lock();
+        try {
+            int row = findOrAddRow(stats.getPlayerId());
+            gamertags[row] = stats.getGamertag();
+            totalKills[row] = valueOf(stats.getTotalKills(), 0);
+            totalDeaths[row] = valueOf(stats.getTotalDeaths(), 0);
+            totalAssists[row] = valueOf(stats.getTotalAssists(), 0);
+            matchesPlayed[row] = valueOf(stats.getMatchesPlayed(), 0);
+            matchesWon[row] = valueOf(stats.getMatchesWon(), 0);
+            rankLevels[row] = valueOf(stats.getRankLevel(), 1);
+            rankXp[row] = valueOf(stats.getRankXP(), 0);
+            highestSkills[row] = valueOf(stats.getHighestSkill(), 1);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Add one match to a player's totals (creates the player if needed)
+     *
+     * @param playerId The player's ID
+     * @param kills Kills in the match
+     * @param deaths Deaths in the match
+     * @param assists Assists in the match
+     * @param won Whether the player's team won
+     */
+    public void addMatch(long playerId, int kills, int deaths, int assists, boolean won) {
+        lock.writeLock().lock();
+        try {
+            int row = findOrAddRow(playerId);
+            totalKills[row] += kills;
+            totalDeaths[row] += deaths;
+            totalAssists[row] += assists;
+            matchesPlayed[row]++;
+            if (won) {
+                matchesWon[row]++;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Add XP to a player and move them up to the level it's worth
+     * (levels never go down)
+     *
+     * @param playerId The player's ID
+     * @param xp XP earned
+     * @return The rank-up (without a match ID), or null if their level didn't change
+     */
+    public RankUp addExperience(long playerId, int xp) {
+        lock.writeLock().lock();
+        try {
+            int row = findOrAddRow(playerId);
+            int oldLevel = rankLevels[row];
+            rankXp[row] += xp;
+            rankLevels[row] = Math.max(oldLevel, PlayerStats.RankSystem.getLevelForXp(rankXp[row]));
+            if (rankLevels[row] == oldLevel) {
+                return null;
+            }
+            return new RankUp(playerId, null, oldLevel, rankLevels[row], rankXp[row]);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * @return How many players are stored
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return rowCount;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Find a player's row (caller holds the lock)
+     *
+     * @return The row, or -1 if the player isn't stored
+     */
+    private int findRow(long playerId) {
+        int mask = slotKeys.length - 1;
+        for (int slot = hash(playerId) & mask; ; slot = (slot + 1) & mask) {
+            if (slotRows[slot] == 0) {
+                return -1; // Hit an empty slot - not here
+            }
+            if (slotKeys[slot] == playerId) {
+                return slotRows[slot] - 1;
+            }
+        }
+    }
+
+    /**
+     * Find a player's row, adding a new one with default values if needed
+     * (caller holds the write lock)
+     */
+    private int findOrAddRow(long playerId) {
+        int row = findRow(playerId);
+        if (row >= 0) {
+            return row;
+        }
+
+        // Grow the columns when full, and the hash table when half full
+        if (rowCount == playerIds.length) {
+            resizeRows(playerIds.length * 2);
+        }
+        if ((rowCount + 1) * 2 > slotKeys.length) {
+            rehash(slotKeys.length * 2);
+        }
+
+        row = rowCount++;
+        playerIds[row] = playerId;
+        rankLevels[row] = 1;     // Same defaults as the player_stats table
+        highestSkills[row] = 1;
+        insertSlot(playerId, row);
+        return row;
+    }
+
+    private void insertSlot(long playerId, int row) {
+        int mask = slotKeys.length - 1;
+        int slot = hash(playerId) & mask;
+        while (slotRows[slot] != 0) {
+            slot = (slot + 1) & mask;
+        }
+        slotKeys[slot] = playerId;
+        slotRows[slot] = row + 1;
+    }
+
+    private void rehash(int capacity) {
+        slotKeys = new long[capacity];
+        slotRows = new int[capacity];
+        for (int row = 0; row < rowCount; row++) {
+            insertSlot(playerIds[row], row);
+        }
+    }
+
+    private void resizeRows(int capacity) {
+        playerIds = playerIds == null ? new long[capacity] : Arrays.copyOf(playerIds, capacity);
+        gamertags = gamertags == null ? new String[capacity] : Arrays.copyOf(gamertags, capacity);
+        totalKills = grow(totalKills, capacity);
+        totalDeaths = grow(totalDeaths, capacity);
+        totalAssists = grow(totalAssists, capacity);
+        matchesPlayed = grow(matchesPlayed, capacity);
+        matchesWon = grow(matchesWon, capacity);
+        rankLevels = grow(rankLevels, capacity);
+        rankXp = grow(rankXp, capacity);
+        highestSkills = grow(highestSkills, capacity);
+    }
+
+    private static int[] grow(int[] column, int capacity) {
+        return column == null ? new int[capacity] : Arrays.copyOf(column, capacity);
+    }
+
+    /**
+     * Build the PlayerStats for one row (caller holds the lock)
+     */
+    private PlayerStats toPlayerStats(int row) {
+        PlayerStats stats = new PlayerStats();
+        stats.setPlayerId(playerIds[row]);
+        stats.setGamertag(gamertags[row]);
+        stats.setTotalKills(totalKills[row]);
+        stats.setTotalDeaths(totalDeaths[row]);
+        stats.setTotalAssists(totalAssists[row]);
+        stats.setMatchesPlayed(matchesPlayed[row]);
+        stats.setMatchesWon(matchesWon[row]);
+        stats.setRankLevel(rankLevels[row]);
+        stats.setRankXP(rankXp[row]);
+        stats.setHighestSkill(highestSkills[row]);
+        stats.setWinRatio(matchesPlayed[row] > 0
+            ? (double) matchesWon[row] / matchesPlayed[row] : 0.0);
+        return stats;
+    }
+
+    // Spread the bits of the ID so sequential IDs don't cluster (Murmur3 finalizer)
+    private static int hash(long key) {
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        return (int) key;
+    }
+
+    private static int valueOf(Integer value, int defaultValue) {
+        return value != null ? value : defaultValue;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,241 @@
+// Package: com.gamingroom.gameauth.halo.dao
+// This DAO keeps running per-weapon kill counts for every player
+
+package com.gamingroom.gameauth.halo.dao;
+
+import com.gamingroom.gameauth.halo.models.*;
+import java.sql.*;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import javax.sql.DataSource;
+
+/**
+ * WeaponStatsDAO - Lifetime weapon breakdown for each player
+ *
+ * Working out "kills with each weapon" from match history would mean
+ * reading the weapon JSON of every match the player ever played. Instead
+ * we keep one counter per (player, weapon) and add to it as matches come in:
+ * 1. addWeaponKills - called once per player per match, upserts the counters
+ * 2. getWeaponStats - reads a player's counters (one row per weapon used)
+ */
+public class WeaponStatsDAO {
+    private final DataSource dataSource;
+
+    // Insert the counter, or add to it if the player already used this weapon
+    private static final String ADD_KILLS_SQL =
+        "INSERT INTO player_weapon_stats (player_id, weapon, kills) VALUES (?, ?, ?) " +
+        "ON CONFLICT (player_id, weapon) " +
+        "DO UPDATE SET kills = player_weapon_stats.kills + EXCLUDED.kills";
+
+    // In-memory storage for testing: player ID -> weapon -> kills
+    // (concurrent because match results and requests arrive on different threads)
+    private static final Map<Long, Map<String, Integer>> IN_MEMORY_WEAPON_KILLS = new ConcurrentHashMap<>();
+
+    /**
+     * Constructor - Initialize with a database connection source
+     * @param dataSource The database connection pool from Dropwizard (can be null for testing)
+     */
+    public WeaponStatsDAO(DataSource dataSource) {
+        this.dataSource = dataSource;
+    }
+
+    /**
+     * Add one match's weapon kills to a player's lifetime counters
+     *
+     * @param playerId The player's ID
+     * @param weaponKills Weapon name -> kills in this match (may be null)
+     */
+    public void addWeaponKills(Long playerId, Map<String, Integer> weaponKills) {
+        if (weaponKills == null || weaponKills.isEmpty()) {
+            return;
+        }
+
+        // If no database, add to the in-memory counters
+        if (dataSource == null) {
+            Map<String, Integer> counters = IN_MEMORY_WEAPON_KILLS.computeIfAbsent(
+                playerId, id -> new ConcurrentHashMap<>());
+            for (Map.Entry<String, Integer> entry : weaponKills.entrySet()) {
+                if (entry.getValue() != null && entry.getValue() > 0) {
+                    counters.merge(entry.getKey(), entry.getValue(), Integer::sum);
+                }
+            }
+            return;
+        }
+
+        try (Connection conn = dataSource.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(ADD_KILLS_SQL)) {
+
+            addBatch(stmt, playerId, weaponKills);
+            stmt.executeBatch();
+
+        } catch (SQLException e) {
+            System.err.println("Error updating weapon stats: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Add every player's weapon kills from some matches using a connection
+     * the caller already has open (one batch for all of them, nothing is
+     * committed here)
+     *
+     * @param conn An open database connection
+     * @param matches The matches
+     * @throws SQLException If the upsert fails
+     */
+    public void addWeaponKills(Connection conn, List<MatchResult> matches) throws SQLException {
+        // Player ID -> weapon -> kills, so each counter is one row even if the
+        // player is in several of the matches (sorted, so concurrent batches
+        // lock shared rows in the same order and can't deadlock)
+        Map<Long, Map<String, Integer>> kills = new TreeMap<>();
+        for (MatchResult match : matches) {
+            for (MatchResult.PlayerMatchStats player : match.getPlayerStats()) {
+                if (player.getWeaponKills() == null) {
+                    continue;
+                }
+                Map<String, Integer> playerKills =
+                    kills.computeIfAbsent(player.getPlayerId(), id -> new TreeMap<>());
+                for (Map.Entry<String, Integer> entry : player.getWeaponKills().entrySet()) {
+                    // Zero or negative kills are dropped before merging (a bad
+                    // count must not cancel out a real one from another match)
+                    if (entry.getValue() != null && entry.getValue() > 0) {
+                        playerKills.merge(entry.getKey(), entry.getValue(), Integer::sum);
+                    }
+                }
+            }
+        }
+
+        try (PreparedStatement stmt = conn.prepareStatement(ADD_KILLS_SQL)) {
+            boolean anyKills = false;
+            for (Map.Entry<Long, Map<String, Integer>> entry : kills.entrySet()) {
+                anyKills |= addBatch(stmt, entry.getKey(), entry.getValue());
+            }
+            if (anyKills) {
+                stmt.executeBatch();
+            }
+        }
+    }
+
+    /**
+     * Helper method to add one player's weapon counters to a batch
+     *
+     * @return Whether anything was added
+     */
+    private static boolean addBatch(PreparedStatement stmt, Long playerId, Map<String, Integer> weaponKills)
+            throws SQLException {
+        boolean added = false;
+        if (weaponKills == null) {
+            return added;
+        }
+        for (Map.Entry<String, Integer> entry : weaponKills.entrySet()) {
+            if (entry.getValue() != null && entry.getValue() > 0) {
+                stmt.setLong(1, playerId);
+                stmt.setString(2, entry.getKey());
+                stmt.setInt(3, entry.getValue());
+                stmt.addBatch();
+                added = true;
+            }
+        }
+        return added;
+    }
+
+    /**
+     * Get a player's lifetime kills with each weapon
+     *
+     * @param playerId The player's ID
+     * @return Weapon name -> WeaponStats, most kills first (empty if none)
+     */
+    public Map<String, WeaponStats> getWeaponStats(Long playerId) {
+        Map<String, Integer> kills = new HashMap<>();
+
+        // If no database, read the in-memory counters
+        if (dataSource == null) {
+            Map<String, Integer> counters = IN_MEMORY_WEAPON_KILLS.get(playerId);
+            if (counters != null) {
+                kills.putAll(counters);
+            }
+            return toWeaponStats(kills);
+        }
+
+        String sql = "SELECT weapon, kills FROM player_weapon_stats WHERE player_id = ?";
+
+        try (Connection conn = dataSource.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+
+            stmt.setLong(1, playerId);
+            ResultSet rs = stmt.executeQuery();
+
+            while (rs.next()) {
+                kills.put(rs.getString("weapon"), rs.getInt("kills"));
+            }
+
+        } catch (SQLException e) {
+            System.err.println("Error getting weapon stats: " + e.getMessage());
+        }
+
+        return toWeaponStats(kills);
+    }
+
+    /**
+     * Get lifetime weapon kills for many players with one query
+     *
+     * @param playerIds The players to load
+     * @return Player ID -> weapon name -> WeaponStats (players with no weapon kills are left out)
+     */
+    public Map<Long, Map<String, WeaponStats>> getWeaponStats(Collection<Long> playerIds) {
+        Map<Long, Map<String, Integer>> kills = new HashMap<>();
+
+        if (playerIds.isEmpty()) {
+            return new HashMap<>();
+        }
+
+        // If no database, read the in-memory counters
+        if (dataSource == null) {
+            for (Long playerId : playerIds) {
+                Map<String, Integer> counters = IN_MEMORY_WEAPON_KILLS.get(playerId);
+                if (counters != null) {
+                    kills.put(playerId, new HashMap<>(counters));
+                }
+            }
+        } else {
+            String sql = "SELECT player_id, weapon, kills FROM player_weapon_stats WHERE player_id = ANY(?)";
+
+            try (Connection conn = dataSource.getConnection();
+                 PreparedStatement stmt = conn.prepareStatement(sql)) {
+
+                stmt.setArray(1, conn.createArrayOf("bigint", playerIds.toArray()));
+                ResultSet rs = stmt.executeQuery();
+
+                while (rs.next()) {
+                    kills.computeIfAbsent(rs.getLong("player_id"), id -> new HashMap<>())
+                         .put(rs.getString("weapon"), rs.getInt("kills"));
+                }
+
+            } catch (SQLException e) {
+                System.err.println("Error getting weapon stats: " + e.getMessage());
+            }
+        }
+
+        Map<Long, Map<String, WeaponStats>> weaponStats = new HashMap<>();
+        for (Map.Entry<Long, Map<String, Integer>> entry : kills.entrySet()) {
+            weaponStats.put(entry.getKey(), toWeaponStats(entry.getValue()));
+        }
+        return weaponStats;
+    }
+
+    /**
+     * Helper method to turn kill counters into WeaponStats, most kills first
+     * (only kills are tracked per weapon so far)
+     */
+    private static Map<String, WeaponStats> toWeaponStats(Map<String, Integer> kills) {
+        List<Map.Entry<String, Integer>> entries = new ArrayList<>(kills.entrySet());
+        entries.sort((a, b) -> Integer.compare(b.getValue(), a.getValue()));
+
+        Map<String, WeaponStats> weaponStats = new LinkedHashMap<>();
+        for (Map.Entry<String, Integer> entry : entries) {
+            WeaponStats stats = new WeaponStats();
+            stats.setKills(entry.getValue());
+            weaponStats.put(entry.getKey(), stats);
+        }
+        return weaponStats;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,371 @@
+// Package: com.gamingroom.gameauth.halo.json
+// This module writes the most-sent Halo objects to JSON without reflection
+
+package com.gamingroom.gameauth.halo.json;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.SerializableString;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.module.SimpleModule;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+import com.gamingroom.gameauth.halo.models.*;
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * HaloJsonModule - Hand-written JSON serializers for hot response objects
+ *
+ * By default Jackson looks at every getter with reflection and calls them
+ * one by one, including the calculated ones (getKdRatio, getRankName).
+ * PlayerStats, MatchResult and CustomMap are in almost every response, so
+ * these serializers write their fields straight to the JsonGenerator:
+ *
+ * 1. Same field names, order and null handling as the reflective output
+ * 2. Calculated fields are computed exactly once per object
+ * 3. Dates and map data are handed back to Jackson so they still follow
+ *    Dropwizard's ObjectMapper settings
+ *
+ * Only serialization changes - request bodies are still read by Jackson.
+ * Register once on Dropwizard's ObjectMapper.
+ */
+public class HaloJsonModule extends SimpleModule {
+    private static final long serialVersionUID = 1L;
+
+    // Field names are quoted and UTF-8 encoded once, not on every write
+    private static final SerializedString ACCURACY = new SerializedString("accuracy");
+    private static final SerializedString ASSISTS = new SerializedString("assists");
+    private static final SerializedString AUTHOR_GAMERTAG = new SerializedString("authorGamertag");
+    private static final SerializedString AUTHOR_ID = new SerializedString("authorId");
+    private static final SerializedString AVERAGE_SCORE = new SerializedString("averageScore");
+    private static final SerializedString BASE_MAP = new SerializedString("baseMap");
+    private static final SerializedString CREATED_AT = new SerializedString("createdAt");
+    private static final SerializedString DEATHS = new SerializedString("deaths");
+    private static final SerializedString DESCRIPTION = new SerializedString("description");
+    private static final SerializedString DOWNLOAD_COUNT = new SerializedString("downloadCount");
+    private static final SerializedString DURATION_SECONDS = new SerializedString("durationSeconds");
+    private static final SerializedString GAME_MODE = new SerializedString("gameMode");
+    private static final SerializedString GAMERTAG = new SerializedString("gamertag");
+    private static final SerializedString HEADSHOTS = new SerializedString("headshots");
+    private static final SerializedString HIGHEST_SKILL = new SerializedString("highestSkill");
+    private static final SerializedString ID = new SerializedString("id");
+    private static final SerializedString KD_RATIO = new SerializedString("kdRatio");
+    private static final SerializedString KD_TREND = new SerializedString("kdTrend");
+    private static final SerializedString KILL_EVENTS = new SerializedString("killEvents");
+    private static final SerializedString KILLER_ID = new SerializedString("killerId");
+    private static final SerializedString KILLS = new SerializedString("kills");
+    private static final SerializedString LIVE_MEDALS = new SerializedString("liveMedals");
+    private static final SerializedString MAP_DATA = new SerializedString("mapData");
+    private static final SerializedString MAP_NAME = new SerializedString("mapName");
+    private static final SerializedString MATCH_ID = new SerializedString("matchId");
+    private static final SerializedString MATCHES = new SerializedString("matches");
+    private static final SerializedString MATCHES_PLAYED = new SerializedString("matchesPlayed");
+    private static final SerializedString MATCHES_WON = new SerializedString("matchesWon");
+    private static final SerializedString MEDALS = new SerializedString("medals");
+    private static final SerializedString MEDALS_EARNED = new SerializedString("medalsEarned");
+    private static final SerializedString PERFECT_GAMES = new SerializedString("perfectGames");
+    private static final SerializedString PLAYER_ID = new SerializedString("playerId");
+    private static final SerializedString PLAYER_STATS = new SerializedString("playerStats");
+    private static final SerializedString PLAYLIST = new SerializedString("playlist");
+    private static final SerializedString RANK_LEVEL = new SerializedString("rankLevel");
+    private static final SerializedString RANK_NAME = new SerializedString("rankName");
+    private static final SerializedString RANK_X_P = new SerializedString("rankXP");
+    private static final SerializedString RATING = new SerializedString("rating");
+    private static final SerializedString RECENT_PERFORMANCE = new SerializedString("recentPerformance");
+    private static final SerializedString RESULTS = new SerializedString("results");
+    private static final SerializedString SCORE = new SerializedString("score");
+    private static final SerializedString TAGS = new SerializedString("tags");
+    private static final SerializedString TEAM = new SerializedString("team");
+    private static final SerializedString TIME_MILLIS = new SerializedString("timeMillis");
+    private static final SerializedString TIMESTAMP = new SerializedString("timestamp");
+    private static final SerializedString TOP_PERCENT = new SerializedString("topPercent");
+    private static final SerializedString TOTAL_ASSISTS = new SerializedString("totalAssists");
+    private static final SerializedString TOTAL_DEATHS = new SerializedString("totalDeaths");
+    private static final SerializedString TOTAL_KILLS = new SerializedString("totalKills");
+    private static final SerializedString VICTIM_ID = new SerializedString("victimId");
+    private static final SerializedString WEAPON = new SerializedString("weapon");
+    private static final SerializedString WEAPON_KILLS = new SerializedString("weaponKills");
+    private static final SerializedString WEAPON_STATS = new SerializedString("weaponStats");
+    private static final SerializedString WIN_RATE = new SerializedString("winRate");
+    private static final SerializedString WIN_RATIO = new SerializedString("winRatio");
+    private static final SerializedString WINNING_TEAM = new SerializedString("winningTeam");
+
+    public HaloJsonModule() {
+        super("HaloJsonModule");
+        addSerializer(PlayerStats.class, new PlayerStatsSerializer());
+        addSerializer(MatchResult.class, new MatchResultSerializer());
+        addSerializer(CustomMap.class, new CustomMapSerializer());
+    }
+
+    /**
+     * PlayerStats -> JSON (profile, leaderboards, bulk stats)
+     */
+    public static class PlayerStatsSerializer extends StdSerializer<PlayerStats> {
+        private static final long serialVersionUID = 1L;
+
+        public PlayerStatsSerializer() {
+            super(PlayerStats.class);
+        }
+
+        @Override
+        public void serialize(PlayerStats stats, JsonGenerator gen, SerializerProvider provider)
+                throws IOException {
+            gen.writeStartObject();
+            writeNumber(gen, PLAYER_ID, stats.getPlayerId());
+            writeString(gen, GAMERTAG, stats.getGamertag());
+            writeNumber(gen, TOTAL_KILLS, stats.getTotalKills());
+            writeNumber(gen, TOTAL_DEATHS, stats.getTotalDeaths());
+            writeNumber(gen, TOTAL_ASSISTS, stats.getTotalAssists());
+            writeNumber(gen, WIN_RATIO, stats.getWinRatio());
+            writeNumber(gen, RANK_LEVEL, stats.getRankLevel());
+            writeNumber(gen, RANK_X_P, stats.getRankXP());
+            writeNumber(gen, HIGHEST_SKILL, stats.getHighestSkill());
+            writeNumberMap(gen, MEDALS, stats.getMedals());
+            writeWeaponStats(gen, stats.getWeaponStats());
+            writeNumberMap(gen, TOP_PERCENT, stats.getTopPercent());
+            writeRecentPerformance(gen, stats.getRecentPerformance());
+            writeNumber(gen, MATCHES_PLAYED, stats.getMatchesPlayed());
+            writeNumber(gen, MATCHES_WON, stats.getMatchesWon());
+            writeNumber(gen, PERFECT_GAMES, stats.getPerfectGames());
+            writeString(gen, RANK_NAME, stats.getRankName());
+            writeNumber(gen, KD_RATIO, stats.getKdRatio());
+            gen.writeEndObject();
+        }
+
+        private static void writeWeaponStats(JsonGenerator gen, Map<String, WeaponStats> weaponStats)
+                throws IOException {
+            gen.writeFieldName(WEAPON_STATS);
+            if (weaponStats == null) {
+                gen.writeNull();
+                return;
+            }
+            gen.writeStartObject();
+            for (Map.Entry<String, WeaponStats> entry : weaponStats.entrySet()) {
+                WeaponStats weapon = entry.getValue();
+                if (weapon == null) {
+                    gen.writeNullField(entry.getKey());
+                    continue;
+                }
+                gen.writeObjectFieldStart(entry.getKey());
+                writeNumber(gen, KILLS, weapon.getKills());
+                writeNumber(gen, DEATHS, weapon.getDeaths());
+                writeNumber(gen, HEADSHOTS, weapon.getHeadshots());
+                writeNumber(gen, ACCURACY, weapon.getAccuracy());
+                gen.writeEndObject();
+            }
+            gen.writeEndObject();
+        }
+
+        private static void writeRecentPerformance(JsonGenerator gen, RecentPerformance recent)
+                throws IOException {
+            gen.writeFieldName(RECENT_PERFORMANCE);
+            if (recent == null) {
+                gen.writeNull();
+                return;
+            }
+            gen.writeStartObject();
+            writeNumber(gen, MATCHES, recent.getMatches());
+            writeNumber(gen, KILLS, recent.getKills());
+            writeNumber(gen, DEATHS, recent.getDeaths());
+            writeNumber(gen, ASSISTS, recent.getAssists());
+            writeNumber(gen, KD_RATIO, recent.getKdRatio());
+            writeNumber(gen, WIN_RATE, recent.getWinRate());
+            writeNumber(gen, AVERAGE_SCORE, recent.getAverageScore());
+            writeNumber(gen, KD_TREND, recent.getKdTrend());
+            writeStringList(gen, RESULTS, recent.getResults());
+            gen.writeEndObject();
+        }
+    }
+
+    /**
+     * MatchResult -> JSON (match history)
+     */
+    public static class MatchResultSerializer extends StdSerializer<MatchResult> {
+        private static final long serialVersionUID = 1L;
+
+        public MatchResultSerializer() {
+            super(MatchResult.class);
+        }
+
+        @Override
+        public void serialize(MatchResult match, JsonGenerator gen, SerializerProvider provider)
+                throws IOException {
+            gen.writeStartObject();
+            writeString(gen, MATCH_ID, match.getMatchId());
+            writeString(gen, MAP_NAME, match.getMapName());
+            writeString(gen, GAME_MODE, match.getGameMode() != null ? match.getGameMode().name() : null);
+            writeString(gen, PLAYLIST, match.getPlaylist());
+            writeNumber(gen, WINNING_TEAM, match.getWinningTeam());
+            writeNumber(gen, DURATION_SECONDS, match.getDurationSeconds());
+
+            List<MatchResult.PlayerMatchStats> players = match.getPlayerStats();
+            gen.writeFieldName(PLAYER_STATS);
+            if (players == null) {
+                gen.writeNull();
+            } else {
+                gen.writeStartArray();
+                for (MatchResult.PlayerMatchStats player : players) {
+                    if (player == null) {
+                        gen.writeNull();
+                        continue;
+                    }
+                    gen.writeStartObject();
+                    writeNumber(gen, PLAYER_ID, player.getPlayerId());
+                    writeNumber(gen, TEAM, player.getTeam());
+                    writeNumber(gen, KILLS, player.getKills());
+                    writeNumber(gen, DEATHS, player.getDeaths());
+                    writeNumber(gen, ASSISTS, player.getAssists());
+                    writeNumber(gen, SCORE, player.getScore());
+                    writeStringList(gen, MEDALS_EARNED, player.getMedalsEarned());
+                    writeNumberMap(gen, WEAPON_KILLS, player.getWeaponKills());
+                    gen.writeEndObject();
+                }
+                gen.writeEndArray();
+            }
+
+            List<KillEvent> killEvents = match.getKillEvents();
+            gen.writeFieldName(KILL_EVENTS);
+            if (killEvents == null) {
+                gen.writeNull();
+            } else {
+                gen.writeStartArray();
+                for (KillEvent kill : killEvents) {
+                    if (kill == null) {
+                        gen.writeNull();
+                        continue;
+                    }
+                    gen.writeStartObject();
+                    writeNumber(gen, TIME_MILLIS, kill.getTimeMillis());
+                    writeNumber(gen, KILLER_ID, kill.getKillerId());
+                    writeNumber(gen, VICTIM_ID, kill.getVictimId());
+                    writeString(gen, WEAPON, kill.getWeapon());
+                    gen.writeEndObject();
+                }
+                gen.writeEndArray();
+            }
+
+            // Kept in the match log, so a replay uses the medals from the live match
+            gen.writeFieldName(LIVE_MEDALS);
+            gen.writeBoolean(match.isLiveMedals());
+
+            // Let Jackson write the date so it matches the rest of the API
+            gen.writeFieldName(TIMESTAMP);
+            provider.defaultSerializeValue(match.getTimestamp(), gen);
+            gen.writeEndObject();
+        }
+    }
+
+    /**
+     * CustomMap -> JSON (map browser, downloads)
+     */
+    public static class CustomMapSerializer extends StdSerializer<CustomMap> {
+        private static final long serialVersionUID = 1L;
+
+        public CustomMapSerializer() {
+            super(CustomMap.class);
+        }
+
+        @Override
+        public void serialize(CustomMap map, JsonGenerator gen, SerializerProvider provider)
+                throws IOException {
+            gen.writeStartObject();
+            writeNumber(gen, ID, map.getId());
+            writeString(gen, MAP_NAME, map.getMapName());
+            writeString(gen, AUTHOR_GAMERTAG, map.getAuthorGamertag());
+            writeNumber(gen, AUTHOR_ID, map.getAuthorId());
+            writeString(gen, BASE_MAP, map.getBaseMap() != null ? map.getBaseMap().name() : null);
+            writeString(gen, GAME_MODE, map.getGameMode());
+            writeString(gen, DESCRIPTION, map.getDescription());
+            // The Forge data is a deep, author-defined tree - leave it to Jackson
+            gen.writeFieldName(MAP_DATA);
+            provider.defaultSerializeValue(map.getMapData(), gen);
+            writeNumber(gen, DOWNLOAD_COUNT, map.getDownloadCount());
+            writeNumber(gen, RATING, map.getRating());
+            writeStringList(gen, TAGS, map.getTags());
+            gen.writeFieldName(CREATED_AT);
+            provider.defaultSerializeValue(map.getCreatedAt(), gen);
+            gen.writeEndObject();
+        }
+    }
+
+    // Helpers that write a field or null, like Jackson does for missing values
+
+    private static void writeNumber(JsonGenerator gen, SerializableString name, Integer value)
+            throws IOException {
+        gen.writeFieldName(name);
+        if (value != null) {
+            gen.writeNumber(value);
+        } else {
+            gen.writeNull();
+        }
+    }
+
+    private static void writeNumber(JsonGenerator gen, SerializableString name, Long value)
+            throws IOException {
+        gen.writeFieldName(name);
+        if (value != null) {
+            gen.writeNumber(value);
+        } else {
+            gen.writeNull();
+        }
+    }
+
+    private static void writeNumber(JsonGenerator gen, SerializableString name, Double value)
+            throws IOException {
+        gen.writeFieldName(name);
+        if (value != null) {
+            gen.writeNumber(value);
+        } else {
+            gen.writeNull();
+        }
+    }
+
+    private static void writeString(JsonGenerator gen, SerializableString name, String value)
+            throws IOException {
+        gen.writeFieldName(name);
+        if (value != null) {
+            gen.writeString(value);
+        } else {
+            gen.writeNull();
+        }
+    }
+
+    private static void writeNumberMap(JsonGenerator gen, SerializableString name,
+                                       Map<String, ? extends Number> map) throws IOException {
+        gen.writeFieldName(name);
+        if (map == null) {
+            gen.writeNull();
+            return;
+        }
+        gen.writeStartObject();
+        for (Map.Entry<String, ? extends Number> entry : map.entrySet()) {
+            Number value = entry.getValue();
+            if (value instanceof Integer) {
+                gen.writeNumberField(entry.getKey(), (Integer) value);
+            } else if (value instanceof Double) {
+                gen.writeNumberField(entry.getKey(), (Double) value);
+            } else if (value == null) {
+                gen.writeNullField(entry.getKey());
+            } else {
+                gen.writeFieldName(entry.getKey());
+                gen.writeNumber(value.toString());
+            }
+        }
+        gen.writeEndObject();
+    }
+
+    private static void writeStringList(JsonGenerator gen, SerializableString name, List<String> list)
+            throws IOException {
+        gen.writeFieldName(name);
+        if (list == null) {
+            gen.writeNull();
+            return;
+        }
+        gen.writeStartArray();
+        for (String value : list) {
+            gen.writeString(value);
+        }
+        gen.writeEndArray();
+    }
+}
\ No newline at end of file
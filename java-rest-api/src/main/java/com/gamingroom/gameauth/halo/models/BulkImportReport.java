@@ -0,0 +1,133 @@
+// BulkImportReport.java
+package com.gamingroom.gameauth.halo.models;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * BulkImportReport - What happened to each match in a bulk import
+ *
+ * Every record is counted. Records that weren't saved are listed one by
+ * one in "problems" (by line number), so a record that isn't listed
+ * was saved.
+ */
+public class BulkImportReport {
+    private int received;         // Records read from the stream
+    private int saved;
+    private int duplicates;       // Already imported or reported before
+    private int invalid;          // Couldn't be read as a match, or missing fields
+    private int failed;           // Valid, but the database rejected it
+    private String error;         // Why reading stopped early (null if the whole stream was read)
+    private List<RecordResult> problems = new ArrayList<>();
+
+    // Constructor
+    public BulkImportReport() {}
+
+    // Getters and Setters
+    public int getReceived() {
+        return received;
+    }
+
+    public void setReceived(int received) {
+        this.received = received;
+    }
+
+    public int getSaved() {
+        return saved;
+    }
+
+    public void setSaved(int saved) {
+        this.saved = saved;
+    }
+
+    public int getDuplicates() {
+        return duplicates;
+    }
+
+    public void setDuplicates(int duplicates) {
+        this.duplicates = duplicates;
+    }
+
+    public int getInvalid() {
+        return invalid;
+    }
+
+    public void setInvalid(int invalid) {
+        this.invalid = invalid;
+    }
+
+    public int getFailed() {
+        return failed;
+    }
+
+    public void setFailed(int failed) {
+        this.failed = failed;
+    }
+
+    public String getError() {
+        return error;
+    }
+
+    public void setError(String error) {
+        this.error = error;
+    }
+
+    public List<RecordResult> getProblems() {
+        return problems;
+    }
+
+    public void setProblems(List<RecordResult> problems) {
+        this.problems = problems;
+    }
+
+    /**
+     * One record that wasn't saved
+     */
+    public static class RecordResult {
+        private Integer line;       // Line of the stream the record started on
+        private String matchId;
+        private String status;      // "DUPLICATE", "INVALID" or "FAILED"
+        private String message;
+
+        public RecordResult() {}
+
+        public RecordResult(Integer line, String matchId, String status, String message) {
+            this.line = line;
+            this.matchId = matchId;
+            this.status = status;
+            this.message = message;
+        }
+
+        public Integer getLine() {
+            return line;
+        }
+
+        public void setLine(Integer line) {
+            this.line = line;
+        }
+
+        public String getMatchId() {
+            return matchId;
+        }
+
+        public void setMatchId(String matchId) {
+            this.matchId = matchId;
+        }
+
+        public String getStatus() {
+            return status;
+        }
+
+        public void setStatus(String status) {
+            this.status = status;
+        }
+
+        public String getMessage() {
+            return message;
+        }
+
+        public void setMessage(String message) {
+            this.message = message;
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,59 @@
+// KillEvent.java
+package com.gamingroom.gameauth.halo.models;
+
+/**
+ * KillEvent - One kill in a match's timeline (the kill feed)
+ *
+ * Game servers send these in MatchResult.killEvents so medals like
+ * Double Kill or Killing Spree can be worked out from when each kill
+ * happened, not guessed from totals.
+ */
+public class KillEvent {
+    private Long timeMillis;     // Milliseconds since the match started
+    private Long killerId;       // null for deaths with no killer (falls, vehicles exploding...)
+    private Long victimId;
+    private String weapon;       // Same names as weaponKills, e.g. "Sniper"
+
+    // Constructor
+    public KillEvent() {}
+
+    public KillEvent(Long timeMillis, Long killerId, Long victimId, String weapon) {
+        this.timeMillis = timeMillis;
+        this.killerId = killerId;
+        this.victimId = victimId;
+        this.weapon = weapon;
+    }
+
+    // Getters and Setters
+    public Long getTimeMillis() {
+        return timeMillis;
+    }
+
+    public void setTimeMillis(Long timeMillis) {
+        this.timeMillis = timeMillis;
+    }
+
+    public Long getKillerId() {
+        return killerId;
+    }
+
+    public void setKillerId(Long killerId) {
+        this.killerId = killerId;
+    }
+
+    public Long getVictimId() {
+        return victimId;
+    }
+
+    public void setVictimId(Long victimId) {
+        this.victimId = victimId;
+    }
+
+    public String getWeapon() {
+        return weapon;
+    }
+
+    public void setWeapon(String weapon) {
+        this.weapon = weapon;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,47 @@
+// LeaderboardPage.java
+package com.gamingroom.gameauth.halo.models;
+
+import java.util.List;
+
+/**
+ * LeaderboardPage - One page of a leaderboard plus the cursor for the next one
+ */
+public class LeaderboardPage {
+    private String stat;
+    private List<PlayerStats> entries;
+    private String nextCursor; // null when this is the last page
+
+    // Constructor
+    public LeaderboardPage() {}
+
+    public LeaderboardPage(String stat, List<PlayerStats> entries, String nextCursor) {
+        this.stat = stat;
+        this.entries = entries;
+        this.nextCursor = nextCursor;
+    }
+
+    // Getters and Setters
+    public String getStat() {
+        return stat;
+    }
+
+    public void setStat(String stat) {
+        this.stat = stat;
+    }
+
+    public List<PlayerStats> getEntries() {
+        return entries;
+    }
+
+    public void setEntries(List<PlayerStats> entries) {
+        this.entries = entries;
+    }
+
+    public String getNextCursor() {
+        return nextCursor;
+    }
+
+    public void setNextCursor(String nextCursor) {
+        this.nextCursor = nextCursor;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,78 @@
+// LeaderboardPosition.java
+package com.gamingroom.gameauth.halo.models;
+
+import java.util.List;
+
+/**
+ * LeaderboardPosition - Where one player ranks on a leaderboard,
+ * plus the players just above and below them ("around me" view)
+ */
+public class LeaderboardPosition {
+    private String stat;
+    private Long playerId;
+    private Integer rank;          // 1 = first place
+    private Integer totalPlayers;
+    private List<PlayerStats> above; // Best first, ends with the player right above
+    private PlayerStats player;
+    private List<PlayerStats> below; // Starts with the player right below
+
+    // Constructor
+    public LeaderboardPosition() {}
+
+    // Getters and Setters
+    public String getStat() {
+        return stat;
+    }
+
+    public void setStat(String stat) {
+        this.stat = stat;
+    }
+
+    public Long getPlayerId() {
+        return playerId;
+    }
+
+    public void setPlayerId(Long playerId) {
+        this.playerId = playerId;
+    }
+
+    public Integer getRank() {
+        return rank;
+    }
+
+    public void setRank(Integer rank) {
+        this.rank = rank;
+    }
+
+    public Integer getTotalPlayers() {
+        return totalPlayers;
+    }
+
+    public void setTotalPlayers(Integer totalPlayers) {
+        this.totalPlayers = totalPlayers;
+    }
+
+    public List<PlayerStats> getAbove() {
+        return above;
+    }
+
+    public void setAbove(List<PlayerStats> above) {
+        this.above = above;
+    }
+
+    public PlayerStats getPlayer() {
+        return player;
+    }
+
+    public void setPlayer(PlayerStats player) {
+        this.player = player;
+    }
+
+    public List<PlayerStats> getBelow() {
+        return below;
+    }
+
+    public void setBelow(List<PlayerStats> below) {
+        this.below = below;
+    }
+}
\ No newline at end of file
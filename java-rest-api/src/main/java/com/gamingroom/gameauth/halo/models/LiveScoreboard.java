@@ -0,0 +1,115 @@
+// LiveScoreboard.java
+package com.gamingroom.gameauth.halo.models;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * LiveScoreboard - A match in progress, built from its kill feed
+ *
+ * Used by spectators and overlays while the match is still running.
+ * Players are sorted by kills (most first).
+ */
+public class LiveScoreboard {
+    private String matchId;
+    private int killEvents;            // Kill feed events received so far
+    private Long lastEventMillis;      // Match time of the latest event (null before the first one)
+    private List<LivePlayer> players = new ArrayList<>();
+
+    // Constructor
+    public LiveScoreboard() {}
+
+    // Getters and Setters
+    public String getMatchId() {
+        return matchId;
+    }
+
+    public void setMatchId(String matchId) {
+        this.matchId = matchId;
+    }
+
+    public int getKillEvents() {
+        return killEvents;
+    }
+
+    public void setKillEvents(int killEvents) {
+        this.killEvents = killEvents;
+    }
+
+    public Long getLastEventMillis() {
+        return lastEventMillis;
+    }
+
+    public void setLastEventMillis(Long lastEventMillis) {
+        this.lastEventMillis = lastEventMillis;
+    }
+
+    public List<LivePlayer> getPlayers() {
+        return players;
+    }
+
+    public void setPlayers(List<LivePlayer> players) {
+        this.players = players;
+    }
+
+    /**
+     * One player's line on the scoreboard
+     */
+    public static class LivePlayer {
+        private Long playerId;
+        private int kills;
+        private int deaths;
+        private int spree;             // Kills since their last death
+        private List<String> medals;   // Earned so far (match-end medals come with the final result)
+
+        public LivePlayer() {}
+
+        public LivePlayer(Long playerId, int kills, int deaths, int spree, List<String> medals) {
+            this.playerId = playerId;
+            this.kills = kills;
+            this.deaths = deaths;
+            this.spree = spree;
+            this.medals = medals;
+        }
+
+        public Long getPlayerId() {
+            return playerId;
+        }
+
+        public void setPlayerId(Long playerId) {
+            this.playerId = playerId;
+        }
+
+        public int getKills() {
+            return kills;
+        }
+
+        public void setKills(int kills) {
+            this.kills = kills;
+        }
+
+        public int getDeaths() {
+            return deaths;
+        }
+
+        public void setDeaths(int deaths) {
+            this.deaths = deaths;
+        }
+
+        public int getSpree() {
+            return spree;
+        }
+
+        public void setSpree(int spree) {
+            this.spree = spree;
+        }
+
+        public List<String> getMedals() {
+            return medals;
+        }
+
+        public void setMedals(List<String> medals) {
+            this.medals = medals;
+        }
+    }
+}
\ No newline at end of file
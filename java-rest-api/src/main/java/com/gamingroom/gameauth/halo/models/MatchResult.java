@@ -10,9 +10,12 @@ public class MatchResult {
     private String matchId;
     private String mapName;
     private GameMode gameMode;
+    private String playlist; // e.g. "ranked_slayer" (optional)
     private Integer winningTeam;
     private Long durationSeconds;
     private List<PlayerMatchStats> playerStats;
+    private List<KillEvent> killEvents; // Kill feed, in time order (optional - medals are estimated without it)
+    private boolean liveMedals; // Medals already worked out while the match was live (set by LiveMatches only)
     private LocalDateTime timestamp;
     
     public static class PlayerMatchStats {
@@ -125,6 +128,14 @@ public class MatchResult {
         this.gameMode = gameMode;
     }
 
+    public String getPlaylist() {
+        return playlist;
+    }
+
+    public void setPlaylist(String playlist) {
+        this.playlist = playlist;
+    }
+
     public Integer getWinningTeam() {
         return winningTeam;
     }
@@ -149,6 +160,22 @@ public class MatchResult {
         this.playerStats = playerStats;
     }
 
+    public List<KillEvent> getKillEvents() {
+        return killEvents;
+    }
+
+    public void setKillEvents(List<KillEvent> killEvents) {
+        this.killEvents = killEvents;
+    }
+
+    public boolean isLiveMedals() {
+        return liveMedals;
+    }
+
+    public void setLiveMedals(boolean liveMedals) {
+        this.liveMedals = liveMedals;
+    }
+
     public LocalDateTime getTimestamp() {
         return timestamp;
     }
@@ -20,6 +20,8 @@ public class PlayerStats {
     private Integer highestSkill;
     private Map<String, Integer> medals;
     private Map<String, WeaponStats> weaponStats;
+    private Map<String, Double> topPercent; // "kd" -> 3.2 means top 3.2% in K/D
+    private RecentPerformance recentPerformance; // Last few matches (null if none yet)
     
     // Service Record
     private Integer matchesPlayed;
@@ -36,30 +38,104 @@ public class PlayerStats {
     }
     
     // RankSystem.java - Halo 3 style ranks
+    // Everything is precomputed into arrays indexed by level, so looking up
+    // a rank name is one array read and finding a level from XP is a binary search
     public static class RankSystem {
-        private static final Map<Integer, String> RANKS = new HashMap<Integer, String>() {{
-            put(1, "Recruit");
-            put(5, "Apprentice");
-            put(10, "Private");
-            put(15, "Corporal");
-            put(20, "Sergeant");
-            put(25, "Gunnery Sergeant");
-            put(30, "Lieutenant");
-            put(35, "Captain");
-            put(40, "Major");
-            put(45, "Commander");
-            put(50, "Brigadier");
-        }};
+        public static final int MAX_LEVEL = 50;
+        
+        // Level each title starts at, and the title
+        private static final int[] RANK_STARTS = {1, 5, 10, 15, 20, 25, 30, 35, 40, 45, 50};
+        private static final String[] RANK_TITLES = {
+            "Recruit", "Apprentice", "Private", "Corporal", "Sergeant", "Gunnery Sergeant",
+            "Lieutenant", "Captain", "Major", "Commander", "Brigadier"
+        };
+        
+        // RANK_NAMES[level] = title for that level (index 0 unused)
+        private static final String[] RANK_NAMES = new String[MAX_LEVEL + 1];
+        
+        // LEVEL_XP[level] = total XP needed to reach that level (index 0 unused)
+        // Going from level L to L + 1 costs 250 * L XP, so each level takes a bit longer
+        private static final int[] LEVEL_XP = new int[MAX_LEVEL + 1];
+        
+        static {
+            int title = 0;
+            for (int level = 1; level <= MAX_LEVEL; level++) {
+                if (title + 1 < RANK_STARTS.length && level >= RANK_STARTS[title + 1]) {
+                    title++;
+                }
+                RANK_NAMES[level] = RANK_TITLES[title];
+                LEVEL_XP[level] = 125 * level * (level - 1);
+            }
+        }
         
         public static String getRankName(int level) {
-            return RANKS.entrySet().stream()
-                .filter(e -> level >= e.getKey())
-                .max(Map.Entry.comparingByKey())
-                .map(Map.Entry::getValue)
-                .orElse("Recruit");
+            if (level < 1) {
+                return RANK_NAMES[1];
+            }
+            return RANK_NAMES[Math.min(level, MAX_LEVEL)];
+        }
+        
+        /**
+         * Find the level a total amount of XP is worth
+         * 
+         * @param xp Total XP earned
+         * @return The highest level whose threshold is at or below xp (1 - MAX_LEVEL)
+         */
+        public static int getLevelForXp(int xp) {
+            // Binary search for the last threshold <= xp
+            int low = 1;
+            int high = MAX_LEVEL;
+            while (low < high) {
+                int mid = (low + high + 1) >>> 1;
+                if (LEVEL_XP[mid] <= xp) {
+                    low = mid;
+                } else {
+                    high = mid - 1;
+                }
+            }
+            return low;
+        }
+        
+        /**
+         * @return Total XP needed for each level, starting at level 1
+         *         (a copy, used to work out levels inside SQL)
+         */
+        public static Integer[] getLevelThresholds() {
+            Integer[] thresholds = new Integer[MAX_LEVEL];
+            for (int level = 1; level <= MAX_LEVEL; level++) {
+                thresholds[level - 1] = LEVEL_XP[level];
+            }
+            return thresholds;
         }
     }
     
+    /**
+     * Make a copy of these stats (used by the leaderboard index so it
+     * isn't affected when the original object is updated later)
+     *
+     * @return A new PlayerStats with the same values
+     */
+    public PlayerStats copy() {
+        PlayerStats copy = new PlayerStats();
+        copy.playerId = playerId;
+        copy.gamertag = gamertag;
+        copy.totalKills = totalKills;
+        copy.totalDeaths = totalDeaths;
+        copy.totalAssists = totalAssists;
+        copy.winRatio = winRatio;
+        copy.rankLevel = rankLevel;
+        copy.rankXP = rankXP;
+        copy.highestSkill = highestSkill;
+        copy.medals = medals != null ? new HashMap<>(medals) : null;
+        copy.weaponStats = weaponStats != null ? new HashMap<>(weaponStats) : null;
+        copy.topPercent = topPercent != null ? new HashMap<>(topPercent) : null;
+        copy.recentPerformance = recentPerformance;
+        copy.matchesPlayed = matchesPlayed;
+        copy.matchesWon = matchesWon;
+        copy.perfectGames = perfectGames;
+        return copy;
+    }
+
     // Getters and Setters
     public Long getPlayerId() {
         return playerId;
@@ -149,6 +225,22 @@ public class PlayerStats {
         this.weaponStats = weaponStats;
     }
 
+    public Map<String, Double> getTopPercent() {
+        return topPercent;
+    }
+
+    public void setTopPercent(Map<String, Double> topPercent) {
+        this.topPercent = topPercent;
+    }
+
+    public RecentPerformance getRecentPerformance() {
+        return recentPerformance;
+    }
+
+    public void setRecentPerformance(RecentPerformance recentPerformance) {
+        this.recentPerformance = recentPerformance;
+    }
+
     public Integer getMatchesPlayed() {
         return matchesPlayed;
     }
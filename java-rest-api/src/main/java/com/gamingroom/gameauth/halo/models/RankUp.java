@@ -0,0 +1,70 @@
+// RankUp.java
+package com.gamingroom.gameauth.halo.models;
+
+/**
+ * RankUp - A player moving up one or more levels after a match
+ */
+public class RankUp {
+    private Long playerId;
+    private String matchId;      // The match that pushed them over the threshold
+    private Integer oldLevel;
+    private Integer newLevel;
+    private Integer rankXP;      // Total XP after the match
+
+    // Constructor
+    public RankUp() {}
+
+    public RankUp(Long playerId, String matchId, Integer oldLevel, Integer newLevel, Integer rankXP) {
+        this.playerId = playerId;
+        this.matchId = matchId;
+        this.oldLevel = oldLevel;
+        this.newLevel = newLevel;
+        this.rankXP = rankXP;
+    }
+
+    // Calculated Fields
+    public String getRankName() {
+        return PlayerStats.RankSystem.getRankName(newLevel);
+    }
+
+    // Getters and Setters
+    public Long getPlayerId() {
+        return playerId;
+    }
+
+    public void setPlayerId(Long playerId) {
+        this.playerId = playerId;
+    }
+
+    public String getMatchId() {
+        return matchId;
+    }
+
+    public void setMatchId(String matchId) {
+        this.matchId = matchId;
+    }
+
+    public Integer getOldLevel() {
+        return oldLevel;
+    }
+
+    public void setOldLevel(Integer oldLevel) {
+        this.oldLevel = oldLevel;
+    }
+
+    public Integer getNewLevel() {
+        return newLevel;
+    }
+
+    public void setNewLevel(Integer newLevel) {
+        this.newLevel = newLevel;
+    }
+
+    public Integer getRankXP() {
+        return rankXP;
+    }
+
+    public void setRankXP(Integer rankXP) {
+        this.rankXP = rankXP;
+    }
+}
\ No newline at end of file
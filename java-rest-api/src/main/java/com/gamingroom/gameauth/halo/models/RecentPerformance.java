@@ -0,0 +1,96 @@
+// RecentPerformance.java
+package com.gamingroom.gameauth.halo.models;
+
+import java.util.List;
+
+/**
+ * RecentPerformance - How a player has been doing over their last few matches
+ * (the profile "form" widget)
+ */
+public class RecentPerformance {
+    private Integer matches;        // How many recent matches these numbers cover
+    private Integer kills;
+    private Integer deaths;
+    private Integer assists;
+    private Double kdRatio;
+    private Double winRate;         // 0.0 - 1.0
+    private Double averageScore;
+    private Double kdTrend;         // K/D of the newer half minus K/D of the older half
+    private List<String> results;   // "W" / "L", newest first
+
+    // Constructor
+    public RecentPerformance() {}
+
+    // Getters and Setters
+    public Integer getMatches() {
+        return matches;
+    }
+
+    public void setMatches(Integer matches) {
+        this.matches = matches;
+    }
+
+    public Integer getKills() {
+        return kills;
+    }
+
+    public void setKills(Integer kills) {
+        this.kills = kills;
+    }
+
+    public Integer getDeaths() {
+        return deaths;
+    }
+
+    public void setDeaths(Integer deaths) {
+        this.deaths = deaths;
+    }
+
+    public Integer getAssists() {
+        return assists;
+    }
+
+    public void setAssists(Integer assists) {
+        this.assists = assists;
+    }
+
+    public Double getKdRatio() {
+        return kdRatio;
+    }
+
+    public void setKdRatio(Double kdRatio) {
+        this.kdRatio = kdRatio;
+    }
+
+    public Double getWinRate() {
+        return winRate;
+    }
+
+    public void setWinRate(Double winRate) {
+        this.winRate = winRate;
+    }
+
+    public Double getAverageScore() {
+        return averageScore;
+    }
+
+    public void setAverageScore(Double averageScore) {
+        this.averageScore = averageScore;
+    }
+
+    public Double getKdTrend() {
+        return kdTrend;
+    }
+
+    public void setKdTrend(Double kdTrend) {
+        this.kdTrend = kdTrend;
+    }
+
+    public List<String> getResults() {
+        return results;
+    }
+
+    public void setResults(List<String> results) {
+        this.results = results;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,300 @@
+// Package: com.gamingroom.gameauth.halo.service
+// This class loads a large stream of finished matches (backfills, tournament imports)
+
+package com.gamingroom.gameauth.halo.service;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.gamingroom.gameauth.halo.models.BulkImportReport;
+import com.gamingroom.gameauth.halo.models.MatchResult;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * BulkMatchImport - Imports a newline-delimited JSON stream of matches
+ *
+ * Backfilling after an outage used to mean one HTTP request (and one
+ * transaction) per match. Here one request carries the whole stream:
+ *
+ * 1. The request thread reads one match at a time with Jackson's
+ *    streaming parser, so only the current batch is ever in memory
+ * 2. Each match is checked (readable, required fields, not a duplicate)
+ *    and added to a batch of BATCH_SIZE
+ * 3. Full batches go to a writer thread that saves each one with one
+ *    processMatchResults call (one transaction, batched statements).
+ *    Reading carries on while the writer saves, and waits only when
+ *    BATCHES_AHEAD batches are queued
+ * 4. When the stream ends, the report says what happened to every record
+ *
+ * Writers come from one pool of MAX_CONCURRENT_IMPORTS threads shared by
+ * every request; an import that finds them all busy is refused
+ * (RejectedExecutionException) before anything is read.
+ *
+ * A JSON syntax error stops the import there (we can't find where the
+ * next record starts); everything before it is still saved.
+ */
+public class BulkMatchImport {
+    private static final Logger LOGGER = LoggerFactory.getLogger(BulkMatchImport.class);
+
+    // Matches saved per transaction
+    public static final int BATCH_SIZE = 500;
+
+    // How many batches reading may get ahead of the database
+    private static final int BATCHES_AHEAD = 2;
+
+    // Most imports saving at once (one writer thread each)
+    public static final int MAX_CONCURRENT_IMPORTS = 2;
+
+    // Most problems listed one by one in the report (all of them are still counted)
+    public static final int MAX_LISTED_PROBLEMS = 10_000;
+
+    // Tells the writer the stream is finished
+    private static final List<Record> END = Collections.emptyList();
+
+    private final HaloGameService gameService;
+    private final ObjectMapper objectMapper;
+
+    // Writer threads shared by all imports. No queue: a writer is free
+    // right away or the import is refused. Idle threads time out
+    private final ThreadPoolExecutor writers;
+
+    /**
+     * @param gameService Saves the matches
+     * @param objectMapper Dropwizard's JSON mapper
+     */
+    public BulkMatchImport(HaloGameService gameService, ObjectMapper objectMapper) {
+        this.gameService = gameService;
+        this.objectMapper = objectMapper;
+
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.writers = new ThreadPoolExecutor(MAX_CONCURRENT_IMPORTS, MAX_CONCURRENT_IMPORTS,
+                                              60, TimeUnit.SECONDS, new SynchronousQueue<>(), runnable -> {
+            Thread thread = new Thread(runnable, "match-bulk-import-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.writers.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Read and save every match in the stream
+     *
+     * @param in One MatchResult JSON object per line
+     * @return What happened to each record
+     * @throws InterruptedException If the request thread is interrupted
+     * @throws RejectedExecutionException If MAX_CONCURRENT_IMPORTS imports are already running
+     */
+    public BulkImportReport importMatches(InputStream in) throws InterruptedException {
+        BulkImportReport report = new BulkImportReport();
+        BlockingQueue<List<Record>> batches = new ArrayBlockingQueue<>(BATCHES_AHEAD);
+
+        Future<?> writer = writers.submit(() -> writeBatches(batches, report));
+
+        try {
+            read(in, batches, report);
+        } finally {
+            // Let the writer finish what was read, even if reading failed
+            batches.put(END);
+            try {
+                writer.get();
+            } catch (ExecutionException e) {
+                LOGGER.error("Bulk import writer failed", e.getCause());
+            }
+        }
+
+        LOGGER.info("Bulk import: {} received, {} saved, {} duplicates, {} invalid, {} failed",
+                    report.getReceived(), report.getSaved(), report.getDuplicates(),
+                    report.getInvalid(), report.getFailed());
+        return report;
+    }
+
+    /**
+     * Parse records and hand full batches to the writer
+     */
+    private void read(InputStream in, BlockingQueue<List<Record>> batches, BulkImportReport report)
+            throws InterruptedException {
+        List<Record> batch = new ArrayList<>(BATCH_SIZE);
+        int line = 1;
+
+        try {
+            try (JsonParser parser = objectMapper.getFactory().createParser(in)) {
+                JsonToken token;
+                while ((token = parser.nextToken()) != null) {
+                    line = parser.getTokenLocation().getLineNr();
+                    if (token != JsonToken.START_OBJECT) {
+                        stop(report, line, "expected a match object");
+                        break;
+                    }
+
+                    // Read the whole record first, so a record with bad fields
+                    // doesn't leave the parser in the middle of it
+                    JsonNode node = objectMapper.readTree(parser);
+                    synchronized (report) {
+                        report.setReceived(report.getReceived() + 1);
+                    }
+
+                    MatchResult match;
+                    try {
+                        match = objectMapper.treeToValue(node, MatchResult.class);
+                    } catch (IOException e) {
+                        invalid(report, line, node.path("matchId").asText(null), e.getMessage());
+                        continue;
+                    }
+
+                    match.setLiveMedals(false); // Medals are always worked out again on import
+                    String problem = validate(match);
+                    if (problem != null) {
+                        invalid(report, line, match.getMatchId(), problem);
+                        continue;
+                    }
+
+                    // Same check as /match/complete (also catches a match listed twice)
+                    if (!gameService.claimMatchId(match.getMatchId())) {
+                        synchronized (report) {
+                            report.setDuplicates(report.getDuplicates() + 1);
+                            addProblem(report, line, match.getMatchId(), "DUPLICATE", "Match was already reported");
+                        }
+                        continue;
+                    }
+
+                    batch.add(new Record(line, match));
+                    if (batch.size() == BATCH_SIZE) {
+                        batches.put(batch);
+                        batch = new ArrayList<>(BATCH_SIZE);
+                    }
+                }
+            } catch (IOException e) {
+                // Malformed JSON or the client went away - keep what we have
+                stop(report, line, e.getMessage());
+            }
+
+            if (!batch.isEmpty()) {
+                batches.put(batch);
+                batch = Collections.emptyList();
+            }
+        } finally {
+            // Interrupted before this batch reached the writer - nobody will
+            // save it, so a later import of these matches must not look like a duplicate
+            for (Record record : batch) {
+                gameService.releaseMatchId(record.match.getMatchId());
+            }
+        }
+    }
+
+    /**
+     * Writer thread: save each batch and record how every match went
+     */
+    private void writeBatches(BlockingQueue<List<Record>> batches, BulkImportReport report) {
+        while (true) {
+            List<Record> batch;
+            try {
+                batch = batches.take();
+            } catch (InterruptedException e) {
+                return;
+            }
+            if (batch == END) {
+                return;
+            }
+
+            List<MatchResult> matches = new ArrayList<>(batch.size());
+            for (Record record : batch) {
+                matches.add(record.match);
+            }
+
+            Set<String> failed = new HashSet<>();
+            try {
+                failed.addAll(gameService.processMatchResults(matches));
+            } catch (RuntimeException e) {
+                // Find the bad match by saving them one at a time
+                for (MatchResult match : matches) {
+                    try {
+                        failed.addAll(gameService.processMatchResults(Collections.singletonList(match)));
+                    } catch (RuntimeException matchError) {
+                        LOGGER.warn("Importing match result {} failed", match.getMatchId(), matchError);
+                        failed.add(match.getMatchId());
+                    }
+                }
+            }
+
+            synchronized (report) {
+                for (Record record : batch) {
+                    String matchId = record.match.getMatchId();
+                    if (failed.contains(matchId)) {
+                        // Not saved, so a later import of it must not look like a duplicate
+                        gameService.releaseMatchId(matchId);
+                        report.setFailed(report.getFailed() + 1);
+                        addProblem(report, record.line, matchId, "FAILED", "Could not be saved");
+                    } else {
+                        report.setSaved(report.getSaved() + 1);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Check the fields saving a match relies on
+     *
+     * @return What's wrong, or null if the match is fine
+     */
+    private static String validate(MatchResult match) {
+        if (match.getMatchId() == null) {
+            return "matchId is required";
+        }
+        if (match.getGameMode() == null || match.getWinningTeam() == null || match.getDurationSeconds() == null) {
+            return "gameMode, winningTeam and durationSeconds are required";
+        }
+        if (match.getPlayerStats() == null || match.getPlayerStats().isEmpty()) {
+            return "playerStats is required";
+        }
+        for (MatchResult.PlayerMatchStats player : match.getPlayerStats()) {
+            if (player.getPlayerId() == null || player.getTeam() == null || player.getKills() == null ||
+                player.getDeaths() == null || player.getAssists() == null || player.getScore() == null) {
+                return "Each player needs playerId, team, kills, deaths, assists and score";
+            }
+        }
+        return null;
+    }
+
+    private static void invalid(BulkImportReport report, int line, String matchId, String message) {
+        synchronized (report) {
+            report.setInvalid(report.getInvalid() + 1);
+            addProblem(report, line, matchId, "INVALID", message);
+        }
+    }
+
+    private static void stop(BulkImportReport report, int line, String message) {
+        synchronized (report) {
+            report.setError("Stopped reading at line " + line + ": " + message);
+        }
+    }
+
+    /**
+     * List one record that wasn't saved (caller holds the report's lock)
+     */
+    private static void addProblem(BulkImportReport report, int line, String matchId, String status, String message) {
+        if (report.getProblems().size() < MAX_LISTED_PROBLEMS) {
+            report.getProblems().add(new BulkImportReport.RecordResult(line, matchId, status, message));
+        }
+    }
+
+    /**
+     * A match and the line it started on
+     */
+    private static final class Record {
+        final int line;
+        final MatchResult match;
+
+        Record(int line, MatchResult match) {
+            this.line = line;
+            this.match = match;
+        }
+    }
+}
\ No newline at end of file
@@ -3,10 +3,16 @@
 
 package com.gamingroom.gameauth.halo.service;
 
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
 import com.gamingroom.gameauth.halo.dao.*;
 import com.gamingroom.gameauth.halo.models.*;
+import java.time.LocalDate;
 import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
 import javax.sql.DataSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 /**
  * HaloGameService - The main service class for all Halo game operations
@@ -22,24 +28,102 @@ import javax.sql.DataSource;
  * Think of this as the "brain" of your game backend!
  */
 public class HaloGameService {
+    private static final Logger LOGGER = LoggerFactory.getLogger(HaloGameService.class);
+    
+    // How many player profiles to keep in memory when no size is given
+    public static final long DEFAULT_PLAYER_CACHE_SIZE = 100_000;
+    
     // DAO (Data Access Object) for database operations
     private final HaloStatsDAO statsDAO;
+    private final WeaponStatsDAO weaponStatsDAO;
     private final CustomMapDAO mapDAO;
     private final MatchHistoryDAO matchDAO;
+    private final MatchIngestDAO matchIngestDAO;
     
     // Medal definitions - these define when players earn medals
+    // (the engine uses the kill feed, MedalService guesses from totals without one)
+    private final MedalEngine medalEngine;
     private final MedalService medalService;
     
+    // Leaderboards kept sorted as matches are processed - only without a
+    // database (null with one: the top, pages and positions are read from
+    // its indexes, which have every server's matches, not just ours)
+    private final LeaderboardIndex leaderboardIndex;
+    private final boolean leaderboardsFromDatabase;
+    
+    // "Top X%" histograms for each leaderboard stat (with a database they
+    // are a copy of stat_histograms, re-read now and then - see refreshPercentiles)
+    private volatile StatPercentiles statPercentiles;
+    
+    // Held while a player is moved in both of the above (without a database),
+    // so two ingest workers with the same player can't both remove the same old values
+    private final Object indexLock = new Object();
+    
+    // Daily / weekly / season leaderboards built from per-day buckets
+    private final WindowedLeaderboards windowedLeaderboards;
+    
+    // Called after each match changes the leaderboards (e.g. the live feed)
+    private final List<Runnable> leaderboardListeners = new CopyOnWriteArrayList<>();
+    
+    // Recently read player profiles (stats + medals)
+    private final PlayerProfileCache profileCache;
+    
+    // Each player's last few matches for the "form" widget (read from match history)
+    private final RecentMatches recentMatches;
+    
+    // Match IDs we've already accepted (game servers retry on timeouts)
+    private final SeenMatchIds seenMatchIds = new SeenMatchIds();
+    
+    // Players who levelled up (counted, not printed - bulk imports level up thousands)
+    private final Meter rankUps = new Meter();
+    
     /**
      * Constructor - Initialize all our DAOs and services
      * 
      * @param dataSource The database connection pool
      */
     public HaloGameService(DataSource dataSource) {
-        this.statsDAO = new HaloStatsDAO(dataSource);
+        this(dataSource, DEFAULT_PLAYER_CACHE_SIZE);
+    }
+    
+    /**
+     * Constructor - Initialize all our DAOs and services
+     * 
+     * @param dataSource The database connection pool
+     * @param playerCacheSize How many player profiles to keep in memory
+     */
+    public HaloGameService(DataSource dataSource, long playerCacheSize) {
+        this.profileCache = new PlayerProfileCache(playerCacheSize);
+        // One medal dictionary shared by the DAOs that store medal ids
+        CodeDictionary medalCodes = new CodeDictionary(dataSource, CodeDictionary.MEDAL_TYPES);
+        this.statsDAO = new HaloStatsDAO(dataSource, medalCodes);
+        this.weaponStatsDAO = new WeaponStatsDAO(dataSource);
         this.mapDAO = new CustomMapDAO(dataSource);
-        this.matchDAO = new MatchHistoryDAO(dataSource);
+        this.matchDAO = new MatchHistoryDAO(dataSource, medalCodes,
+                                            new CodeDictionary(dataSource, CodeDictionary.WEAPON_TYPES));
+        this.matchIngestDAO = new MatchIngestDAO(dataSource, matchDAO, statsDAO, weaponStatsDAO,
+                                                 StatPercentiles::changes);
+        this.recentMatches = new RecentMatches(playerCacheSize,
+                                               ids -> matchDAO.getRecentMatchLines(ids, RecentMatches.WINDOW));
+        this.medalEngine = new MedalEngine(MedalEngine.DEFAULT_RULES);
         this.medalService = new MedalService();
+        
+        // Without a database, build the leaderboard index and percentiles
+        // once from the in-memory stats
+        this.leaderboardsFromDatabase = dataSource != null;
+        this.statPercentiles = new StatPercentiles();
+        if (leaderboardsFromDatabase) {
+            this.leaderboardIndex = null;
+            refreshPercentiles();
+        } else {
+            this.leaderboardIndex = new LeaderboardIndex(statsDAO::getPlayerStats);
+            for (PlayerStats stats : statsDAO.getAllPlayerStats()) {
+                leaderboardIndex.update(stats);
+                statPercentiles.update(null, stats);
+            }
+        }
+        this.windowedLeaderboards = new WindowedLeaderboards();
+        refreshWindowedLeaderboards();
     }
     
     /**
@@ -49,21 +133,102 @@ public class HaloGameService {
      * @return Complete PlayerStats object with all data
      */
     public PlayerStats getPlayerStats(Long playerId) {
-        // Get basic stats from database
-        PlayerStats stats = statsDAO.getPlayerStats(playerId);
+        // Get stats, medals and weapons from the cache, or from the database
+        PlayerStats stats = profileCache.get(playerId, this::loadProfile);
         
         if (stats != null) {
-            // Add medals to the stats
-            Map<String, Integer> medals = statsDAO.getPlayerMedals(playerId);
-            stats.setMedals(medals);
+            // Add "top X%" for each leaderboard stat
+            stats.setTopPercent(statPercentiles.topPercent(stats));
             
-            // TODO: Add weapon stats
-            // TODO: Add recent match performance
+            // Add rolling K/D, win rate and trend over the last few matches
+            stats.setRecentPerformance(recentMatches.get(playerId));
         }
         
         return stats;
     }
     
+    /**
+     * Get stats with medals for many players at once (scoreboards, parties)
+     * 
+     * Cached players come from memory and all the rest are loaded with
+     * one database query, instead of two queries per player.
+     * 
+     * @param playerIds The players to get (duplicates are ignored)
+     * @return Player ID -> PlayerStats, in the order asked for (missing players left out)
+     */
+    public Map<Long, PlayerStats> getPlayerStats(Collection<Long> playerIds) {
+        Set<Long> uniqueIds = new LinkedHashSet<>(playerIds);
+        Map<Long, PlayerStats> profiles = profileCache.getAll(uniqueIds, this::loadProfiles);
+        Map<Long, RecentPerformance> recent = recentMatches.getAll(profiles.keySet());
+        
+        Map<Long, PlayerStats> result = new LinkedHashMap<>();
+        for (Long playerId : uniqueIds) {
+            PlayerStats stats = profiles.get(playerId);
+            if (stats != null) {
+                stats.setTopPercent(statPercentiles.topPercent(stats));
+                stats.setRecentPerformance(recent.get(playerId));
+                result.put(playerId, stats);
+            }
+        }
+        
+        return result;
+    }
+    
+    /**
+     * Get a player's lifetime kills with each weapon
+     * Read straight from the per-weapon counters (one row per weapon used)
+     * 
+     * @param playerId The player's ID
+     * @return Weapon name -> WeaponStats, most kills first
+     */
+    public Map<String, WeaponStats> getWeaponStats(Long playerId) {
+        return weaponStatsDAO.getWeaponStats(playerId);
+    }
+    
+    /**
+     * Load one profile for the cache: stats + medals, then weapon counters
+     */
+    private PlayerStats loadProfile(Long playerId) {
+        PlayerStats stats = statsDAO.getPlayerProfile(playerId);
+        if (stats != null) {
+            stats.setWeaponStats(weaponStatsDAO.getWeaponStats(playerId));
+        }
+        return stats;
+    }
+    
+    /**
+     * Load many profiles for the cache: one query for stats + medals,
+     * one for weapon counters
+     */
+    private Map<Long, PlayerStats> loadProfiles(Collection<Long> playerIds) {
+        Map<Long, PlayerStats> profiles = statsDAO.getPlayerProfiles(playerIds);
+        Map<Long, Map<String, WeaponStats>> weapons = weaponStatsDAO.getWeaponStats(profiles.keySet());
+        for (PlayerStats stats : profiles.values()) {
+            stats.setWeaponStats(weapons.getOrDefault(stats.getPlayerId(), new LinkedHashMap<>()));
+        }
+        return profiles;
+    }
+    
+    /**
+     * Claim a match ID before processing it, so a retried match isn't counted twice
+     * 
+     * @param matchId The match ID from the game server
+     * @return true if it's a new match, false if we already have it
+     */
+    public boolean claimMatchId(String matchId) {
+        return seenMatchIds.claim(matchId, matchDAO::matchExists);
+    }
+    
+    /**
+     * Give back a claimed match ID when the match wasn't taken after all
+     * (so the game server's retry is accepted)
+     * 
+     * @param matchId The match ID passed to claimMatchId
+     */
+    public void releaseMatchId(String matchId) {
+        seenMatchIds.release(matchId);
+    }
+    
     /**
      * Process match results when a game ends
      * This is called when a Halo match completes
@@ -71,39 +236,147 @@ public class HaloGameService {
      * @param matchResult The complete match data including all player performances
      */
     public void processMatchResult(MatchResult matchResult) {
-        // First, save the match to history
-        matchDAO.saveMatch(matchResult);
+        processMatchResults(Collections.singletonList(matchResult));
+    }
+    
+    /**
+     * Process several finished matches together
+     * They are saved in one transaction, and the leaderboards and listeners
+     * are updated once for the whole batch instead of once per match
+     * 
+     * @param matchResults The matches, oldest first
+     * @return IDs of the matches that couldn't be saved and should be tried
+     *         again (empty if all were saved, or had been saved before)
+     */
+    public Set<String> processMatchResults(List<MatchResult> matchResults) {
+        // Match ID -> XP each player earned, saved with the rest of the matches below
+        Map<String, Map<Long, Integer>> xpByMatch = new LinkedHashMap<>();
+        
+        // Every player in the batch (each one is re-indexed once)
+        Set<Long> playerIds = new LinkedHashSet<>();
         
-        // Process each player's performance
-        for (MatchResult.PlayerMatchStats playerStats : matchResult.getPlayerStats()) {
-            // Determine if this player won
-            boolean wonMatch = playerStats.getTeam().equals(matchResult.getWinningTeam());
+        for (MatchResult matchResult : matchResults) {
+            Map<Long, Integer> xpEarned = xpByMatch.computeIfAbsent(
+                matchResult.getMatchId(), id -> new LinkedHashMap<>());
             
-            // Calculate medals earned based on performance
-            List<String> medalsEarned = medalService.calculateMedals(playerStats);
-            playerStats.setMedalsEarned(medalsEarned);
+            // Medals from the kill feed, if the game server sent a usable one
+            // (one event without a time or victim and we estimate from totals).
+            // A match followed live already has them (LiveMatches.attachFeed)
+            Map<Long, List<String>> timelineMedals = null;
+            List<KillEvent> killEvents = matchResult.getKillEvents();
+            if (!matchResult.isLiveMedals() && killEvents != null && !killEvents.isEmpty()
+                    && killEvents.stream().allMatch(MedalEngine::isComplete)) {
+                timelineMedals = medalEngine.evaluate(killEvents);
+            }
             
-            // Update the player's lifetime statistics
-            statsDAO.updatePlayerStats(
-                playerStats.getPlayerId(), 
-                playerStats, 
-                wonMatch
-            );
+            // Process each player's performance
+            for (MatchResult.PlayerMatchStats playerStats : matchResult.getPlayerStats()) {
+                // Determine if this player won
+                boolean wonMatch = playerStats.getTeam().equals(matchResult.getWinningTeam());
+                
+                // Calculate medals earned based on performance
+                List<String> medalsEarned;
+                if (matchResult.isLiveMedals()) {
+                    medalsEarned = playerStats.getMedalsEarned() != null
+                        ? playerStats.getMedalsEarned() : new ArrayList<>();
+                } else if (timelineMedals != null) {
+                    medalsEarned = timelineMedals.getOrDefault(playerStats.getPlayerId(), new ArrayList<>());
+                } else {
+                    medalsEarned = medalService.calculateMedals(playerStats);
+                }
+                playerStats.setMedalsEarned(medalsEarned);
+                
+                // Work out XP for ranking up
+                xpEarned.merge(playerStats.getPlayerId(), calculateExperience(playerStats, wonMatch), Integer::sum);
+                playerIds.add(playerStats.getPlayerId());
+            }
+        }
+        
+        // Save the matches, lifetime stats, medals, weapon counters and XP
+        // in one transaction (this also levels players up)
+        MatchIngestDAO.SaveResult saved = matchIngestDAO.saveMatchResults(matchResults, xpByMatch);
+        Set<String> failedMatchIds = saved.getFailedMatchIds();
+        
+        // Matches this batch didn't apply (failed, or counted the first time they came in)
+        Set<String> notApplied = new HashSet<>(failedMatchIds);
+        notApplied.addAll(saved.getAlreadySavedMatchIds());
+        rankUps.mark(saved.getRankUps().size());
+        if (LOGGER.isDebugEnabled()) {
+            for (RankUp rankUp : saved.getRankUps()) {
+                LOGGER.debug("Rank up: player {} reached level {} ({})",
+                             rankUp.getPlayerId(), rankUp.getNewLevel(), rankUp.getRankName());
+            }
+        }
+        
+        for (Long playerId : playerIds) {
+            // Move the player to their new leaderboard positions and percentiles
+            // (the save read everyone's new stats back in one query; with a
+            // database it already moved them in stat_histograms instead)
+            PlayerStats updated = saved.getUpdatedStats().get(playerId);
+            if (updated != null && leaderboardIndex != null) {
+                synchronized (indexLock) {
+                    // A worker that read this player's row earlier can get
+                    // here last - never move a player back to older stats
+                    PlayerStats previous = leaderboardIndex.getIndexedStats(playerId);
+                    if (previous == null || updated.getMatchesPlayed() >= previous.getMatchesPlayed()) {
+                        statPercentiles.update(previous, updated);
+                        leaderboardIndex.update(updated);
+                    }
+                }
+            }
             
-            // Award XP for ranking up
-            awardExperience(playerStats.getPlayerId(), playerStats, wonMatch);
+            // Their stats, medals, rank and recent matches changed, so the cached ones are stale
+            profileCache.invalidate(playerId);
+            recentMatches.invalidate(playerId);
+        }
+        
+        // Add the matches to today's and this week's leaderboard buckets
+        // (with a database the save added them to player_daily_totals, and
+        // the buckets are only ever rebuilt from there - adding them here
+        // too would count a match twice if a rebuild had already read it)
+        for (MatchResult matchResult : matchResults) {
+            if (!leaderboardsFromDatabase && !notApplied.contains(matchResult.getMatchId())) {
+                windowedLeaderboards.recordMatch(matchResult);
+            }
+        }
+        
+        // Let anyone watching the leaderboards know they changed
+        for (Runnable listener : leaderboardListeners) {
+            listener.run();
         }
+        
+        return failedMatchIds;
     }
     
     /**
-     * Award experience points (XP) to a player after a match
+     * Publish the player profile cache's hit rate and evictions, how
+     * duplicate match checks were answered, and the rank-up rate
+     * 
+     * @param metrics Dropwizard's metric registry
+     */
+    public void registerMetrics(MetricRegistry metrics) {
+        profileCache.registerMetrics(metrics);
+        seenMatchIds.registerMetrics(metrics);
+        metrics.register(MetricRegistry.name(HaloGameService.class, "rankUps"), rankUps);
+    }
+    
+    /**
+     * Register something to call whenever a match changes the leaderboards
+     * 
+     * @param listener Called after each processed match (should be quick)
+     */
+    public void addLeaderboardListener(Runnable listener) {
+        leaderboardListeners.add(listener);
+    }
+    
+    /**
+     * Work out the experience points (XP) a player earned in a match
      * 
-     * @param playerId The player's ID
      * @param matchStats Their performance in the match
      * @param wonMatch Whether they won
+     * @return XP earned
      */
-    private void awardExperience(Long playerId, MatchResult.PlayerMatchStats matchStats, 
-                                 boolean wonMatch) {
+    private int calculateExperience(MatchResult.PlayerMatchStats matchStats, boolean wonMatch) {
         int xpEarned = 0;
         
         // Base XP for completing a match
@@ -123,21 +396,21 @@ public class HaloGameService {
             xpEarned += matchStats.getMedalsEarned().size() * 25;
         }
         
-        // TODO: Update player's rank_xp in database
-        // TODO: Check if player ranked up
+        return xpEarned;
     }
     
     /**
      * Get leaderboard rankings
+     * Served from the leaderboard index, or with a database from the
+     * (stat DESC, player_id) indexes - no sorting happens either way
      * 
-     * @param stat The stat to rank by ("kills", "kd", "wins", "rank")
+     * @param stat The stat to rank by ("kills", "kd", "wins", "rank", "deaths")
      * @param limit How many players to return
      * @return List of top players
      */
     public List<PlayerStats> getLeaderboard(String stat, int limit) {
         // Validate the stat parameter
-        List<String> validStats = Arrays.asList("kills", "kd", "wins", "rank");
-        if (!validStats.contains(stat)) {
+        if (!LeaderboardIndex.SUPPORTED_STATS.contains(stat)) {
             stat = "rank"; // Default to rank
         }
         
@@ -146,7 +419,177 @@ public class HaloGameService {
             limit = 100;
         }
         
-        return statsDAO.getLeaderboard(stat, limit);
+        if (leaderboardsFromDatabase) {
+            return statsDAO.getLeaderboard(stat, limit);
+        }
+        return leaderboardIndex.getTop(stat, limit);
+    }
+    
+    /**
+     * Get one page of a leaderboard, for browsing past the top 100
+     * 
+     * @param stat The stat to rank by ("kills", "kd", "wins", "rank", "deaths")
+     * @param cursor The nextCursor from the previous page (null = first page)
+     * @param limit How many players per page
+     * @return The page and the cursor for the next one
+     * @throws IllegalArgumentException If the cursor is invalid
+     */
+    public LeaderboardPage getLeaderboardPage(String stat, String cursor, int limit) {
+        // Validate the stat parameter
+        if (!LeaderboardIndex.SUPPORTED_STATS.contains(stat)) {
+            stat = "rank"; // Default to rank
+        }
+        
+        // Pages can be bigger than the top-100 view (used by exports)
+        if (limit < 1) {
+            limit = 50;
+        }
+        if (limit > 500) {
+            limit = 500;
+        }
+        
+        LeaderboardCursor after = cursor != null && !cursor.isEmpty()
+            ? LeaderboardCursor.decode(cursor)
+            : null;
+        
+        if (!leaderboardsFromDatabase) {
+            return leaderboardIndex.getPage(stat, after, limit);
+        }
+        
+        // Keyset query on the database; read one extra row to find out if there's another page
+        String indexedStat = LeaderboardIndex.normalizeStat(stat);
+        List<PlayerStats> entries = statsDAO.getLeaderboardPage(
+            indexedStat, after != null ? after.getValue() : null,
+            after != null ? after.getPlayerId() : null, limit + 1);
+        
+        String nextCursor = null;
+        if (entries.size() > limit) {
+            entries = new ArrayList<>(entries.subList(0, limit));
+            PlayerStats last = entries.get(limit - 1);
+            nextCursor = new LeaderboardCursor(LeaderboardIndex.statValue(indexedStat, last),
+                                               last.getPlayerId()).encode();
+        }
+        return new LeaderboardPage(indexedStat, entries, nextCursor);
+    }
+    
+    /**
+     * Get a player's leaderboard rank with the players around them
+     * Works for any player, not just the top 100
+     * 
+     * @param stat The stat to rank by ("kills", "kd", "wins", "rank", "deaths")
+     * @param playerId The player to look up
+     * @param window How many players to show above and below
+     * @return The player's position, or null if they have no stats
+     */
+    public LeaderboardPosition getLeaderboardPosition(String stat, Long playerId, int window) {
+        // Validate the stat parameter
+        if (!LeaderboardIndex.SUPPORTED_STATS.contains(stat)) {
+            stat = "rank"; // Default to rank
+        }
+        
+        // Keep the window small - this is shown on every post-game screen
+        if (window < 0) {
+            window = 0;
+        }
+        if (window > 25) {
+            window = 25;
+        }
+        
+        // Ranked among every server's players, like getLeaderboard and getLeaderboardPage
+        if (leaderboardsFromDatabase) {
+            return statsDAO.getLeaderboardPosition(LeaderboardIndex.normalizeStat(stat), playerId, window);
+        }
+        return leaderboardIndex.getPosition(stat, playerId, window);
+    }
+    
+    /**
+     * Rebuild the daily / weekly / season leaderboards from the per-day totals
+     * 
+     * Their buckets only live in memory, so this runs on startup (a
+     * restart would empty them otherwise) and every minute after
+     * (WindowedLeaderboardRefresher calls this), so they include every
+     * server's matches. Without a database there's nothing to read.
+     */
+    public void refreshWindowedLeaderboards() {
+        if (!leaderboardsFromDatabase) {
+            return;
+        }
+        
+        LocalDate oldestDay = WindowedLeaderboards.oldestDay();
+        matchDAO.deleteDailyTotalsBefore(oldestDay);
+        List<MatchHistoryDAO.DailyTotals> totals = matchDAO.getDailyTotals(oldestDay);
+        if (totals != null) {
+            windowedLeaderboards.rebuild(totals);
+        }
+    }
+    
+    /**
+     * Re-read the "top X%" histograms from the database
+     * 
+     * Every server's ingest transactions add their changes to the shared
+     * counts in stat_histograms (adding them up is how the servers'
+     * histograms are merged), so this only reads a few hundred rows
+     * (PercentileRefresher calls this every few seconds). The first time
+     * a database is used the table is filled from player_stats once.
+     * Without a database there's nothing to catch up on.
+     */
+    public void refreshPercentiles() {
+        if (!leaderboardsFromDatabase) {
+            return;
+        }
+        
+        Map<String, Map<Integer, Long>> counts = statsDAO.getStatHistograms();
+        if (counts != null && counts.isEmpty() && statsDAO.buildStatHistograms(StatPercentiles::changes)) {
+            counts = statsDAO.getStatHistograms();
+        }
+        if (counts == null) {
+            return; // Couldn't read them - keep what we have
+        }
+        statPercentiles = new StatPercentiles(counts);
+    }
+    
+    /**
+     * Get a leaderboard for a time window, optionally for one game mode or playlist
+     * 
+     * @param stat The stat to rank by ("kills", "kd", "wins", "deaths")
+     * @param window "daily", "weekly" or "season"
+     * @param gameMode Only count this game mode (null = all)
+     * @param playlist Only count this playlist (null = all)
+     * @param limit How many players to return
+     * @return List of top players with their totals for the window
+     */
+    public List<PlayerStats> getWindowedLeaderboard(String stat, String window, GameMode gameMode,
+                                                    String playlist, int limit) {
+        if (!WindowedLeaderboards.SUPPORTED_WINDOWS.contains(window)) {
+            throw new IllegalArgumentException("Invalid window (use daily, weekly or season)");
+        }
+        
+        // Validate the stat parameter
+        if (!WindowedLeaderboards.SUPPORTED_STATS.contains(stat)) {
+            stat = "kills"; // Rank level isn't tracked per window
+        }
+        
+        // Limit to reasonable number
+        if (limit > 100) {
+            limit = 100;
+        }
+        
+        // Gamertags and ranks: with a database from the profile cache (one
+        // query for the misses), without one from the in-memory stats
+        if (leaderboardsFromDatabase) {
+            return windowedLeaderboards.getTop(stat, window, gameMode, playlist, limit,
+                                               ids -> profileCache.getAll(ids, this::loadProfiles));
+        }
+        return windowedLeaderboards.getTop(stat, window, gameMode, playlist, limit, ids -> {
+            Map<Long, PlayerStats> players = new HashMap<>();
+            for (Long id : ids) {
+                PlayerStats player = statsDAO.getPlayerStats(id);
+                if (player != null) {
+                    players.put(id, player);
+                }
+            }
+            return players;
+        });
     }
     
     /**
@@ -313,6 +756,9 @@ public class HaloGameService {
  * 
  * This is separated into its own class because medal logic can get complex
  * and we want to keep it organized
+ * 
+ * Only used for matches sent without a kill feed - MedalEngine works
+ * medals out properly from the kill timeline when there is one
  */
 class MedalService {
     
@@ -0,0 +1,62 @@
+// Package: com.gamingroom.gameauth.halo.service
+// The "bookmark" a client sends back to get the next leaderboard page
+
+package com.gamingroom.gameauth.halo.service;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * LeaderboardCursor - Remembers the last player on a leaderboard page
+ *
+ * Paging with OFFSET means skipping every earlier row on every page,
+ * which gets slower the deeper you go. Instead the next page starts
+ * right after (stat value, player ID) of the last row we returned,
+ * which the index (or the database) can jump to in O(log n).
+ *
+ * Sent to clients as an opaque URL-safe string.
+ */
+public final class LeaderboardCursor {
+    private final double value;
+    private final long playerId;
+
+    public LeaderboardCursor(double value, long playerId) {
+        this.value = value;
+        this.playerId = playerId;
+    }
+
+    public double getValue() {
+        return value;
+    }
+
+    public long getPlayerId() {
+        return playerId;
+    }
+
+    /**
+     * @return The cursor as a string the client can send back
+     */
+    public String encode() {
+        String raw = value + ":" + playerId;
+        return Base64.getUrlEncoder().withoutPadding()
+                     .encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Read a cursor the client sent back
+     *
+     * @param cursor The string from a previous page's nextCursor
+     * @return The decoded cursor
+     * @throws IllegalArgumentException If the cursor is not one we made
+     */
+    public static LeaderboardCursor decode(String cursor) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int split = raw.lastIndexOf(':');
+            return new LeaderboardCursor(Double.parseDouble(raw.substring(0, split)),
+                                         Long.parseLong(raw.substring(split + 1)));
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Invalid cursor");
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,234 @@
+// Package: com.gamingroom.gameauth.halo.service
+// This class pushes leaderboard changes to connected clients (Server-Sent Events)
+
+package com.gamingroom.gameauth.halo.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.gamingroom.gameauth.halo.models.PlayerStats;
+import io.dropwizard.lifecycle.Managed;
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.glassfish.jersey.server.ChunkedOutput;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * LeaderboardFeed - Live leaderboard updates over Server-Sent Events
+ *
+ * Lobby screens used to poll the leaderboard every few seconds. Instead
+ * they can keep one connection open and we push only what changed:
+ *
+ * 1. On connect the client gets a "snapshot" event with the full top N
+ * 2. processMatchResult just marks the leaderboards as changed
+ * 3. Once per tick (not once per match) we compare the new top N with
+ *    what we sent last time and send a "delta" event with only the
+ *    ranks that changed
+ *
+ * Connections are Jersey ChunkedOutputs, so an open stream doesn't hold
+ * on to a request thread - the tick thread writes to all of them.
+ */
+public class LeaderboardFeed implements Managed {
+    private static final Logger LOGGER = LoggerFactory.getLogger(LeaderboardFeed.class);
+
+    // How many ranks the live view shows
+    public static final int FEED_LIMIT = 50;
+
+    // Send a comment line this often so dead connections get noticed
+    private static final long KEEPALIVE_MILLIS = 15000;
+
+    private final HaloGameService gameService;
+    private final ObjectMapper objectMapper;
+    private final long tickMillis;
+    private final ScheduledExecutorService executor;
+
+    // Set by processMatchResult, cleared by the tick
+    private final AtomicBoolean changed = new AtomicBoolean(false);
+
+    // Stat -> connected clients watching that stat
+    private final Map<String, Set<ChunkedOutput<String>>> subscribers = new ConcurrentHashMap<>();
+
+    // Stat -> the top N we last sent (only touched by the tick thread)
+    private final Map<String, List<PlayerStats>> lastSent = new HashMap<>();
+
+    private long lastWriteMillis = System.currentTimeMillis();
+
+    /**
+     * @param gameService Where the leaderboards come from
+     * @param objectMapper Dropwizard's JSON mapper
+     * @param tickMillis How long to collect match results before sending one update
+     */
+    public LeaderboardFeed(HaloGameService gameService, ObjectMapper objectMapper, long tickMillis) {
+        this.gameService = gameService;
+        this.objectMapper = objectMapper;
+        this.tickMillis = tickMillis;
+        this.executor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "leaderboard-feed");
+            thread.setDaemon(true);
+            return thread;
+        });
+        for (String stat : LeaderboardIndex.SUPPORTED_STATS) {
+            subscribers.put(stat, ConcurrentHashMap.newKeySet());
+        }
+    }
+
+    @Override
+    public void start() {
+        for (String stat : LeaderboardIndex.SUPPORTED_STATS) {
+            lastSent.put(stat, gameService.getLeaderboard(stat, FEED_LIMIT));
+        }
+        gameService.addLeaderboardListener(this::markChanged);
+        executor.scheduleWithFixedDelay(this::tick, tickMillis, tickMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void stop() {
+        executor.shutdownNow();
+        for (Set<ChunkedOutput<String>> outputs : subscribers.values()) {
+            for (ChunkedOutput<String> output : outputs) {
+                closeQuietly(output);
+            }
+        }
+    }
+
+    /**
+     * Called after a match changes the leaderboards
+     * Cheap on purpose - the real work waits for the next tick
+     */
+    public void markChanged() {
+        changed.set(true);
+    }
+
+    /**
+     * Open a live stream for one stat
+     *
+     * @param stat One of LeaderboardIndex.SUPPORTED_STATS
+     * @return The stream Jersey sends to the client
+     */
+    public ChunkedOutput<String> subscribe(String stat) {
+        ChunkedOutput<String> output = new ChunkedOutput<>(String.class);
+
+        // Send the current top N first so the client has something to apply deltas to
+        executor.execute(() -> {
+            try {
+                write(output, event("snapshot", gameService.getLeaderboard(stat, FEED_LIMIT)));
+                subscribers.get(stat).add(output);
+            } catch (IOException e) {
+                closeQuietly(output);
+            }
+        });
+
+        return output;
+    }
+
+    /**
+     * @return How many clients are connected right now
+     */
+    public int getSubscriberCount() {
+        int count = 0;
+        for (Set<ChunkedOutput<String>> outputs : subscribers.values()) {
+            count += outputs.size();
+        }
+        return count;
+    }
+
+    /**
+     * Runs every tick: send a delta for every stat whose top N changed
+     */
+    private void tick() {
+        try {
+            if (changed.getAndSet(false)) {
+                for (String stat : LeaderboardIndex.SUPPORTED_STATS) {
+                    List<PlayerStats> current = gameService.getLeaderboard(stat, FEED_LIMIT);
+                    List<Map<String, Object>> changes = diff(stat, lastSent.get(stat), current);
+                    lastSent.put(stat, current);
+
+                    if (!changes.isEmpty()) {
+                        Map<String, Object> delta = new LinkedHashMap<>();
+                        delta.put("stat", stat);
+                        delta.put("changes", changes);
+                        broadcast(stat, event("delta", delta));
+                    }
+                }
+            }
+
+            // Nothing to say for a while - send a comment so dead clients get dropped
+            if (System.currentTimeMillis() - lastWriteMillis >= KEEPALIVE_MILLIS) {
+                for (String stat : LeaderboardIndex.SUPPORTED_STATS) {
+                    broadcast(stat, ": keepalive\n\n");
+                }
+            }
+        } catch (RuntimeException | JsonProcessingException e) {
+            // Never let one bad tick stop the feed
+            LOGGER.warn("Leaderboard feed tick failed", e);
+        }
+    }
+
+    /**
+     * Work out which ranks have a different player or value than before
+     */
+    private static List<Map<String, Object>> diff(String stat, List<PlayerStats> previous,
+                                                  List<PlayerStats> current) {
+        List<Map<String, Object>> changes = new ArrayList<>();
+
+        for (int i = 0; i < current.size(); i++) {
+            PlayerStats now = current.get(i);
+            double value = LeaderboardIndex.statValue(stat, now);
+
+            PlayerStats before = i < previous.size() ? previous.get(i) : null;
+            if (before != null
+                && before.getPlayerId().equals(now.getPlayerId())
+                && LeaderboardIndex.statValue(stat, before) == value) {
+                continue; // Same player with the same value at this rank
+            }
+
+            Map<String, Object> change = new LinkedHashMap<>();
+            change.put("rank", i + 1);
+            change.put("playerId", now.getPlayerId());
+            change.put("gamertag", now.getGamertag());
+            change.put("value", value);
+            changes.add(change);
+        }
+
+        return changes;
+    }
+
+    private void broadcast(String stat, String frame) {
+        Iterator<ChunkedOutput<String>> outputs = subscribers.get(stat).iterator();
+        while (outputs.hasNext()) {
+            ChunkedOutput<String> output = outputs.next();
+            try {
+                write(output, frame);
+            } catch (IOException e) {
+                // Client went away
+                outputs.remove();
+                closeQuietly(output);
+            }
+        }
+    }
+
+    private void write(ChunkedOutput<String> output, String frame) throws IOException {
+        if (output.isClosed()) {
+            throw new IOException("Stream closed");
+        }
+        output.write(frame);
+        lastWriteMillis = System.currentTimeMillis();
+    }
+
+    /**
+     * Format one Server-Sent Event
+     */
+    private String event(String name, Object data) throws JsonProcessingException {
+        return "event: " + name + "\ndata: " + objectMapper.writeValueAsString(data) + "\n\n";
+    }
+
+    private static void closeQuietly(ChunkedOutput<String> output) {
+        try {
+            output.close();
+        } catch (IOException e) {
+            // Already gone
+        }
+    }
+}
\ No newline at end of file
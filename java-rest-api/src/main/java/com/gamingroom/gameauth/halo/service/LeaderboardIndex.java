@@ -0,0 +1,462 @@
+// Package: com.gamingroom.gameauth.halo.service
+// This class keeps the leaderboards sorted as matches come in
+
+package com.gamingroom.gameauth.halo.service;
+
+import com.gamingroom.gameauth.halo.models.LeaderboardPage;
+import com.gamingroom.gameauth.halo.models.LeaderboardPosition;
+import com.gamingroom.gameauth.halo.models.PlayerStats;
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+
+/**
+ * LeaderboardIndex - Keeps one sorted index per leaderboard stat
+ *
+ * Instead of copying and sorting every player each time someone opens
+ * the leaderboard, we keep the players already sorted by each stat.
+ *
+ * 1. When a match is processed, each player's entry is moved to its new
+ *    position (O(log n) per stat)
+ * 2. Reading the top N players just walks the first N entries (O(N))
+ * 3. Finding a player's rank counts the entries before them (O(log n))
+ * 4. Paging with a cursor jumps straight to the entry after it (O(log n + N))
+ *
+ * The index only keeps the numbers it sorts by, in primitive columns
+ * (like PlayerStatsStore), not a PlayerStats per player - the store
+ * already has those, so the players returned are looked up there when
+ * a leaderboard is read. A player whose match is being processed can
+ * show their new stats a moment before they move to their new position.
+ */
+public class LeaderboardIndex {
+    // The stats we keep an index for
+    public static final List<String> SUPPORTED_STATS =
+        Arrays.asList("kills", "kd", "wins", "rank", "deaths");
+
+    private static final int INITIAL_CAPACITY = 1024;
+
+    // One sorted tree per stat, highest value first
+    private final Map<String, OrderStatisticTree<Entry>> orderedByStat = new HashMap<>();
+
+    // Looks up a player's current stats (what we return to callers; null if not found)
+    private final Function<Long, PlayerStats> players;
+
+    // Rows: the numbers each player is indexed under, one entry per player in every column
+    private long[] playerIds;
+    private int[] totalKills;
+    private int[] totalDeaths;
+    private int[] matchesWon;
+    private int[] rankLevels;
+    private int[] matchesPlayed;
+    private int rowCount;
+
+    // Hash table: slot -> player ID and row + 1 (0 means the slot is empty)
+    private long[] slotKeys;
+    private int[] slotRows;
+
+    // Many readers (leaderboard requests), few writers (match results)
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /**
+     * @param players Looks up a player's current stats by ID (e.g. HaloStatsDAO.getPlayerStats)
+     */
+    public LeaderboardIndex(Function<Long, PlayerStats> players) {
+        this.players = players;
+        for (String stat : SUPPORTED_STATS) {
+            orderedByStat.put(stat, new OrderStatisticTree<>());
+        }
+        resizeRows(INITIAL_CAPACITY);
+        slotKeys = new long[INITIAL_CAPACITY * 2];
+        slotRows = new int[INITIAL_CAPACITY * 2];
+    }
+
+    /**
+     * Add a player to the index, or move them if they're already in it
+     *
+     * @param stats The player's current lifetime stats
+     */
+    public void update(PlayerStats stats) {
+        if (stats == null || stats.getPlayerId() == null) {
+            return;
+        }
+        long playerId = stats.getPlayerId();
+
+        lock.writeLock().lock();
+        try {
+            int row = findRow(playerId);
+            boolean indexed = row >= 0;
+            if (!indexed) {
+                row = addRow(playerId);
+            }
+
+            // Remove the old positions first (the row still has the old numbers)
+            if (indexed) {
+                for (String stat : SUPPORTED_STATS) {
+                    orderedByStat.get(stat).remove(new Entry(rowValue(stat, row), playerId));
+                }
+            }
+
+            totalKills[row] = valueOrZero(stats.getTotalKills());
+            totalDeaths[row] = valueOrZero(stats.getTotalDeaths());
+            matchesWon[row] = valueOrZero(stats.getMatchesWon());
+            rankLevels[row] = valueOrZero(stats.getRankLevel());
+            matchesPlayed[row] = valueOrZero(stats.getMatchesPlayed());
+
+            // Then insert the new ones
+            for (String stat : SUPPORTED_STATS) {
+                orderedByStat.get(stat).add(new Entry(rowValue(stat, row), playerId));
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Get the top players for a stat
+     *
+     * @param stat The stat to rank by (aliases like "kdratio" are accepted)
+     * @param limit How many players to return
+     * @return Players ordered from best to worst
+     */
+    public List<PlayerStats> getTop(String stat, int limit) {
+        List<Long> top = new ArrayList<>();
+
+        lock.readLock().lock();
+        try {
+            orderedByStat.get(normalizeStat(stat))
+                .forEach(0, limit, entry -> top.add(entry.playerId));
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        return lookUp(top);
+    }
+
+    /**
+     * Get the page of players that comes after a cursor
+     *
+     * @param stat The stat to rank by (aliases like "kdratio" are accepted)
+     * @param after The cursor from the previous page (null = first page)
+     * @param limit How many players to return
+     * @return The page, with a cursor for the next page if there is one
+     */
+    public LeaderboardPage getPage(String stat, LeaderboardCursor after, int limit) {
+        String indexedStat = normalizeStat(stat);
+        List<Long> entries = new ArrayList<>();
+        String nextCursor = null;
+
+        lock.readLock().lock();
+        try {
+            OrderStatisticTree<Entry> ordered = orderedByStat.get(indexedStat);
+
+            // Start right after the cursor - this still works if that
+            // player has moved since the previous page was read
+            int start = after != null
+                ? ordered.rankAfter(new Entry(after.getValue(), after.getPlayerId()))
+                : 0;
+
+            // Read one extra entry to find out if there's another page
+            List<Entry> page = new ArrayList<>();
+            ordered.forEach(start, limit + 1, page::add);
+
+            for (int i = 0; i < Math.min(limit, page.size()); i++) {
+                entries.add(page.get(i).playerId);
+            }
+            if (page.size() > limit && limit > 0) {
+                Entry last = page.get(limit - 1);
+                nextCursor = new LeaderboardCursor(last.value, last.playerId).encode();
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        return new LeaderboardPage(indexedStat, lookUp(entries), nextCursor);
+    }
+
+    /**
+     * Find a player's rank and the players around them
+     *
+     * @param stat The stat to rank by (aliases like "kdratio" are accepted)
+     * @param playerId The player to look up
+     * @param window How many players to include above and below
+     * @return The player's position, or null if they have no stats yet
+     */
+    public LeaderboardPosition getPosition(String stat, Long playerId, int window) {
+        String indexedStat = normalizeStat(stat);
+        List<Long> above = new ArrayList<>();
+        List<Long> below = new ArrayList<>();
+        int index;
+        int totalPlayers;
+
+        lock.readLock().lock();
+        try {
+            int row = playerId != null ? findRow(playerId) : -1;
+            if (row < 0) {
+                return null;
+            }
+
+            OrderStatisticTree<Entry> ordered = orderedByStat.get(indexedStat);
+            index = ordered.rank(new Entry(rowValue(indexedStat, row), playerId));
+            totalPlayers = ordered.size();
+
+            // Players before this one (closest to the top first)
+            int firstAbove = Math.max(0, index - window);
+            ordered.forEach(firstAbove, index - firstAbove, entry -> above.add(entry.playerId));
+
+            // Players after this one
+            ordered.forEach(index + 1, window, entry -> below.add(entry.playerId));
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        PlayerStats player = players.apply(playerId);
+        if (player == null) {
+            return null;
+        }
+
+        LeaderboardPosition position = new LeaderboardPosition();
+        position.setStat(indexedStat);
+        position.setPlayerId(playerId);
+        position.setRank(index + 1);
+        position.setTotalPlayers(totalPlayers);
+        position.setAbove(lookUp(above));
+        position.setPlayer(player);
+        position.setBelow(lookUp(below));
+        return position;
+    }
+
+    /**
+     * Get the numbers a player is indexed under (the index doesn't keep
+     * anything else - use the store for the rest)
+     *
+     * @param playerId The player to look up
+     * @return A new PlayerStats with only the ID, kills, deaths, wins,
+     *         rank level and matches played set, or null if they aren't indexed
+     */
+    public PlayerStats getIndexedStats(Long playerId) {
+        lock.readLock().lock();
+        try {
+            int row = playerId != null ? findRow(playerId) : -1;
+            if (row < 0) {
+                return null;
+            }
+            PlayerStats stats = new PlayerStats();
+            stats.setPlayerId(playerId);
+            stats.setTotalKills(totalKills[row]);
+            stats.setTotalDeaths(totalDeaths[row]);
+            stats.setMatchesWon(matchesWon[row]);
+            stats.setRankLevel(rankLevels[row]);
+            stats.setMatchesPlayed(matchesPlayed[row]);
+            return stats;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return How many players are in the index
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return rowCount;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Turn player IDs into their current stats, in the same order
+     * (called without the lock held; players the store no longer has are skipped)
+     */
+    private List<PlayerStats> lookUp(List<Long> playerIds) {
+        List<PlayerStats> result = new ArrayList<>(playerIds.size());
+        for (Long playerId : playerIds) {
+            PlayerStats stats = players.apply(playerId);
+            if (stats != null) {
+                result.add(stats);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * The value a row is sorted by for a stat (caller holds the lock)
+     */
+    private double rowValue(String stat, int row) {
+        switch (stat) {
+            case "kd":
+                return kd(totalKills[row], totalDeaths[row]);
+            case "wins":
+                return matchesWon[row];
+            case "deaths":
+                return totalDeaths[row];
+            case "rank":
+                return rankLevels[row];
+            default:
+                return totalKills[row];
+        }
+    }
+
+    /**
+     * Find a player's row (caller holds the lock)
+     *
+     * @return The row, or -1 if the player isn't indexed
+     */
+    private int findRow(long playerId) {
+        int mask = slotKeys.length - 1;
+        for (int slot = hash(playerId) & mask; ; slot = (slot + 1) & mask) {
+            if (slotRows[slot] == 0) {
+                return -1; // Hit an empty slot - not here
+            }
+            if (slotKeys[slot] == playerId) {
+                return slotRows[slot] - 1;
+            }
+        }
+    }
+
+    /**
+     * Add a row for a player who isn't indexed yet (caller holds the write lock)
+     */
+    private int addRow(long playerId) {
+        // Grow the columns when full, and the hash table when half full
+        if (rowCount == playerIds.length) {
+            resizeRows(playerIds.length * 2);
+        }
+        if ((rowCount + 1) * 2 > slotKeys.length) {
+            rehash(slotKeys.length * 2);
+        }
+
+        int row = rowCount++;
+        playerIds[row] = playerId;
+        insertSlot(playerId, row);
+        return row;
+    }
+
+    private void insertSlot(long playerId, int row) {
+        int mask = slotKeys.length - 1;
+        int slot = hash(playerId) & mask;
+        while (slotRows[slot] != 0) {
+            slot = (slot + 1) & mask;
+        }
+        slotKeys[slot] = playerId;
+        slotRows[slot] = row + 1;
+    }
+
+    private void rehash(int capacity) {
+        slotKeys = new long[capacity];
+        slotRows = new int[capacity];
+        for (int row = 0; row < rowCount; row++) {
+            insertSlot(playerIds[row], row);
+        }
+    }
+
+    private void resizeRows(int capacity) {
+        playerIds = playerIds == null ? new long[capacity] : Arrays.copyOf(playerIds, capacity);
+        totalKills = grow(totalKills, capacity);
+        totalDeaths = grow(totalDeaths, capacity);
+        matchesWon = grow(matchesWon, capacity);
+        rankLevels = grow(rankLevels, capacity);
+        matchesPlayed = grow(matchesPlayed, capacity);
+    }
+
+    private static int[] grow(int[] column, int capacity) {
+        return column == null ? new int[capacity] : Arrays.copyOf(column, capacity);
+    }
+
+    // Spread the bits of the ID so sequential IDs don't cluster (same as PlayerStatsStore)
+    private static int hash(long key) {
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        return (int) key;
+    }
+
+    /**
+     * Convert the stat names the API accepts into the ones we index
+     *
+     * @param stat The stat name from the request
+     * @return One of SUPPORTED_STATS (defaults to "kills")
+     */
+    public static String normalizeStat(String stat) {
+        switch (stat != null ? stat.toLowerCase() : "kills") {
+            case "kd":
+            case "kdratio":
+                return "kd";
+            case "wins":
+            case "matcheswon":
+                return "wins";
+            case "deaths":
+                return "deaths";
+            case "rank":
+            case "ranklevel":
+            case "accuracy": // Using rank as proxy (same as the DAO)
+                return "rank";
+            default:
+                return "kills";
+        }
+    }
+
+    /**
+     * Read the value we sort by for a stat
+     * Missing values count as 0 so new players can still be ranked
+     */
+    static double statValue(String stat, PlayerStats stats) {
+        switch (stat) {
+            case "kd":
+                return kd(valueOrZero(stats.getTotalKills()), valueOrZero(stats.getTotalDeaths()));
+            case "wins":
+                return valueOrZero(stats.getMatchesWon());
+            case "deaths":
+                return valueOrZero(stats.getTotalDeaths());
+            case "rank":
+                return valueOrZero(stats.getRankLevel());
+            default:
+                return valueOrZero(stats.getTotalKills());
+        }
+    }
+
+    private static int valueOrZero(Integer value) {
+        return value != null ? value : 0;
+    }
+
+    // Same rule as PlayerStats.getKdRatio(): no deaths means K/D = kills
+    private static double kd(int kills, int deaths) {
+        return deaths > 0 ? (double) kills / deaths : kills;
+    }
+
+    /**
+     * One position in a leaderboard
+     * Sorted by value (highest first), ties broken by player ID
+     */
+    static final class Entry implements Comparable<Entry> {
+        final double value;
+        final long playerId;
+
+        Entry(double value, long playerId) {
+            this.value = value;
+            this.playerId = playerId;
+        }
+
+        @Override
+        public int compareTo(Entry other) {
+            int byValue = Double.compare(other.value, value);
+            return byValue != 0 ? byValue : Long.compare(playerId, other.playerId);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Entry)) {
+                return false;
+            }
+            Entry other = (Entry) o;
+            return Double.compare(value, other.value) == 0 && playerId == other.playerId;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(value, playerId);
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,145 @@
+// Package: com.gamingroom.gameauth.halo.service
+// This class keeps ready-to-send JSON for each leaderboard
+
+package com.gamingroom.gameauth.halo.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.dropwizard.lifecycle.Managed;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * LeaderboardSnapshots - Pre-built leaderboard responses
+ *
+ * The leaderboard is the most requested public endpoint, but it only
+ * changes when matches finish. So instead of turning PlayerStats into
+ * JSON on every request, a background thread does it every few seconds:
+ *
+ * 1. Build the default-size leaderboard for every stat
+ * 2. Serialize it once to UTF-8 JSON bytes and compute an ETag
+ * 3. Swap the whole set of snapshots in with one volatile write
+ *
+ * Requests then just read the volatile field and write the bytes out.
+ * Clients that send If-None-Match with the current ETag get a 304.
+ *
+ * Registered with Dropwizard's lifecycle so the thread starts and stops
+ * with the server.
+ */
+public class LeaderboardSnapshots implements Managed {
+    private static final Logger LOGGER = LoggerFactory.getLogger(LeaderboardSnapshots.class);
+
+    // Snapshots are built for the endpoint's default page size
+    public static final int SNAPSHOT_LIMIT = 50;
+
+    private final HaloGameService gameService;
+    private final ObjectMapper objectMapper;
+    private final long refreshSeconds;
+    private final ScheduledExecutorService executor;
+
+    // Stat name -> latest snapshot (replaced as a whole, never modified)
+    private volatile Map<String, Snapshot> snapshots = Collections.emptyMap();
+
+    /**
+     * @param gameService Where the leaderboards come from
+     * @param objectMapper Dropwizard's JSON mapper (same output as normal responses)
+     * @param refreshSeconds How often to rebuild the snapshots
+     */
+    public LeaderboardSnapshots(HaloGameService gameService, ObjectMapper objectMapper,
+                                long refreshSeconds) {
+        this.gameService = gameService;
+        this.objectMapper = objectMapper;
+        this.refreshSeconds = refreshSeconds;
+        this.executor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "leaderboard-snapshots");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @Override
+    public void start() {
+        // Build once right away so the first requests don't miss
+        refresh();
+        executor.scheduleAtFixedRate(this::refresh, refreshSeconds, refreshSeconds, TimeUnit.SECONDS);
+    }
+
+    @Override
+    public void stop() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Get the latest snapshot for a stat
+     *
+     * @param stat One of LeaderboardIndex.SUPPORTED_STATS
+     * @return The snapshot, or null if none has been built yet
+     */
+    public Snapshot get(String stat) {
+        return snapshots.get(stat);
+    }
+
+    /**
+     * Rebuild every snapshot and swap them in
+     */
+    void refresh() {
+        try {
+            Map<String, Snapshot> fresh = new HashMap<>();
+            for (String stat : LeaderboardIndex.SUPPORTED_STATS) {
+                byte[] json = objectMapper.writeValueAsBytes(
+                    gameService.getLeaderboard(stat, SNAPSHOT_LIMIT));
+                fresh.put(stat, new Snapshot(json, etagFor(json)));
+            }
+            snapshots = Collections.unmodifiableMap(fresh);
+        } catch (JsonProcessingException | RuntimeException e) {
+            // Keep serving the previous snapshots and try again next time
+            LOGGER.warn("Could not refresh leaderboard snapshots", e);
+        }
+    }
+
+    /**
+     * ETag = hash of the JSON, so it only changes when the content does
+     */
+    private static String etagFor(byte[] json) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-1").digest(json);
+            StringBuilder hex = new StringBuilder();
+            for (int i = 0; i < 8; i++) {
+                hex.append(String.format("%02x", digest[i]));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-1 not available", e);
+        }
+    }
+
+    /**
+     * One pre-built leaderboard response
+     */
+    public static final class Snapshot {
+        private final byte[] json;
+        private final String etag;
+
+        Snapshot(byte[] json, String etag) {
+            this.json = json;
+            this.etag = etag;
+        }
+
+        /**
+         * @return A copy of the UTF-8 JSON body (copied so callers can't change the shared bytes)
+         */
+        public byte[] getJson() {
+            return json.clone();
+        }
+
+        public String getEtag() {
+            return etag;
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,244 @@
+// Package: com.gamingroom.gameauth.halo.service
+// This class follows matches while they are being played, one kill at a time
+
+package com.gamingroom.gameauth.halo.service;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.gamingroom.gameauth.halo.models.KillEvent;
+import com.gamingroom.gameauth.halo.models.LiveScoreboard;
+import com.gamingroom.gameauth.halo.models.MatchResult;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * LiveMatches - Kill feeds sent during the match instead of all at the end
+ *
+ * Game servers used to send everything in one /match/complete call, so
+ * all the work for a match happened in one spike when it ended, and
+ * nobody could see a match until it was over. Now a server can stream
+ * each kill as it happens:
+ *
+ * 1. Kill events come in as newline-delimited JSON, either as short
+ *    batches or one chunked request held open for the whole match. Each
+ *    event is applied as soon as it is read
+ * 2. Every match in progress keeps a MedalEngine state, so sprees,
+ *    multi-kills and the scoreboard are always up to date (scoreboard())
+ * 3. /match/complete is the finalize step: the game server can leave out
+ *    killEvents and the feed we already have is attached to the result
+ *    (so it is kept in the match log), along with the medals the live
+ *    state already earned. Only the match-end medals are added then, so
+ *    the saved medals are exactly what spectators saw and the feed is
+ *    never evaluated again
+ *
+ * Matches nobody completes (server crashed) are dropped after
+ * IDLE_MINUTES without an event.
+ */
+public class LiveMatches {
+    // Most matches followed at once, and how long a silent match is kept
+    public static final int MAX_LIVE_MATCHES = 10_000;
+    public static final int IDLE_MINUTES = 30;
+
+    // Most kill events kept for one match (more are skipped)
+    public static final int MAX_EVENTS_PER_MATCH = 20_000;
+
+    private final ObjectMapper objectMapper;
+    private final MedalEngine medalEngine;
+
+    private final Cache<String, LiveMatch> matches = Caffeine.newBuilder()
+                                                             .maximumSize(MAX_LIVE_MATCHES)
+                                                             .expireAfterAccess(IDLE_MINUTES, TimeUnit.MINUTES)
+                                                             .build();
+
+    private final Meter killEvents = new Meter();
+
+    /**
+     * @param objectMapper Dropwizard's JSON mapper
+     * @param medalEngine The medal rules (the same ones used when the match is saved)
+     */
+    public LiveMatches(ObjectMapper objectMapper, MedalEngine medalEngine) {
+        this.objectMapper = objectMapper;
+        this.medalEngine = medalEngine;
+    }
+
+    /**
+     * Read kill events for a match and apply each one as it arrives
+     *
+     * @param matchId The match the events belong to
+     * @param in One KillEvent JSON object per line
+     * @return How many events were applied and skipped
+     */
+    public FeedResult readEvents(String matchId, InputStream in) {
+        LiveMatch match = matches.get(matchId, id -> new LiveMatch(medalEngine.newMatch()));
+        FeedResult result = new FeedResult();
+
+        try (JsonParser parser = objectMapper.getFactory().createParser(in)) {
+            JsonToken token;
+            while ((token = parser.nextToken()) != null) {
+                int line = parser.getTokenLocation().getLineNr();
+                if (token != JsonToken.START_OBJECT) {
+                    result.error = "Stopped reading at line " + line + ": expected a kill event object";
+                    break;
+                }
+
+                // Read the whole event first, so one with bad fields doesn't
+                // leave the parser in the middle of it
+                JsonNode node = objectMapper.readTree(parser);
+                KillEvent event;
+                try {
+                    event = objectMapper.treeToValue(node, KillEvent.class);
+                } catch (IOException e) {
+                    result.skipped++;
+                    continue;
+                }
+
+                if (!MedalEngine.isComplete(event)) {
+                    result.skipped++;
+                } else if (match.add(event)) {
+                    result.accepted++;
+                    killEvents.mark();
+                } else {
+                    result.skipped++; // Too many events for one match
+                }
+            }
+        } catch (IOException e) {
+            // Malformed JSON or the game server went away - keep what we have
+            result.error = "Stopped reading: " + e.getMessage();
+        }
+
+        return result;
+    }
+
+    /**
+     * The scoreboard of a match in progress
+     *
+     * @param matchId The match ID
+     * @return The scoreboard, or null if we have no kill feed for the match
+     */
+    public LiveScoreboard scoreboard(String matchId) {
+        LiveMatch match = matches.getIfPresent(matchId);
+        if (match == null) {
+            return null;
+        }
+
+        LiveScoreboard scoreboard = new LiveScoreboard();
+        scoreboard.setMatchId(matchId);
+        synchronized (match) {
+            MedalEngine.MatchMedals medals = match.medals;
+            scoreboard.setKillEvents(match.events.size());
+            if (!match.events.isEmpty()) {
+                scoreboard.setLastEventMillis(match.events.get(match.events.size() - 1).getTimeMillis());
+            }
+            for (Long playerId : medals.getPlayerIds()) {
+                scoreboard.getPlayers().add(new LiveScoreboard.LivePlayer(
+                    playerId, medals.getKills(playerId), medals.getDeaths(playerId),
+                    medals.getSpree(playerId), new ArrayList<>(medals.getMedals(playerId))));
+            }
+        }
+
+        // Most kills first, fewest deaths breaks ties
+        scoreboard.getPlayers().sort(Comparator.comparingInt(LiveScoreboard.LivePlayer::getKills).reversed()
+                                               .thenComparingInt(LiveScoreboard.LivePlayer::getDeaths));
+        return scoreboard;
+    }
+
+    /**
+     * Finalize step for /match/complete: if the result has no kill feed,
+     * attach the one streamed during the match and every player's medals
+     * from its live state (result.isLiveMedals() is then true)
+     *
+     * @param result The final match result
+     */
+    public void attachFeed(MatchResult result) {
+        if (result.getKillEvents() != null && !result.getKillEvents().isEmpty()) {
+            return; // The game server sent the whole feed itself
+        }
+        LiveMatch match = matches.getIfPresent(result.getMatchId());
+        if (match == null) {
+            return;
+        }
+        synchronized (match) {
+            result.setKillEvents(new ArrayList<>(match.events));
+            if (match.events.isEmpty() || result.getPlayerStats() == null) {
+                return; // Nothing usable came in - medals are estimated from totals
+            }
+            Map<Long, List<String>> medals = match.medals.finish();
+            for (MatchResult.PlayerMatchStats player : result.getPlayerStats()) {
+                player.setMedalsEarned(medals.getOrDefault(player.getPlayerId(), new ArrayList<>()));
+            }
+            result.setLiveMedals(true);
+        }
+    }
+
+    /**
+     * Stop following a match (it was accepted, so the feed is no longer needed)
+     *
+     * @param matchId The match ID
+     */
+    public void finish(String matchId) {
+        matches.invalidate(matchId);
+    }
+
+    /**
+     * Publish the kill event rate and how many matches are being followed
+     *
+     * @param metrics Dropwizard's metric registry
+     */
+    public void registerMetrics(MetricRegistry metrics) {
+        metrics.register(MetricRegistry.name(LiveMatches.class, "killEvents"), killEvents);
+        metrics.register(MetricRegistry.name(LiveMatches.class, "liveMatches"),
+                         (Gauge<Long>) matches::estimatedSize);
+    }
+
+    /**
+     * What happened to one batch of kill events
+     */
+    public static final class FeedResult {
+        private int accepted;
+        private int skipped;     // Missing victimId/timeMillis, unreadable, or over MAX_EVENTS_PER_MATCH
+        private String error;    // Why reading stopped early (null if the whole body was read)
+
+        public int getAccepted() {
+            return accepted;
+        }
+
+        public int getSkipped() {
+            return skipped;
+        }
+
+        public String getError() {
+            return error;
+        }
+    }
+
+    /**
+     * The kill feed and medal state of one match (guarded by its own lock,
+     * since a server may send batches on more than one connection)
+     */
+    private static final class LiveMatch {
+        final MedalEngine.MatchMedals medals;
+        final List<KillEvent> events = new ArrayList<>();
+
+        LiveMatch(MedalEngine.MatchMedals medals) {
+            this.medals = medals;
+        }
+
+        synchronized boolean add(KillEvent event) {
+            if (events.size() >= MAX_EVENTS_PER_MATCH) {
+                return false;
+            }
+            events.add(event);
+            medals.onKill(event);
+            return true;
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,398 @@
+// Package: com.gamingroom.gameauth.halo.service
+// This class takes finished matches off the request threads and saves them in the background
+
+package com.gamingroom.gameauth.halo.service;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import com.gamingroom.gameauth.halo.models.MatchResult;
+import io.dropwizard.lifecycle.Managed;
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * MatchIngestQueue - Background processing for POST /halo/match/complete
+ *
+ * Saving a match (stats, medals, XP, leaderboards) used to happen on the
+ * Jetty request thread. When a playlist rotates, hundreds of matches end
+ * at once and tie up the threads players need for reads. Instead:
+ *
+ * 1. The endpoint puts the match in a fixed-size RingBuffer and answers
+ *    202 Accepted straight away (or 503 if the buffer is full)
+ * 2. A few worker threads take up to MAX_BATCH matches at a time and
+ *    save them with one processMatchResults call (one transaction)
+ * 3. On shutdown we stop accepting, then keep working until the buffer
+ *    is empty so no accepted match is lost
+ *
+ * With a MatchLog, each match is written to disk before it is queued
+ * and marked done once saved, so a crash doesn't lose accepted matches
+ * either - start() saves whatever the log says was never saved before
+ * taking new ones.
+ *
+ * A match that fails to save goes back in the queue after a delay that
+ * doubles each time (RETRY_DELAY_MILLIS, then twice that...), so a short
+ * database outage doesn't use up its attempts. After MAX_ATTEMPTS it is
+ * copied to the match log's dead-letter file and marked done, so it stops
+ * holding its log segment. One still waiting for a retry at shutdown
+ * stays pending in the log and is replayed on the next start.
+ *
+ * Metrics: queue depth, lag (accepted -> saved), accepted/rejected/processed/failed rates.
+ */
+public class MatchIngestQueue implements Managed {
+    private static final Logger LOGGER = LoggerFactory.getLogger(MatchIngestQueue.class);
+
+    // Most matches one worker saves in one go
+    public static final int MAX_BATCH = 32;
+
+    // How many times a match is tried before it goes to the dead-letter file
+    public static final int MAX_ATTEMPTS = 3;
+
+    // How long before the first retry of a failed match (doubles each attempt)
+    private static final long RETRY_DELAY_MILLIS = 500;
+
+
+    // How long shutdown waits for the workers to empty the buffer
+    private static final long DRAIN_TIMEOUT_MILLIS = 30000;
+
+    private final HaloGameService gameService;
+    private final MatchLog matchLog;
+    private final RingBuffer<Pending> buffer;
+    private final int workerCount;
+    private final List<Thread> workers = new ArrayList<>();
+    private final ScheduledExecutorService retries;
+
+    // One permit per match put in the buffer (and one per worker on stop),
+    // so idle workers sleep until there's something to do
+    private final Semaphore queued = new Semaphore(0);
+
+    // accepting: submit() takes new matches. running: workers keep going
+    private volatile boolean accepting;
+    private volatile boolean running;
+
+    private final Meter accepted = new Meter();
+    private final Meter rejected = new Meter();
+    private final Meter processed = new Meter();
+    private final Meter failed = new Meter();
+    private final Timer lag = new Timer();
+
+    /**
+     * @param gameService Does the actual saving
+     * @param matchLog Write-ahead log for accepted matches (can be null to skip it)
+     * @param capacity How many matches can wait at once (rounded up to a power of two)
+     * @param workerCount How many threads save matches
+     */
+    public MatchIngestQueue(HaloGameService gameService, MatchLog matchLog, int capacity, int workerCount) {
+        this.gameService = gameService;
+        this.matchLog = matchLog;
+        this.buffer = new RingBuffer<>(capacity);
+        this.workerCount = workerCount;
+        this.retries = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "match-ingest-retry");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @Override
+    public void start() {
+        // Running before the replay, so a replayed match that fails gets its
+        // retries too (they wait in the buffer until the workers start)
+        running = true;
+
+        // Save what was accepted but never saved before the last shutdown
+        if (matchLog != null) {
+            List<Pending> batch = new ArrayList<>(MAX_BATCH);
+            for (MatchLog.Entry entry : matchLog.takeUnsaved()) {
+                batch.add(new Pending(entry.getMatch(), entry, System.nanoTime(), 1));
+                if (batch.size() == MAX_BATCH) {
+                    process(batch);
+                }
+            }
+            if (!batch.isEmpty()) {
+                process(batch);
+            }
+        }
+
+        accepting = true;
+        for (int i = 0; i < workerCount; i++) {
+            Thread worker = new Thread(this::work, "match-ingest-" + i);
+            worker.setDaemon(true);
+            worker.start();
+            workers.add(worker);
+        }
+    }
+
+    @Override
+    public void stop() throws InterruptedException {
+        // Refuse new matches, then let the workers finish what's already queued
+        accepting = false;
+        running = false;
+        int waitingForRetry = retries.shutdownNow().size();
+        if (waitingForRetry > 0) {
+            LOGGER.warn("Stopped with {} match results waiting to be retried", waitingForRetry);
+        }
+
+        queued.release(workerCount); // Wake the idle workers so they see we're stopping
+
+        long deadline = System.currentTimeMillis() + DRAIN_TIMEOUT_MILLIS;
+        for (Thread worker : workers) {
+            worker.join(Math.max(1, deadline - System.currentTimeMillis()));
+        }
+
+        // A request that got in just as we stopped may have added one more
+        if (System.currentTimeMillis() < deadline) {
+            List<Pending> batch = new ArrayList<>(MAX_BATCH);
+            while (drainTo(batch) > 0) {
+                process(batch);
+            }
+        }
+
+        if (!buffer.isEmpty()) {
+            LOGGER.warn("Stopped with {} match results still queued", buffer.size());
+        }
+    }
+
+    /**
+     * Queue a finished match to be saved in the background
+     *
+     * @param match The match result
+     * @return true if queued, false if the queue is full, shutting down,
+     *         or the match couldn't be written to the match log
+     */
+    public boolean submit(MatchResult match) {
+        if (!accepting) {
+            rejected.mark();
+            return false;
+        }
+
+        // On disk first, so it survives a crash once we've said yes
+        MatchLog.Entry logEntry = null;
+        if (matchLog != null) {
+            try {
+                logEntry = matchLog.append(match);
+            } catch (IOException e) {
+                LOGGER.error("Could not write match result {} to the match log", match.getMatchId(), e);
+                rejected.mark();
+                return false;
+            }
+        }
+
+        if (!offer(new Pending(match, logEntry, System.nanoTime(), 1))) {
+            // The game server will send it again, so don't replay it
+            if (logEntry != null) {
+                matchLog.markDone(logEntry);
+            }
+            rejected.mark();
+            return false;
+        }
+        accepted.mark();
+        return true;
+    }
+
+    /**
+     * Publish queue depth, lag and accept/reject/failure rates
+     *
+     * @param metrics Dropwizard's metric registry
+     */
+    public void registerMetrics(MetricRegistry metrics) {
+        metrics.register(MetricRegistry.name(MatchIngestQueue.class, "depth"), (Gauge<Integer>) buffer::size);
+        metrics.register(MetricRegistry.name(MatchIngestQueue.class, "capacity"),
+                         (Gauge<Integer>) buffer::getCapacity);
+        metrics.register(MetricRegistry.name(MatchIngestQueue.class, "lag"), lag);
+        metrics.register(MetricRegistry.name(MatchIngestQueue.class, "accepted"), accepted);
+        metrics.register(MetricRegistry.name(MatchIngestQueue.class, "rejected"), rejected);
+        metrics.register(MetricRegistry.name(MatchIngestQueue.class, "processed"), processed);
+        metrics.register(MetricRegistry.name(MatchIngestQueue.class, "failed"), failed);
+    }
+
+    /**
+     * Worker loop: save whatever is queued, sleep until offer() or stop()
+     * wakes us when there's nothing
+     */
+    private void work() {
+        List<Pending> batch = new ArrayList<>(MAX_BATCH);
+        while (true) {
+            if (drainTo(batch) > 0) {
+                process(batch);
+            } else if (!running) {
+                return; // Shutting down and nothing left
+            } else {
+                // A permit left over from matches another worker already took
+                // just means one more look at an empty buffer
+                queued.acquireUninterruptibly();
+            }
+        }
+    }
+
+    /**
+     * Put a match in the buffer and wake a worker for it
+     *
+     * @return false if the buffer is full
+     */
+    private boolean offer(Pending pending) {
+        if (!buffer.offer(pending)) {
+            return false;
+        }
+        queued.release();
+        return true;
+    }
+
+    /**
+     * Move up to MAX_BATCH matches from the buffer into batch
+     *
+     * @return How many were moved
+     */
+    private int drainTo(List<Pending> batch) {
+        Pending pending;
+        while (batch.size() < MAX_BATCH && (pending = buffer.poll()) != null) {
+            batch.add(pending);
+        }
+        return batch.size();
+    }
+
+    /**
+     * Save one batch and clear it
+     */
+    private void process(List<Pending> batch) {
+        List<MatchResult> matches = new ArrayList<>(batch.size());
+        for (Pending pending : batch) {
+            matches.add(pending.match);
+        }
+
+        Set<String> failedMatchIds;
+        try {
+            failedMatchIds = gameService.processMatchResults(matches);
+        } catch (RuntimeException e) {
+            // Never let one bad match stop the worker or lose the rest of the batch
+            failedMatchIds = new HashSet<>();
+            if (matches.size() == 1) {
+                LOGGER.warn("Saving match result {} failed", matches.get(0).getMatchId(), e);
+                failedMatchIds.add(matches.get(0).getMatchId());
+            } else {
+                for (MatchResult match : matches) {
+                    try {
+                        failedMatchIds.addAll(gameService.processMatchResults(Collections.singletonList(match)));
+                    } catch (RuntimeException matchError) {
+                        LOGGER.warn("Saving match result {} failed", match.getMatchId(), matchError);
+                        failedMatchIds.add(match.getMatchId());
+                    }
+                }
+            }
+        }
+
+        long now = System.nanoTime();
+        for (Pending pending : batch) {
+            if (failedMatchIds.contains(pending.match.getMatchId())) {
+                failed.mark();
+                retry(pending);
+                continue;
+            }
+            lag.update(now - pending.acceptedNanos, TimeUnit.NANOSECONDS);
+            if (pending.logEntry != null) {
+                matchLog.markDone(pending.logEntry);
+            }
+            processed.mark();
+        }
+        batch.clear();
+    }
+
+    /**
+     * Put a match that failed to save back in the queue after a delay, or
+     * give up on it once it has had all its attempts
+     */
+    private void retry(Pending pending) {
+        if (pending.attempts >= MAX_ATTEMPTS) {
+            giveUp(pending);
+            return;
+        }
+        if (!running) {
+            leaveForReplay(pending);
+            return;
+        }
+
+        Pending next = new Pending(pending.match, pending.logEntry, pending.acceptedNanos, pending.attempts + 1);
+        long delay = RETRY_DELAY_MILLIS << (pending.attempts - 1);
+        try {
+            retries.schedule(() -> requeue(next), delay, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            leaveForReplay(pending); // Stopped while we were deciding
+        }
+    }
+
+    /**
+     * Retry timer: back in the buffer, or wait another round if it is full
+     * (a full buffer isn't the match's fault, so that isn't an attempt)
+     */
+    private void requeue(Pending pending) {
+        if (!running) {
+            leaveForReplay(pending);
+        } else if (!offer(pending)) {
+            try {
+                retries.schedule(() -> requeue(pending), RETRY_DELAY_MILLIS, TimeUnit.MILLISECONDS);
+            } catch (RejectedExecutionException e) {
+                leaveForReplay(pending);
+            }
+        }
+    }
+
+    /**
+     * Out of attempts: move it to the dead-letter file so it stops holding
+     * the match log
+     */
+    private void giveUp(Pending pending) {
+        // Not saved, so if the game server sends it again it must not look like a duplicate
+        gameService.releaseMatchId(pending.match.getMatchId());
+        if (pending.logEntry == null) {
+            LOGGER.error("Giving up on match result {} after {} attempts", pending.match.getMatchId(),
+                         pending.attempts);
+            return;
+        }
+
+        try {
+            matchLog.deadLetter(pending.logEntry);
+            LOGGER.error("Giving up on match result {} after {} attempts, moved it to the dead-letter file",
+                         pending.match.getMatchId(), pending.attempts);
+        } catch (IOException e) {
+            LOGGER.error("Giving up on match result {} after {} attempts, and could not write it to the "
+                         + "dead-letter file (it will be replayed from the match log)",
+                         pending.match.getMatchId(), pending.attempts, e);
+        }
+    }
+
+    /**
+     * Shutting down before it was saved: its log entry stays pending, so
+     * it is replayed (with fresh attempts) on the next start
+     */
+    private void leaveForReplay(Pending pending) {
+        gameService.releaseMatchId(pending.match.getMatchId());
+        LOGGER.warn("Match result {} was not saved before shutdown{}", pending.match.getMatchId(),
+                    pending.logEntry != null ? " (it will be replayed from the match log)" : "");
+    }
+
+    /**
+     * A queued match, its match log entry (null without a log), when we
+     * accepted it (for the lag metric) and which attempt this is
+     */
+    private static final class Pending {
+        final MatchResult match;
+        final MatchLog.Entry logEntry;
+        final long acceptedNanos;
+        final int attempts;
+
+        Pending(MatchResult match, MatchLog.Entry logEntry, long acceptedNanos, int attempts) {
+            this.match = match;
+            this.logEntry = logEntry;
+            this.acceptedNanos = acceptedNanos;
+            this.attempts = attempts;
+        }
+    }
+}
\ No newline at end of file
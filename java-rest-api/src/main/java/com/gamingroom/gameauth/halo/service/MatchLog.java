@@ -0,0 +1,623 @@
+// Package: com.gamingroom.gameauth.halo.service
+// This class writes every accepted match to disk before we answer the game server
+
+package com.gamingroom.gameauth.halo.service;
+
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.gamingroom.gameauth.halo.models.MatchResult;
+import io.dropwizard.lifecycle.Managed;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * MatchLog - A write-ahead log of accepted match results
+ *
+ * Matches wait in memory (MatchIngestQueue) before they reach the
+ * database, so a crash would lose them after we already said 202. Now
+ * every match is appended to a log file first:
+ *
+ * 1. Files are fixed-size segments mapped into memory, so appending is
+ *    just copying bytes - each record is [length][CRC32][type][JSON]
+ * 2. Group commit: one flusher thread fsyncs the segment while new
+ *    appends keep coming in, and every append that was in before the
+ *    fsync started is released by it. Under load one fsync covers many
+ *    matches instead of one fsync each
+ * 3. Once a match is saved a small "done" record is appended (no fsync
+ *    needed - worst case it is replayed again). It names the match record
+ *    by where it is in the log (segment ID + offset), not by match ID: a
+ *    match we refused is marked done too, and the game server's retry of
+ *    it has the same match ID but is a different record that still needs
+ *    saving
+ * 4. On startup every match record without a "done" record is handed back
+ *    to be processed again, and old segments are deleted once all of their
+ *    matches are saved
+ * 5. A match that keeps failing to save is copied to dead-letter.ndjson
+ *    and marked done, so it doesn't hold on to its segment forever
+ *
+ * A torn record at the end of a segment (crash mid-write) fails its
+ * CRC check and reading stops there; that match was never acknowledged.
+ *
+ * If an fsync fails, the appends it covered fail (the game server gets a
+ * 503 and sends the match again, so they are marked done straight away
+ * and never replayed) and the flusher tries again after
+ * FSYNC_RETRY_MILLIS. Until one works getFsyncFailure() returns the error,
+ * so the health check reports the log as down.
+ */
+public class MatchLog implements Managed {
+    private static final Logger LOGGER = LoggerFactory.getLogger(MatchLog.class);
+
+    // Record types. Type 2 was a "saved" record keyed by match ID; logs
+    // written before DONE still have them, and they are ignored (those
+    // matches are replayed once and refused by the match_id unique constraint)
+    private static final byte MATCH = 1;
+    private static final byte DONE = 3;
+
+    // segment ID (long) + offset (int) of the match record a DONE record is for
+    private static final int DONE_BYTES = 12;
+
+    // length (int) + CRC (int) + type (byte)
+    private static final int HEADER_BYTES = 9;
+
+    private static final String SEGMENT_PREFIX = "matches-";
+    private static final String SEGMENT_SUFFIX = ".log";
+
+    // Matches that could never be saved end up here
+    private static final String DEAD_LETTER_FILE = "dead-letter.ndjson";
+
+    // How long the flusher waits before trying again after a failed fsync
+    private static final long FSYNC_RETRY_MILLIS = 1000;
+
+    private final Path directory;
+    private final int segmentBytes;
+    private final ObjectMapper objectMapper;
+
+    // Segment ID -> segment, oldest first (the last one is the one we append to)
+    private final TreeMap<Long, Segment> segments = new TreeMap<>();
+    private Segment active;
+
+    // Finished segments waiting to be unmapped and deleted. The flusher
+    // does that between fsyncs, so it never unmaps one it is forcing
+    private final Queue<Segment> retired = new ConcurrentLinkedQueue<>();
+
+    // Matches found on startup that were never saved
+    private List<Entry> unsaved = new ArrayList<>();
+
+    // Group commit: appends count up "appended", the flusher moves "durable"
+    // up to it after each fsync (both guarded by flushLock for waiting).
+    // A failed fsync fails every append up to "failedThrough"
+    private final Object flushLock = new Object();
+    private volatile long appended;
+    private long durable;
+    private long failedThrough;
+    private IOException flushFailure;
+    private volatile boolean running;
+    private Thread flusher;
+
+    private final Object deadLetterLock = new Object();
+
+    // Set once stop() has unmapped the segments (guarded by this)
+    private boolean closed;
+
+    private final Timer fsyncs = new Timer();
+    private final Meter fsyncFailures = new Meter();
+    private final Histogram matchesPerFsync = new Histogram(new com.codahale.metrics.ExponentiallyDecayingReservoir());
+
+    /**
+     * @param directory Where the segment files live
+     * @param segmentBytes Size of each segment file
+     * @param objectMapper Dropwizard's JSON mapper (matches are stored as JSON)
+     */
+    public MatchLog(Path directory, int segmentBytes, ObjectMapper objectMapper) {
+        this.directory = directory;
+        this.segmentBytes = segmentBytes;
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * Read the existing segments, then start a fresh one to append to
+     */
+    @Override
+    public void start() throws IOException {
+        Files.createDirectories(directory);
+
+        long nextId = 1;
+        List<Entry> found = new ArrayList<>();
+        Map<Long, Set<Integer>> done = new HashMap<>();
+        for (Path file : listSegments()) {
+            Segment segment = new Segment(segmentId(file), file, null);
+            segment.sealed = true;
+            segments.put(segment.id, segment);
+            read(segment, found, done);
+            nextId = segment.id + 1;
+        }
+
+        for (Entry entry : found) {
+            if (!done.getOrDefault(entry.segmentId, Collections.emptySet()).contains(entry.offset)) {
+                unsaved.add(entry);
+                segments.get(entry.segmentId).pending++;
+            }
+        }
+        if (!unsaved.isEmpty()) {
+            LOGGER.info("Match log has {} match results that were never saved", unsaved.size());
+        }
+
+        active = openSegment(nextId);
+        deleteFinishedSegments();
+
+        running = true;
+        flusher = new Thread(this::flushLoop, "match-log-flush");
+        flusher.setDaemon(true);
+        flusher.start();
+    }
+
+    @Override
+    public void stop() throws InterruptedException {
+        running = false;
+        synchronized (flushLock) {
+            flushLock.notifyAll();
+        }
+        flusher.join();
+
+        // Make sure the last "done" records are on disk too, then let go
+        // of the files (write() refuses every record once we're closed)
+        synchronized (this) {
+            active.buffer.force();
+            for (Segment segment : segments.values()) {
+                if (segment.buffer != null) {
+                    unmap(segment.buffer);
+                }
+            }
+            closed = true;
+        }
+        deleteRetiredSegments();
+    }
+
+    /**
+     * Write a match to the log and wait until it is on disk
+     *
+     * @param match The match result
+     * @return The log entry (pass it to markDone once the match is saved)
+     * @throws IOException If the log is closed or the disk write failed
+     */
+    public Entry append(MatchResult match) throws IOException {
+        byte[] json = objectMapper.writeValueAsBytes(match);
+
+        long sequence;
+        Entry entry;
+        synchronized (this) {
+            int offset = write(MATCH, json);
+            active.pending++;
+            entry = new Entry(match, active.id, offset);
+            sequence = ++appended;
+        }
+
+        // Wake the flusher and wait for the fsync that covers this record
+        IOException failure = null;
+        synchronized (flushLock) {
+            flushLock.notifyAll();
+            while (durable < sequence) {
+                if (failedThrough >= sequence) {
+                    failure = flushFailure;
+                    break;
+                }
+                if (!running) {
+                    failure = new IOException("Match log closed before the match was written");
+                    break;
+                }
+                try {
+                    flushLock.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    failure = new IOException("Interrupted while writing the match log", e);
+                    break;
+                }
+            }
+        }
+
+        // The game server gets a 503 and sends it again, so the record may
+        // still reach the disk but must not be replayed, and must not keep
+        // its segment from being deleted (outside flushLock - markDone
+        // takes this lock, and the lock order is this -> flushLock)
+        if (failure != null) {
+            markDone(entry);
+            throw failure;
+        }
+        return entry;
+    }
+
+    /**
+     * Record that this match record no longer needs replaying (it was saved,
+     * or we told the game server to send it again - the retry is appended as
+     * a new record and is not affected)
+     *
+     * @param entry What append returned
+     */
+    public synchronized void markDone(Entry entry) {
+        try {
+            write(DONE, ByteBuffer.allocate(DONE_BYTES).putLong(entry.segmentId).putInt(entry.offset).array());
+        } catch (IOException e) {
+            // Worst case the match is replayed after a restart
+            LOGGER.warn("Could not mark match {} as saved in the match log", entry.match.getMatchId(), e);
+        }
+
+        Segment segment = segments.get(entry.segmentId);
+        if (segment != null) {
+            segment.pending--;
+        }
+        deleteFinishedSegments();
+    }
+
+    /**
+     * Give up on a match: append it to the dead-letter file (one JSON match
+     * per line, the same format POST /halo/match/bulk reads, so it can be
+     * imported again by hand) and mark it done so it stops holding its
+     * segment and isn't replayed on every start
+     *
+     * @param entry What append returned
+     * @throws IOException If the dead-letter file couldn't be written (the
+     *         match stays pending and is replayed on the next start)
+     */
+    public void deadLetter(Entry entry) throws IOException {
+        byte[] json = objectMapper.writeValueAsBytes(entry.match);
+        ByteBuffer line = ByteBuffer.allocate(json.length + 1);
+        line.put(json).put((byte) '\n').flip();
+
+        synchronized (deadLetterLock) {
+            try (FileChannel channel = FileChannel.open(directory.resolve(DEAD_LETTER_FILE),
+                                                        StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                                                        StandardOpenOption.APPEND)) {
+                while (line.hasRemaining()) {
+                    channel.write(line);
+                }
+                channel.force(false);
+            }
+        }
+        markDone(entry);
+    }
+
+    /**
+     * Hand over the matches found on startup that were never saved
+     * (can only be taken once)
+     *
+     * @return Unsaved matches, in the order they were accepted
+     */
+    public synchronized List<Entry> takeUnsaved() {
+        List<Entry> entries = unsaved;
+        unsaved = new ArrayList<>();
+        return entries;
+    }
+
+    /**
+     * Why the last fsync failed
+     *
+     * @return The error, or null if the last fsync worked
+     */
+    public IOException getFsyncFailure() {
+        synchronized (flushLock) {
+            return durable >= failedThrough ? null : flushFailure;
+        }
+    }
+
+    /**
+     * Publish fsync time and failures, and how many matches each fsync covered
+     *
+     * @param metrics Dropwizard's metric registry
+     */
+    public void registerMetrics(MetricRegistry metrics) {
+        metrics.register(MetricRegistry.name(MatchLog.class, "fsync"), fsyncs);
+        metrics.register(MetricRegistry.name(MatchLog.class, "fsyncFailures"), fsyncFailures);
+        metrics.register(MetricRegistry.name(MatchLog.class, "matchesPerFsync"), matchesPerFsync);
+    }
+
+    /**
+     * Flusher thread: whenever there are appended records that aren't on
+     * disk yet, fsync once and release everyone waiting for them
+     */
+    private void flushLoop() {
+        long flushed = 0;
+        while (true) {
+            synchronized (flushLock) {
+                while (running && appended == flushed && retired.isEmpty()) {
+                    try {
+                        flushLock.wait();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+                if (!running && appended == flushed) {
+                    return;
+                }
+            }
+
+            // Not forcing anything right now, so finished segments can go
+            deleteRetiredSegments();
+            if (appended == flushed) {
+                continue;
+            }
+
+            // Everything up to "target" is in "segment" or an older, already
+            // forced one (rolling over forces the old segment)
+            long target;
+            Segment segment;
+            synchronized (this) {
+                target = appended;
+                segment = active;
+            }
+
+            Timer.Context timing = fsyncs.time();
+            try {
+                segment.buffer.force();
+            } catch (RuntimeException e) {
+                // Fail the appends this fsync covered, then keep going
+                fsyncFailures.mark();
+                LOGGER.error("Could not fsync the match log, trying again in {} ms", FSYNC_RETRY_MILLIS, e);
+                synchronized (flushLock) {
+                    failedThrough = target;
+                    flushFailure = new IOException("Could not fsync the match log", e);
+                    flushLock.notifyAll();
+                }
+                try {
+                    Thread.sleep(FSYNC_RETRY_MILLIS);
+                } catch (InterruptedException interrupted) {
+                    return;
+                }
+                continue;
+            } finally {
+                timing.stop();
+            }
+
+            matchesPerFsync.update(target - flushed);
+            flushed = target;
+            synchronized (flushLock) {
+                durable = target;
+                flushLock.notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Append one record to the active segment, starting a new segment if
+     * it doesn't fit (caller holds the lock)
+     *
+     * @return Where the record starts in the active segment
+     */
+    private int write(byte type, byte[] payload) throws IOException {
+        // New matches stop when we start shutting down, but "done" records
+        // can still be written until the files are unmapped
+        if (closed || (type == MATCH && !running)) {
+            throw new IOException("Match log is closed");
+        }
+        int recordBytes = HEADER_BYTES + payload.length;
+        if (recordBytes > segmentBytes) {
+            throw new IOException("Match result is too big for the match log (" + recordBytes + " bytes)");
+        }
+        if (active.buffer.remaining() < recordBytes) {
+            rollSegment();
+        }
+
+        CRC32 crc = new CRC32();
+        crc.update(type);
+        crc.update(payload);
+
+        // Length goes first, so a record cut off by a crash fails its CRC check
+        MappedByteBuffer buffer = active.buffer;
+        int offset = buffer.position();
+        buffer.putInt(payload.length + 1);
+        buffer.putInt((int) crc.getValue());
+        buffer.put(type);
+        buffer.put(payload);
+        return offset;
+    }
+
+    /**
+     * Seal the active segment and start the next one (caller holds the lock)
+     */
+    private void rollSegment() throws IOException {
+        active.buffer.force();
+        active.sealed = true;
+        active = openSegment(active.id + 1);
+        deleteFinishedSegments();
+    }
+
+    private Segment openSegment(long id) throws IOException {
+        Path file = directory.resolve(String.format("%s%016d%s", SEGMENT_PREFIX, id, SEGMENT_SUFFIX));
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE_NEW,
+                                                    StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            // Mapping past the end grows the file; the new bytes are zeros (= no record)
+            Segment segment = new Segment(id, file, channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentBytes));
+            segments.put(id, segment);
+            return segment;
+        }
+    }
+
+    /**
+     * Retire the oldest segments once every match in them is saved
+     * ("done" records are always in the same or a later segment than their
+     * match, so deleting from the front never loses one we still need)
+     */
+    private void deleteFinishedSegments() {
+        boolean anyRetired = false;
+        while (!segments.isEmpty()) {
+            Segment oldest = segments.firstEntry().getValue();
+            if (!oldest.sealed || oldest.pending > 0) {
+                break;
+            }
+            segments.pollFirstEntry();
+            retired.add(oldest);
+            anyRetired = true;
+        }
+
+        // The flusher unmaps and deletes them
+        if (anyRetired) {
+            synchronized (flushLock) {
+                flushLock.notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Unmap and delete the retired segments (only called by the flusher, or
+     * once it has stopped)
+     */
+    private void deleteRetiredSegments() {
+        Segment segment;
+        while ((segment = retired.poll()) != null) {
+            // Unmap first - the memory is freed now instead of at some later GC,
+            // and Windows won't delete a file that is still mapped
+            if (segment.buffer != null) {
+                unmap(segment.buffer);
+            }
+            try {
+                Files.deleteIfExists(segment.file);
+            } catch (IOException e) {
+                LOGGER.warn("Could not delete match log segment {}", segment.file, e);
+            }
+        }
+    }
+
+    /**
+     * Read every valid record in a segment
+     */
+    private void read(Segment segment, List<Entry> matches, Map<Long, Set<Integer>> done) throws IOException {
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(segment.file, StandardOpenOption.READ)) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+
+        try {
+            readRecords(segment, buffer, matches, done);
+        } finally {
+            unmap(buffer);
+        }
+    }
+
+    private void readRecords(Segment segment, ByteBuffer buffer, List<Entry> matches,
+                             Map<Long, Set<Integer>> done) {
+        while (buffer.remaining() >= HEADER_BYTES) {
+            int offset = buffer.position();
+            int length = buffer.getInt();
+            if (length <= 0 || length - 1 > buffer.remaining() - 5) {
+                return; // Zeros (end of data) or a cut-off record
+            }
+            int expectedCrc = buffer.getInt();
+            byte type = buffer.get();
+            byte[] payload = new byte[length - 1];
+            buffer.get(payload);
+
+            CRC32 crc = new CRC32();
+            crc.update(type);
+            crc.update(payload);
+            if ((int) crc.getValue() != expectedCrc) {
+                LOGGER.warn("Match log segment {} ends with a damaged record, ignoring the rest", segment.file);
+                return;
+            }
+
+            if (type == MATCH) {
+                try {
+                    matches.add(new Entry(objectMapper.readValue(payload, MatchResult.class), segment.id, offset));
+                } catch (IOException e) {
+                    LOGGER.warn("Skipping unreadable match in {}", segment.file, e);
+                }
+            } else if (type == DONE && payload.length == DONE_BYTES) {
+                ByteBuffer record = ByteBuffer.wrap(payload);
+                done.computeIfAbsent(record.getLong(), id -> new HashSet<>()).add(record.getInt());
+            }
+        }
+    }
+
+    private List<Path> listSegments() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            List<Path> segmentFiles = new ArrayList<>();
+            files.filter(file -> {
+                String name = file.getFileName().toString();
+                return name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX);
+            }).forEach(segmentFiles::add);
+            segmentFiles.sort(Comparator.comparingLong(MatchLog::segmentId));
+            return segmentFiles;
+        }
+    }
+
+    /**
+     * Release a mapping now instead of waiting for the garbage collector
+     * (there's no public API for this: Java 9+ has Unsafe.invokeCleaner,
+     * Java 8 has the buffer's own cleaner). The buffer must not be used again
+     */
+    private static void unmap(MappedByteBuffer buffer) {
+        try {
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            Method invokeCleaner;
+            try {
+                invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+            } catch (NoSuchMethodException java8) {
+                Method cleanerMethod = buffer.getClass().getMethod("cleaner");
+                cleanerMethod.setAccessible(true);
+                Object cleaner = cleanerMethod.invoke(buffer);
+                cleaner.getClass().getMethod("clean").invoke(cleaner);
+                return;
+            }
+            Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+            theUnsafe.setAccessible(true);
+            invokeCleaner.invoke(theUnsafe.get(null), buffer);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            // Not fatal - the mapping goes away when the buffer is garbage collected
+            LOGGER.debug("Could not unmap a match log segment", e);
+        }
+    }
+
+    private static long segmentId(Path file) {
+        String name = file.getFileName().toString();
+        return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+    }
+
+    /**
+     * A match record in the log (segment ID + offset say which record, so
+     * two records for the same match ID are told apart)
+     */
+    public static final class Entry {
+        private final MatchResult match;
+        private final long segmentId;
+        private final int offset;
+
+        Entry(MatchResult match, long segmentId, int offset) {
+            this.match = match;
+            this.segmentId = segmentId;
+            this.offset = offset;
+        }
+
+        public MatchResult getMatch() {
+            return match;
+        }
+    }
+
+    /**
+     * One log file and how many of its matches still aren't saved
+     */
+    private static final class Segment {
+        final long id;
+        final Path file;
+        final MappedByteBuffer buffer; // null for segments only read on startup
+        int pending;
+        boolean sealed;
+
+        Segment(long id, Path file, MappedByteBuffer buffer) {
+            this.id = id;
+            this.file = file;
+            this.buffer = buffer;
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,419 @@
+// Package: com.gamingroom.gameauth.halo.service
+// This class works out medals from a match's kill feed
+
+package com.gamingroom.gameauth.halo.service;
+
+import com.gamingroom.gameauth.halo.models.KillEvent;
+import java.util.*;
+
+/**
+ * MedalEngine - Medals from the kill timeline instead of match totals
+ *
+ * "Double Kill" means two kills within a few seconds, and "Killing
+ * Spree" means five kills without dying - neither can be told from a
+ * player's total kills and deaths. So medals are defined as rules
+ * (MedalRule) and checked against the kill feed:
+ *
+ * 1. When the engine is built, the rules are compiled into counters and
+ *    lookup tables: one multi-kill chain per distinct time window, one
+ *    life counter for "any weapon" plus one per weapon that has a spree
+ *    rule, and for each counter an array of which medal (if any) is
+ *    earned when it reaches each value
+ * 2. Each kill is then one pass over a handful of int counters: the
+ *    victim's life counters reset, the killer's chains and life counters
+ *    go up, and a counter that lands on a medal adds it (array lookup)
+ * 3. Match-end rules (Perfection) are checked once in finish()
+ *
+ * evaluate() handles a whole timeline; newMatch() gives the same state
+ * for feeding kills one at a time as they happen.
+ */
+public class MedalEngine {
+    // Halo's multi-kill window: each kill within 4 seconds of the previous one
+    public static final long MULTI_KILL_WINDOW_MILLIS = 4000;
+
+    // The medals we award today (same names as the old total-based guesses)
+    public static final List<MedalRule> DEFAULT_RULES = Collections.unmodifiableList(Arrays.asList(
+        MedalRule.multiKill("Double Kill", 2, MULTI_KILL_WINDOW_MILLIS),
+        MedalRule.multiKill("Triple Kill", 3, MULTI_KILL_WINDOW_MILLIS),
+        MedalRule.multiKill("Overkill", 4, MULTI_KILL_WINDOW_MILLIS),
+        MedalRule.spree("Killing Spree", 5, null),
+        MedalRule.spree("Running Riot", 10, null),
+        MedalRule.spree("Sharpshooter", 5, "Sniper"),
+        MedalRule.spree("Slice 'N Dice", 5, "EnergySword"),
+        MedalRule.perfectGame("Perfection", 15)
+    ));
+
+    // Multi-kill chains: time window, and medal by chain length
+    private final long[] chainWindows;
+    private final String[][] chainMedals;
+
+    // Life counters: medal by kills this life. Counters in anyWeaponCounters
+    // count every kill, weaponCounters maps a weapon to its own counter
+    private final String[][] lifeMedals;
+    private final int[] anyWeaponCounters;
+    private final Map<String, Integer> weaponCounters;
+
+    // Match-end rules: medal for at least N kills and no deaths
+    private final String[] perfectGameMedals;
+    private final int[] perfectGameKills;
+
+    /**
+     * Compile a set of rules
+     *
+     * @param rules The medal rules (e.g. DEFAULT_RULES)
+     */
+    public MedalEngine(List<MedalRule> rules) {
+        // Group rules by the counter they need
+        Map<Long, Map<Integer, String>> chains = new LinkedHashMap<>();
+        Map<String, Map<Integer, String>> lives = new LinkedHashMap<>(); // weapon ("" = any) -> count -> medal
+        List<MedalRule> perfectGames = new ArrayList<>();
+
+        for (MedalRule rule : rules) {
+            if (rule.getMedal() == null || rule.getKind() == null || rule.getCount() < 1) {
+                throw new IllegalArgumentException("Medal rules need a medal, a kind and a count of at least 1");
+            }
+            switch (rule.getKind()) {
+                case MULTI_KILL:
+                    chains.computeIfAbsent(rule.getWindowMillis(), w -> new HashMap<>())
+                          .put(rule.getCount(), rule.getMedal());
+                    break;
+                case SPREE:
+                    lives.computeIfAbsent(rule.getWeapon() == null ? "" : rule.getWeapon(), w -> new HashMap<>())
+                         .put(rule.getCount(), rule.getMedal());
+                    break;
+                case PERFECT_GAME:
+                    perfectGames.add(rule);
+                    break;
+            }
+        }
+
+        chainWindows = new long[chains.size()];
+        chainMedals = new String[chains.size()][];
+        int chain = 0;
+        for (Map.Entry<Long, Map<Integer, String>> entry : chains.entrySet()) {
+            chainWindows[chain] = entry.getKey();
+            chainMedals[chain++] = table(entry.getValue());
+        }
+
+        lifeMedals = new String[lives.size()][];
+        List<Integer> anyWeapon = new ArrayList<>();
+        weaponCounters = new HashMap<>();
+        int counter = 0;
+        for (Map.Entry<String, Map<Integer, String>> entry : lives.entrySet()) {
+            lifeMedals[counter] = table(entry.getValue());
+            if (entry.getKey().isEmpty()) {
+                anyWeapon.add(counter);
+            } else {
+                weaponCounters.put(entry.getKey(), counter);
+            }
+            counter++;
+        }
+        anyWeaponCounters = anyWeapon.stream().mapToInt(Integer::intValue).toArray();
+
+        perfectGameMedals = new String[perfectGames.size()];
+        perfectGameKills = new int[perfectGames.size()];
+        for (int i = 0; i < perfectGames.size(); i++) {
+            perfectGameMedals[i] = perfectGames.get(i).getMedal();
+            perfectGameKills[i] = perfectGames.get(i).getCount();
+        }
+    }
+
+    /**
+     * Work out every player's medals from a whole match timeline
+     *
+     * @param killEvents The kill feed (sorted by time if it isn't already;
+     *                   every event should pass isComplete)
+     * @return Player ID -> medals earned, in the order they were earned
+     *         (players who earned none may be left out)
+     */
+    public Map<Long, List<String>> evaluate(List<KillEvent> killEvents) {
+        MatchMedals match = newMatch();
+        for (KillEvent kill : inTimeOrder(killEvents)) {
+            match.onKill(kill);
+        }
+        return match.finish();
+    }
+
+    /**
+     * Whether a kill can be placed on the timeline: it needs a victim and
+     * a time. Without a time every kill would land at 0 and chain into
+     * multi-kills, so callers should skip (or not trust a feed with) any
+     * event this rejects
+     *
+     * @param kill A kill event from the game server
+     * @return true if the engine can use it
+     */
+    public static boolean isComplete(KillEvent kill) {
+        return kill != null && kill.getVictimId() != null
+            && kill.getTimeMillis() != null && kill.getTimeMillis() >= 0;
+    }
+
+    /**
+     * Start tracking a match whose kills arrive one at a time
+     *
+     * @return Empty state for one match (not thread-safe - one feed per match)
+     */
+    public MatchMedals newMatch() {
+        return new MatchMedals();
+    }
+
+    /**
+     * Medal lookup table: table[n] is the medal for reaching n (or null)
+     */
+    private static String[] table(Map<Integer, String> medalsByCount) {
+        String[] table = new String[Collections.max(medalsByCount.keySet()) + 1];
+        for (Map.Entry<Integer, String> entry : medalsByCount.entrySet()) {
+            table[entry.getKey()] = entry.getValue();
+        }
+        return table;
+    }
+
+    private static List<KillEvent> inTimeOrder(List<KillEvent> killEvents) {
+        for (int i = 1; i < killEvents.size(); i++) {
+            if (time(killEvents.get(i)) < time(killEvents.get(i - 1))) {
+                List<KillEvent> sorted = new ArrayList<>(killEvents);
+                sorted.sort(Comparator.comparingLong(MedalEngine::time));
+                return sorted;
+            }
+        }
+        return killEvents;
+    }
+
+    private static long time(KillEvent kill) {
+        return kill.getTimeMillis() != null ? kill.getTimeMillis() : 0;
+    }
+
+    /**
+     * The medal state of one match
+     */
+    public final class MatchMedals {
+        private final Map<Long, PlayerState> players = new HashMap<>();
+        private long lastTime;
+
+        /**
+         * Apply the next kill in the match
+         *
+         * @param kill The kill (a kill earlier than the last one counts as happening at the same time)
+         */
+        public void onKill(KillEvent kill) {
+            long time = Math.max(lastTime, time(kill));
+            lastTime = time;
+
+            Long killerId = kill.getKillerId();
+            Long victimId = kill.getVictimId();
+
+            // A death ends the victim's sprees (multi-kill chains carry on -
+            // a grenade can still land after you die)
+            if (victimId != null) {
+                PlayerState victim = player(victimId);
+                victim.deaths++;
+                victim.spree = 0;
+                Arrays.fill(victim.lifeKills, 0);
+            }
+
+            // Suicides and environment deaths don't count as kills
+            if (killerId == null || killerId.equals(victimId)) {
+                return;
+            }
+
+            PlayerState killer = player(killerId);
+            killer.kills++;
+            killer.spree++;
+
+            for (int chain = 0; chain < chainWindows.length; chain++) {
+                if (killer.chainLength[chain] > 0 && time - killer.chainLastKill[chain] <= chainWindows[chain]) {
+                    killer.chainLength[chain]++;
+                } else {
+                    killer.chainLength[chain] = 1;
+                }
+                killer.chainLastKill[chain] = time;
+                killer.award(chainMedals[chain], killer.chainLength[chain]);
+            }
+
+            for (int counter : anyWeaponCounters) {
+                killer.award(lifeMedals[counter], ++killer.lifeKills[counter]);
+            }
+            if (kill.getWeapon() != null) {
+                Integer counter = weaponCounters.get(kill.getWeapon());
+                if (counter != null) {
+                    killer.award(lifeMedals[counter], ++killer.lifeKills[counter]);
+                }
+            }
+        }
+
+        /**
+         * @return Everyone who has killed or died so far
+         */
+        public Set<Long> getPlayerIds() {
+            return Collections.unmodifiableSet(players.keySet());
+        }
+
+        public int getKills(Long playerId) {
+            PlayerState player = players.get(playerId);
+            return player != null ? player.kills : 0;
+        }
+
+        public int getDeaths(Long playerId) {
+            PlayerState player = players.get(playerId);
+            return player != null ? player.deaths : 0;
+        }
+
+        /**
+         * @return Kills since the player's last death
+         */
+        public int getSpree(Long playerId) {
+            PlayerState player = players.get(playerId);
+            return player != null ? player.spree : 0;
+        }
+
+        /**
+         * Medals a player has earned so far (for live views)
+         *
+         * @param playerId The player's ID
+         * @return Medals so far, not counting match-end medals
+         */
+        public List<String> getMedals(Long playerId) {
+            PlayerState player = players.get(playerId);
+            return player != null ? Collections.unmodifiableList(player.medals) : Collections.emptyList();
+        }
+
+        /**
+         * Add the match-end medals and return everyone's medals
+         *
+         * @return Player ID -> medals earned in the match
+         */
+        public Map<Long, List<String>> finish() {
+            Map<Long, List<String>> medals = new HashMap<>();
+            for (Map.Entry<Long, PlayerState> entry : players.entrySet()) {
+                PlayerState player = entry.getValue();
+                List<String> earned = new ArrayList<>(player.medals);
+                for (int i = 0; i < perfectGameMedals.length; i++) {
+                    if (player.deaths == 0 && player.kills >= perfectGameKills[i]) {
+                        earned.add(perfectGameMedals[i]);
+                    }
+                }
+                medals.put(entry.getKey(), earned);
+            }
+            return medals;
+        }
+
+        private PlayerState player(Long playerId) {
+            PlayerState player = players.get(playerId);
+            if (player == null) {
+                player = new PlayerState(chainWindows.length, lifeMedals.length);
+                players.put(playerId, player);
+            }
+            return player;
+        }
+    }
+
+    /**
+     * One player's counters within a match
+     */
+    private static final class PlayerState {
+        final long[] chainLastKill;
+        final int[] chainLength;
+        final int[] lifeKills;
+        final List<String> medals = new ArrayList<>();
+        int kills;
+        int deaths;
+        int spree;
+
+        PlayerState(int chains, int lifeCounters) {
+            chainLastKill = new long[chains];
+            chainLength = new int[chains];
+            lifeKills = new int[lifeCounters];
+        }
+
+        void award(String[] table, int count) {
+            if (count < table.length && table[count] != null) {
+                medals.add(table[count]);
+            }
+        }
+    }
+
+    /**
+     * One medal definition (plain data, so rules can come from config)
+     */
+    public static class MedalRule {
+        public enum Kind {
+            MULTI_KILL,    // count kills, each within windowMillis of the one before
+            SPREE,         // count kills in one life (only with weapon, if set)
+            PERFECT_GAME   // at least count kills and no deaths in the match
+        }
+
+        private String medal;
+        private Kind kind;
+        private int count;
+        private long windowMillis;
+        private String weapon;
+
+        public MedalRule() {}
+
+        public static MedalRule multiKill(String medal, int count, long windowMillis) {
+            MedalRule rule = new MedalRule();
+            rule.setMedal(medal);
+            rule.setKind(Kind.MULTI_KILL);
+            rule.setCount(count);
+            rule.setWindowMillis(windowMillis);
+            return rule;
+        }
+
+        public static MedalRule spree(String medal, int count, String weapon) {
+            MedalRule rule = new MedalRule();
+            rule.setMedal(medal);
+            rule.setKind(Kind.SPREE);
+            rule.setCount(count);
+            rule.setWeapon(weapon);
+            return rule;
+        }
+
+        public static MedalRule perfectGame(String medal, int kills) {
+            MedalRule rule = new MedalRule();
+            rule.setMedal(medal);
+            rule.setKind(Kind.PERFECT_GAME);
+            rule.setCount(kills);
+            return rule;
+        }
+
+        public String getMedal() {
+            return medal;
+        }
+
+        public void setMedal(String medal) {
+            this.medal = medal;
+        }
+
+        public Kind getKind() {
+            return kind;
+        }
+
+        public void setKind(Kind kind) {
+            this.kind = kind;
+        }
+
+        public int getCount() {
+            return count;
+        }
+
+        public void setCount(int count) {
+            this.count = count;
+        }
+
+        public long getWindowMillis() {
+            return windowMillis;
+        }
+
+        public void setWindowMillis(long windowMillis) {
+            this.windowMillis = windowMillis;
+        }
+
+        public String getWeapon() {
+            return weapon;
+        }
+
+        public void setWeapon(String weapon) {
+            this.weapon = weapon;
+        }
+    }
+}
\ No newline at end of file
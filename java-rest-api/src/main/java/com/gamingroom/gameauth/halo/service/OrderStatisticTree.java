@@ -0,0 +1,219 @@
+// Package: com.gamingroom.gameauth.halo.service
+// A sorted set that can also answer "what position is this element at?"
+
+package com.gamingroom.gameauth.halo.service;
+
+import java.util.*;
+import java.util.function.Consumer;
+
+/**
+ * OrderStatisticTree - A sorted set where every node knows its subtree size
+ *
+ * A normal TreeSet can tell you the next element, but not how many
+ * elements come before it. By storing the subtree size in each node we
+ * can answer both of these in O(log n):
+ *
+ * 1. rank(x)    - how many elements are smaller than x
+ * 2. forEach(i) - walk the elements starting at position i
+ *
+ * This is a treap: a binary search tree ordered by the elements that is
+ * also a heap ordered by a random priority. That keeps it balanced on
+ * average without the colour bookkeeping of a red-black tree.
+ *
+ * Not thread-safe - LeaderboardIndex guards it with its own lock.
+ *
+ * @param <T> The element type (ordered by compareTo)
+ */
+final class OrderStatisticTree<T extends Comparable<T>> {
+    private final Random random = new Random();
+    private Node<T> root;
+
+    private static final class Node<T> {
+        final T value;
+        final int priority;
+        Node<T> left;
+        Node<T> right;
+        int size = 1;
+
+        Node(T value, int priority) {
+            this.value = value;
+            this.priority = priority;
+        }
+    }
+
+    /**
+     * @return How many elements are in the tree
+     */
+    int size() {
+        return size(root);
+    }
+
+    /**
+     * Add an element (does nothing if it's already there)
+     */
+    void add(T value) {
+        if (!contains(value)) {
+            root = insert(root, new Node<>(value, random.nextInt()));
+        }
+    }
+
+    /**
+     * Remove an element (does nothing if it isn't there)
+     */
+    void remove(T value) {
+        root = delete(root, value);
+    }
+
+    boolean contains(T value) {
+        Node<T> node = root;
+        while (node != null) {
+            int cmp = value.compareTo(node.value);
+            if (cmp == 0) {
+                return true;
+            }
+            node = cmp < 0 ? node.left : node.right;
+        }
+        return false;
+    }
+
+    /**
+     * Count the elements that sort before the given value
+     * For an element in the tree this is its 0-based position
+     */
+    int rank(T value) {
+        int rank = 0;
+        Node<T> node = root;
+        while (node != null) {
+            int cmp = value.compareTo(node.value);
+            if (cmp <= 0) {
+                node = node.left;
+            } else {
+                rank += size(node.left) + 1;
+                node = node.right;
+            }
+        }
+        return rank;
+    }
+
+    /**
+     * Count the elements that sort before or equal to the given value
+     * (the position just after it, whether or not it's in the tree)
+     */
+    int rankAfter(T value) {
+        int rank = 0;
+        Node<T> node = root;
+        while (node != null) {
+            if (value.compareTo(node.value) < 0) {
+                node = node.left;
+            } else {
+                rank += size(node.left) + 1;
+                node = node.right;
+            }
+        }
+        return rank;
+    }
+
+    /**
+     * Visit up to count elements in order, starting at a 0-based position
+     * Costs O(log n + count) since whole subtrees before the start are skipped
+     */
+    void forEach(int fromIndex, int count, Consumer<T> action) {
+        if (count > 0) {
+            visit(root, Math.max(0, fromIndex), new int[] {count}, action);
+        }
+    }
+
+    private void visit(Node<T> node, int skip, int[] remaining, Consumer<T> action) {
+        if (node == null || remaining[0] <= 0) {
+            return;
+        }
+
+        int leftSize = size(node.left);
+        if (skip < leftSize) {
+            visit(node.left, skip, remaining, action);
+        }
+        if (remaining[0] > 0 && skip <= leftSize) {
+            action.accept(node.value);
+            remaining[0]--;
+        }
+        visit(node.right, Math.max(0, skip - leftSize - 1), remaining, action);
+    }
+
+    private Node<T> insert(Node<T> node, Node<T> added) {
+        if (node == null) {
+            return added;
+        }
+
+        if (added.value.compareTo(node.value) < 0) {
+            node.left = insert(node.left, added);
+            if (node.left.priority > node.priority) {
+                node = rotateRight(node);
+            }
+        } else {
+            node.right = insert(node.right, added);
+            if (node.right.priority > node.priority) {
+                node = rotateLeft(node);
+            }
+        }
+
+        update(node);
+        return node;
+    }
+
+    private Node<T> delete(Node<T> node, T value) {
+        if (node == null) {
+            return null;
+        }
+
+        int cmp = value.compareTo(node.value);
+        if (cmp < 0) {
+            node.left = delete(node.left, value);
+        } else if (cmp > 0) {
+            node.right = delete(node.right, value);
+        } else {
+            // Rotate the node down until it has at most one child, then drop it
+            if (node.left == null) {
+                return node.right;
+            }
+            if (node.right == null) {
+                return node.left;
+            }
+            if (node.left.priority > node.right.priority) {
+                node = rotateRight(node);
+                node.right = delete(node.right, value);
+            } else {
+                node = rotateLeft(node);
+                node.left = delete(node.left, value);
+            }
+        }
+
+        update(node);
+        return node;
+    }
+
+    private Node<T> rotateRight(Node<T> node) {
+        Node<T> pivot = node.left;
+        node.left = pivot.right;
+        pivot.right = node;
+        update(node);
+        update(pivot);
+        return pivot;
+    }
+
+    private Node<T> rotateLeft(Node<T> node) {
+        Node<T> pivot = node.right;
+        node.right = pivot.left;
+        pivot.left = node;
+        update(node);
+        update(pivot);
+        return pivot;
+    }
+
+    private static void update(Node<?> node) {
+        node.size = 1 + size(node.left) + size(node.right);
+    }
+
+    private static int size(Node<?> node) {
+        return node != null ? node.size : 0;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,68 @@
+// Package: com.gamingroom.gameauth.halo.service
+// This class keeps the "top X%" histograms in step with the database
+
+package com.gamingroom.gameauth.halo.service;
+
+import io.dropwizard.lifecycle.Managed;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * PercentileRefresher - Re-reads the shared "top X%" counts
+ *
+ * With a database every server's ingest transactions add their changes
+ * to stat_histograms, so each server just re-reads that small table now
+ * and then to see the other servers' matches (HaloGameService.refreshPercentiles).
+ * Without a database there's nothing to read and each tick does nothing.
+ *
+ * Registered with Dropwizard's lifecycle so the thread starts and stops
+ * with the server.
+ */
+public class PercentileRefresher implements Managed {
+    private static final Logger LOGGER = LoggerFactory.getLogger(PercentileRefresher.class);
+
+    // A few hundred rows, so it can be read much more often than the
+    // windowed leaderboards are rebuilt
+    private static final long REFRESH_SECONDS = 30;
+
+    private final HaloGameService gameService;
+    private final ScheduledExecutorService executor;
+
+    /**
+     * @param gameService Holds the histograms the profile page reads
+     */
+    public PercentileRefresher(HaloGameService gameService) {
+        this.gameService = gameService;
+        this.executor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "percentile-refresher");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @Override
+    public void start() {
+        // HaloGameService already read them once when it was created
+        executor.scheduleWithFixedDelay(this::refresh, REFRESH_SECONDS, REFRESH_SECONDS, TimeUnit.SECONDS);
+    }
+
+    @Override
+    public void stop() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Catch the percentiles up with other servers' matches
+     */
+    void refresh() {
+        try {
+            gameService.refreshPercentiles();
+        } catch (RuntimeException e) {
+            // An exception would cancel the schedule - try again next time
+            LOGGER.warn("Could not refresh the stat percentiles", e);
+        }
+    }
+}
@@ -0,0 +1,135 @@
+// Package: com.gamingroom.gameauth.halo.service
+// This class keeps recently read player profiles in memory
+
+package com.gamingroom.gameauth.halo.service;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import com.gamingroom.gameauth.halo.models.PlayerStats;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * PlayerProfileCache - Read-through cache for player stats + medals
+ *
+ * A player's stats only change when one of their matches is processed
+ * (every 10 minutes or so), but their profile gets read hundreds of
+ * times in between. So:
+ *
+ * 1. Reads check the cache first and only go to the database on a miss
+ * 2. Concurrent misses for the same player share one database load
+ *    (SingleFlight), so a popular profile can't flood the connection pool
+ * 3. processMatchResult invalidates exactly the players in that match
+ * 4. The cache has a maximum size - Caffeine keeps the players that are
+ *    read most often (W-TinyLFU) and evicts the rest
+ *
+ * Hit rate, evictions, size and collapsed loads are published as
+ * Dropwizard metrics.
+ */
+public class PlayerProfileCache {
+    private final Cache<Long, PlayerStats> cache;
+    private final SingleFlight<Long, PlayerStats> loads = new SingleFlight<>();
+    
+    // Bumped on every invalidation so bulk loads can tell if they raced one
+    private final AtomicLong invalidations = new AtomicLong();
+
+    /**
+     * @param maximumSize How many player profiles to keep at most
+     */
+    public PlayerProfileCache(long maximumSize) {
+        this.cache = Caffeine.newBuilder()
+                             .maximumSize(maximumSize)
+                             .recordStats()
+                             .build();
+    }
+
+    /**
+     * Get a player's profile, loading it on a miss
+     *
+     * @param playerId The player's ID
+     * @param loader Loads the profile from the database (may return null)
+     * @return A copy of the profile the caller is free to change, or null if not found
+     */
+    public PlayerStats get(Long playerId, Function<Long, PlayerStats> loader) {
+        PlayerStats cached = cache.getIfPresent(playerId);
+        if (cached == null) {
+            // Miss - load it (or wait for the load another request already started)
+            cached = loads.load(playerId, loader, (id, loaded) -> {
+                // Players that don't exist are not cached
+                if (loaded != null) {
+                    cache.put(id, loaded);
+                }
+            });
+        }
+        return cached != null ? cached.copy() : null;
+    }
+
+    /**
+     * Get many players' profiles, loading all the misses together
+     *
+     * @param playerIds The players to get
+     * @param loader Loads the missing profiles in one go (players not found left out)
+     * @return Player ID -> a copy of their profile (players not found are left out)
+     */
+    public Map<Long, PlayerStats> getAll(Collection<Long> playerIds,
+                                         Function<Collection<Long>, Map<Long, PlayerStats>> loader) {
+        Map<Long, PlayerStats> result = new HashMap<>();
+        List<Long> misses = new ArrayList<>();
+        
+        for (Long playerId : playerIds) {
+            PlayerStats cached = cache.getIfPresent(playerId);
+            if (cached != null) {
+                result.put(playerId, cached.copy());
+            } else {
+                misses.add(playerId);
+            }
+        }
+        
+        if (!misses.isEmpty()) {
+            long before = invalidations.get();
+            Map<Long, PlayerStats> loaded = loader.apply(misses);
+            
+            // Only cache them if no match was processed while we were loading,
+            // otherwise some of them may already be out of date
+            if (invalidations.get() == before) {
+                cache.putAll(loaded);
+            }
+            for (Map.Entry<Long, PlayerStats> entry : loaded.entrySet()) {
+                result.put(entry.getKey(), entry.getValue().copy());
+            }
+        }
+        
+        return result;
+    }
+    
+    /**
+     * Forget a player's profile (called when their stats change)
+     *
+     * @param playerId The player's ID
+     */
+    public void invalidate(Long playerId) {
+        // Forget any load still running first, so its (old) result isn't cached
+        loads.forget(playerId);
+        invalidations.incrementAndGet();
+        cache.invalidate(playerId);
+    }
+
+    /**
+     * Publish the cache's hit rate, evictions and size
+     *
+     * @param metrics Dropwizard's metric registry
+     */
+    public void registerMetrics(MetricRegistry metrics) {
+        metrics.register(MetricRegistry.name(PlayerProfileCache.class, "hitRate"),
+                         (Gauge<Double>) () -> cache.stats().hitRate());
+        metrics.register(MetricRegistry.name(PlayerProfileCache.class, "evictions"),
+                         (Gauge<Long>) () -> cache.stats().evictionCount());
+        metrics.register(MetricRegistry.name(PlayerProfileCache.class, "size"),
+                         (Gauge<Long>) cache::estimatedSize);
+        metrics.register(MetricRegistry.name(PlayerProfileCache.class, "collapsedLoads"),
+                         (Gauge<Long>) loads::getCollapsedCount);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,193 @@
+// Package: com.gamingroom.gameauth.halo.service
+// This class remembers each player's last few match lines in memory
+
+package com.gamingroom.gameauth.halo.service;
+
+import com.gamingroom.gameauth.halo.dao.MatchHistoryDAO;
+import com.gamingroom.gameauth.halo.models.RecentPerformance;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * RecentMatches - Each player's last N match lines, cached
+ *
+ * The profile "form" widget wants rolling K/D, win rate and a trend.
+ * Instead of querying player_match_results on every profile read we
+ * keep the last N match lines per player in fixed-size arrays:
+ *
+ * 1. A miss loads the player's newest N matches from match history, by
+ *    when they were played - so a backfill of old matches never pushes
+ *    out newer ones, and a restart loses nothing
+ * 2. processMatchResult invalidates the players in the match, and lines
+ *    expire after a minute, so other servers' matches show up too
+ * 3. The cache has a maximum size, so players who stop playing are evicted
+ *
+ * Reading adds up at most N lines, and memory per player never grows,
+ * no matter how many matches they play.
+ */
+public class RecentMatches {
+    // How many matches the "recent" numbers cover
+    public static final int WINDOW = 20;
+
+    // How long a player's lines are kept before they are read again
+    private static final long EXPIRE_SECONDS = 60;
+
+    // Player ID -> their lines (players with no matches get an empty one)
+    private final Cache<Long, Lines> cache;
+
+    // Loads many players' lines at once, newest first (null if it failed)
+    private final Function<Collection<Long>, Map<Long, List<MatchHistoryDAO.MatchLine>>> loader;
+
+    // Bumped on every invalidation so loads can tell if they raced one
+    private final AtomicLong invalidations = new AtomicLong();
+
+    /**
+     * @param maximumSize How many players to keep at most
+     * @param loader Loads the newest WINDOW lines of each player asked for
+     */
+    public RecentMatches(long maximumSize,
+                         Function<Collection<Long>, Map<Long, List<MatchHistoryDAO.MatchLine>>> loader) {
+        this.cache = Caffeine.newBuilder()
+                             .maximumSize(maximumSize)
+                             .expireAfterWrite(EXPIRE_SECONDS, TimeUnit.SECONDS)
+                             .build();
+        this.loader = loader;
+    }
+
+    /**
+     * Work out a player's recent form
+     *
+     * @param playerId The player's ID
+     * @return Their recent performance, or null if they haven't played yet
+     */
+    public RecentPerformance get(Long playerId) {
+        return getAll(Collections.singleton(playerId)).get(playerId);
+    }
+
+    /**
+     * Work out many players' recent form, loading all the misses together
+     *
+     * @param playerIds The players to get
+     * @return Player ID -> recent performance (players who haven't played are left out)
+     */
+    public Map<Long, RecentPerformance> getAll(Collection<Long> playerIds) {
+        Map<Long, Lines> found = new HashMap<>();
+        List<Long> misses = new ArrayList<>();
+        for (Long playerId : playerIds) {
+            Lines lines = cache.getIfPresent(playerId);
+            if (lines != null) {
+                found.put(playerId, lines);
+            } else {
+                misses.add(playerId);
+            }
+        }
+
+        if (!misses.isEmpty()) {
+            long before = invalidations.get();
+            Map<Long, List<MatchHistoryDAO.MatchLine>> loaded = loader.apply(misses);
+            if (loaded != null) {
+                Map<Long, Lines> fresh = new HashMap<>();
+                for (Long playerId : misses) {
+                    fresh.put(playerId, new Lines(loaded.getOrDefault(playerId, Collections.emptyList())));
+                }
+                // Only cache them if no match was processed while we were
+                // loading, otherwise some of them may already be out of date
+                if (invalidations.get() == before) {
+                    cache.putAll(fresh);
+                }
+                found.putAll(fresh);
+            }
+        }
+
+        Map<Long, RecentPerformance> performances = new HashMap<>();
+        for (Map.Entry<Long, Lines> entry : found.entrySet()) {
+            if (entry.getValue().count > 0) {
+                performances.put(entry.getKey(), entry.getValue().summarize());
+            }
+        }
+        return performances;
+    }
+
+    /**
+     * Forget a player's lines (called after one of their matches is saved)
+     *
+     * @param playerId The player's ID
+     */
+    public void invalidate(Long playerId) {
+        invalidations.incrementAndGet();
+        cache.invalidate(playerId);
+    }
+
+    /**
+     * One player's last WINDOW matches, newest first, stored as parallel arrays
+     */
+    private static final class Lines {
+        private final int[] kills = new int[WINDOW];
+        private final int[] deaths = new int[WINDOW];
+        private final int[] assists = new int[WINDOW];
+        private final int[] scores = new int[WINDOW];
+        private final boolean[] wins = new boolean[WINDOW];
+        private final int count; // How many slots are filled
+
+        Lines(List<MatchHistoryDAO.MatchLine> newestFirst) {
+            count = Math.min(newestFirst.size(), WINDOW);
+            for (int i = 0; i < count; i++) {
+                MatchHistoryDAO.MatchLine line = newestFirst.get(i);
+                kills[i] = line.getKills();
+                deaths[i] = line.getDeaths();
+                assists[i] = line.getAssists();
+                scores[i] = line.getScore();
+                wins[i] = line.isWon();
+            }
+        }
+
+        RecentPerformance summarize() {
+            int totalKills = 0, totalDeaths = 0, totalAssists = 0, totalScore = 0, won = 0;
+            int newerKills = 0, newerDeaths = 0, olderKills = 0, olderDeaths = 0;
+            List<String> results = new ArrayList<>(count);
+
+            // Walk from newest to oldest
+            for (int i = 0; i < count; i++) {
+                totalKills += kills[i];
+                totalDeaths += deaths[i];
+                totalAssists += assists[i];
+                totalScore += scores[i];
+                if (wins[i]) {
+                    won++;
+                }
+                results.add(wins[i] ? "W" : "L");
+
+                // Split into newer and older halves for the trend
+                if (i < count / 2) {
+                    newerKills += kills[i];
+                    newerDeaths += deaths[i];
+                } else {
+                    olderKills += kills[i];
+                    olderDeaths += deaths[i];
+                }
+            }
+
+            RecentPerformance performance = new RecentPerformance();
+            performance.setMatches(count);
+            performance.setKills(totalKills);
+            performance.setDeaths(totalDeaths);
+            performance.setAssists(totalAssists);
+            performance.setKdRatio(kd(totalKills, totalDeaths));
+            performance.setWinRate(count > 0 ? (double) won / count : 0.0);
+            performance.setAverageScore(count > 0 ? (double) totalScore / count : 0.0);
+            // Positive = getting better lately (needs at least 2 matches to mean anything)
+            performance.setKdTrend(count >= 2 ? kd(newerKills, newerDeaths) - kd(olderKills, olderDeaths) : 0.0);
+            performance.setResults(results);
+            return performance;
+        }
+
+        // Same rule as PlayerStats.getKdRatio(): no deaths means K/D = kills
+        private static double kd(int kills, int deaths) {
+            return deaths > 0 ? (double) kills / deaths : kills;
+        }
+    }
+}
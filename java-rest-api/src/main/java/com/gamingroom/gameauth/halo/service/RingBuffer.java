@@ -0,0 +1,125 @@
+// Package: com.gamingroom.gameauth.halo.service
+// This class is a fixed-size queue that many threads can use without locks
+
+package com.gamingroom.gameauth.halo.service;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * RingBuffer - A bounded, lock-free, many-producer many-consumer queue
+ *
+ * Request threads add to it and worker threads take from it, so it has
+ * to be safe from both sides without making either side wait on a lock.
+ * Each slot has a sequence number that says whose turn it is:
+ *
+ * 1. sequence == position       -> empty, a producer may claim it
+ * 2. sequence == position + 1   -> full, a consumer may claim it
+ * 3. A thread claims a position with one compare-and-set on tail/head,
+ *    then fills or empties the slot and bumps its sequence for the
+ *    other side (position + capacity means "empty again, next lap")
+ *
+ * When the buffer is full offer() returns false right away instead of
+ * blocking, so callers can reject the work.
+ *
+ * @param <T> What the queue holds
+ */
+public class RingBuffer<T> {
+    private final int capacity;
+    private final int mask;
+    private final AtomicReferenceArray<T> items;
+    private final AtomicLongArray sequences;
+
+    // Next position to add at / take from (they only ever go up)
+    private final AtomicLong tail = new AtomicLong();
+    private final AtomicLong head = new AtomicLong();
+
+    /**
+     * @param minCapacity Smallest number of items it must hold, at least 2
+     *                    (rounded up to a power of two). With one slot, "full
+     *                    at this position" and "empty at the next" are the
+     *                    same sequence number, so offer() would overwrite
+     *                    an item nobody has taken yet
+     */
+    public RingBuffer(int minCapacity) {
+        if (minCapacity < 2 || minCapacity > (1 << 30)) {
+            throw new IllegalArgumentException("Capacity must be between 2 and 2^30");
+        }
+        this.capacity = Integer.highestOneBit(minCapacity - 1) << 1;
+        this.mask = capacity - 1;
+        this.items = new AtomicReferenceArray<>(capacity);
+        this.sequences = new AtomicLongArray(capacity);
+        for (int i = 0; i < capacity; i++) {
+            sequences.set(i, i);
+        }
+    }
+
+    /**
+     * Add an item if there's room
+     *
+     * @param item The item to add (not null)
+     * @return true if added, false if the buffer is full
+     */
+    public boolean offer(T item) {
+        while (true) {
+            long position = tail.get();
+            int slot = (int) position & mask;
+            long sequence = sequences.get(slot);
+
+            if (sequence == position) {
+                // Empty slot - try to claim it
+                if (tail.compareAndSet(position, position + 1)) {
+                    items.set(slot, item);
+                    sequences.set(slot, position + 1); // Publish to consumers
+                    return true;
+                }
+            } else if (sequence < position) {
+                return false; // A consumer hasn't emptied it yet - full
+            }
+            // Otherwise another producer beat us to it - try the next position
+        }
+    }
+
+    /**
+     * Take the oldest item
+     *
+     * @return The item, or null if the buffer is empty
+     */
+    public T poll() {
+        while (true) {
+            long position = head.get();
+            int slot = (int) position & mask;
+            long sequence = sequences.get(slot);
+
+            if (sequence == position + 1) {
+                // Full slot - try to claim it
+                if (head.compareAndSet(position, position + 1)) {
+                    T item = items.get(slot);
+                    items.set(slot, null);
+                    sequences.set(slot, position + capacity); // Free it for the next lap
+                    return item;
+                }
+            } else if (sequence < position + 1) {
+                return null; // A producer hasn't filled it yet - empty
+            }
+            // Otherwise another consumer beat us to it - try the next position
+        }
+    }
+
+    /**
+     * @return Roughly how many items are waiting (exact when nothing is running)
+     */
+    public int size() {
+        long size = tail.get() - head.get();
+        return (int) Math.max(0, Math.min(size, capacity));
+    }
+
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+}
\ No newline at end of file
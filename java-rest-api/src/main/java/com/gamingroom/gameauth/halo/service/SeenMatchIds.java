@@ -0,0 +1,195 @@
+// Package: com.gamingroom.gameauth.halo.service
+// This class spots match results a game server sends twice
+
+package com.gamingroom.gameauth.halo.service;
+
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Predicate;
+
+/**
+ * SeenMatchIds - Cheap "have we already got this match?" check
+ *
+ * Game servers retry /halo/match/complete when a request times out, and
+ * saving the same match twice would count every kill twice. Asking the
+ * database about every match would cost a query per match, so:
+ *
+ * 1. Recent IDs: the last RECENT_IDS match IDs we accepted, oldest
+ *    dropped first. A retry usually comes a few seconds later (often
+ *    while the first copy is still queued and not in the database yet),
+ *    so it is found here. This is a plain insertion-ordered map, not a
+ *    cache: a cache's admission policy would turn away IDs it has only
+ *    seen once, and every ID here is only seen once
+ * 2. Bloom filter: a bit array that can say "definitely never seen" for
+ *    almost every new match, so new matches need no database lookup
+ * 3. Only when the bloom filter says "maybe" (an old match, or a ~1%
+ *    false positive) do we ask the database
+ *
+ * The match_history.match_id unique constraint still backs all of this
+ * up (e.g. a retry of a match accepted before a restart).
+ *
+ * The bloom filter has two generations: once the current one has
+ * BLOOM_CAPACITY IDs it becomes the old one and a fresh one starts, so
+ * memory stays fixed and the false positive rate doesn't creep up.
+ */
+public class SeenMatchIds {
+    // How many accepted match IDs are remembered exactly
+    public static final int RECENT_IDS = 100_000;
+
+    // IDs per bloom filter generation, and how many bits / hashes each uses
+    // (9.6 bits and 7 hashes per ID gives about 1% false positives)
+    private static final int BLOOM_CAPACITY = 1_000_000;
+    private static final int BLOOM_BITS = 9_600_000;
+    private static final int BLOOM_HASHES = 7;
+
+    // Match ID -> TRUE, in the order they were claimed
+    private final Map<String, Boolean> recent = Collections.synchronizedMap(
+        new LinkedHashMap<String, Boolean>() {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+                return size() > RECENT_IDS;
+            }
+        });
+
+    private volatile BloomFilter current = new BloomFilter();
+    private volatile BloomFilter previous = new BloomFilter();
+
+    private final Meter clearedByBloom = new Meter();
+    private final Meter databaseLookups = new Meter();
+    private final Meter duplicates = new Meter();
+
+    /**
+     * Claim a match ID - after this returns true, the same ID is refused
+     * until release is called
+     *
+     * @param matchId The match ID
+     * @param savedInDatabase Checks the database (only called when the bloom filter can't rule it out)
+     * @return true if the match is new, false if it's a duplicate
+     */
+    public boolean claim(String matchId, Predicate<String> savedInDatabase) {
+        // Atomic, so two copies arriving at the same time can't both get in
+        if (recent.putIfAbsent(matchId, Boolean.TRUE) != null) {
+            duplicates.mark();
+            return false;
+        }
+
+        long hash1 = hash(matchId);
+        long hash2 = mix(hash1);
+        if (current.mightContain(hash1, hash2) || previous.mightContain(hash1, hash2)) {
+            databaseLookups.mark();
+            if (savedInDatabase.test(matchId)) {
+                duplicates.mark(); // Stays in recent so the next retry is refused straight away
+                return false;
+            }
+        } else {
+            clearedByBloom.mark();
+        }
+
+        if (current.add(hash1, hash2) >= BLOOM_CAPACITY) {
+            rotate();
+        }
+        return true;
+    }
+
+    /**
+     * Give a claimed match ID back (e.g. we told the game server to retry later)
+     *
+     * The bloom filter can't forget it, so the retry just costs one database lookup.
+     *
+     * @param matchId The match ID passed to claim
+     */
+    public void release(String matchId) {
+        recent.remove(matchId);
+    }
+
+    /**
+     * Publish how many matches skipped the database, needed it, or were duplicates
+     *
+     * @param metrics Dropwizard's metric registry
+     */
+    public void registerMetrics(MetricRegistry metrics) {
+        metrics.register(MetricRegistry.name(SeenMatchIds.class, "clearedByBloomFilter"), clearedByBloom);
+        metrics.register(MetricRegistry.name(SeenMatchIds.class, "databaseLookups"), databaseLookups);
+        metrics.register(MetricRegistry.name(SeenMatchIds.class, "duplicates"), duplicates);
+    }
+
+    /**
+     * Start a new generation (the one before last is dropped)
+     */
+    private synchronized void rotate() {
+        if (current.size() >= BLOOM_CAPACITY) {
+            previous = current;
+            current = new BloomFilter();
+        }
+    }
+
+    /**
+     * 64-bit FNV-1a hash of the ID
+     */
+    private static long hash(String matchId) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < matchId.length(); i++) {
+            hash ^= matchId.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    /**
+     * Scramble a hash into a second, independent-looking one (SplitMix64 finalizer)
+     */
+    private static long mix(long hash) {
+        hash = (hash ^ (hash >>> 30)) * 0xbf58476d1ce4e5b9L;
+        hash = (hash ^ (hash >>> 27)) * 0x94d049bb133111ebL;
+        return (hash ^ (hash >>> 31)) | 1; // Odd, so every probe lands somewhere different
+    }
+
+    /**
+     * A fixed-size bloom filter that many threads can add to without locks
+     * (bit i of the j-th probe is (hash1 + j * hash2) mod BLOOM_BITS)
+     */
+    private static final class BloomFilter {
+        private final AtomicLongArray words = new AtomicLongArray((BLOOM_BITS + 63) / 64);
+        private final AtomicLong size = new AtomicLong();
+
+        boolean mightContain(long hash1, long hash2) {
+            for (int probe = 0; probe < BLOOM_HASHES; probe++) {
+                int bit = bit(hash1, hash2, probe);
+                if ((words.get(bit >>> 6) & (1L << bit)) == 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * @return How many IDs have been added, including this one
+         */
+        long add(long hash1, long hash2) {
+            for (int probe = 0; probe < BLOOM_HASHES; probe++) {
+                int bit = bit(hash1, hash2, probe);
+                long mask = 1L << bit;
+                long word;
+                do {
+                    word = words.get(bit >>> 6);
+                } while ((word & mask) == 0 && !words.compareAndSet(bit >>> 6, word, word | mask));
+            }
+            return size.incrementAndGet();
+        }
+
+        long size() {
+            return size.get();
+        }
+
+        private static int bit(long hash1, long hash2, int probe) {
+            return (int) Long.remainderUnsigned(hash1 + probe * hash2, BLOOM_BITS);
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,108 @@
+// Package: com.gamingroom.gameauth.halo.service
+// This class makes concurrent loads of the same key share one database call
+
+package com.gamingroom.gameauth.halo.service;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+/**
+ * SingleFlight - Request coalescing ("only one load per key at a time")
+ *
+ * When a popular player's profile isn't cached and thousands of viewers
+ * open it at once, every request would run the same query. Instead:
+ *
+ * 1. The first request for a key (the "leader") runs the load
+ * 2. Everyone else asking for that key while it runs waits for the
+ *    leader's result instead of loading it again
+ * 3. When the load finishes the result is handed to all of them
+ *
+ * forget() drops the in-flight load for a key, so a load that started
+ * before the data changed doesn't get published as the latest value.
+ *
+ * @param <K> Key type (e.g. player ID)
+ * @param <V> Loaded value type
+ */
+public class SingleFlight<K, V> {
+    // Key -> the load currently running for it
+    private final Map<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+
+    // How many requests waited on someone else's load instead of running their own
+    private final LongAdder collapsed = new LongAdder();
+
+    /**
+     * Load a value, sharing the work with any concurrent load of the same key
+     *
+     * @param key What to load
+     * @param loader Does the actual load (only called by the leader)
+     * @param publish Called with the result if nobody forgot the key meanwhile
+     *                (e.g. to put it in a cache)
+     * @return The loaded value (may be null)
+     */
+    public V load(K key, Function<K, V> loader, BiConsumer<K, V> publish) {
+        CompletableFuture<V> flight = new CompletableFuture<>();
+        CompletableFuture<V> existing = inFlight.putIfAbsent(key, flight);
+
+        if (existing != null) {
+            // Someone is already loading this key - wait for their result
+            collapsed.increment();
+            try {
+                return existing.join();
+            } catch (CompletionException e) {
+                throw e.getCause() instanceof RuntimeException
+                    ? (RuntimeException) e.getCause() : e;
+            }
+        }
+
+        // We're the leader
+        try {
+            V value = loader.apply(key);
+
+            // Publish only if this is still the current load for the key.
+            // Done inside computeIfPresent so it can't interleave with forget().
+            inFlight.computeIfPresent(key, (k, current) -> {
+                if (current == flight) {
+                    publish.accept(k, value);
+                    return null; // removes the entry
+                }
+                return current;
+            });
+
+            flight.complete(value);
+            return value;
+        } catch (RuntimeException e) {
+            inFlight.remove(key, flight);
+            flight.completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    /**
+     * Stop sharing (and publishing) the in-flight load for a key
+     * Call this before invalidating the cached value when the data changes
+     *
+     * @param key The key whose data changed
+     */
+    public void forget(K key) {
+        inFlight.remove(key);
+    }
+
+    /**
+     * @return How many requests were served by another request's load
+     */
+    public long getCollapsedCount() {
+        return collapsed.sum();
+    }
+
+    /**
+     * @return How many loads are running right now
+     */
+    public int getInFlightCount() {
+        return inFlight.size();
+    }
+}
\ No newline at end of file
@@ -0,0 +1,125 @@
+// Package: com.gamingroom.gameauth.halo.service
+// A small fixed-size histogram used to answer "top X%" questions
+
+package com.gamingroom.gameauth.halo.service;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * StatHistogram - Counts how many players have each value of a stat
+ *
+ * Values are grouped into buckets the way HDR histograms do it:
+ * small values get their own bucket, bigger values share buckets whose
+ * width grows with the value (32 buckets per power of two, so about 3%
+ * error). The number of buckets is fixed, which means:
+ *
+ * 1. Memory never grows, no matter how many players there are
+ * 2. Adding, removing and "what percent is above X" don't depend on player count
+ * 3. Two histograms (e.g. from two servers) can be merged by adding counts
+ */
+public class StatHistogram {
+    // 2^5 = 32 buckets per power of two
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKET_COUNT = (64 - SUB_BUCKET_BITS) * SUB_BUCKET_COUNT;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+
+    /**
+     * Count one more player with this value (negative values count as 0)
+     */
+    public void add(long value) {
+        counts.incrementAndGet(bucketFor(value));
+    }
+
+    /**
+     * Forget one player with this value (used when their stat changes)
+     */
+    public void remove(long value) {
+        counts.decrementAndGet(bucketFor(value));
+    }
+
+    /**
+     * Add all the counts from another histogram into this one
+     *
+     * @param other Histogram built somewhere else (e.g. another server)
+     */
+    public void merge(StatHistogram other) {
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            long count = other.counts.get(i);
+            if (count != 0) {
+                counts.addAndGet(i, count);
+            }
+        }
+    }
+
+    /**
+     * Add players straight to a bucket (e.g. counts read back from the database)
+     *
+     * @param bucket A bucket number from counts() (unknown buckets are ignored)
+     * @param players How many players to add (negative to take some away)
+     */
+    public void addToBucket(int bucket, long players) {
+        if (bucket >= 0 && bucket < BUCKET_COUNT) {
+            counts.addAndGet(bucket, players);
+        }
+    }
+
+    /**
+     * @return Bucket number -> players, for the buckets that aren't empty
+     */
+    public Map<Integer, Long> counts() {
+        Map<Integer, Long> nonEmpty = new TreeMap<>();
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            long count = counts.get(i);
+            if (count != 0) {
+                nonEmpty.put(i, count);
+            }
+        }
+        return nonEmpty;
+    }
+
+    /**
+     * What percent of players are at or above this value ("top X%")
+     *
+     * @param value The player's value
+     * @return Percent between 0 and 100 (smaller is better), or null if empty
+     */
+    public Double topPercent(long value) {
+        int bucket = bucketFor(value);
+
+        long total = 0;
+        long atOrAbove = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            long count = counts.get(i);
+            total += count;
+            if (i >= bucket) {
+                atOrAbove += count;
+            }
+        }
+
+        if (total <= 0) {
+            return null;
+        }
+
+        // Round to one decimal place for display ("top 3.2%")
+        return Math.round(1000.0 * atOrAbove / total) / 10.0;
+    }
+
+    /**
+     * Work out which bucket a value falls into
+     */
+    static int bucketFor(long value) {
+        if (value < SUB_BUCKET_COUNT) {
+            return (int) Math.max(0, value);
+        }
+
+        // Position of the highest set bit decides the bucket group,
+        // the next 5 bits pick the bucket inside the group
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKET_COUNT - 1);
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKET_COUNT + subBucket;
+    }
+}
\ No newline at end of file
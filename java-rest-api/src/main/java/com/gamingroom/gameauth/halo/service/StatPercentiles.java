@@ -0,0 +1,139 @@
+// Package: com.gamingroom.gameauth.halo.service
+// This class answers "top X%" for every leaderboard stat
+
+package com.gamingroom.gameauth.halo.service;
+
+import com.gamingroom.gameauth.halo.models.PlayerStats;
+import java.util.*;
+
+/**
+ * StatPercentiles - One StatHistogram per leaderboard stat
+ *
+ * The profile page only needs "top 3% in K/D", not an exact rank, so
+ * instead of ranking millions of players we keep a histogram of every
+ * stat and update it as matches are processed.
+ *
+ * With a database the histograms every server reads are the shared ones
+ * in stat_histograms: each ingest transaction adds its changes() there,
+ * and servers re-read the (few hundred) rows now and then.
+ */
+public class StatPercentiles {
+    // K/D is a decimal, so it's stored in thousandths (2.953 -> 2953)
+    private static final double KD_SCALE = 1000.0;
+
+    private final Map<String, StatHistogram> histograms = new HashMap<>();
+
+    public StatPercentiles() {
+        for (String stat : LeaderboardIndex.SUPPORTED_STATS) {
+            histograms.put(stat, new StatHistogram());
+        }
+    }
+
+    /**
+     * Percentiles from counts saved somewhere else (e.g. stat_histograms)
+     *
+     * @param counts Stat -> bucket -> players, as counts() returns them
+     */
+    public StatPercentiles(Map<String, Map<Integer, Long>> counts) {
+        this();
+        for (Map.Entry<String, Map<Integer, Long>> stat : counts.entrySet()) {
+            StatHistogram histogram = histograms.get(stat.getKey());
+            if (histogram == null) {
+                continue; // A stat we don't show (any more), or stat_histograms' "*" row
+            }
+            for (Map.Entry<Integer, Long> bucket : stat.getValue().entrySet()) {
+                histogram.addToBucket(bucket.getKey(), bucket.getValue());
+            }
+        }
+    }
+
+    /**
+     * Move a player from their old values to their new ones
+     *
+     * @param previous The player's stats before the match (null for a new player)
+     * @param current The player's stats after the match
+     */
+    public void update(PlayerStats previous, PlayerStats current) {
+        for (String stat : LeaderboardIndex.SUPPORTED_STATS) {
+            StatHistogram histogram = histograms.get(stat);
+            if (previous != null) {
+                histogram.remove(scaledValue(stat, previous));
+            }
+            if (current != null) {
+                histogram.add(scaledValue(stat, current));
+            }
+        }
+    }
+
+    /**
+     * Work out the player's "top X%" for every stat
+     *
+     * @param stats The player's current stats
+     * @return Map of stat name to percent (e.g. "kd" -> 3.2)
+     */
+    public Map<String, Double> topPercent(PlayerStats stats) {
+        Map<String, Double> percents = new LinkedHashMap<>();
+        for (String stat : LeaderboardIndex.SUPPORTED_STATS) {
+            Double percent = histograms.get(stat).topPercent(scaledValue(stat, stats));
+            if (percent != null) {
+                percents.put(stat, percent);
+            }
+        }
+        return percents;
+    }
+
+    /**
+     * @return Stat -> bucket -> players, for the buckets that aren't empty
+     */
+    public Map<String, Map<Integer, Long>> counts() {
+        Map<String, Map<Integer, Long>> counts = new TreeMap<>();
+        for (String stat : LeaderboardIndex.SUPPORTED_STATS) {
+            counts.put(stat, histograms.get(stat).counts());
+        }
+        return counts;
+    }
+
+    /**
+     * How moving players from their old stats to their new ones changes
+     * the bucket counts (what update() would do, as numbers to store)
+     *
+     * @param previous Player ID -> stats before (new players left out)
+     * @param updated Player ID -> stats after
+     * @return Stat -> bucket -> change in players (buckets that don't change are left out)
+     */
+    public static Map<String, Map<Integer, Long>> changes(Map<Long, PlayerStats> previous,
+                                                          Map<Long, PlayerStats> updated) {
+        Map<String, Map<Integer, Long>> changes = new TreeMap<>();
+        for (String stat : LeaderboardIndex.SUPPORTED_STATS) {
+            Map<Integer, Long> buckets = new TreeMap<>();
+            for (Map.Entry<Long, PlayerStats> player : updated.entrySet()) {
+                PlayerStats before = previous.get(player.getKey());
+                if (before != null) {
+                    buckets.merge(StatHistogram.bucketFor(scaledValue(stat, before)), -1L, Long::sum);
+                }
+                buckets.merge(StatHistogram.bucketFor(scaledValue(stat, player.getValue())), 1L, Long::sum);
+            }
+            buckets.values().removeIf(change -> change == 0);
+            if (!buckets.isEmpty()) {
+                changes.put(stat, buckets);
+            }
+        }
+        return changes;
+    }
+
+    /**
+     * Add the counts from another server's percentiles into these
+     *
+     * @param other Percentiles built on another node
+     */
+    public void merge(StatPercentiles other) {
+        for (String stat : LeaderboardIndex.SUPPORTED_STATS) {
+            histograms.get(stat).merge(other.histograms.get(stat));
+        }
+    }
+
+    private static long scaledValue(String stat, PlayerStats stats) {
+        double value = LeaderboardIndex.statValue(stat, stats);
+        return "kd".equals(stat) ? Math.round(value * KD_SCALE) : (long) value;
+    }
+}
\ No newline at end of file
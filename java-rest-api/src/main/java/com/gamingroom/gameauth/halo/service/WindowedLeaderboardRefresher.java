@@ -0,0 +1,68 @@
+// Package: com.gamingroom.gameauth.halo.service
+// This class keeps the daily / weekly / season leaderboards in step with the database
+
+package com.gamingroom.gameauth.halo.service;
+
+import io.dropwizard.lifecycle.Managed;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * WindowedLeaderboardRefresher - Rebuilds the windowed leaderboards
+ *
+ * With a database the daily / weekly / season buckets are only filled
+ * from player_daily_totals, which every server's ingest transactions add
+ * to, so they are rebuilt from it every minute
+ * (HaloGameService.refreshWindowedLeaderboards). Without a database
+ * matches are added as they're processed and each tick does nothing.
+ *
+ * Registered with Dropwizard's lifecycle so the thread starts and stops
+ * with the server.
+ */
+public class WindowedLeaderboardRefresher implements Managed {
+    private static final Logger LOGGER = LoggerFactory.getLogger(WindowedLeaderboardRefresher.class);
+
+    // Also how long a finished match can take to show up in them
+    private static final long REFRESH_SECONDS = 60;
+
+    private final HaloGameService gameService;
+    private final ScheduledExecutorService executor;
+
+    /**
+     * @param gameService Holds the windowed leaderboards
+     */
+    public WindowedLeaderboardRefresher(HaloGameService gameService) {
+        this.gameService = gameService;
+        this.executor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "windowed-leaderboards");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @Override
+    public void start() {
+        // HaloGameService already built them once when it was created
+        executor.scheduleWithFixedDelay(this::refresh, REFRESH_SECONDS, REFRESH_SECONDS, TimeUnit.SECONDS);
+    }
+
+    @Override
+    public void stop() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Catch the daily / weekly / season leaderboards up with other servers' matches
+     */
+    void refresh() {
+        try {
+            gameService.refreshWindowedLeaderboards();
+        } catch (RuntimeException e) {
+            // An exception would cancel the schedule - try again next time
+            LOGGER.warn("Could not rebuild the windowed leaderboards", e);
+        }
+    }
+}
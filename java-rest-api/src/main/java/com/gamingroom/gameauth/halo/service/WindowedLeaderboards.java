@@ -0,0 +1,313 @@
+// Package: com.gamingroom.gameauth.halo.service
+// This class builds daily, weekly and season leaderboards from match results
+
+package com.gamingroom.gameauth.halo.service;
+
+import com.gamingroom.gameauth.halo.dao.MatchHistoryDAO;
+import com.gamingroom.gameauth.halo.models.*;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.Function;
+
+/**
+ * WindowedLeaderboards - Leaderboards for a time window instead of lifetime
+ *
+ * Every processed match adds the players' kills/deaths/wins to two
+ * "buckets": one for the day and one for the week it was played in.
+ * Inside a bucket the counters are split by game mode and playlist.
+ *
+ * 1. Daily  - today's bucket
+ * 2. Weekly - the last 7 daily buckets merged together
+ * 3. Season - the last 13 weekly buckets merged together
+ *
+ * Buckets older than the longest window are dropped automatically,
+ * so memory depends on the window length, not on how many matches
+ * have ever been played.
+ *
+ * The buckets only live in memory, so with a database they are instead
+ * rebuilt (rebuild) on startup and every minute after from the per-day
+ * totals each match's transaction adds to - that also brings in the
+ * matches other servers processed. recordMatch is only used without one.
+ */
+public class WindowedLeaderboards {
+    // Stats that make sense for a time window (rank level is lifetime only)
+    public static final List<String> SUPPORTED_STATS =
+        Arrays.asList("kills", "kd", "wins", "deaths");
+
+    public static final List<String> SUPPORTED_WINDOWS =
+        Arrays.asList("daily", "weekly", "season");
+
+    private static final int DAYS_PER_WEEK = 7;
+    private static final int WEEKS_PER_SEASON = 13;
+
+    // Playlist used for matches that don't say which playlist they're from
+    private static final String DEFAULT_PLAYLIST = "custom";
+
+    // Day number (epoch day) -> bucket (replaced as a whole by rebuild)
+    private volatile ConcurrentNavigableMap<Long, Bucket> dailyBuckets = new ConcurrentSkipListMap<>();
+
+    // Week number (epoch day / 7) -> bucket (replaced as a whole by rebuild)
+    private volatile ConcurrentNavigableMap<Long, Bucket> weeklyBuckets = new ConcurrentSkipListMap<>();
+
+    /**
+     * Add a finished match to the day and week it was played in
+     *
+     * @param match The match result (uses its timestamp, game mode and playlist)
+     */
+    public void recordMatch(MatchResult match) {
+        long day = match.getTimestamp() != null
+            ? match.getTimestamp().toLocalDate().toEpochDay()
+            : LocalDate.now().toEpochDay();
+        long week = Math.floorDiv(day, DAYS_PER_WEEK);
+
+        expireOldBuckets();
+
+        // Matches reported too late for any window are ignored
+        boolean keepDaily = day > today() - DAYS_PER_WEEK;
+        boolean keepWeekly = week > thisWeek() - WEEKS_PER_SEASON;
+
+        String segment = segmentKey(match.getGameMode(), match.getPlaylist());
+
+        for (MatchResult.PlayerMatchStats playerStats : match.getPlayerStats()) {
+            boolean wonMatch = playerStats.getTeam().equals(match.getWinningTeam());
+
+            if (keepDaily) {
+                dailyBuckets.computeIfAbsent(day, k -> new Bucket())
+                    .add(segment, playerStats, wonMatch);
+            }
+            if (keepWeekly) {
+                weeklyBuckets.computeIfAbsent(week, k -> new Bucket())
+                    .add(segment, playerStats, wonMatch);
+            }
+        }
+    }
+
+    /**
+     * Replace every bucket with totals read back from the database
+     * (don't also recordMatch the same matches - a match saved after the
+     * totals were read shows up in the next rebuild instead)
+     *
+     * @param totals Per-player totals for each day, game mode and playlist
+     *               since oldestDay()
+     */
+    public void rebuild(List<MatchHistoryDAO.DailyTotals> totals) {
+        ConcurrentNavigableMap<Long, Bucket> daily = new ConcurrentSkipListMap<>();
+        ConcurrentNavigableMap<Long, Bucket> weekly = new ConcurrentSkipListMap<>();
+        long firstDay = today() - DAYS_PER_WEEK;
+        long firstWeek = thisWeek() - WEEKS_PER_SEASON;
+
+        for (MatchHistoryDAO.DailyTotals row : totals) {
+            long day = row.getDay().toEpochDay();
+            long week = Math.floorDiv(day, DAYS_PER_WEEK);
+            String segment = segmentKey(row.getGameMode(), row.getPlaylist());
+
+            if (day > firstDay) {
+                daily.computeIfAbsent(day, k -> new Bucket()).add(segment, row);
+            }
+            if (week > firstWeek) {
+                weekly.computeIfAbsent(week, k -> new Bucket()).add(segment, row);
+            }
+        }
+
+        dailyBuckets = daily;
+        weeklyBuckets = weekly;
+    }
+
+    /**
+     * @return The first day any window can include (the start of the
+     *         oldest week in the season)
+     */
+    public static LocalDate oldestDay() {
+        return LocalDate.ofEpochDay((thisWeek() - WEEKS_PER_SEASON + 1) * DAYS_PER_WEEK);
+    }
+
+    /**
+     * Get the top players for a stat over a time window
+     *
+     * @param stat "kills", "kd", "wins" or "deaths"
+     * @param window "daily", "weekly" or "season"
+     * @param gameMode Only count this game mode (null = all modes)
+     * @param playlist Only count this playlist (null = all playlists)
+     * @param limit How many players to return
+     * @param lifetimeStats Looks up lifetime stats (for gamertag and rank) for
+     *                      all the returned players at once
+     * @return Players ordered from best to worst, with totals for the window
+     */
+    public List<PlayerStats> getTop(String stat, String window, GameMode gameMode, String playlist,
+                                    int limit,
+                                    Function<Collection<Long>, Map<Long, PlayerStats>> lifetimeStats) {
+        expireOldBuckets();
+
+        // Pick which buckets make up the window
+        Collection<Bucket> buckets;
+        switch (window) {
+            case "daily":
+                buckets = dailyBuckets.tailMap(today(), true).values();
+                break;
+            case "weekly":
+                buckets = dailyBuckets.tailMap(today() - DAYS_PER_WEEK, false).values();
+                break;
+            default:
+                buckets = weeklyBuckets.tailMap(thisWeek() - WEEKS_PER_SEASON, false).values();
+        }
+
+        // Merge the matching segments of each bucket into one set of totals
+        Map<Long, Counters> totals = new HashMap<>();
+        for (Bucket bucket : buckets) {
+            for (Map.Entry<String, Map<Long, Counters>> segment : bucket.segments.entrySet()) {
+                if (!segmentMatches(segment.getKey(), gameMode, playlist)) {
+                    continue;
+                }
+                for (Map.Entry<Long, Counters> player : segment.getValue().entrySet()) {
+                    totals.computeIfAbsent(player.getKey(), k -> new Counters())
+                          .addAll(player.getValue());
+                }
+            }
+        }
+
+        // Keep only the best `limit` players with a small min-heap
+        Comparator<Map.Entry<Long, Counters>> byStat = Comparator
+            .<Map.Entry<Long, Counters>>comparingDouble(e -> e.getValue().value(stat))
+            .thenComparing(Map.Entry::getKey, Comparator.reverseOrder());
+        PriorityQueue<Map.Entry<Long, Counters>> best = new PriorityQueue<>(byStat);
+        for (Map.Entry<Long, Counters> entry : totals.entrySet()) {
+            best.add(entry);
+            if (best.size() > limit) {
+                best.poll(); // Drop the worst one
+            }
+        }
+
+        List<Map.Entry<Long, Counters>> ordered = new ArrayList<>(best);
+        ordered.sort(byStat.reversed());
+
+        List<Long> playerIds = new ArrayList<>(ordered.size());
+        for (Map.Entry<Long, Counters> entry : ordered) {
+            playerIds.add(entry.getKey());
+        }
+        Map<Long, PlayerStats> lifetime = lifetimeStats.apply(playerIds);
+
+        List<PlayerStats> leaderboard = new ArrayList<>();
+        for (Map.Entry<Long, Counters> entry : ordered) {
+            leaderboard.add(entry.getValue().toPlayerStats(entry.getKey(), lifetime.get(entry.getKey())));
+        }
+        return leaderboard;
+    }
+
+    /**
+     * Drop buckets that are too old to be part of any window
+     */
+    private void expireOldBuckets() {
+        dailyBuckets.headMap(today() - DAYS_PER_WEEK, true).clear();
+        weeklyBuckets.headMap(thisWeek() - WEEKS_PER_SEASON, true).clear();
+    }
+
+    private static long today() {
+        return LocalDate.now().toEpochDay();
+    }
+
+    private static long thisWeek() {
+        return Math.floorDiv(today(), DAYS_PER_WEEK);
+    }
+
+    private static String segmentKey(GameMode gameMode, String playlist) {
+        String mode = gameMode != null ? gameMode.name() : "";
+        return mode + "|" + (playlist != null ? playlist : DEFAULT_PLAYLIST);
+    }
+
+    private static boolean segmentMatches(String segmentKey, GameMode gameMode, String playlist) {
+        int split = segmentKey.indexOf('|');
+        if (gameMode != null && !segmentKey.substring(0, split).equals(gameMode.name())) {
+            return false;
+        }
+        return playlist == null || segmentKey.substring(split + 1).equals(playlist);
+    }
+
+    /**
+     * One time bucket: segment ("GAME_MODE|playlist") -> player ID -> counters
+     */
+    private static final class Bucket {
+        final Map<String, Map<Long, Counters>> segments = new ConcurrentHashMap<>();
+
+        void add(String segment, MatchResult.PlayerMatchStats playerStats, boolean wonMatch) {
+            segments.computeIfAbsent(segment, k -> new ConcurrentHashMap<>())
+                    .computeIfAbsent(playerStats.getPlayerId(), k -> new Counters())
+                    .addMatch(playerStats, wonMatch);
+        }
+
+        void add(String segment, MatchHistoryDAO.DailyTotals row) {
+            segments.computeIfAbsent(segment, k -> new ConcurrentHashMap<>())
+                    .computeIfAbsent(row.getPlayerId(), k -> new Counters())
+                    .addTotals(row);
+        }
+    }
+
+    /**
+     * The stats a player gained inside one bucket
+     */
+    private static final class Counters {
+        int kills;
+        int deaths;
+        int assists;
+        int matchesPlayed;
+        int matchesWon;
+
+        synchronized void addMatch(MatchResult.PlayerMatchStats playerStats, boolean wonMatch) {
+            kills += playerStats.getKills();
+            deaths += playerStats.getDeaths();
+            assists += playerStats.getAssists();
+            matchesPlayed++;
+            matchesWon += wonMatch ? 1 : 0;
+        }
+
+        synchronized void addTotals(MatchHistoryDAO.DailyTotals row) {
+            kills += row.getKills();
+            deaths += row.getDeaths();
+            assists += row.getAssists();
+            matchesPlayed += row.getMatchesPlayed();
+            matchesWon += row.getMatchesWon();
+        }
+
+        void addAll(Counters other) {
+            synchronized (other) {
+                kills += other.kills;
+                deaths += other.deaths;
+                assists += other.assists;
+                matchesPlayed += other.matchesPlayed;
+                matchesWon += other.matchesWon;
+            }
+        }
+
+        double value(String stat) {
+            switch (stat) {
+                case "kd":
+                    return deaths > 0 ? (double) kills / deaths : kills;
+                case "wins":
+                    return matchesWon;
+                case "deaths":
+                    return deaths;
+                default:
+                    return kills;
+            }
+        }
+
+        PlayerStats toPlayerStats(Long playerId, PlayerStats lifetime) {
+            PlayerStats stats = new PlayerStats();
+            stats.setPlayerId(playerId);
+            stats.setTotalKills(kills);
+            stats.setTotalDeaths(deaths);
+            stats.setTotalAssists(assists);
+            stats.setMatchesPlayed(matchesPlayed);
+            stats.setMatchesWon(matchesWon);
+            stats.setWinRatio(matchesPlayed > 0 ? (double) matchesWon / matchesPlayed : 0.0);
+
+            // Name and rank come from lifetime stats
+            stats.setGamertag(lifetime != null ? lifetime.getGamertag() : null);
+            stats.setRankLevel(lifetime != null && lifetime.getRankLevel() != null
+                ? lifetime.getRankLevel() : 1);
+            return stats;
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,26 @@
+package com.gamingroom.gameauth.healthcheck;
+
+import java.io.IOException;
+
+import com.codahale.metrics.health.HealthCheck;
+import com.gamingroom.gameauth.halo.service.MatchLog;
+
+//Reports the match log as down while its fsyncs are failing
+//(accepted matches can't be made durable, so /match/complete answers 503)
+public class MatchLogHealthCheck extends HealthCheck {
+	private final MatchLog matchLog;
+
+	public MatchLogHealthCheck(MatchLog matchLog) {
+		super();
+		this.matchLog = matchLog;
+	}
+
+	@Override
+	protected Result check() throws Exception {
+		IOException failure = matchLog.getFsyncFailure();
+		if (failure == null) {
+			return Result.healthy();
+		}
+		return Result.unhealthy(failure);
+	}
+}
\ No newline at end of file
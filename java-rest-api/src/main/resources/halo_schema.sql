@@ -10,17 +10,50 @@ CREATE TABLE player_stats (
     rank_xp INT DEFAULT 0,
     rank_level INT DEFAULT 1,
     highest_skill INT DEFAULT 1,
+    -- Kept up to date by the database so the K/D leaderboard can use an index
+    -- (same rule as PlayerStats.getKdRatio(): no deaths means K/D = kills)
+    kd_ratio DOUBLE PRECISION GENERATED ALWAYS AS (
+        CASE WHEN total_deaths > 0 THEN CAST(total_kills AS DOUBLE PRECISION) / total_deaths
+             ELSE total_kills END
+    ) STORED,
     created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
     updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP
 );
 
+-- Medal and weapon names, each stored once. Other tables keep the
+-- small id instead of repeating the name on every row
+CREATE TABLE medal_types (
+    id SMALLSERIAL PRIMARY KEY,
+    name VARCHAR(50) UNIQUE NOT NULL
+);
+
+CREATE TABLE weapon_types (
+    id SMALLSERIAL PRIMARY KEY,
+    name VARCHAR(50) UNIQUE NOT NULL
+);
+
 -- Medals earned
 CREATE TABLE player_medals (
     id BIGSERIAL PRIMARY KEY,
     player_id BIGINT REFERENCES users(id),
-    medal_type VARCHAR(50),
+    medal_id SMALLINT REFERENCES medal_types(id),
     count INT DEFAULT 1,
-    first_earned TIMESTAMP DEFAULT CURRENT_TIMESTAMP
+    first_earned TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    -- One row per player per medal, so match ingest can upsert the count
+    UNIQUE (player_id, medal_id)
+);
+
+-- Lifetime kills with each weapon (one row per player per weapon used,
+-- added to after every match so reads never touch match history).
+-- weapon stays a name, not a weapon_types id: there is only one row per
+-- player per weapon (not one per match), so a SMALLINT saves little here,
+-- and WeaponStatsDAO can then upsert and read it without the dictionary.
+-- Switching would mean rebuilding the primary key of a live table
+CREATE TABLE player_weapon_stats (
+    player_id BIGINT REFERENCES users(id),
+    weapon VARCHAR(50),
+    kills INT DEFAULT 0,
+    PRIMARY KEY (player_id, weapon)
 );
 
 -- Custom maps
@@ -58,6 +91,7 @@ CREATE TABLE match_history (
     match_id UUID UNIQUE NOT NULL,
     map_name VARCHAR(100),
     game_mode VARCHAR(50),
+    playlist VARCHAR(50),
     winning_team INT,
     duration_seconds INT,
     started_at TIMESTAMP,
@@ -74,11 +108,229 @@ CREATE TABLE player_match_results (
     deaths INT DEFAULT 0,
     assists INT DEFAULT 0,
     score INT DEFAULT 0,
-    medals_earned JSONB,
-    weapon_stats JSONB
+    medal_ids SMALLINT[],      -- medal_types ids, one per medal earned
+    weapon_ids SMALLINT[],     -- weapon_types ids ...
+    weapon_kills INT[]         -- ... and kills with each (same order)
+);
+
+-- Rank-ups (one row each time a match moves a player up a level)
+CREATE TABLE player_rank_events (
+    id BIGSERIAL PRIMARY KEY,
+    player_id BIGINT REFERENCES users(id),
+    match_id UUID REFERENCES match_history(match_id),
+    old_level INT,
+    new_level INT,
+    rank_xp INT,
+    created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP
+);
+
+-- Each player's totals per day, game mode and playlist, added to in the
+-- same transaction as the match. The daily / weekly / season leaderboards
+-- are rebuilt from these instead of from match history. Days older than
+-- the season are deleted (MatchHistoryDAO.deleteDailyTotalsBefore)
+CREATE TABLE player_daily_totals (
+    day DATE,
+    game_mode VARCHAR(50),
+    playlist VARCHAR(50),      -- '' for matches without a playlist
+    player_id BIGINT,
+    kills INT NOT NULL DEFAULT 0,
+    deaths INT NOT NULL DEFAULT 0,
+    assists INT NOT NULL DEFAULT 0,
+    matches_played INT NOT NULL DEFAULT 0,
+    matches_won INT NOT NULL DEFAULT 0,
+    PRIMARY KEY (day, game_mode, playlist, player_id)
+);
+
+-- "Top X%" counts: players in each value bucket of each leaderboard stat
+-- (StatHistogram buckets). Every ingest transaction adds its changes, so
+-- servers read a few hundred rows instead of scanning player_stats. The
+-- row with stat '*' marks the table as built from player_stats
+CREATE TABLE stat_histograms (
+    stat VARCHAR(10),
+    bucket INT,
+    players BIGINT NOT NULL DEFAULT 0,
+    PRIMARY KEY (stat, bucket)
 );
 
 -- Create indexes for performance
-CREATE INDEX idx_player_stats_rank ON player_stats(rank_level DESC);
+-- Leaderboard indexes: sorted the same way as the leaderboard query
+-- (stat DESC, player_id) and INCLUDE every column it reads, so each
+-- leaderboard request is a short index-only range scan
+CREATE INDEX idx_player_stats_kills ON player_stats(total_kills DESC, player_id)
+    INCLUDE (total_deaths, total_assists, matches_played, matches_won, rank_level, rank_xp, highest_skill);
+CREATE INDEX idx_player_stats_kd ON player_stats(kd_ratio DESC, player_id)
+    INCLUDE (total_kills, total_deaths, total_assists, matches_played, matches_won, rank_level, rank_xp, highest_skill);
+CREATE INDEX idx_player_stats_wins ON player_stats(matches_won DESC, player_id)
+    INCLUDE (total_kills, total_deaths, total_assists, matches_played, rank_level, rank_xp, highest_skill);
+CREATE INDEX idx_player_stats_deaths ON player_stats(total_deaths DESC, player_id)
+    INCLUDE (total_kills, total_assists, matches_played, matches_won, rank_level, rank_xp, highest_skill);
+CREATE INDEX idx_player_stats_rank_level ON player_stats(rank_level DESC, player_id)
+    INCLUDE (total_kills, total_deaths, total_assists, matches_played, matches_won, rank_xp, highest_skill);
+-- Profile query: a player's medals come straight from the index
+CREATE INDEX idx_player_medals_player ON player_medals(player_id) INCLUDE (medal_id, count);
+CREATE INDEX idx_player_rank_events_player ON player_rank_events(player_id, created_at DESC);
 CREATE INDEX idx_custom_maps_rating ON custom_maps(rating DESC);
-CREATE INDEX idx_match_history_player ON player_match_results(player_id, match_id);
\ No newline at end of file
+CREATE INDEX idx_match_history_player ON player_match_results(player_id, match_id);
+-- Filling player_daily_totals (migration below) reads the last 13 weeks
+CREATE INDEX idx_match_history_started ON match_history(started_at);
+
+-- Migration: leaderboard K/D column and indexes (for databases created
+-- before kd_ratio existed; safe to run more than once)
+ALTER TABLE player_stats ADD COLUMN IF NOT EXISTS kd_ratio DOUBLE PRECISION GENERATED ALWAYS AS (
+    CASE WHEN total_deaths > 0 THEN CAST(total_kills AS DOUBLE PRECISION) / total_deaths
+         ELSE total_kills END
+) STORED;
+DROP INDEX IF EXISTS idx_player_stats_rank; -- replaced by idx_player_stats_rank_level
+CREATE INDEX IF NOT EXISTS idx_player_stats_kills ON player_stats(total_kills DESC, player_id)
+    INCLUDE (total_deaths, total_assists, matches_played, matches_won, rank_level, rank_xp, highest_skill);
+CREATE INDEX IF NOT EXISTS idx_player_stats_kd ON player_stats(kd_ratio DESC, player_id)
+    INCLUDE (total_kills, total_deaths, total_assists, matches_played, matches_won, rank_level, rank_xp, highest_skill);
+CREATE INDEX IF NOT EXISTS idx_player_stats_wins ON player_stats(matches_won DESC, player_id)
+    INCLUDE (total_kills, total_deaths, total_assists, matches_played, rank_level, rank_xp, highest_skill);
+CREATE INDEX IF NOT EXISTS idx_player_stats_deaths ON player_stats(total_deaths DESC, player_id)
+    INCLUDE (total_kills, total_assists, matches_played, matches_won, rank_level, rank_xp, highest_skill);
+CREATE INDEX IF NOT EXISTS idx_player_stats_rank_level ON player_stats(rank_level DESC, player_id)
+    INCLUDE (total_kills, total_deaths, total_assists, matches_played, matches_won, rank_xp, highest_skill);
+
+-- Migration: per-weapon counters (safe to run more than once)
+CREATE TABLE IF NOT EXISTS player_weapon_stats (
+    player_id BIGINT REFERENCES users(id),
+    weapon VARCHAR(50),
+    kills INT DEFAULT 0,
+    PRIMARY KEY (player_id, weapon)
+);
+
+-- Migration: rank-up history (safe to run more than once)
+CREATE TABLE IF NOT EXISTS player_rank_events (
+    id BIGSERIAL PRIMARY KEY,
+    player_id BIGINT REFERENCES users(id),
+    match_id UUID REFERENCES match_history(match_id),
+    old_level INT,
+    new_level INT,
+    rank_xp INT,
+    created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP
+);
+CREATE INDEX IF NOT EXISTS idx_player_rank_events_player ON player_rank_events(player_id, created_at DESC);
+
+-- Migration: one row per player per medal (safe to run more than once)
+-- Merge duplicate rows into the oldest one (only needed while player_medals
+-- still has medal_type - the dictionary migration below replaces it)
+DO $$
+BEGIN
+    IF EXISTS (SELECT 1 FROM information_schema.columns
+               WHERE table_name = 'player_medals' AND column_name = 'medal_type') THEN
+        UPDATE player_medals pm SET count = d.total
+        FROM (SELECT min(id) AS keep_id, sum(count) AS total FROM player_medals
+              GROUP BY player_id, medal_type HAVING count(*) > 1) d
+        WHERE pm.id = d.keep_id;
+        DELETE FROM player_medals pm USING player_medals older
+        WHERE pm.player_id = older.player_id AND pm.medal_type = older.medal_type AND pm.id > older.id;
+    END IF;
+END $$;
+
+-- Migration: medal / weapon dictionaries (safe to run more than once)
+-- Names move to medal_types / weapon_types, and player_medals and
+-- player_match_results keep small ids instead
+CREATE TABLE IF NOT EXISTS medal_types (
+    id SMALLSERIAL PRIMARY KEY,
+    name VARCHAR(50) UNIQUE NOT NULL
+);
+CREATE TABLE IF NOT EXISTS weapon_types (
+    id SMALLSERIAL PRIMARY KEY,
+    name VARCHAR(50) UNIQUE NOT NULL
+);
+ALTER TABLE player_medals ADD COLUMN IF NOT EXISTS medal_id SMALLINT REFERENCES medal_types(id);
+ALTER TABLE player_match_results ADD COLUMN IF NOT EXISTS medal_ids SMALLINT[];
+ALTER TABLE player_match_results ADD COLUMN IF NOT EXISTS weapon_ids SMALLINT[];
+ALTER TABLE player_match_results ADD COLUMN IF NOT EXISTS weapon_kills INT[];
+DO $$
+BEGIN
+    IF EXISTS (SELECT 1 FROM information_schema.columns
+               WHERE table_name = 'player_medals' AND column_name = 'medal_type') THEN
+        INSERT INTO medal_types (name)
+        SELECT DISTINCT medal_type FROM player_medals WHERE medal_type IS NOT NULL
+        ON CONFLICT (name) DO NOTHING;
+        UPDATE player_medals pm SET medal_id = mt.id FROM medal_types mt WHERE mt.name = pm.medal_type;
+        -- Also drops the old (player_id, medal_type) indexes
+        ALTER TABLE player_medals DROP COLUMN medal_type;
+    END IF;
+
+    IF EXISTS (SELECT 1 FROM information_schema.columns
+               WHERE table_name = 'player_match_results' AND column_name = 'medals_earned') THEN
+        -- medals_earned held either a JSON array or a comma-joined string
+        CREATE TEMP TABLE old_medals ON COMMIT DROP AS
+        SELECT pmr.id, m.name, m.n
+        FROM player_match_results pmr
+        CROSS JOIN LATERAL unnest(CASE jsonb_typeof(pmr.medals_earned)
+                                      WHEN 'array' THEN ARRAY(SELECT jsonb_array_elements_text(pmr.medals_earned))
+                                      WHEN 'string' THEN string_to_array(pmr.medals_earned #>> '{}', ',')
+                                  END) WITH ORDINALITY AS m(name, n);
+        INSERT INTO medal_types (name) SELECT DISTINCT name FROM old_medals ON CONFLICT (name) DO NOTHING;
+        UPDATE player_match_results pmr SET medal_ids = o.ids
+        FROM (SELECT om.id, array_agg(mt.id ORDER BY om.n) AS ids
+              FROM old_medals om JOIN medal_types mt ON mt.name = om.name
+              GROUP BY om.id) o
+        WHERE pmr.id = o.id;
+
+        -- weapon_stats held a JSON object of weapon -> kills
+        CREATE TEMP TABLE old_weapons ON COMMIT DROP AS
+        SELECT pmr.id, w.key AS name, w.value::int AS kills
+        FROM player_match_results pmr
+        CROSS JOIN LATERAL jsonb_each_text(CASE jsonb_typeof(pmr.weapon_stats)
+                                               WHEN 'object' THEN pmr.weapon_stats
+                                               ELSE '{}'::jsonb
+                                           END) AS w;
+        INSERT INTO weapon_types (name) SELECT DISTINCT name FROM old_weapons ON CONFLICT (name) DO NOTHING;
+        UPDATE player_match_results pmr SET weapon_ids = o.ids, weapon_kills = o.kills
+        FROM (SELECT ow.id, array_agg(wt.id ORDER BY wt.id) AS ids,
+                     array_agg(ow.kills ORDER BY wt.id) AS kills
+              FROM old_weapons ow JOIN weapon_types wt ON wt.name = ow.name
+              GROUP BY ow.id) o
+        WHERE pmr.id = o.id;
+
+        ALTER TABLE player_match_results DROP COLUMN medals_earned;
+        ALTER TABLE player_match_results DROP COLUMN weapon_stats;
+    END IF;
+END $$;
+CREATE UNIQUE INDEX IF NOT EXISTS idx_player_medals_player_medal ON player_medals(player_id, medal_id);
+CREATE INDEX IF NOT EXISTS idx_player_medals_player ON player_medals(player_id) INCLUDE (medal_id, count);
+
+-- Migration: windowed leaderboards are rebuilt from match history, which
+-- needs each match's playlist (safe to run more than once)
+ALTER TABLE match_history ADD COLUMN IF NOT EXISTS playlist VARCHAR(50);
+CREATE INDEX IF NOT EXISTS idx_match_history_started ON match_history(started_at);
+
+-- Migration: shared "top X%" counts (safe to run more than once; the
+-- first server to start fills it from player_stats)
+CREATE TABLE IF NOT EXISTS stat_histograms (
+    stat VARCHAR(10),
+    bucket INT,
+    players BIGINT NOT NULL DEFAULT 0,
+    PRIMARY KEY (stat, bucket)
+);
+
+-- Migration: per-day totals for the windowed leaderboards (safe to run
+-- more than once; fills the table from the last season of match history
+-- the first time)
+CREATE TABLE IF NOT EXISTS player_daily_totals (
+    day DATE,
+    game_mode VARCHAR(50),
+    playlist VARCHAR(50),      -- '' for matches without a playlist
+    player_id BIGINT,
+    kills INT NOT NULL DEFAULT 0,
+    deaths INT NOT NULL DEFAULT 0,
+    assists INT NOT NULL DEFAULT 0,
+    matches_played INT NOT NULL DEFAULT 0,
+    matches_won INT NOT NULL DEFAULT 0,
+    PRIMARY KEY (day, game_mode, playlist, player_id)
+);
+INSERT INTO player_daily_totals
+    (day, game_mode, playlist, player_id, kills, deaths, assists, matches_played, matches_won)
+SELECT CAST(m.started_at AS DATE), COALESCE(m.game_mode, ''), COALESCE(m.playlist, ''), pmr.player_id,
+       sum(pmr.kills), sum(pmr.deaths), sum(pmr.assists), count(*),
+       count(*) FILTER (WHERE pmr.team = m.winning_team)
+FROM match_history m
+JOIN player_match_results pmr ON m.match_id = pmr.match_id
+WHERE m.started_at >= CURRENT_DATE - 98
+  AND NOT EXISTS (SELECT 1 FROM player_daily_totals)
+GROUP BY 1, 2, 3, 4;
@@ -0,0 +1,203 @@
+// Package: com.gamingroom.gameauth.halo.dao
+// This class measures how many connections and round trips saving a match costs
+
+package com.gamingroom.gameauth.halo.dao;
+
+import com.gamingroom.gameauth.halo.models.*;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Proxy;
+import java.sql.*;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.sql.DataSource;
+
+/**
+ * MatchIngestBenchmark - Connections, round trips and matches/s for MatchIngestDAO
+ *
+ * Not a unit test (nothing is asserted), just a main method. There is no
+ * Postgres here, so the DAOs talk to a fake DataSource instead:
+ *
+ * 1. Every execute*, commit and rollback is one round trip and waits
+ *    roundTripMicros (default 200; busy-wait, so short waits are accurate)
+ * 2. Every getConnection waits CONNECT_MICROS (taking one from the pool)
+ * 3. Queries return no rows
+ *
+ * Two paths are timed for a 16-player match:
+ * - "one transaction": MatchIngestDAO.saveMatchResults, which reads the
+ *   players' new rows back in the same transaction
+ * - "+ per-player reads": the same save followed by getPlayerStats for
+ *   each player, which is what HaloGameService used to do
+ *
+ * Run it after "mvn test-compile" with:
+ *   java -cp target/classes:target/test-classes:$(mvn -q dependency:build-classpath -Dmdep.outputFile=/dev/stdout) \
+ *        com.gamingroom.gameauth.halo.dao.MatchIngestBenchmark [roundTripMicros]
+ */
+public class MatchIngestBenchmark {
+    private static final int PLAYERS = 16;
+    private static final int WARMUP = 500;
+    private static final int MEASURED = 2_000;
+    private static final long CONNECT_MICROS = 20;
+
+    private static final AtomicLong connections = new AtomicLong();
+    private static final AtomicLong roundTrips = new AtomicLong();
+    private static long roundTripNanos;
+
+    public static void main(String[] args) {
+        long roundTripMicros = args.length > 0 ? Long.parseLong(args[0]) : 200;
+        roundTripNanos = roundTripMicros * 1000;
+
+        DataSource dataSource = fakeDataSource();
+        HaloStatsDAO statsDAO = new HaloStatsDAO(dataSource);
+        MatchIngestDAO ingestDAO = new MatchIngestDAO(dataSource, new MatchHistoryDAO(dataSource),
+                                                      statsDAO, new WeaponStatsDAO(dataSource));
+
+        System.out.println("Round trip: " + roundTripMicros + "us, " + PLAYERS + " players per match");
+        run("one transaction", ingestDAO, statsDAO, false);
+        run("+ per-player reads", ingestDAO, statsDAO, true);
+    }
+
+    private static void run(String path, MatchIngestDAO ingestDAO, HaloStatsDAO statsDAO, boolean perPlayerReads) {
+        for (int i = 0; i < WARMUP; i++) {
+            save(ingestDAO, statsDAO, i, perPlayerReads);
+        }
+
+        connections.set(0);
+        roundTrips.set(0);
+        long start = System.nanoTime();
+        for (int i = 0; i < MEASURED; i++) {
+            save(ingestDAO, statsDAO, i, perPlayerReads);
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        System.out.printf("%-20s %,6.0f matches/s %5.1f connections/match %5.1f round trips/match%n",
+                          path, MEASURED / seconds,
+                          (double) connections.get() / MEASURED, (double) roundTrips.get() / MEASURED);
+    }
+
+    private static void save(MatchIngestDAO ingestDAO, HaloStatsDAO statsDAO, int i, boolean perPlayerReads) {
+        MatchResult match = match(i);
+        Map<Long, Integer> xpEarned = new LinkedHashMap<>();
+        for (MatchResult.PlayerMatchStats player : match.getPlayerStats()) {
+            xpEarned.put(player.getPlayerId(), 300);
+        }
+
+        Map<String, Map<Long, Integer>> xpByMatch = new HashMap<>();
+        xpByMatch.put(match.getMatchId(), xpEarned);
+        ingestDAO.saveMatchResults(Collections.singletonList(match), xpByMatch);
+
+        if (perPlayerReads) {
+            for (Long playerId : xpEarned.keySet()) {
+                statsDAO.getPlayerStats(playerId);
+            }
+        }
+    }
+
+    private static MatchResult match(int i) {
+        MatchResult match = new MatchResult();
+        match.setMatchId("bench-" + i);
+        match.setMapName("Guardian");
+        match.setGameMode(GameMode.SLAYER);
+        match.setWinningTeam(0);
+        match.setDurationSeconds(600L);
+
+        List<MatchResult.PlayerMatchStats> players = new ArrayList<>();
+        for (int j = 0; j < PLAYERS; j++) {
+            MatchResult.PlayerMatchStats player = new MatchResult.PlayerMatchStats();
+            player.setPlayerId(1000L + j);
+            player.setTeam(j % 2);
+            player.setKills(10 + j);
+            player.setDeaths(5);
+            player.setAssists(3);
+            player.setScore(10);
+            player.setMedalsEarned(j % 3 == 0 ? Arrays.asList("Double Kill", "Killing Spree")
+                                              : Collections.singletonList("Double Kill"));
+            Map<String, Integer> weaponKills = new HashMap<>();
+            weaponKills.put("Battle Rifle", 6);
+            weaponKills.put("Sniper Rifle", 4);
+            player.setWeaponKills(weaponKills);
+            players.add(player);
+        }
+        match.setPlayerStats(players);
+        return match;
+    }
+
+    // ===== The fake database =====
+
+    private static DataSource fakeDataSource() {
+        return proxy(DataSource.class, (self, method, args) -> {
+            if (method.getName().equals("getConnection")) {
+                connections.incrementAndGet();
+                spin(CONNECT_MICROS * 1000);
+                return fakeConnection();
+            }
+            return defaultValue(method.getReturnType());
+        });
+    }
+
+    private static Connection fakeConnection() {
+        return proxy(Connection.class, (self, method, args) -> {
+            switch (method.getName()) {
+                case "prepareStatement":
+                case "createStatement":
+                    return fakeStatement();
+                case "commit":
+                case "rollback":
+                    roundTrip();
+                    return null;
+                case "createArrayOf":
+                    return proxy(java.sql.Array.class, (a, m, x) -> defaultValue(m.getReturnType()));
+                default:
+                    return defaultValue(method.getReturnType());
+            }
+        });
+    }
+
+    private static PreparedStatement fakeStatement() {
+        return proxy(PreparedStatement.class, (self, method, args) -> {
+            if (method.getName().startsWith("execute")) {
+                roundTrip();
+                if (method.getName().equals("executeQuery")) {
+                    return proxy(ResultSet.class, (r, m, x) -> defaultValue(m.getReturnType()));
+                }
+            }
+            return defaultValue(method.getReturnType());
+        });
+    }
+
+    private static void roundTrip() {
+        roundTrips.incrementAndGet();
+        spin(roundTripNanos);
+    }
+
+    private static void spin(long nanos) {
+        long end = System.nanoTime() + nanos;
+        while (System.nanoTime() < end) {
+            // Busy-wait: Thread.sleep can't wait a few microseconds
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T proxy(Class<T> type, InvocationHandler handler) {
+        return (T) Proxy.newProxyInstance(MatchIngestBenchmark.class.getClassLoader(), new Class<?>[] {type}, handler);
+    }
+
+    // What a JDBC call returns when there's nothing to say (no rows, 0 updates)
+    private static Object defaultValue(Class<?> type) {
+        if (type == boolean.class) {
+            return false;
+        }
+        if (type == int.class) {
+            return 0;
+        }
+        if (type == long.class) {
+            return 0L;
+        }
+        if (type == short.class) {
+            return (short) 0;
+        }
+        if (type == int[].class) {
+            return new int[0];
+        }
+        return null;
+    }
+}
\ No newline at end of file
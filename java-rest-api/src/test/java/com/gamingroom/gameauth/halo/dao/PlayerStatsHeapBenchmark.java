@@ -0,0 +1,157 @@
+// Package: com.gamingroom.gameauth.halo.dao
+// This class measures the heap and GC pauses of the in-memory player stats layouts
+
+package com.gamingroom.gameauth.halo.dao;
+
+import com.gamingroom.gameauth.halo.models.PlayerStats;
+import com.gamingroom.gameauth.halo.service.LeaderboardIndex;
+import com.sun.management.GarbageCollectionNotificationInfo;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import javax.management.Notification;
+import javax.management.NotificationEmitter;
+import javax.management.NotificationListener;
+import javax.management.openmbean.CompositeData;
+
+/**
+ * PlayerStatsHeapBenchmark - Heap and GC pauses: HashMap<Long, PlayerStats> vs PlayerStatsStore
+ *
+ * Not a unit test (nothing is asserted), just a main method. For each
+ * layout, with a LeaderboardIndex that looks players up in it:
+ *
+ * 1. Fill it with `players` players and index them all
+ * 2. Run a full GC and report the heap still in use (the retained size)
+ * 3. Apply UPDATES random match results (stats read, changed, stored and
+ *    moved in the index, like HaloGameService does without a database) and
+ *    report updates/s with the number, total and longest of the GC pauses
+ *    that happened meanwhile
+ * 4. Time one more full GC - it has to walk everything still alive, so
+ *    this is where millions of small objects show up
+ *
+ * Each layout should be run in its own JVM with the same fixed heap so
+ * they don't share a heap that's already been sized by the other, e.g.:
+ *   java -Xms4g -Xmx4g -cp target/classes:target/test-classes:$(mvn -q dependency:build-classpath -Dmdep.outputFile=/dev/stdout) \
+ *        com.gamingroom.gameauth.halo.dao.PlayerStatsHeapBenchmark [players] [map|store]
+ * (without a layout both are run, one after the other)
+ */
+public class PlayerStatsHeapBenchmark {
+    private static final int DEFAULT_PLAYERS = 1_000_000;
+    private static final int UPDATES = 2_000_000;
+
+    // GC pauses seen since the last reset (filled in by the GC notifications)
+    private static final AtomicLong pauseCount = new AtomicLong();
+    private static final AtomicLong pauseMillis = new AtomicLong();
+    private static final AtomicLong longestPauseMillis = new AtomicLong();
+
+    public static void main(String[] args) {
+        int players = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_PLAYERS;
+        String layout = args.length > 1 ? args[1] : null;
+
+        listenForPauses();
+        System.out.printf("%,d players, %,d updates, max heap %,d MB%n",
+                          players, UPDATES, Runtime.getRuntime().maxMemory() >> 20);
+
+        if (layout == null || layout.equals("map")) {
+            Map<Long, PlayerStats> map = new HashMap<>();
+            run("HashMap<Long, PlayerStats>", players, map::get, stats -> map.put(stats.getPlayerId(), stats));
+            map.clear();
+        }
+        if (layout == null || layout.equals("store")) {
+            PlayerStatsStore store = new PlayerStatsStore();
+            run("PlayerStatsStore", players, store::get, store::put);
+        }
+    }
+
+    private static void run(String name, int players, Function<Long, PlayerStats> get, Consumer<PlayerStats> put) {
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        fullGc();
+        long heapBefore = memory.getHeapMemoryUsage().getUsed();
+
+        LeaderboardIndex index = new LeaderboardIndex(get);
+        Random random = new Random(42);
+        for (long playerId = 1; playerId <= players; playerId++) {
+            PlayerStats stats = new PlayerStats();
+            stats.setPlayerId(playerId);
+            stats.setGamertag("Player" + playerId);
+            stats.setTotalKills(random.nextInt(50_000));
+            stats.setTotalDeaths(1 + random.nextInt(50_000));
+            stats.setTotalAssists(random.nextInt(20_000));
+            stats.setMatchesPlayed(1 + random.nextInt(5_000));
+            stats.setMatchesWon(random.nextInt(stats.getMatchesPlayed()));
+            stats.setRankLevel(1 + random.nextInt(50));
+            stats.setRankXP(0);
+            stats.setHighestSkill(1);
+            put.accept(stats);
+            index.update(stats);
+        }
+
+        fullGc();
+        long retained = memory.getHeapMemoryUsage().getUsed() - heapBefore;
+
+        resetPauses();
+        long start = System.nanoTime();
+        for (int i = 0; i < UPDATES; i++) {
+            PlayerStats stats = get.apply(1L + random.nextInt(players));
+            stats.setTotalKills(stats.getTotalKills() + random.nextInt(30));
+            stats.setTotalDeaths(stats.getTotalDeaths() + random.nextInt(20));
+            stats.setMatchesPlayed(stats.getMatchesPlayed() + 1);
+            stats.setMatchesWon(stats.getMatchesWon() + random.nextInt(2));
+            put.accept(stats);
+            index.update(stats);
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        long updatePauses = pauseCount.get();
+        long updatePauseMillis = pauseMillis.get();
+        long longestPause = longestPauseMillis.get();
+
+        long fullGcStart = System.nanoTime();
+        fullGc();
+        double fullGcMillis = (System.nanoTime() - fullGcStart) / 1e6;
+
+        System.out.printf("%-28s %,7d MB retained %,10.0f updates/s %,5d GC pauses %,7d ms total %,5d ms longest %,7.0f ms full GC (%d indexed)%n",
+                          name, retained >> 20, UPDATES / seconds, updatePauses, updatePauseMillis,
+                          longestPause, fullGcMillis, index.size());
+    }
+
+    private static void fullGc() {
+        System.gc();
+        System.gc();
+    }
+
+    private static void resetPauses() {
+        pauseCount.set(0);
+        pauseMillis.set(0);
+        longestPauseMillis.set(0);
+    }
+
+    /**
+     * Count every collection's duration (the MXBeans only give running
+     * totals, the notifications also give the longest single pause)
+     */
+    private static void listenForPauses() {
+        NotificationListener listener = (Notification notification, Object handback) -> {
+            if (!GarbageCollectionNotificationInfo.GARBAGE_COLLECTION_NOTIFICATION.equals(notification.getType())) {
+                return;
+            }
+            GarbageCollectionNotificationInfo info =
+                GarbageCollectionNotificationInfo.from((CompositeData) notification.getUserData());
+            if (info.getGcName().contains("Concurrent") || info.getGcName().contains("Cycles")) {
+                return; // Runs alongside the application - not a pause
+            }
+            long millis = info.getGcInfo().getDuration();
+            pauseCount.incrementAndGet();
+            pauseMillis.addAndGet(millis);
+            longestPauseMillis.accumulateAndGet(millis, Math::max);
+        };
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            if (gc instanceof NotificationEmitter) {
+                ((NotificationEmitter) gc).addNotificationListener(listener, null, null);
+            }
+        }
+    }
+}
@@ -0,0 +1,167 @@
+// Package: com.gamingroom.gameauth.halo.json
+// This class compares the hand-written serializers with Jackson's reflective ones
+
+package com.gamingroom.gameauth.halo.json;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.gamingroom.gameauth.halo.models.*;
+import io.dropwizard.jackson.Jackson;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.time.LocalDateTime;
+import java.util.*;
+
+/**
+ * HaloJsonModuleBenchmark - ns/op and bytes/op, reflective vs HaloJsonModule
+ *
+ * Not a unit test (nothing is asserted), just a main method:
+ *
+ * 1. Build one typical PlayerStats, MatchResult and CustomMap
+ * 2. For each, write it WARMUP times and then MEASURED times to a stream
+ *    that throws the bytes away, once with Dropwizard's plain mapper
+ *    (reflective bean serialization, the old path) and once with
+ *    HaloJsonModule registered
+ * 3. Print the time and the bytes allocated per write (from the JVM's
+ *    per-thread allocation counter)
+ *
+ * Run it after "mvn test-compile" with:
+ *   java -cp target/classes:target/test-classes:$(mvn -q dependency:build-classpath -Dmdep.outputFile=/dev/stdout) \
+ *        com.gamingroom.gameauth.halo.json.HaloJsonModuleBenchmark
+ */
+public class HaloJsonModuleBenchmark {
+    private static final int WARMUP = 2_000_000;
+    private static final int MEASURED = 3_000_000;
+
+    // Swallows the JSON so only serialization is measured
+    private static final OutputStream DISCARD = new OutputStream() {
+        @Override
+        public void write(int b) {}
+
+        @Override
+        public void write(byte[] b, int off, int len) {}
+    };
+
+    public static void main(String[] args) throws IOException {
+        ObjectMapper reflective = Jackson.newObjectMapper();
+        ObjectMapper handWritten = Jackson.newObjectMapper().registerModule(new HaloJsonModule());
+
+        Map<String, Object> samples = new LinkedHashMap<>();
+        samples.put("PlayerStats", playerStats());
+        samples.put("MatchResult", matchResult());
+        samples.put("CustomMap", customMap());
+
+        for (Map.Entry<String, Object> sample : samples.entrySet()) {
+            run("reflective", sample.getKey(), reflective.writer(), sample.getValue());
+            run("HaloJsonModule", sample.getKey(), handWritten.writer(), sample.getValue());
+        }
+    }
+
+    private static void run(String path, String type, ObjectWriter writer, Object value) throws IOException {
+        for (int i = 0; i < WARMUP; i++) {
+            writer.writeValue(DISCARD, value);
+        }
+
+        com.sun.management.ThreadMXBean threads =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long thread = Thread.currentThread().getId();
+
+        long bytesBefore = threads.getThreadAllocatedBytes(thread);
+        long start = System.nanoTime();
+        for (int i = 0; i < MEASURED; i++) {
+            writer.writeValue(DISCARD, value);
+        }
+        long elapsed = System.nanoTime() - start;
+        long allocated = threads.getThreadAllocatedBytes(thread) - bytesBefore;
+
+        System.out.printf("%-14s %-12s %,6d ns/op %,6d B/op%n",
+                          path, type, elapsed / MEASURED, allocated / MEASURED);
+    }
+
+    private static PlayerStats playerStats() {
+        PlayerStats stats = new PlayerStats();
+        stats.setPlayerId(985752863L);
+        stats.setGamertag("MasterChief");
+        stats.setTotalKills(1337);
+        stats.setTotalDeaths(451);
+        stats.setTotalAssists(256);
+        stats.setRankLevel(45);
+        stats.setRankXP(12500);
+        stats.setHighestSkill(50);
+        stats.setMatchesPlayed(150);
+        stats.setMatchesWon(95);
+        stats.setWinRatio(0.6333);
+
+        Map<String, Integer> medals = new LinkedHashMap<>();
+        medals.put("Killing Spree", 5);
+        medals.put("Double Kill", 12);
+        stats.setMedals(medals);
+
+        WeaponStats sniper = new WeaponStats();
+        sniper.setKills(40);
+        Map<String, WeaponStats> weapons = new LinkedHashMap<>();
+        weapons.put("Sniper", sniper);
+        stats.setWeaponStats(weapons);
+
+        Map<String, Double> topPercent = new LinkedHashMap<>();
+        topPercent.put("kills", 12.5);
+        stats.setTopPercent(topPercent);
+
+        RecentPerformance recent = new RecentPerformance();
+        recent.setMatches(2);
+        recent.setKills(20);
+        recent.setDeaths(5);
+        recent.setAssists(1);
+        recent.setKdRatio(4.0);
+        recent.setWinRate(0.5);
+        recent.setAverageScore(10.0);
+        recent.setKdTrend(0.5);
+        recent.setResults(Arrays.asList("W", "L"));
+        stats.setRecentPerformance(recent);
+        return stats;
+    }
+
+    private static MatchResult matchResult() {
+        MatchResult match = new MatchResult();
+        match.setMatchId("4b0c6a47-2a5e-4a51-9f0e-3f6f7c0a9d11");
+        match.setMapName("Valhalla");
+        match.setGameMode(GameMode.SLAYER);
+        match.setPlaylist("ranked");
+        match.setWinningTeam(1);
+        match.setDurationSeconds(600L);
+        match.setTimestamp(LocalDateTime.of(2026, 1, 2, 3, 4, 5));
+
+        MatchResult.PlayerMatchStats player = new MatchResult.PlayerMatchStats();
+        player.setPlayerId(1L);
+        player.setTeam(1);
+        player.setKills(10);
+        player.setDeaths(2);
+        player.setAssists(3);
+        player.setScore(15);
+        player.setMedalsEarned(Collections.singletonList("Double Kill"));
+        player.setWeaponKills(Collections.singletonMap("Sniper", 3));
+        match.setPlayerStats(Collections.singletonList(player));
+        return match;
+    }
+
+    private static CustomMap customMap() {
+        CustomMap map = new CustomMap();
+        map.setId(7L);
+        map.setMapName("Epic Forge Map");
+        map.setAuthorGamertag("MasterChief");
+        map.setAuthorId(1L);
+        map.setBaseMap(BaseMapType.values()[0]);
+        map.setGameMode("Slayer");
+        map.setDescription("Two bases and a bridge");
+        map.setDownloadCount(3);
+        map.setRating(4.5);
+        map.setTags(Arrays.asList("competitive", "4v4"));
+        map.setCreatedAt(LocalDateTime.of(2026, 1, 2, 3, 4, 5));
+
+        CustomMap.MapData mapData = new CustomMap.MapData();
+        mapData.setObjects(new ArrayList<>());
+        map.setMapData(mapData);
+        return map;
+    }
+}
\ No newline at end of file
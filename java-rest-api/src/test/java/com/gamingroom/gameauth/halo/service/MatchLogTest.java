@@ -0,0 +1,151 @@
+// Package: com.gamingroom.gameauth.halo.service
+// Checks that the match log hands back, after a restart, every match that was never marked done
+
+package com.gamingroom.gameauth.halo.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.gamingroom.gameauth.halo.models.MatchResult;
+import io.dropwizard.jackson.Jackson;
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class MatchLogTest {
+    private final ObjectMapper objectMapper = Jackson.newObjectMapper();
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void replaysMatchesThatWereNeverMarkedDone() throws Exception {
+        Path directory = folder.getRoot().toPath();
+
+        MatchLog log = new MatchLog(directory, 64 * 1024, objectMapper);
+        log.start();
+        MatchLog.Entry first = log.append(match("m1"));
+        MatchLog.Entry second = log.append(match("m2"));
+        MatchLog.Entry third = log.append(match("m3"));
+        log.markDone(second);
+        log.stop();
+
+        // Restart: m1 and m3 were never saved, in the order they were accepted
+        log = new MatchLog(directory, 64 * 1024, objectMapper);
+        log.start();
+        assertEquals(Arrays.asList("m1", "m3"), matchIds(log.takeUnsaved()));
+        assertTrue(log.takeUnsaved().isEmpty()); // Only handed over once
+        assertNull(log.getFsyncFailure());
+        log.stop();
+
+        // Still not marked done, so they come back again on the next start
+        log = new MatchLog(directory, 64 * 1024, objectMapper);
+        log.start();
+        List<MatchLog.Entry> unsaved = log.takeUnsaved();
+        assertEquals(Arrays.asList("m1", "m3"), matchIds(unsaved));
+        for (MatchLog.Entry entry : unsaved) {
+            log.markDone(entry);
+        }
+        log.stop();
+
+        log = new MatchLog(directory, 64 * 1024, objectMapper);
+        log.start();
+        assertTrue(log.takeUnsaved().isEmpty());
+        log.stop();
+    }
+
+    @Test
+    public void retryOfARefusedMatchIsReplayed() throws Exception {
+        Path directory = folder.getRoot().toPath();
+
+        // Refused (e.g. the queue was full): marked done straight away, and
+        // the game server sends the same match ID again, which is accepted
+        MatchLog log = new MatchLog(directory, 64 * 1024, objectMapper);
+        log.start();
+        log.markDone(log.append(match("m1")));
+        log.append(match("m1"));
+        log.stop();
+
+        // Crash before the retry was saved: the retry must come back
+        log = new MatchLog(directory, 64 * 1024, objectMapper);
+        log.start();
+        assertEquals(Collections.singletonList("m1"), matchIds(log.takeUnsaved()));
+        log.stop();
+    }
+
+    @Test
+    public void deletesOldSegmentsOnceEverythingInThemIsDone() throws Exception {
+        Path directory = folder.getRoot().toPath();
+
+        // Small segments, so 50 matches need several of them
+        MatchLog log = new MatchLog(directory, 2048, objectMapper);
+        log.start();
+        List<MatchLog.Entry> entries = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            entries.add(log.append(match("m" + i)));
+        }
+        int segmentsBefore = segmentFiles().length;
+        assertTrue(segmentsBefore > 2);
+
+        // Leave the last match pending and finish the rest
+        for (MatchLog.Entry entry : entries.subList(0, 49)) {
+            log.markDone(entry);
+        }
+        log.stop();
+
+        // Only the segments from the pending match onwards are left
+        assertTrue(segmentFiles().length < segmentsBefore);
+        log = new MatchLog(directory, 2048, objectMapper);
+        log.start();
+        assertEquals(Collections.singletonList("m49"), matchIds(log.takeUnsaved()));
+        log.stop();
+    }
+
+    @Test
+    public void deadLetteredMatchesAreNotReplayed() throws Exception {
+        Path directory = folder.getRoot().toPath();
+
+        MatchLog log = new MatchLog(directory, 64 * 1024, objectMapper);
+        log.start();
+        log.append(match("m1"));
+        log.deadLetter(log.append(match("m2")));
+        log.stop();
+
+        // m2 is in the dead-letter file instead, one JSON match per line
+        List<String> lines = Files.readAllLines(directory.resolve("dead-letter.ndjson"));
+        assertEquals(1, lines.size());
+        assertEquals("m2", objectMapper.readValue(lines.get(0), MatchResult.class).getMatchId());
+
+        log = new MatchLog(directory, 64 * 1024, objectMapper);
+        log.start();
+        assertEquals(Collections.singletonList("m1"), matchIds(log.takeUnsaved()));
+        log.stop();
+    }
+
+    private File[] segmentFiles() {
+        return folder.getRoot().listFiles((dir, name) -> name.endsWith(".log"));
+    }
+
+    private static MatchResult match(String matchId) {
+        MatchResult match = new MatchResult();
+        match.setMatchId(matchId);
+        match.setMapName("Guardian");
+        match.setWinningTeam(0);
+        match.setPlayerStats(new ArrayList<>());
+        return match;
+    }
+
+    private static List<String> matchIds(List<MatchLog.Entry> entries) {
+        List<String> ids = new ArrayList<>();
+        for (MatchLog.Entry entry : entries) {
+            ids.add(entry.getMatch().getMatchId());
+        }
+        return ids;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,86 @@
+// Package: com.gamingroom.gameauth.halo.service
+// This class measures how fast MedalEngine gets through kill feeds
+
+package com.gamingroom.gameauth.halo.service;
+
+import com.gamingroom.gameauth.halo.models.KillEvent;
+import java.util.*;
+
+/**
+ * MedalEngineBenchmark - Kill events per second on one core
+ *
+ * Not a unit test (nothing is asserted), just a main method:
+ *
+ * 1. Build MATCHES random 8v8 matches of KILLS_PER_MATCH kills each, with
+ *    bursts of quick kills and a mix of weapons so every rule gets work
+ * 2. Run them all through MedalEngine.evaluate a few times to warm up the JIT
+ * 3. Time ROUNDS more passes on this one thread and print events per second
+ *
+ * Run it after "mvn test-compile" with:
+ *   java -cp target/classes:target/test-classes:$(mvn -q dependency:build-classpath -Dmdep.outputFile=/dev/stdout) \
+ *        com.gamingroom.gameauth.halo.service.MedalEngineBenchmark
+ */
+public class MedalEngineBenchmark {
+    private static final int MATCHES = 2_000;
+    private static final int KILLS_PER_MATCH = 500;
+    private static final int PLAYERS = 16;
+    private static final int WARMUP_ROUNDS = 5;
+    private static final int ROUNDS = 10;
+
+    private static final String[] WEAPONS = {
+        "AssaultRifle", "BattleRifle", "Sniper", "EnergySword", "Shotgun", "RocketLauncher", "Grenade"
+    };
+
+    public static void main(String[] args) {
+        List<List<KillEvent>> matches = generateMatches(new Random(42));
+        MedalEngine engine = new MedalEngine(MedalEngine.DEFAULT_RULES);
+
+        long medals = 0;
+        for (int round = 0; round < WARMUP_ROUNDS; round++) {
+            medals += run(engine, matches);
+        }
+
+        long start = System.nanoTime();
+        for (int round = 0; round < ROUNDS; round++) {
+            medals += run(engine, matches);
+        }
+        long elapsed = System.nanoTime() - start;
+
+        long events = (long) ROUNDS * MATCHES * KILLS_PER_MATCH;
+        System.out.printf("%,d kill events in %.2f s = %,.0f events/sec on one thread (%,d medals)%n",
+                          events, elapsed / 1e9, events / (elapsed / 1e9), medals);
+    }
+
+    /**
+     * One pass over every match
+     *
+     * @return Medals awarded (printed so the work can't be optimized away)
+     */
+    private static long run(MedalEngine engine, List<List<KillEvent>> matches) {
+        long medals = 0;
+        for (List<KillEvent> match : matches) {
+            for (List<String> earned : engine.evaluate(match).values()) {
+                medals += earned.size();
+            }
+        }
+        return medals;
+    }
+
+    private static List<List<KillEvent>> generateMatches(Random random) {
+        List<List<KillEvent>> matches = new ArrayList<>(MATCHES);
+        for (int m = 0; m < MATCHES; m++) {
+            List<KillEvent> kills = new ArrayList<>(KILLS_PER_MATCH);
+            long time = 0;
+            for (int k = 0; k < KILLS_PER_MATCH; k++) {
+                // Mostly a few seconds apart, sometimes a quick burst
+                time += random.nextInt(4) == 0 ? random.nextInt(2_000) : random.nextInt(10_000);
+                long killer = random.nextInt(PLAYERS);
+                long victim = (killer + 1 + random.nextInt(PLAYERS - 1)) % PLAYERS;
+                Long killerId = random.nextInt(50) == 0 ? null : killer; // The odd fall death
+                kills.add(new KillEvent(time, killerId, victim, WEAPONS[random.nextInt(WEAPONS.length)]));
+            }
+            matches.add(kills);
+        }
+        return matches;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,142 @@
+// Package: com.gamingroom.gameauth.halo.service
+// Checks the medals MedalEngine awards from kill feeds with the default rules
+
+package com.gamingroom.gameauth.halo.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.gamingroom.gameauth.halo.models.KillEvent;
+import java.util.*;
+import org.junit.Test;
+
+public class MedalEngineTest {
+    private static final long PLAYER = 1L;
+    private static final long OTHER = 2L;
+
+    // Far enough apart that kills never chain into multi-kills
+    private static final long APART = 10_000;
+
+    private final MedalEngine engine = new MedalEngine(MedalEngine.DEFAULT_RULES);
+
+    @Test
+    public void killExactlyAtTheWindowStillChains() {
+        List<KillEvent> feed = Arrays.asList(
+            kill(0, PLAYER, OTHER, "BattleRifle"),
+            kill(MedalEngine.MULTI_KILL_WINDOW_MILLIS, PLAYER, 3L, "BattleRifle"));
+        assertEquals(Collections.singletonList("Double Kill"), medals(feed, PLAYER));
+
+        // One millisecond later and it's two separate kills
+        feed = Arrays.asList(
+            kill(0, PLAYER, OTHER, "BattleRifle"),
+            kill(MedalEngine.MULTI_KILL_WINDOW_MILLIS + 1, PLAYER, 3L, "BattleRifle"));
+        assertTrue(medals(feed, PLAYER).isEmpty());
+    }
+
+    @Test
+    public void chainsLongerThanOverkillAwardNothingMore() {
+        List<KillEvent> feed = new ArrayList<>();
+        for (int i = 0; i < 6; i++) {
+            feed.add(kill(i * 1000, PLAYER, 10L + i, "AssaultRifle"));
+        }
+        assertEquals(Arrays.asList("Double Kill", "Triple Kill", "Overkill"), medals(feed, PLAYER));
+    }
+
+    @Test
+    public void dyingResetsTheSpree() {
+        List<KillEvent> feed = new ArrayList<>();
+        long time = 0;
+        for (int i = 0; i < 4; i++) {
+            feed.add(kill(time += APART, PLAYER, OTHER, "AssaultRifle"));
+        }
+        feed.add(kill(time += APART, OTHER, PLAYER, "AssaultRifle"));
+        for (int i = 0; i < 4; i++) {
+            feed.add(kill(time += APART, PLAYER, OTHER, "AssaultRifle"));
+        }
+        assertTrue(medals(feed, PLAYER).isEmpty()); // 8 kills, but never 5 in one life
+
+        feed.add(kill(time + APART, PLAYER, OTHER, "AssaultRifle"));
+        assertEquals(Collections.singletonList("Killing Spree"), medals(feed, PLAYER));
+    }
+
+    @Test
+    public void weaponSpreesOnlyCountThatWeapon() {
+        List<KillEvent> feed = new ArrayList<>();
+        long time = 0;
+        for (int i = 0; i < 5; i++) {
+            feed.add(kill(time += APART, PLAYER, OTHER, "Sniper"));
+        }
+        assertEquals(Arrays.asList("Killing Spree", "Sharpshooter"), medals(feed, PLAYER));
+
+        // Four sniper kills and one with something else: a spree, but no Sharpshooter
+        feed.set(2, kill(feed.get(2).getTimeMillis(), PLAYER, OTHER, "Shotgun"));
+        assertEquals(Collections.singletonList("Killing Spree"), medals(feed, PLAYER));
+    }
+
+    @Test
+    public void suicidesAndEnvironmentDeathsAreDeathsButNotKills() {
+        MedalEngine.MatchMedals match = engine.newMatch();
+        long time = 0;
+        for (int i = 0; i < 4; i++) {
+            match.onKill(kill(time += APART, PLAYER, OTHER, "AssaultRifle"));
+        }
+        match.onKill(kill(time += APART, PLAYER, PLAYER, "Grenade")); // Suicide
+        match.onKill(kill(time += APART, null, OTHER, null));          // Fell off the map
+
+        assertEquals(4, match.getKills(PLAYER));
+        assertEquals(1, match.getDeaths(PLAYER));
+        assertEquals(0, match.getSpree(PLAYER));
+        assertEquals(5, match.getDeaths(OTHER));
+        assertEquals(0, match.getKills(OTHER));
+        assertFalse(match.getPlayerIds().contains(null));
+    }
+
+    @Test
+    public void perfectionNeedsFifteenKillsAndNoDeaths() {
+        List<KillEvent> feed = new ArrayList<>();
+        long time = 0;
+        for (int i = 0; i < 15; i++) {
+            feed.add(kill(time += APART, PLAYER, OTHER, "AssaultRifle"));
+        }
+        assertEquals(Arrays.asList("Killing Spree", "Running Riot", "Perfection"), medals(feed, PLAYER));
+
+        // Any death, even a suicide, rules it out
+        feed.add(kill(time + APART, PLAYER, PLAYER, "Grenade"));
+        assertFalse(medals(feed, PLAYER).contains("Perfection"));
+
+        // 14 kills isn't enough
+        assertFalse(medals(feed.subList(0, 14), PLAYER).contains("Perfection"));
+    }
+
+    @Test
+    public void outOfOrderFeedsAreSortedFirst() {
+        List<KillEvent> inOrder = Arrays.asList(
+            kill(1000, PLAYER, OTHER, "BattleRifle"),
+            kill(2000, PLAYER, 3L, "BattleRifle"),
+            kill(30_000, OTHER, PLAYER, "Sniper"),
+            kill(31_000, PLAYER, OTHER, "BattleRifle"));
+        List<KillEvent> shuffled = Arrays.asList(inOrder.get(2), inOrder.get(0), inOrder.get(3), inOrder.get(1));
+
+        assertEquals(Collections.singletonList("Double Kill"), medals(inOrder, PLAYER));
+        assertEquals(engine.evaluate(inOrder), engine.evaluate(shuffled));
+    }
+
+    @Test
+    public void eventsWithoutATimeOrVictimAreIncomplete() {
+        assertTrue(MedalEngine.isComplete(kill(0, PLAYER, OTHER, "Sniper")));
+        assertTrue(MedalEngine.isComplete(kill(0, null, OTHER, null)));
+        assertFalse(MedalEngine.isComplete(new KillEvent(null, PLAYER, OTHER, "Sniper")));
+        assertFalse(MedalEngine.isComplete(new KillEvent(-1L, PLAYER, OTHER, "Sniper")));
+        assertFalse(MedalEngine.isComplete(new KillEvent(0L, PLAYER, null, "Sniper")));
+        assertFalse(MedalEngine.isComplete(null));
+    }
+
+    private List<String> medals(List<KillEvent> feed, long playerId) {
+        return engine.evaluate(feed).getOrDefault(playerId, Collections.emptyList());
+    }
+
+    private static KillEvent kill(long timeMillis, Long killerId, long victimId, String weapon) {
+        return new KillEvent(timeMillis, killerId, victimId, weapon);
+    }
+}
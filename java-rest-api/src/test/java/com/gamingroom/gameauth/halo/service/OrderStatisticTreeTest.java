@@ -0,0 +1,119 @@
+// Package: com.gamingroom.gameauth.halo.service
+// Checks the treap behind the leaderboards against a plain TreeSet
+
+package com.gamingroom.gameauth.halo.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.*;
+import org.junit.Test;
+
+public class OrderStatisticTreeTest {
+
+    @Test
+    public void rankAndSelectMatchSortedOrderAfterDeletes() {
+        Random random = new Random(7);
+        OrderStatisticTree<Integer> tree = new OrderStatisticTree<>();
+        TreeSet<Integer> expected = new TreeSet<>();
+
+        List<Integer> values = new ArrayList<>();
+        for (int i = 0; i < 2_000; i++) {
+            values.add(i * 2); // Even numbers, so odd ones are "between" elements
+        }
+        Collections.shuffle(values, random);
+        for (Integer value : values) {
+            tree.add(value);
+            expected.add(value);
+        }
+
+        // Delete a random half, including the smallest and largest
+        Collections.shuffle(values, random);
+        for (Integer value : values.subList(0, 1_000)) {
+            tree.remove(value);
+            expected.remove(value);
+        }
+        tree.remove(expected.first());
+        expected.remove(expected.first());
+        tree.remove(expected.last());
+        expected.remove(expected.last());
+
+        assertEquals(expected.size(), tree.size());
+        assertSameOrder(expected, tree);
+    }
+
+    @Test
+    public void rankCountsSmallerElementsForMissingValues() {
+        OrderStatisticTree<Integer> tree = new OrderStatisticTree<>();
+        for (int i = 0; i < 10; i++) {
+            tree.add(i * 10);
+        }
+        tree.remove(30);
+        tree.remove(31); // Not there - nothing changes
+
+        assertEquals(9, tree.size());
+        assertFalse(tree.contains(30));
+        assertEquals(3, tree.rank(30));      // 0, 10, 20
+        assertEquals(3, tree.rankAfter(30));
+        assertEquals(3, tree.rank(40));
+        assertEquals(4, tree.rankAfter(40)); // 40 itself is counted
+        assertEquals(9, tree.rank(1_000));
+    }
+
+    @Test
+    public void addingTwiceKeepsOneCopy() {
+        OrderStatisticTree<Integer> tree = new OrderStatisticTree<>();
+        tree.add(5);
+        tree.add(5);
+        assertEquals(1, tree.size());
+
+        tree.remove(5);
+        assertEquals(0, tree.size());
+        assertFalse(tree.contains(5));
+
+        tree.add(5);
+        assertTrue(tree.contains(5));
+    }
+
+    @Test
+    public void forEachStopsAtTheEnd() {
+        OrderStatisticTree<Integer> tree = new OrderStatisticTree<>();
+        for (int i = 0; i < 5; i++) {
+            tree.add(i);
+        }
+
+        List<Integer> seen = new ArrayList<>();
+        tree.forEach(3, 10, seen::add);
+        assertEquals(Arrays.asList(3, 4), seen);
+
+        seen.clear();
+        tree.forEach(5, 10, seen::add);
+        assertTrue(seen.isEmpty());
+    }
+
+    private static void assertSameOrder(TreeSet<Integer> expected, OrderStatisticTree<Integer> tree) {
+        List<Integer> sorted = new ArrayList<>(expected);
+
+        // Every element's rank is its position, and select (forEach from it) finds it again
+        for (int i = 0; i < sorted.size(); i++) {
+            Integer value = sorted.get(i);
+            assertEquals("rank of " + value, i, tree.rank(value));
+            assertEquals("rankAfter of " + value, i + 1, tree.rankAfter(value));
+
+            List<Integer> selected = new ArrayList<>();
+            tree.forEach(i, 1, selected::add);
+            assertEquals("element at " + i, Collections.singletonList(value), selected);
+        }
+
+        // Values that aren't in the tree rank where they would be inserted
+        for (int odd = -1; odd <= 4_001; odd += 2) {
+            assertEquals(expected.headSet(odd).size(), tree.rank(odd));
+        }
+
+        // A page from the middle comes out in order
+        List<Integer> page = new ArrayList<>();
+        tree.forEach(100, 50, page::add);
+        assertEquals(sorted.subList(100, 150), page);
+    }
+}
\ No newline at end of file
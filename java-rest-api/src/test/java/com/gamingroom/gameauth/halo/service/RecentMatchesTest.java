@@ -0,0 +1,66 @@
+// Package: com.gamingroom.gameauth.halo.service
+// Checks loading, caching and invalidating players' recent match lines
+
+package com.gamingroom.gameauth.halo.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import com.gamingroom.gameauth.halo.dao.MatchHistoryDAO;
+import com.gamingroom.gameauth.halo.models.RecentPerformance;
+import java.time.LocalDateTime;
+import java.util.*;
+import org.junit.Test;
+
+public class RecentMatchesTest {
+
+    @Test
+    public void linesAreLoadedTogetherAndReloadedAfterInvalidate() {
+        Map<Long, List<MatchHistoryDAO.MatchLine>> history = new HashMap<>();
+        LocalDateTime now = LocalDateTime.now();
+        // Newest first, as the DAO returns them
+        history.put(1L, new ArrayList<>(Arrays.asList(
+            new MatchHistoryDAO.MatchLine(10, 2, 1, 900, true, now),
+            new MatchHistoryDAO.MatchLine(3, 6, 0, 200, false, now.minusHours(1)))));
+        List<Collection<Long>> loads = new ArrayList<>();
+        RecentMatches recent = new RecentMatches(100, ids -> {
+            loads.add(new ArrayList<>(ids));
+            Map<Long, List<MatchHistoryDAO.MatchLine>> lines = new HashMap<>();
+            for (Long id : ids) {
+                if (history.containsKey(id)) {
+                    lines.put(id, new ArrayList<>(history.get(id)));
+                }
+            }
+            return lines;
+        });
+
+        Map<Long, RecentPerformance> both = recent.getAll(Arrays.asList(1L, 2L));
+        assertEquals(1, loads.size()); // One load for both misses
+        assertEquals(Arrays.asList("W", "L"), both.get(1L).getResults());
+        assertNull(both.get(2L)); // Hasn't played
+
+        // Cached - including the player with no matches
+        recent.get(1L);
+        recent.get(2L);
+        assertEquals(1, loads.size());
+
+        // A new match is saved: the next read loads it
+        history.get(1L).add(0, new MatchHistoryDAO.MatchLine(5, 5, 5, 500, false, now.plusHours(1)));
+        recent.invalidate(1L);
+        assertEquals(Arrays.asList("L", "W", "L"), recent.get(1L).getResults());
+        assertEquals(2, loads.size());
+    }
+
+    @Test
+    public void failedLoadIsNotCached() {
+        List<Collection<Long>> loads = new ArrayList<>();
+        RecentMatches recent = new RecentMatches(100, ids -> {
+            loads.add(ids);
+            return null;
+        });
+
+        assertNull(recent.get(1L));
+        assertNull(recent.get(1L));
+        assertEquals(2, loads.size());
+    }
+}
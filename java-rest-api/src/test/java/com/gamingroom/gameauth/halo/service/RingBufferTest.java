@@ -0,0 +1,122 @@
+// Package: com.gamingroom.gameauth.halo.service
+// Checks the ingest queue's ring buffer at small capacities, where laps come quickly
+
+package com.gamingroom.gameauth.halo.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Test;
+
+public class RingBufferTest {
+
+    @Test(expected = IllegalArgumentException.class)
+    public void capacityOfOneIsRejected() {
+        new RingBuffer<Integer>(1);
+    }
+
+    @Test
+    public void capacityIsRoundedUpToAPowerOfTwo() {
+        assertEquals(2, new RingBuffer<Integer>(2).getCapacity());
+        assertEquals(4, new RingBuffer<Integer>(3).getCapacity());
+        assertEquals(8, new RingBuffer<Integer>(8).getCapacity());
+    }
+
+    @Test
+    public void fullAndEmptyAtCapacityTwo() {
+        RingBuffer<Integer> buffer = new RingBuffer<>(2);
+        assertTrue(buffer.isEmpty());
+        assertNull(buffer.poll());
+
+        assertTrue(buffer.offer(1));
+        assertTrue(buffer.offer(2));
+        assertFalse(buffer.offer(3)); // Full - nothing is overwritten
+        assertEquals(2, buffer.size());
+
+        assertEquals(Integer.valueOf(1), buffer.poll());
+        assertTrue(buffer.offer(3));  // One slot freed
+        assertFalse(buffer.offer(4));
+
+        assertEquals(Integer.valueOf(2), buffer.poll());
+        assertEquals(Integer.valueOf(3), buffer.poll());
+        assertNull(buffer.poll());
+        assertTrue(buffer.isEmpty());
+    }
+
+    @Test
+    public void keepsOrderOverManyLaps() {
+        for (int capacity = 2; capacity <= 8; capacity *= 2) {
+            RingBuffer<Integer> buffer = new RingBuffer<>(capacity);
+            int next = 0;
+            int expected = 0;
+
+            // Go round the buffer 1,000 times, filling it up and half emptying it
+            for (int lap = 0; lap < 1_000; lap++) {
+                while (buffer.offer(next)) {
+                    next++;
+                }
+                assertEquals(capacity, buffer.size());
+                for (int i = 0; i < capacity / 2; i++) {
+                    assertEquals(Integer.valueOf(expected++), buffer.poll());
+                }
+            }
+
+            Integer item;
+            while ((item = buffer.poll()) != null) {
+                assertEquals(Integer.valueOf(expected++), item);
+            }
+            assertEquals(next, expected);
+        }
+    }
+
+    @Test
+    public void everyItemIsTakenOnceWithManyThreads() throws InterruptedException {
+        final int producers = 4;
+        final int consumers = 4;
+        final int perProducer = 50_000;
+
+        RingBuffer<Integer> buffer = new RingBuffer<>(2);
+        Queue<Integer> taken = new ConcurrentLinkedQueue<>();
+        AtomicInteger remaining = new AtomicInteger(producers * perProducer);
+        CountDownLatch done = new CountDownLatch(producers + consumers);
+
+        for (int p = 0; p < producers; p++) {
+            int first = p * perProducer;
+            new Thread(() -> {
+                for (int i = first; i < first + perProducer; i++) {
+                    while (!buffer.offer(i)) {
+                        Thread.yield(); // Full - wait for a consumer
+                    }
+                }
+                done.countDown();
+            }).start();
+        }
+        for (int c = 0; c < consumers; c++) {
+            new Thread(() -> {
+                while (remaining.get() > 0) {
+                    Integer item = buffer.poll();
+                    if (item != null) {
+                        taken.add(item);
+                        remaining.decrementAndGet();
+                    } else {
+                        Thread.yield();
+                    }
+                }
+                done.countDown();
+            }).start();
+        }
+        done.await();
+
+        // Nothing lost and nothing taken twice
+        Set<Integer> unique = new HashSet<>(taken);
+        assertEquals(producers * perProducer, taken.size());
+        assertEquals(producers * perProducer, unique.size());
+        assertTrue(buffer.isEmpty());
+    }
+}
\ No newline at end of file
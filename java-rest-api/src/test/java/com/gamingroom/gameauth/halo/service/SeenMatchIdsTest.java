@@ -0,0 +1,93 @@
+// Package: com.gamingroom.gameauth.halo.service
+// Checks claiming, releasing and re-claiming match IDs
+
+package com.gamingroom.gameauth.halo.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.gamingroom.gameauth.halo.models.MatchResult;
+import java.util.*;
+import java.util.function.Predicate;
+import org.junit.Test;
+
+public class SeenMatchIdsTest {
+
+    @Test
+    public void releasedIdCanBeClaimedAgain() {
+        SeenMatchIds seen = new SeenMatchIds();
+        Set<String> lookedUp = new HashSet<>();
+        Predicate<String> notInDatabase = id -> {
+            lookedUp.add(id);
+            return false;
+        };
+
+        assertTrue(seen.claim("match-1", notInDatabase));
+        assertTrue(lookedUp.isEmpty()); // New ID - the bloom filter ruled it out
+
+        assertFalse(seen.claim("match-1", id -> false)); // Claimed, so refused
+
+        // Released (e.g. the save failed): the retry gets in. The bloom
+        // filter remembers the ID, so this time the database is asked
+        seen.release("match-1");
+        assertTrue(seen.claim("match-1", notInDatabase));
+        assertEquals(Collections.singleton("match-1"), lookedUp);
+
+        assertFalse(seen.claim("match-1", id -> false));
+    }
+
+    @Test
+    public void releasedIdThatWasSavedIsStillADuplicate() {
+        SeenMatchIds seen = new SeenMatchIds();
+
+        assertTrue(seen.claim("match-2", id -> false));
+        seen.release("match-2");
+
+        // The database has it after all, so the re-claim is refused
+        assertFalse(seen.claim("match-2", id -> true));
+    }
+
+    @Test
+    public void lastRecentIdsAreAllRememberedWithoutTheDatabase() {
+        SeenMatchIds seen = new SeenMatchIds();
+        for (int i = 0; i < SeenMatchIds.RECENT_IDS; i++) {
+            assertTrue(seen.claim("queued-" + i, id -> false));
+        }
+
+        // Still queued (not in the database yet), so only the recent IDs can
+        // catch the retries - the oldest and the newest must both be there
+        assertFalse(seen.claim("queued-0", id -> false));
+        assertFalse(seen.claim("queued-" + (SeenMatchIds.RECENT_IDS - 1), id -> false));
+
+        // One more pushes the oldest out; then only the database can refuse it
+        assertTrue(seen.claim("queued-" + SeenMatchIds.RECENT_IDS, id -> false));
+        assertFalse(seen.claim("queued-0", id -> true));
+    }
+
+    @Test
+    public void savedMatchIsADuplicateWithoutADatabase() {
+        // In-memory mode: the match has to land in the in-memory match
+        // store, or a re-claim after a release would count it twice
+        HaloGameService service = new HaloGameService(null, 100);
+        MatchResult match = new MatchResult();
+        match.setMatchId("in-memory-" + UUID.randomUUID());
+        match.setMapName("Guardian");
+        match.setWinningTeam(0);
+        match.setDurationSeconds(600L);
+        MatchResult.PlayerMatchStats player = new MatchResult.PlayerMatchStats();
+        player.setPlayerId(985752863L);
+        player.setTeam(0);
+        player.setKills(10);
+        player.setDeaths(2);
+        player.setAssists(1);
+        player.setScore(12);
+        match.setPlayerStats(Collections.singletonList(player));
+
+        assertTrue(service.claimMatchId(match.getMatchId()));
+        assertTrue(service.processMatchResults(Collections.singletonList(match)).isEmpty());
+
+        service.releaseMatchId(match.getMatchId());
+        assertFalse(service.claimMatchId(match.getMatchId()));
+    }
+}
\ No newline at end of file
@@ -0,0 +1,71 @@
+// Package: com.gamingroom.gameauth.halo.service
+// Checks that stored histogram changes add up to the same percentiles
+
+package com.gamingroom.gameauth.halo.service;
+
+import static org.junit.Assert.assertEquals;
+
+import com.gamingroom.gameauth.halo.models.PlayerStats;
+import java.util.*;
+import org.junit.Test;
+
+public class StatPercentilesTest {
+
+    @Test
+    public void savedChangesGiveTheSamePercentilesAsUpdates() {
+        StatPercentiles local = new StatPercentiles();
+        Map<String, Map<Integer, Long>> stored = new TreeMap<>();
+
+        // Three players' first matches, then two of them play again
+        Map<Long, PlayerStats> first = new HashMap<>();
+        first.put(1L, stats(1L, 10, 5, 1, 1));
+        first.put(2L, stats(2L, 3, 9, 0, 1));
+        first.put(3L, stats(3L, 20, 2, 1, 2));
+        Map<Long, PlayerStats> second = new HashMap<>();
+        second.put(1L, stats(1L, 25, 7, 2, 2));
+        second.put(2L, stats(2L, 4, 15, 0, 1));
+
+        for (PlayerStats player : first.values()) {
+            local.update(null, player);
+        }
+        add(stored, StatPercentiles.changes(Collections.emptyMap(), first));
+        for (PlayerStats player : second.values()) {
+            local.update(first.get(player.getPlayerId()), player);
+        }
+        add(stored, StatPercentiles.changes(first, second));
+
+        StatPercentiles fromStored = new StatPercentiles(stored);
+        assertEquals(local.counts(), fromStored.counts());
+        assertEquals(local.topPercent(second.get(1L)), fromStored.topPercent(second.get(1L)));
+
+        // Adding two servers' counts is the same as merging their histograms
+        StatPercentiles merged = new StatPercentiles();
+        merged.merge(local);
+        merged.merge(fromStored);
+        Map<String, Map<Integer, Long>> doubled = new TreeMap<>();
+        add(doubled, stored);
+        add(doubled, stored);
+        assertEquals(merged.counts(), new StatPercentiles(doubled).counts());
+    }
+
+    private static void add(Map<String, Map<Integer, Long>> counts, Map<String, Map<Integer, Long>> changes) {
+        for (Map.Entry<String, Map<Integer, Long>> stat : changes.entrySet()) {
+            for (Map.Entry<Integer, Long> bucket : stat.getValue().entrySet()) {
+                counts.computeIfAbsent(stat.getKey(), s -> new TreeMap<>())
+                      .merge(bucket.getKey(), bucket.getValue(), Long::sum);
+            }
+        }
+    }
+
+    private static PlayerStats stats(long playerId, int kills, int deaths, int wins, int level) {
+        PlayerStats stats = new PlayerStats();
+        stats.setPlayerId(playerId);
+        stats.setTotalKills(kills);
+        stats.setTotalDeaths(deaths);
+        stats.setTotalAssists(0);
+        stats.setMatchesPlayed(wins + 1);
+        stats.setMatchesWon(wins);
+        stats.setRankLevel(level);
+        return stats;
+    }
+}